@@ -0,0 +1,64 @@
+package com.lxgolovin.cache.benchmark;
+
+import com.lxgolovin.cache.core.AccessHashSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link AccessHashSet} operations. The set is not thread safe, so each thread has its own
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccessHashSetBenchmark {
+
+    @Param({"1000", "1000000"})
+    public int size;
+
+    private AccessHashSet<Integer> set;
+
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        set = new AccessHashSet<>();
+        for (int element = 0; element < size; element++) {
+            set.put(element);
+        }
+        next = size;
+    }
+
+    /**
+     * Moves present element to the tail
+     */
+    @Benchmark
+    public boolean putExisting() {
+        next = (next + 1) % size;
+        return set.put(next);
+    }
+
+    /**
+     * Adds new element to the tail and cuts the head, so the size stays the same
+     */
+    @Benchmark
+    public Optional<Integer> putNewAndCutHead() {
+        set.put(next++);
+        return set.cutHead();
+    }
+}
@@ -0,0 +1,66 @@
+package com.lxgolovin.cache.benchmark;
+
+import com.lxgolovin.cache.algorithm.CacheAlgorithm;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of each {@link CacheAlgorithm}: shift of a known element and eviction of one element
+ * for a new one. Algorithms are not thread safe, so each thread has its own
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AlgorithmBenchmark {
+
+    @Param({Algorithms.LRU, Algorithms.MRU})
+    public String algorithm;
+
+    @Param({"1000", "100000"})
+    public int size;
+
+    private CacheAlgorithm<Integer> cacheAlgorithm;
+
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        cacheAlgorithm = Algorithms.create(algorithm);
+        for (int element = 0; element < size; element++) {
+            cacheAlgorithm.shift(element);
+        }
+        next = size;
+    }
+
+    @Benchmark
+    public boolean shiftHit() {
+        return cacheAlgorithm.shift(ThreadLocalRandom.current().nextInt(size));
+    }
+
+    /**
+     * Pops one element and shifts a new one, so the size stays the same
+     */
+    @Benchmark
+    public Optional<Integer> popAndShift() {
+        Optional<Integer> popped = cacheAlgorithm.pop();
+        cacheAlgorithm.shift(next++);
+        return popped;
+    }
+}
@@ -0,0 +1,29 @@
+package com.lxgolovin.cache.benchmark;
+
+import com.lxgolovin.cache.algorithm.CacheAlgorithm;
+import com.lxgolovin.cache.algorithm.Lru;
+import com.lxgolovin.cache.algorithm.Mru;
+
+/**
+ * Creates algorithms by names used in benchmark parameters
+ */
+final class Algorithms {
+
+    static final String LRU = "LRU";
+
+    static final String MRU = "MRU";
+
+    private Algorithms() {
+    }
+
+    static <E> CacheAlgorithm<E> create(String type) {
+        switch (type) {
+            case LRU:
+                return new Lru<>();
+            case MRU:
+                return new Mru<>();
+            default:
+                throw new IllegalArgumentException("Unknown algorithm " + type);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.lxgolovin.cache.benchmark;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatFactory;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.NoBenchmarksException;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Runs all benchmarks and writes results into one JSON file. Thread safe caches are measured
+ * with 1 to 64 threads, single thread structures with one thread.
+ * Arguments are optional: the result file, by default {@code build/reports/jmh/results.json},
+ * and a regular expression to select benchmarks, by default all of them.
+ * JSON is the format of JMH, so results of two versions can be compared by any JMH visualizer
+ */
+public final class BenchmarkRunner {
+
+    private static final String DEFAULT_RESULT_FILE = "build/reports/jmh/results.json";
+
+    private static final int[] THREADS = {1, 2, 4, 8, 16, 32, 64};
+
+    /**
+     * Benchmarks of thread safe classes, run with each number of {@link #THREADS}
+     */
+    private static final String CONCURRENT_BENCHMARKS =
+            CacheLevelBenchmark.class.getSimpleName() + "|" + CacheLevelMixedBenchmark.class.getSimpleName()
+                    + "|" + CacheControllerBenchmark.class.getSimpleName();
+
+    /**
+     * Benchmarks of classes which are not thread safe, run with one thread
+     */
+    private static final String SINGLE_THREAD_BENCHMARKS =
+            AccessHashSetBenchmark.class.getSimpleName() + "|" + AlgorithmBenchmark.class.getSimpleName();
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        Path resultFile = Paths.get((args.length > 0) ? args[0] : DEFAULT_RESULT_FILE);
+        String filter = (args.length > 1) ? args[1] : ".*";
+
+        List<RunResult> results = new ArrayList<>();
+        for (int threads : THREADS) {
+            results.addAll(run(CONCURRENT_BENCHMARKS, filter, threads));
+        }
+        results.addAll(run(SINGLE_THREAD_BENCHMARKS, filter, 1));
+        write(results, resultFile);
+    }
+
+    private static Collection<RunResult> run(String benchmarks, String filter, int threads) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include("^(?=.*(?:" + filter + ")).*\\.(?:" + benchmarks + ")\\.")
+                .threads(threads)
+                .shouldFailOnError(true)
+                .build();
+        try {
+            return new Runner(options).run();
+        } catch (NoBenchmarksException e) {
+            return Collections.emptyList();
+        }
+    }
+
+    private static void write(Collection<RunResult> results, Path resultFile) throws IOException {
+        if (resultFile.getParent() != null) {
+            Files.createDirectories(resultFile.getParent());
+        }
+        try (PrintStream out = new PrintStream(resultFile.toFile(), StandardCharsets.UTF_8.name())) {
+            ResultFormatFactory.getInstance(ResultFormatType.JSON, out).writeOut(results);
+        }
+        System.out.println("Results are written to " + resultFile.toAbsolutePath());
+    }
+}
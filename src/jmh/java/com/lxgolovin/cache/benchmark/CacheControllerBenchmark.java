@@ -0,0 +1,66 @@
+package com.lxgolovin.cache.benchmark;
+
+import com.lxgolovin.cache.CacheController;
+import com.lxgolovin.cache.CacheLevel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link CacheController} with two memory levels of the same size.
+ * Keys are taken uniformly from three sizes of a level, so reads hit both levels and miss.
+ * Number of threads is set by {@link BenchmarkRunner}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheControllerBenchmark {
+
+    @Param({Algorithms.LRU, Algorithms.MRU})
+    public String algorithm;
+
+    @Param({"1000"})
+    public int levelSize;
+
+    /**
+     * Percent of reads, the rest are writes
+     */
+    @Param({"50", "90", "100"})
+    public int readPercent;
+
+    private CacheController<Integer, Integer> controller;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        controller = new CacheController<>(new CacheLevel<>(Algorithms.create(algorithm), levelSize));
+        controller.addLevel(new CacheLevel<>(Algorithms.create(algorithm), levelSize));
+        for (int key = 0; key < 2 * levelSize; key++) {
+            controller.cache(key, key);
+        }
+    }
+
+    @Benchmark
+    public Object mixed() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int key = random.nextInt(3 * levelSize);
+        if (random.nextInt(100) < readPercent) {
+            return controller.get(key);
+        }
+        return controller.cache(key, key);
+    }
+}
@@ -0,0 +1,75 @@
+package com.lxgolovin.cache.benchmark;
+
+import com.lxgolovin.cache.CacheLevel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link CacheLevel} in memory. Keys are taken uniformly from twice the size
+ * of the level, so about half of reads are hits and writes evict. Number of threads is set
+ * by {@link BenchmarkRunner}. Mix of reads and writes is measured by {@link CacheLevelMixedBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheLevelBenchmark {
+
+    @Param({Algorithms.LRU, Algorithms.MRU})
+    public String algorithm;
+
+    @Param({"1000", "100000"})
+    public int size;
+
+    private CacheLevel<Integer, Integer> level;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        level = new CacheLevel<>(Algorithms.create(algorithm), size);
+        for (int key = 0; key < size; key++) {
+            level.cache(key, key);
+        }
+    }
+
+    private int nextKey() {
+        return ThreadLocalRandom.current().nextInt(2 * size);
+    }
+
+    @Benchmark
+    public Optional<Integer> get() {
+        return level.get(nextKey());
+    }
+
+    @Benchmark
+    public Optional<Map.Entry<Integer, Integer>> cache() {
+        int key = nextKey();
+        return level.cache(key, key);
+    }
+
+    /**
+     * Pops the element and caches it again, so the level stays full
+     */
+    @Benchmark
+    public Optional<Map.Entry<Integer, Integer>> pop() {
+        Optional<Map.Entry<Integer, Integer>> popped = level.pop();
+        popped.ifPresent(entry -> level.cache(entry.getKey(), entry.getValue()));
+        return popped;
+    }
+}
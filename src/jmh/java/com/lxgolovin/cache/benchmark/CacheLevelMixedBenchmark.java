@@ -0,0 +1,64 @@
+package com.lxgolovin.cache.benchmark;
+
+import com.lxgolovin.cache.CacheLevel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link CacheLevel} in memory with a mix of reads and writes. Kept apart from
+ * {@link CacheLevelBenchmark}, so only this benchmark runs for each percent of reads.
+ * Keys are taken uniformly from twice the size of the level
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheLevelMixedBenchmark {
+
+    @Param({Algorithms.LRU, Algorithms.MRU})
+    public String algorithm;
+
+    @Param({"1000", "100000"})
+    public int size;
+
+    /**
+     * Percent of reads, the rest are writes
+     */
+    @Param({"50", "90", "100"})
+    public int readPercent;
+
+    private CacheLevel<Integer, Integer> level;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        level = new CacheLevel<>(Algorithms.create(algorithm), size);
+        for (int key = 0; key < size; key++) {
+            level.cache(key, key);
+        }
+    }
+
+    @Benchmark
+    public Object mixed() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int key = random.nextInt(2 * size);
+        if (random.nextInt(100) < readPercent) {
+            return level.get(key);
+        }
+        return level.cache(key, key);
+    }
+}
@@ -1,7 +1,10 @@
 package com.lxgolovin.cache;
 
+import com.lxgolovin.cache.stats.CacheStats;
+
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
 
 /**
  * Interface to describe cache. Creates methods to cache, delete, pop data
@@ -31,6 +34,14 @@ interface Cache<K, V> {
      */
     Optional<V> get(K key);
 
+    /**
+     * Gets value by the key. If the key is missed, value is loaded and cached
+     * @param key with mapping in cache to value
+     * @param loader to get value of missed key. Value is not cached if loader returns null
+     * @return the value in cache or loaded value
+     */
+    Optional<V> get(K key, Function<? super K, ? extends V> loader);
+
     /**
      * Removes the mapping for a key from the cache by used algorithm.
      * @return popped out entry, returns null entry if the element was not
@@ -72,4 +83,9 @@ interface Cache<K, V> {
      * @return maximum possible size of the cache
      */
     int sizeMax();
+
+    /**
+     * @return snapshot of statistics from creation of the cache
+     */
+    CacheStats stats();
 }
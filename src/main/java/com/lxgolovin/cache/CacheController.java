@@ -3,10 +3,22 @@ package com.lxgolovin.cache;
 import com.lxgolovin.cache.algorithm.CacheAlgorithm;
 import com.lxgolovin.cache.algorithm.Lru;
 import com.lxgolovin.cache.algorithm.Mru;
+import com.lxgolovin.cache.core.InstrumentedLock;
+import com.lxgolovin.cache.jfr.LevelTransferEvent;
+import com.lxgolovin.cache.stats.CacheStats;
+import com.lxgolovin.cache.stats.EvictionCause;
+import com.lxgolovin.cache.stats.LatencyRecorder;
+import com.lxgolovin.cache.stats.LatencyRecorder.Operation;
+import com.lxgolovin.cache.stats.StatsCounter;
 import net.jcip.annotations.GuardedBy;
 import net.jcip.annotations.ThreadSafe;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
 import java.util.stream.IntStream;
 
 /**
@@ -26,13 +38,33 @@ import java.util.stream.IntStream;
 @ThreadSafe
 public final class CacheController<K, V> implements Cache<K,V> {
 
+    /**
+     * Name of the controller lock in {@link CacheStats#lockStats()}
+     */
+    public static final String LOCK_NAME = "controller";
+
     /**
      * Cache controller list to keep levels of cache
      */
     @GuardedBy("this")
     private final List<Cache<K, V>> ccList = new LinkedList<>();
 
-    private final Object monitor = new Object();
+    /**
+     * Guards moves of entries between levels, reentrant as levels are checked inside operations
+     */
+    private final InstrumentedLock lock = new InstrumentedLock();
+
+    private final StatsCounter statsCounter = new StatsCounter();
+
+    /**
+     * Loads in progress by keys, so concurrent misses of one key call the loader once
+     */
+    private final ConcurrentMap<K, CompletableFuture<Optional<V>>> loads = new ConcurrentHashMap<>();
+
+    /**
+     * Histograms of operation latencies, null if they are not recorded
+     */
+    private volatile LatencyRecorder latencyRecorder;
 
     /**
      * Constructor for the cache controller. Add first level by default
@@ -55,9 +87,12 @@ public final class CacheController<K, V> implements Cache<K,V> {
     public int addLevel(Cache<K, V> cache) {
         Cache<K, V> cacheLevel = (cache == null) ? createNewMemoryCacheLru() : cache;
 
-        synchronized (monitor) {
+        lock.lock();
+        try {
             ccList.add(cacheLevel);
             return levels();
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -72,10 +107,30 @@ public final class CacheController<K, V> implements Cache<K,V> {
             throw new IndexOutOfBoundsException("Index value is out of range");
         }
 
-        synchronized (monitor) {
+        lock.lock();
+        try {
             ccList.get(index).clear();
             ccList.remove(index);
             return levels();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Clears one level, other levels keep their data
+     * @param index of the level to be cleared
+     * @throws IndexOutOfBoundsException if there is now level with such index
+     */
+    public void clearLevel(int index) {
+        lock.lock();
+        try {
+            if ((index < 0) | (index >= levels())) {
+                throw new IndexOutOfBoundsException("Index value is out of range");
+            }
+            ccList.get(index).clear();
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -84,8 +139,11 @@ public final class CacheController<K, V> implements Cache<K,V> {
      * @return number of levels
      */
     public int levels() {
-        synchronized (monitor) {
+        lock.lock();
+        try {
             return ccList.size();
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -100,8 +158,11 @@ public final class CacheController<K, V> implements Cache<K,V> {
             throw new IndexOutOfBoundsException("Index is out of range");
         }
 
-        synchronized (monitor) {
+        lock.lock();
+        try {
             return (ccList.get(index).size() == ccList.get(index).sizeMax());
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -115,37 +176,141 @@ public final class CacheController<K, V> implements Cache<K,V> {
             throw new IllegalArgumentException("Key aor value should not be null");
         }
 
-        synchronized (monitor) {
+        LatencyRecorder recorder = latencyRecorder;
+        long start = startTime(recorder);
+        lock.lock();
+        try {
             int levelIndex = (contains(key)) ? getLevelByKey(key) : 0;
-            return loadToLevel(key, value, levelIndex);
+            return loadToLevel(key, value, levelIndex, EvictionCause.SIZE);
+        } finally {
+            lock.unlock();
+            recordSince(recorder, Operation.CACHE, start);
         }
     }
 
     /**
      * Loads new data (key and value) in recursive way.
-     * Goes through all levels and moves data (popped out or inserted)
+     * Goes through all levels and moves data (popped out or inserted).
+     * Entry moved to the next level is counted as demotion, entry popped out of the last level
+     * is counted as eviction by the cause
      */
-    private Optional<Map.Entry<K, V>> loadToLevel(K key, V value, int index) {
+    private Optional<Map.Entry<K, V>> loadToLevel(K key, V value, int index, EvictionCause cause) {
+        LevelTransferEvent event = new LevelTransferEvent();
+        event.begin();
         Optional<Map.Entry<K, V>> returnEntry = ccList.get(index).cache(key, value);
 
         int nextLevel = index + 1;
-        return returnEntry
-                .filter(e -> ((e.getKey()!=key) && (levels() > nextLevel)))
-                .map(e -> loadToLevel(e.getKey(), e.getValue(), nextLevel))
-                .orElse(returnEntry);
+        Optional<Map.Entry<K, V>> poppedEntry = returnEntry.filter(e -> !key.equals(e.getKey()));
+        event.end();
+        if (event.shouldCommit()) {
+            event.keyHash = key.hashCode();
+            event.level = index;
+            event.evicted = poppedEntry.isPresent();
+            event.commit();
+        }
+        if (!poppedEntry.isPresent()) {
+            return returnEntry;
+        }
+        if (levels() <= nextLevel) {
+            statsCounter.recordEviction(cause);
+            return returnEntry;
+        }
+        return demote(poppedEntry.get(), nextLevel, cause);
+    }
+
+    /**
+     * Moves the entry to the level, latency includes moves of entries popped from next levels
+     */
+    @GuardedBy("lock")
+    private Optional<Map.Entry<K, V>> demote(Map.Entry<K, V> entry, int index, EvictionCause cause) {
+        LatencyRecorder recorder = latencyRecorder;
+        long start = startTime(recorder);
+        statsCounter.recordDemotion();
+        Optional<Map.Entry<K, V>> returnEntry = loadToLevel(entry.getKey(), entry.getValue(), index, cause);
+        recordSince(recorder, Operation.DEMOTE, start);
+        return returnEntry;
     }
 
+    /**
+     * Value found in any level is moved to the first level
+     */
     public Optional<V> get(K key) {
-        synchronized (monitor) {
-            return ccList.stream()
-                    .filter(c -> c.contains(key))
-                    .findAny()
-                    .flatMap(c -> c.get(key))
-                    .flatMap(v -> delete(key))
+        LatencyRecorder recorder = latencyRecorder;
+        long start = startTime(recorder);
+        lock.lock();
+        try {
+            int levelIndex = getLevelByKey(key);
+            if (levelIndex >= levels()) {
+                statsCounter.recordMiss();
+                recordSince(recorder, Operation.GET_MISS, start);
+                return Optional.empty();
+            }
+
+            statsCounter.recordHit(levelIndex);
+            if (levelIndex > 0) {
+                statsCounter.recordPromotion();
+            }
+            Optional<V> value = ccList.get(levelIndex)
+                    .get(key)
+                    .flatMap(v -> removeFromLevels(key))
                     .map(v -> {
-                        cache(key, v);
+                        loadToLevel(key, v, 0, EvictionCause.SIZE);
                         return v;
                     });
+            recordSince(recorder, Operation.GET_HIT, start);
+            return value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Loader is called without the controller lock, so other keys are available while the value is loaded.
+     * Concurrent calls for the same key wait for the first loader, so the value is loaded once
+     */
+    @Override
+    public Optional<V> get(K key, Function<? super K, ? extends V> loader) {
+        if (loader == null) {
+            throw new IllegalArgumentException("Loader should not be null");
+        }
+
+        Optional<V> value = get(key);
+        if (value.isPresent()) {
+            return value;
+        }
+
+        CompletableFuture<Optional<V>> load = new CompletableFuture<>();
+        CompletableFuture<Optional<V>> running = loads.putIfAbsent(key, load);
+        if (running != null) {
+            return await(running);
+        }
+        try {
+            Optional<V> loaded = Optional.ofNullable(statsCounter.load(key, loader));
+            loaded.ifPresent(v -> cache(key, v));
+            load.complete(loaded);
+            return loaded;
+        } catch (RuntimeException | Error e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loads.remove(key, load);
+        }
+    }
+
+    /**
+     * Waits for the load started by other thread. Exception of its loader is thrown as is
+     */
+    private Optional<V> await(CompletableFuture<Optional<V>> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
         }
     }
 
@@ -156,8 +321,19 @@ public final class CacheController<K, V> implements Cache<K,V> {
      */
     @Override
     public Optional<Map.Entry<K, V>> pop() {
+        LatencyRecorder recorder = latencyRecorder;
+        long start = startTime(recorder);
+        try {
+            return popFirst();
+        } finally {
+            recordSince(recorder, Operation.POP, start);
+        }
+    }
+
+    private Optional<Map.Entry<K, V>> popFirst() {
         // check if there are no levels or all levels are empty
-        synchronized (monitor) {
+        lock.lock();
+        try {
             if ((levels() < 1) || (size() < 1)) {
                 return Optional.empty();
             }
@@ -169,34 +345,57 @@ public final class CacheController<K, V> implements Cache<K,V> {
                     .orElse(0);
             int nextLevel = notEmptyLevelIndex + 1;
 
-            return ccList
-                    .get(notEmptyLevelIndex)
-                    .pop()
-                    .flatMap(e -> loadToLevel(e.getKey(), e.getValue(), nextLevel));
+            Optional<Map.Entry<K, V>> poppedEntry = ccList.get(notEmptyLevelIndex).pop();
+            if (levels() <= nextLevel) {
+                poppedEntry.ifPresent(e -> statsCounter.recordEviction(EvictionCause.POPPED));
+                return poppedEntry;
+            }
+            return poppedEntry.flatMap(e -> demote(e, nextLevel, EvictionCause.POPPED));
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
     public Optional<V> delete(K key) {
-        synchronized (monitor) {
-            return ccList.stream()
-                    .filter(c -> c.contains(key))
-                    .findAny()
-                    .flatMap(c -> c.delete(key));
+        lock.lock();
+        try {
+            Optional<V> removed = removeFromLevels(key);
+            removed.ifPresent(v -> statsCounter.recordEviction(EvictionCause.DELETED));
+            return removed;
+        } finally {
+            lock.unlock();
         }
     }
 
+    /**
+     * Removes the key from the level where it is, not counted in statistics
+     */
+    @GuardedBy("lock")
+    private Optional<V> removeFromLevels(K key) {
+        return ccList.stream()
+                .filter(c -> c.contains(key))
+                .findAny()
+                .flatMap(c -> c.delete(key));
+    }
+
     @Override
     public boolean contains(K key) {
-        synchronized (monitor) {
+        lock.lock();
+        try {
             return ccList.stream().anyMatch(c -> c.contains(key));
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
     public void clear() {
-        synchronized (monitor) {
+        lock.lock();
+        try {
             ccList.forEach(Cache::clear);
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -205,8 +404,11 @@ public final class CacheController<K, V> implements Cache<K,V> {
      */
     @Override
     public int size() {
-        synchronized (monitor) {
+        lock.lock();
+        try {
             return ccList.stream().mapToInt(Cache::size).sum();
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -215,8 +417,47 @@ public final class CacheController<K, V> implements Cache<K,V> {
      */
     @Override
     public int sizeMax() {
-        synchronized (monitor) {
+        lock.lock();
+        try {
             return ccList.stream().mapToInt(Cache::sizeMax).sum();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Counts requests to the controller: hits by level where the key is found, promotions of
+     * found entries to the first level, demotions of entries to next levels and evictions from the last level.
+     * Levels count their own statistics, see {@link CacheLevel#stats()}
+     */
+    @Override
+    public CacheStats stats() {
+        return statsCounter.snapshot().withLockStats(Collections.singletonMap(LOCK_NAME, lock.stats()));
+    }
+
+    /**
+     * Starts or stops recording of latencies of the controller: gets, caches, pops and demotions
+     * of entries to next levels. Levels record their own latencies, see {@link CacheLevel#recordLatencies}
+     * @param recorder to keep histograms, null to stop recording
+     */
+    public void recordLatencies(LatencyRecorder recorder) {
+        latencyRecorder = recorder;
+    }
+
+    /**
+     * @return recorder set by {@link #recordLatencies(LatencyRecorder)}, empty if latencies are not recorded
+     */
+    public Optional<LatencyRecorder> latencies() {
+        return Optional.ofNullable(latencyRecorder);
+    }
+
+    private static long startTime(LatencyRecorder recorder) {
+        return (recorder == null) ? 0 : recorder.start();
+    }
+
+    private static void recordSince(LatencyRecorder recorder, Operation operation, long start) {
+        if (recorder != null) {
+            recorder.recordSince(operation, start);
         }
     }
 
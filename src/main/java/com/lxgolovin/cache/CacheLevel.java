@@ -1,7 +1,22 @@
 package com.lxgolovin.cache;
 
 import com.lxgolovin.cache.algorithm.CacheAlgorithm;
+import com.lxgolovin.cache.core.InstrumentedReadWriteLock;
+import com.lxgolovin.cache.jfr.CacheOperationEvent;
+import com.lxgolovin.cache.stats.AccessListener;
+import com.lxgolovin.cache.stats.AccessListener.Access;
+import com.lxgolovin.cache.stats.CacheStats;
+import com.lxgolovin.cache.stats.EvictionCause;
+import com.lxgolovin.cache.stats.LatencyRecorder;
+import com.lxgolovin.cache.stats.LatencyRecorder.Operation;
+import com.lxgolovin.cache.stats.LockStats;
+import com.lxgolovin.cache.stats.MemoryFootprint;
+import com.lxgolovin.cache.stats.SizeEstimator;
+import com.lxgolovin.cache.stats.SizeEstimators;
+import com.lxgolovin.cache.stats.StatsCounter;
+import com.lxgolovin.cache.storage.Compactable;
 import com.lxgolovin.cache.storage.FileSystemStorage;
+import com.lxgolovin.cache.storage.IoStats;
 import com.lxgolovin.cache.storage.MemoryStorage;
 import com.lxgolovin.cache.storage.Storage;
 import net.jcip.annotations.GuardedBy;
@@ -9,9 +24,16 @@ import net.jcip.annotations.ThreadSafe;
 
 import java.util.AbstractMap;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Implementation of interface {@link Cache}. This class creates realization of cache.
@@ -38,12 +60,26 @@ public final class CacheLevel<K, V> implements Cache<K, V> {
 
     public static final int DEFAULT_CACHE_SIZE = 5;
 
+    /**
+     * Names of locks in {@link CacheStats#lockStats()}
+     */
+    public static final String LEVEL_LOCK = "level";
+
+    public static final String ALGORITHM_LOCK = "algorithm";
+
+    public static final String STORAGE_LOCK = "storage";
+
+    /**
+     * Number of entries measured by {@link #footprint()}
+     */
+    public static final int DEFAULT_FOOTPRINT_SAMPLES = 10_000;
+
     /**
      * maximum possible size for the cache. Minimum value is greater then 1.
      * If you try to use less then 2, {@link #DEFAULT_CACHE_SIZE}
-     * will be used as a size
+     * will be used as a size. Could be changed by {@link #resize(int)}
      */
-    private final int maxSize;
+    private volatile int maxSize;
 
     /**
      * Defines cache algorithm
@@ -57,7 +93,16 @@ public final class CacheLevel<K, V> implements Cache<K, V> {
     @GuardedBy("this")
     private final Storage<K, V> storage;
 
-    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final InstrumentedReadWriteLock lock = new InstrumentedReadWriteLock();
+
+    private final StatsCounter statsCounter = new StatsCounter();
+
+    /**
+     * Histograms of operation latencies, null if they are not recorded
+     */
+    private volatile LatencyRecorder latencyRecorder;
+
+    private final List<AccessListener<? super K>> accessListeners = new CopyOnWriteArrayList<>();
 
     /**
      * Creates memory cache with default size by defined algorithm
@@ -123,65 +168,150 @@ public final class CacheLevel<K, V> implements Cache<K, V> {
         }
         Storage<K, V> cacheStorage = (storage == null) ? new MemoryStorage<>() : storage;
 
-        Map<K, V> initialDataMap;
+        int initialSize;
         if (map == null) {
-            initialDataMap = cacheStorage.getAll();
+            initialSize = putAll(algorithm, cacheStorage);
         } else {
-            initialDataMap = new HashMap<>(map);
+            Map<K, V> initialDataMap = new HashMap<>(map);
             initialDataMap.forEach(cacheStorage::put);
+            initialDataMap.keySet().forEach(algorithm::shift);
+            initialSize = initialDataMap.size();
         }
-        putAll(algorithm, initialDataMap);
 
-        this.maxSize = getMaxSize(size, initialDataMap);
+        this.maxSize = getMaxSize(size, initialSize);
         this.algorithm = algorithm;
         this.storage = cacheStorage;
     }
 
-    private int getMaxSize(int size, Map<K, V> map) {
-        if (map.isEmpty()) {
+    private int getMaxSize(int size, int initialSize) {
+        if (initialSize == 0) {
             return (size > 1) ? size : DEFAULT_CACHE_SIZE;
         }
 
-        return Math.max(map.size(), size);
+        return Math.max(initialSize, size);
     }
 
     /**
-     * Put all values of map into cache
-     * @param map with key-values
+     * Put all keys of storage into cache. Keys are streamed, so values are not loaded into memory.
+     * Keys are collected into hash set first, so they come to algorithm in the same order for any storage
+     * @param storage with key-values
+     * @return number of keys
      */
-    private void putAll(CacheAlgorithm<K> algorithm, Map<K, V> map) {
-        map.keySet().forEach(algorithm::shift);
+    private int putAll(CacheAlgorithm<K> algorithm, Storage<K, V> storage) {
+        Set<K> keySet;
+        try (Stream<K> keys = storage.keys()) {
+            keySet = keys.collect(Collectors.toCollection(HashSet::new));
+        }
+        keySet.forEach(algorithm::shift);
+        return keySet.size();
     }
 
     @Override
     public Optional<Map.Entry<K, V>> cache(K key, V value) {
+        CacheOperationEvent event = new CacheOperationEvent();
+        event.begin();
+        LatencyRecorder recorder = latencyRecorder;
+        long start = startTime(recorder);
         Optional<Map.Entry<K, V>> poppedEntry = Optional.empty();
+        Optional<Map.Entry<K, V>> replacedEntry;
         lock.writeLock().lock();
         try {
             if ((size() >= maxSize) && (!contains(key))) {
                 // using deletion by algorithm
-                while (size() >= maxSize)
-                    poppedEntry = pop();
+                while (size() >= maxSize) {
+                    poppedEntry = evict();
+                    poppedEntry.ifPresent(e -> statsCounter.recordEviction(EvictionCause.SIZE));
+                }
             }
 
             algorithm.shift(key);
-            Optional<Map.Entry<K, V>> replacedEntry = storage.put(key, value)
+            long writeStart = startTime(recorder);
+            replacedEntry = storage.put(key, value)
                     .map(v -> new AbstractMap.SimpleImmutableEntry<>(key, v));
-            return (poppedEntry.isPresent()) ? poppedEntry : replacedEntry;
+            recordSince(recorder, Operation.STORAGE_WRITE, writeStart);
         } finally {
             lock.writeLock().unlock();
         }
+        recordSince(recorder, Operation.CACHE, start);
+        notifyListeners(key, Access.CACHE);
+        commitEvent(event, "cache", key, replacedEntry.isPresent(), poppedEntry.isPresent());
+        return (poppedEntry.isPresent()) ? poppedEntry : replacedEntry;
     }
 
     @Override
     public Optional<V> get(K key){
+        CacheOperationEvent event = new CacheOperationEvent();
+        event.begin();
+        LatencyRecorder recorder = latencyRecorder;
+        long start = startTime(recorder);
+        Optional<V> value;
         lock.readLock().lock();
         try {
             algorithm.shift(key);
-            return storage.get(key);
+            long readStart = startTime(recorder);
+            value = storage.get(key);
+            recordSince(recorder, Operation.STORAGE_READ, readStart);
+            if (value.isPresent()) {
+                statsCounter.recordHit();
+            } else {
+                statsCounter.recordMiss();
+            }
         } finally {
             lock.readLock().unlock();
         }
+        recordSince(recorder, value.isPresent() ? Operation.GET_HIT : Operation.GET_MISS, start);
+        notifyListeners(key, value.isPresent() ? Access.HIT : Access.MISS);
+        commitEvent(event, "get", key, value.isPresent(), false);
+        return value;
+    }
+
+    private void notifyListeners(K key, Access access) {
+        if (key != null) {
+            accessListeners.forEach(listener -> listener.onAccess(key, access));
+        }
+    }
+
+    private static long startTime(LatencyRecorder recorder) {
+        return (recorder == null) ? 0 : recorder.start();
+    }
+
+    private static void recordSince(LatencyRecorder recorder, Operation operation, long start) {
+        if (recorder != null) {
+            recorder.recordSince(operation, start);
+        }
+    }
+
+    /**
+     * Commits the event if it is enabled and longer then its threshold
+     */
+    private void commitEvent(CacheOperationEvent event, String operation, K key, boolean hit, boolean evicted) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.keyHash = key.hashCode();
+            event.algorithm = algorithm.getType();
+            event.hit = hit;
+            event.evicted = evicted;
+            event.commit();
+        }
+    }
+
+    /**
+     * Loader is called without lock, so other keys are available while the value is loaded
+     */
+    @Override
+    public Optional<V> get(K key, Function<? super K, ? extends V> loader) {
+        if (loader == null) {
+            throw new IllegalArgumentException("Loader should not be null");
+        }
+
+        Optional<V> value = get(key);
+        if (value.isPresent()) {
+            return value;
+        }
+        Optional<V> loaded = Optional.ofNullable(statsCounter.load(key, loader));
+        loaded.ifPresent(v -> cache(key, v));
+        return loaded;
     }
 
     /**
@@ -204,8 +334,9 @@ public final class CacheLevel<K, V> implements Cache<K, V> {
     public Optional<V> delete(K key) {
         lock.writeLock().lock();
         try {
-            algorithm.delete(key);
-            return storage.remove(key);
+            Optional<V> removed = remove(key);
+            removed.ifPresent(v -> statsCounter.recordEviction(EvictionCause.DELETED));
+            return removed;
         } finally {
             lock.writeLock().unlock();
         }
@@ -231,18 +362,40 @@ public final class CacheLevel<K, V> implements Cache<K, V> {
      */
     @Override
     public Optional<Map.Entry<K, V>> pop() {
+        LatencyRecorder recorder = latencyRecorder;
+        long start = startTime(recorder);
         lock.writeLock().lock();
         try {
-            return algorithm
-                    .pop()
-                    .flatMap(key -> delete(key)
-                            .map(value -> new AbstractMap.SimpleImmutableEntry<>(key, value))
-                    );
+            Optional<Map.Entry<K, V>> popped = evict();
+            popped.ifPresent(e -> statsCounter.recordEviction(EvictionCause.POPPED));
+            return popped;
         } finally {
             lock.writeLock().unlock();
+            recordSince(recorder, Operation.POP, start);
         }
     }
 
+    /**
+     * Removes the entry chosen by algorithm, not counted in statistics
+     */
+    @GuardedBy("lock")
+    private Optional<Map.Entry<K, V>> evict() {
+        return algorithm
+                .pop()
+                .flatMap(key -> remove(key)
+                        .map(value -> new AbstractMap.SimpleImmutableEntry<>(key, value))
+                );
+    }
+
+    /**
+     * Removes the key from algorithm and storage, not counted in statistics
+     */
+    @GuardedBy("lock")
+    private Optional<V> remove(K key) {
+        algorithm.delete(key);
+        return storage.remove(key);
+    }
+
     /**
      * @return maximum possible size of the cache
      */
@@ -251,6 +404,183 @@ public final class CacheLevel<K, V> implements Cache<K, V> {
         return maxSize;
     }
 
+    /**
+     * Changes maximum size of the cache. If the cache has more elements, they are
+     * removed by algorithm and counted as evictions by size
+     * @param size new maximum size, should be greater then 1
+     * @throws IllegalArgumentException if size is less then 2
+     */
+    public void resize(int size) {
+        if (size < 2) {
+            throw new IllegalArgumentException("Size should be greater then 1");
+        }
+
+        lock.writeLock().lock();
+        try {
+            maxSize = size;
+            while (size() > maxSize) {
+                if (!evict().isPresent()) {
+                    break;
+                }
+                statsCounter.recordEviction(EvictionCause.SIZE);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return type of the algorithm, see {@link CacheAlgorithm#getType()}
+     */
+    public String getAlgorithmType() {
+        return algorithm.getType();
+    }
+
+    /**
+     * @return drive operations of the storage
+     */
+    public IoStats storageIoStats() {
+        return storage.ioStats();
+    }
+
+    /**
+     * Compacts the storage if it is {@link Compactable}
+     * @return false if the storage does not support compaction
+     */
+    public boolean compact() {
+        if (!(storage instanceof Compactable)) {
+            return false;
+        }
+        ((Compactable) storage).compact();
+        return true;
+    }
+
+    /**
+     * Counts calls of this level only. If the level is used by {@link CacheController},
+     * moves of entries between levels are counted as hits, deletes and evictions here.
+     * Acquisitions of the level lock are counted for read and write locks together
+     */
+    @Override
+    public CacheStats stats() {
+        Map<String, LockStats> locks = new TreeMap<>();
+        locks.put(LEVEL_LOCK, lock.stats());
+        locks.put(ALGORITHM_LOCK, algorithm.lockStats());
+        locks.put(STORAGE_LOCK, storage.lockStats());
+        return statsCounter.snapshot().withLockStats(locks);
+    }
+
+    /**
+     * Starts or stops recording of latencies: gets, caches, pops and reads and writes of the storage.
+     * Storage operations include waiting for the storage lock, e.g. of {@link FileSystemStorage}
+     * @param recorder to keep histograms, null to stop recording
+     */
+    public void recordLatencies(LatencyRecorder recorder) {
+        latencyRecorder = recorder;
+    }
+
+    /**
+     * @return recorder set by {@link #recordLatencies(LatencyRecorder)}, empty if latencies are not recorded
+     */
+    public Optional<LatencyRecorder> latencies() {
+        return Optional.ofNullable(latencyRecorder);
+    }
+
+    /**
+     * Adds listener of gets and caches, e.g. {@link com.lxgolovin.cache.stats.HotKeyTracker}.
+     * Listeners are called after the lock of the level is released
+     * @param listener cannot be null
+     * @throws IllegalArgumentException if listener is null
+     */
+    public void addAccessListener(AccessListener<? super K> listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener should not be null");
+        }
+        accessListeners.add(listener);
+    }
+
+    /**
+     * @return true if the listener was added before
+     */
+    public boolean removeAccessListener(AccessListener<? super K> listener) {
+        return accessListeners.remove(listener);
+    }
+
+    /**
+     * Estimates heap retained by the level with {@link SizeEstimators#DEFAULT} for keys and values
+     * @return footprint measured by at most {@link #DEFAULT_FOOTPRINT_SAMPLES} entries
+     */
+    public MemoryFootprint footprint() {
+        return footprint(SizeEstimators.DEFAULT, SizeEstimators.DEFAULT, DEFAULT_FOOTPRINT_SAMPLES);
+    }
+
+    /**
+     * Estimates heap retained by the level. Keys are sampled by {@link CacheAlgorithm#sample(int)},
+     * which does not copy all keys, sizes are extrapolated to all entries.
+     * Values are measured only if the storage keeps them in heap, see {@link Storage#valuesOnHeap()}.
+     * The level is locked only to read each sampled value
+     * @param keyEstimator measures keys, cannot be null
+     * @param valueEstimator measures values, cannot be null
+     * @param maxSamples maximum number of measured entries, should be positive
+     * @return approximate footprint
+     * @throws IllegalArgumentException if any estimator is null or number of samples is not positive
+     */
+    public MemoryFootprint footprint(SizeEstimator<? super K> keyEstimator, SizeEstimator<? super V> valueEstimator,
+                                     int maxSamples) {
+        if ((keyEstimator == null) || (valueEstimator == null) || (maxSamples <= 0)) {
+            throw new IllegalArgumentException("Estimators should not be null, number of samples should be positive");
+        }
+
+        List<K> sample = algorithm.sample(maxSamples);
+        boolean valuesOnHeap = storage.valuesOnHeap();
+        long keyBytes = 0;
+        long valueBytes = 0;
+        for (K key : sample) {
+            keyBytes += keyEstimator.sizeOf(key);
+            if (valuesOnHeap) {
+                valueBytes += valueHeapSize(key, valueEstimator);
+            }
+        }
+
+        int entries = size();
+        double scale = sample.isEmpty() ? 0 : (double) entries / sample.size();
+        return new MemoryFootprint(
+                entries,
+                sample.size(),
+                Math.round(keyBytes * scale),
+                Math.round(valueBytes * scale),
+                entries * storage.entryOverhead(),
+                entries * algorithm.entryOverhead());
+    }
+
+    /**
+     * The level is not locked, algorithm copies its order by itself
+     * @return keys in order of the algorithm
+     */
+    List<K> keys() {
+        return algorithm.elements();
+    }
+
+    private long valueHeapSize(K key, SizeEstimator<? super V> valueEstimator) {
+        lock.readLock().lock();
+        try {
+            return storage.valueHeapSize(key, valueEstimator);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets value without changing order of the algorithm
+     */
+    Optional<V> peek(K key) {
+        lock.readLock().lock();
+        try {
+            return storage.get(key);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
     /**
      * @return current size of the cache
      */
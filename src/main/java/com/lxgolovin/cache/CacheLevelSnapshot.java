@@ -0,0 +1,303 @@
+package com.lxgolovin.cache;
+
+import com.lxgolovin.cache.algorithm.CacheAlgorithm;
+import com.lxgolovin.cache.core.CacheException;
+import com.lxgolovin.cache.serializer.Serializer;
+import com.lxgolovin.cache.storage.MemoryStorage;
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Writes entries of {@link CacheLevel} together with the order of its algorithm into binary file,
+ * and restores them, so the level is warm after restart and evicts entries in the same order.
+ * Mostly needed for levels with {@link MemoryStorage}, as their data is lost on restart.
+ * <p>
+ * The level keeps serving during snapshot: the order of keys is copied by the algorithm
+ * without locking the level, values are read and written in blocks of {@link #BLOCK_ENTRIES} entries.
+ * Entries removed meanwhile are skipped, new entries get into the next snapshot.
+ * File is written to temporary file and renamed, so the previous snapshot is kept until the new one is done.
+ * On restore blocks are read one by one and deserialized in parallel, a few blocks ahead of the block
+ * being cached, so only these blocks are kept on heap besides the level.
+ * <p>
+ * Each snapshot is full. Any hit moves a key in the order, so the order of a serving level
+ * cannot be saved as a delta, and deltas of values would have to track every write of the level
+ * and be merged on restore. Full snapshot without pauses is enough for warm restart.
+ *
+ * @see CacheLevel
+ * @see Serializer
+ */
+@ThreadSafe
+@Immutable
+public final class CacheLevelSnapshot<K, V> {
+
+    /**
+     * Number of entries in one block of snapshot file
+     */
+    static final int BLOCK_ENTRIES = 1024;
+
+    /**
+     * "CLSN" in ASCII
+     */
+    private static final int MAGIC = 0x434C534E;
+
+    private static final int VERSION = 1;
+
+    /**
+     * Magic, version and maximum size of level
+     */
+    private static final int HEADER_SIZE = 3 * Integer.BYTES;
+
+    /**
+     * Number of entries and length of block data
+     */
+    private static final int BLOCK_HEADER_SIZE = 2 * Integer.BYTES;
+
+    /**
+     * Maximum number of blocks read ahead and deserialized while the earlier block is cached
+     */
+    private static final int BLOCKS_AHEAD = Runtime.getRuntime().availableProcessors() + 1;
+
+    private final Serializer<K> keySerializer;
+
+    private final Serializer<V> valueSerializer;
+
+    /**
+     * @param keySerializer to write keys, cannot be null
+     * @param valueSerializer to write values, cannot be null
+     * @throws IllegalArgumentException if any serializer is null
+     */
+    public CacheLevelSnapshot(Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        if ((keySerializer == null) || (valueSerializer == null)) {
+            throw new IllegalArgumentException("Serializers should not be null");
+        }
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+    }
+
+    /**
+     * Writes snapshot of the level into file. Existing file is replaced when the snapshot is done
+     *
+     * @param level to be saved, cannot be null
+     * @param file to write snapshot, cannot be null
+     * @return number of written entries
+     * @throws IllegalArgumentException if any argument is null
+     * @throws CacheException if the file cannot be written
+     */
+    public int write(CacheLevel<K, V> level, Path file) {
+        if ((level == null) || (file == null)) {
+            throw new IllegalArgumentException("Level and file should not be null");
+        }
+
+        List<K> keys = level.keys();
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        int written = 0;
+        try {
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(VERSION).putInt(level.sizeMax()).flip();
+                writeFully(channel, header);
+
+                for (int from = 0; from < keys.size(); from += BLOCK_ENTRIES) {
+                    List<K> blockKeys = keys.subList(from, Math.min(from + BLOCK_ENTRIES, keys.size()));
+                    written += writeBlock(channel, level, blockKeys);
+                }
+
+                // empty block marks the end of snapshot
+                ByteBuffer end = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+                end.putInt(0).putInt(0).flip();
+                writeFully(channel, end);
+                channel.force(true);
+            }
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return written;
+        } catch (IOException e) {
+            deleteQuietly(tempFile);
+            throw new CacheException("Cannot write snapshot " + file, e);
+        }
+    }
+
+    /**
+     * Caches entries from snapshot into the level in the saved order. If the level is smaller
+     * than the snapshot, entries are evicted by its algorithm
+     *
+     * @param file with snapshot, cannot be null
+     * @param level to restore entries into, cannot be null
+     * @return number of restored entries
+     * @throws IllegalArgumentException if any argument is null
+     * @throws CacheException if the file cannot be read or is corrupted
+     */
+    public int read(Path file, CacheLevel<K, V> level) {
+        if ((level == null) || (file == null)) {
+            throw new IllegalArgumentException("Level and file should not be null");
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            readHeader(channel, file);
+            return restoreInto(channel, file, level);
+        } catch (IOException e) {
+            throw new CacheException("Cannot read snapshot " + file, e);
+        }
+    }
+
+    /**
+     * Creates memory level with the saved maximum size and restores snapshot into it
+     *
+     * @param file with snapshot, cannot be null
+     * @param algorithm for the new level, should be empty
+     * @return restored level
+     * @throws IllegalArgumentException if any argument is null
+     * @throws CacheException if the file cannot be read or is corrupted
+     */
+    public CacheLevel<K, V> restore(Path file, CacheAlgorithm<K> algorithm) {
+        if ((algorithm == null) || (file == null)) {
+            throw new IllegalArgumentException("Algorithm and file should not be null");
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            int maxSize = readHeader(channel, file);
+            CacheLevel<K, V> level = new CacheLevel<>(algorithm, new MemoryStorage<>(), maxSize);
+            restoreInto(channel, file, level);
+            return level;
+        } catch (IOException e) {
+            throw new CacheException("Cannot read snapshot " + file, e);
+        }
+    }
+
+    private int writeBlock(FileChannel channel, CacheLevel<K, V> level, List<K> keys) throws IOException {
+        List<Map.Entry<K, V>> entries = new ArrayList<>(keys.size());
+        int length = 0;
+        for (K key : keys) {
+            // peek does not change the order of the level
+            V value = level.peek(key).orElse(null);
+            if (value != null) {
+                entries.add(new AbstractMap.SimpleImmutableEntry<>(key, value));
+                length += keySerializer.sizeOf(key) + valueSerializer.sizeOf(value);
+            }
+        }
+
+        if (entries.isEmpty()) {
+            return 0;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(BLOCK_HEADER_SIZE + length);
+        buffer.putInt(entries.size()).putInt(length);
+        for (Map.Entry<K, V> entry : entries) {
+            keySerializer.write(entry.getKey(), buffer);
+            valueSerializer.write(entry.getValue(), buffer);
+        }
+        buffer.flip();
+        writeFully(channel, buffer);
+        return entries.size();
+    }
+
+    /**
+     * @return maximum size of the saved level
+     */
+    private static int readHeader(FileChannel channel, Path file) throws IOException {
+        ByteBuffer header = readFully(channel, HEADER_SIZE);
+        if ((header.getInt() != MAGIC) || (header.getInt() != VERSION)) {
+            throw new CacheException("File " + file + " is not a cache level snapshot");
+        }
+        return header.getInt();
+    }
+
+    /**
+     * Reads blocks one by one and deserializes them in parallel, at most {@link #BLOCKS_AHEAD} at once.
+     * Entries are cached in order as soon as their block is deserialized
+     */
+    private int restoreInto(FileChannel channel, Path file, CacheLevel<K, V> level) throws IOException {
+        Deque<CompletableFuture<List<Map.Entry<K, V>>>> decoding = new ArrayDeque<>();
+        boolean end = false;
+        int restored = 0;
+
+        while (!end || !decoding.isEmpty()) {
+            if (!end && (decoding.size() < BLOCKS_AHEAD)) {
+                ByteBuffer blockHeader = readFully(channel, BLOCK_HEADER_SIZE);
+                int count = blockHeader.getInt();
+                int length = blockHeader.getInt();
+                if (count == 0) {
+                    end = true;
+                } else if ((count < 0) || (length < 0) || (length > channel.size() - channel.position())) {
+                    throw new CacheException("Snapshot " + file + " is corrupted");
+                } else {
+                    ByteBuffer data = readFully(channel, length);
+                    decoding.add(CompletableFuture.supplyAsync(() -> decodeBlock(data, count)));
+                }
+                continue;
+            }
+
+            for (Map.Entry<K, V> entry : await(decoding.poll())) {
+                level.cache(entry.getKey(), entry.getValue());
+                restored++;
+            }
+        }
+        return restored;
+    }
+
+    private List<Map.Entry<K, V>> await(CompletableFuture<List<Map.Entry<K, V>>> block) {
+        try {
+            return block.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private List<Map.Entry<K, V>> decodeBlock(ByteBuffer data, int count) {
+        List<Map.Entry<K, V>> entries = new ArrayList<>(count);
+        try {
+            for (int i = 0; i < count; i++) {
+                K key = keySerializer.read(data);
+                V value = valueSerializer.read(data);
+                entries.add(new AbstractMap.SimpleImmutableEntry<>(key, value));
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new CacheException("Snapshot is corrupted", e);
+        }
+        return entries;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new CacheException("Snapshot is truncated");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // nothing to do, the file is left in directory
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package com.lxgolovin.cache.algorithm;
 
 import com.lxgolovin.cache.core.AccessHashSet;
+import com.lxgolovin.cache.stats.LockStats;
+
+import java.util.List;
 
 /**
  * Abstract class with some methods to define Recently Used (LRU-MRU) algorithms.
@@ -55,6 +58,22 @@ abstract class AbstractRu<E> implements CacheAlgorithm<E> {
         return (queue.remove(elem));
     }
 
+    /**
+     * @return elements of {@link AbstractRu#queue} in access order
+     */
+    @Override
+    public List<E> elements() {
+        return queue.elements();
+    }
+
+    /**
+     * @return elements sampled by {@link AccessHashSet#sample(int)} without locking the queue
+     */
+    @Override
+    public List<E> sample(int maxSamples) {
+        return queue.sample(maxSamples);
+    }
+
     /**
      * @return returns toString for the object
      */
@@ -63,6 +82,22 @@ abstract class AbstractRu<E> implements CacheAlgorithm<E> {
         return getType();
     }
 
+    /**
+     * @return acquisitions of the lock of {@link AbstractRu#queue}
+     */
+    @Override
+    public LockStats lockStats() {
+        return queue.lockStats();
+    }
+
+    /**
+     * @return overhead of {@link AbstractRu#queue}, see {@link AccessHashSet#ENTRY_OVERHEAD}
+     */
+    @Override
+    public long entryOverhead() {
+        return AccessHashSet.ENTRY_OVERHEAD;
+    }
+
     /**
      * Clears all data from the queue {@link AbstractRu#queue}
      * All elements are deleted
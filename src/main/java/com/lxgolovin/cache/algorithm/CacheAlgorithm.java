@@ -1,5 +1,9 @@
 package com.lxgolovin.cache.algorithm;
 
+import com.lxgolovin.cache.stats.LockStats;
+
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -38,8 +42,44 @@ public interface CacheAlgorithm<E> {
      */
     void clear();
 
+    /**
+     * Shifting the elements one by one into an empty queue restores the same order
+     * @return elements of the queue from the first shifted to the last shifted
+     */
+    List<E> elements();
+
+    /**
+     * Takes every n-th element, so at most maxSamples elements are returned. Order is not defined.
+     * Default implementation copies all {@link #elements()} first
+     * @param maxSamples maximum number of elements, should be positive
+     * @return sampled elements
+     */
+    default List<E> sample(int maxSamples) {
+        List<E> elements = elements();
+        int step = Math.max(1, (elements.size() + maxSamples - 1) / maxSamples);
+        List<E> sample = new ArrayList<>(Math.min(elements.size(), maxSamples));
+        for (int i = 0; i < elements.size(); i += step) {
+            sample.add(elements.get(i));
+        }
+        return sample;
+    }
+
     /**
      * @return type of used algorithm
      */
     String getType();
+
+    /**
+     * @return acquisitions of the lock of the algorithm, empty if it has no instrumented lock
+     */
+    default LockStats lockStats() {
+        return LockStats.empty();
+    }
+
+    /**
+     * @return approximate heap bytes of the algorithm per element besides the element itself, 0 if unknown
+     */
+    default long entryOverhead() {
+        return 0;
+    }
 }
@@ -1,13 +1,13 @@
 package com.lxgolovin.cache.core;
 
+import com.lxgolovin.cache.stats.LockStats;
+import com.lxgolovin.cache.stats.SizeEstimators;
 import net.jcip.annotations.GuardedBy;
 import net.jcip.annotations.ThreadSafe;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Implements doubly linked "set" based on {@link ConcurrentHashMap}. The elements link each other
@@ -20,6 +20,13 @@ import java.util.concurrent.locks.ReentrantLock;
 @ThreadSafe
 public class AccessHashSet<E> {
 
+    /**
+     * Approximate heap bytes per element besides the element itself: entry of the map
+     * and {@link Node} with two references, so the links roughly double the cost of a map entry
+     */
+    public static final long ENTRY_OVERHEAD = SizeEstimators.HASH_ENTRY
+            + SizeEstimators.align(SizeEstimators.OBJECT_HEADER + 2 * SizeEstimators.REFERENCE);
+
     /**
      * Map to keep elements
      */
@@ -32,7 +39,13 @@ public class AccessHashSet<E> {
     @GuardedBy("this")
     private E tail;
 
-    private final Lock lock = new ReentrantLock();
+    /**
+     * Number of elements linked to the tail so far, gives each linked node its place in the order
+     */
+    @GuardedBy("this")
+    private long linkCount;
+
+    private final InstrumentedLock lock = new InstrumentedLock();
 
     /**
      * Inner class to define values inside map
@@ -48,6 +61,12 @@ public class AccessHashSet<E> {
         private K nextElem;
         private K prevElem;
 
+        /**
+         * Value of link counter when the node became the tail. Nodes are ordered from head
+         * to tail by this value, so the order can be read without following the links
+         */
+        private volatile long linked;
+
         Node() {
             this.nextElem = null;
             this.prevElem = null;
@@ -89,6 +108,7 @@ public class AccessHashSet<E> {
                 head = elem;
                 tail = elem;
                 newNode = new Node<>();
+                newNode.linked = ++linkCount;
             } else {
                 // if element is not in map, push the element to the tail
                 newNode = linkElementToTail(elem);
@@ -192,6 +212,44 @@ public class AccessHashSet<E> {
         }
     }
 
+    /**
+     * Returns elements in access order from head to tail. The map is read without the lock and
+     * elements are sorted by the moment they were linked to the tail, so accesses are not stopped
+     * for the copy of a large set. Elements accessed during the call are placed by the new access,
+     * elements removed during the call may be returned
+     *
+     * @return list of elements from head to tail
+     */
+    public List<E> elements() {
+        List<Map.Entry<E, Long>> linked = new ArrayList<>(map.size());
+        map.forEach((elem, node) -> linked.add(new AbstractMap.SimpleImmutableEntry<>(elem, node.linked)));
+        linked.sort(Map.Entry.comparingByValue());
+
+        List<E> elements = new ArrayList<>(linked.size());
+        linked.forEach(entry -> elements.add(entry.getKey()));
+        return elements;
+    }
+
+    /**
+     * Takes every n-th element of the map without the lock and without following the links.
+     * The map is iterated weakly consistent, so elements changed during the call may be missed
+     *
+     * @param maxSamples maximum number of elements, should be positive
+     * @return at most maxSamples elements in no particular order
+     */
+    public List<E> sample(int maxSamples) {
+        int step = Math.max(1, (map.size() + maxSamples - 1) / maxSamples);
+        List<E> sample = new ArrayList<>(Math.min(map.size(), maxSamples));
+        int i = 0;
+        for (Iterator<E> elems = map.keySet().iterator(); elems.hasNext() && (sample.size() < maxSamples); i++) {
+            E elem = elems.next();
+            if (i % step == 0) {
+                sample.add(elem);
+            }
+        }
+        return sample;
+    }
+
     /**
      * Returns the number of elements in this set (its cardinality).
      *
@@ -278,6 +336,7 @@ public class AccessHashSet<E> {
         tailNode.nextElem = elem;
         pokedNode.prevElem = tail;
         pokedNode.nextElem = null;
+        pokedNode.linked = ++linkCount;
         tail = elem;
 
         return pokedNode;
@@ -313,4 +372,11 @@ public class AccessHashSet<E> {
         head = pokedNode.nextElem;
         map.get(head).prevElem = null;
     }
+
+    /**
+     * @return acquisitions of the lock which orders elements
+     */
+    public LockStats lockStats() {
+        return lock.stats();
+    }
 }
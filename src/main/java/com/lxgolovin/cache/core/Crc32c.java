@@ -0,0 +1,89 @@
+package com.lxgolovin.cache.core;
+
+import net.jcip.annotations.NotThreadSafe;
+
+import java.util.zip.Checksum;
+
+/**
+ * CRC-32C (Castagnoli) checksum, as used by iSCSI, ext4 and most storage formats.
+ * It detects more errors than {@link java.util.zip.CRC32} for the same size.
+ * Table driven implementation, processes eight bytes per step
+ *
+ * @see Checksum
+ */
+@NotThreadSafe
+public final class Crc32c implements Checksum {
+
+    /**
+     * Reversed Castagnoli polynomial
+     */
+    private static final int POLYNOMIAL = 0x82F63B78;
+
+    private static final int[][] TABLES = createTables();
+
+    private int crc = 0xFFFFFFFF;
+
+    /**
+     * @param bytes to be checked
+     * @param offset of the first byte
+     * @param length number of bytes
+     * @return checksum of the bytes
+     */
+    public static int compute(byte[] bytes, int offset, int length) {
+        Crc32c checksum = new Crc32c();
+        checksum.update(bytes, offset, length);
+        return (int) checksum.getValue();
+    }
+
+    @Override
+    public void update(int b) {
+        crc = (crc >>> 8) ^ TABLES[0][(crc ^ b) & 0xFF];
+    }
+
+    @Override
+    public void update(byte[] bytes, int offset, int length) {
+        int value = crc;
+        int i = offset;
+        int end = offset + length;
+
+        for (; end - i >= 8; i += 8) {
+            value ^= (bytes[i] & 0xFF) | ((bytes[i + 1] & 0xFF) << 8)
+                    | ((bytes[i + 2] & 0xFF) << 16) | ((bytes[i + 3] & 0xFF) << 24);
+            value = TABLES[7][value & 0xFF] ^ TABLES[6][(value >>> 8) & 0xFF]
+                    ^ TABLES[5][(value >>> 16) & 0xFF] ^ TABLES[4][value >>> 24]
+                    ^ TABLES[3][bytes[i + 4] & 0xFF] ^ TABLES[2][bytes[i + 5] & 0xFF]
+                    ^ TABLES[1][bytes[i + 6] & 0xFF] ^ TABLES[0][bytes[i + 7] & 0xFF];
+        }
+        for (; i < end; i++) {
+            value = (value >>> 8) ^ TABLES[0][(value ^ bytes[i]) & 0xFF];
+        }
+        crc = value;
+    }
+
+    @Override
+    public long getValue() {
+        return (~crc) & 0xFFFFFFFFL;
+    }
+
+    @Override
+    public void reset() {
+        crc = 0xFFFFFFFF;
+    }
+
+    private static int[][] createTables() {
+        int[][] tables = new int[8][256];
+        for (int n = 0; n < 256; n++) {
+            int value = n;
+            for (int k = 0; k < 8; k++) {
+                value = ((value & 1) != 0) ? (value >>> 1) ^ POLYNOMIAL : value >>> 1;
+            }
+            tables[0][n] = value;
+        }
+        for (int n = 0; n < 256; n++) {
+            for (int t = 1; t < 8; t++) {
+                tables[t][n] = (tables[t - 1][n] >>> 8) ^ tables[0][tables[t - 1][n] & 0xFF];
+            }
+        }
+        return tables;
+    }
+}
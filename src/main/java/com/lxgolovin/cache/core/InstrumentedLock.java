@@ -0,0 +1,81 @@
+package com.lxgolovin.cache.core;
+
+import com.lxgolovin.cache.stats.LockCounter;
+import com.lxgolovin.cache.stats.LockStats;
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link ReentrantLock} which counts acquisitions, contended
+ * acquisitions and time of waiting, see {@link LockStats}. Free lock without waiting threads
+ * is taken by one {@code tryLock} call, so uncontended acquisition costs one more increment then usual.
+ * Re-entry of the owner never waits, so it is counted as uncontended acquisition
+ */
+@ThreadSafe
+public class InstrumentedLock extends ReentrantLock {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient LockCounter counter = new LockCounter();
+
+    @Override
+    public void lock() {
+        if (isHeldByCurrentThread()) {
+            super.lock();
+            counter.recordAcquisition();
+            return;
+        }
+        if (!hasQueuedThreads() && super.tryLock()) {
+            counter.recordAcquisition();
+            return;
+        }
+        long start = System.nanoTime();
+        super.lock();
+        counter.recordContendedAcquisition(System.nanoTime() - start);
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+        if (isHeldByCurrentThread()) {
+            super.lockInterruptibly();
+            counter.recordAcquisition();
+            return;
+        }
+        if (!hasQueuedThreads() && super.tryLock()) {
+            counter.recordAcquisition();
+            return;
+        }
+        long start = System.nanoTime();
+        super.lockInterruptibly();
+        counter.recordContendedAcquisition(System.nanoTime() - start);
+    }
+
+    @Override
+    public boolean tryLock() {
+        boolean acquired = super.tryLock();
+        if (acquired) {
+            counter.recordAcquisition();
+        }
+        return acquired;
+    }
+
+    @Override
+    public boolean tryLock(long timeout, TimeUnit unit) throws InterruptedException {
+        if (super.tryLock()) {
+            counter.recordAcquisition();
+            return true;
+        }
+        long start = System.nanoTime();
+        boolean acquired = super.tryLock(timeout, unit);
+        if (acquired) {
+            counter.recordContendedAcquisition(System.nanoTime() - start);
+        }
+        return acquired;
+    }
+
+    public LockStats stats() {
+        return counter.snapshot();
+    }
+}
@@ -0,0 +1,115 @@
+package com.lxgolovin.cache.core;
+
+import com.lxgolovin.cache.stats.LockCounter;
+import com.lxgolovin.cache.stats.LockStats;
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * {@link ReentrantReadWriteLock} which counts acquisitions of read and write locks separately,
+ * see {@link InstrumentedLock}. Only {@code lock()} calls are counted, they are the only ones
+ * used by caches and storages. Lock is taken at once only if no thread waits for it,
+ * so readers do not overtake waiting writers. Re-entry is counted as uncontended acquisition
+ */
+@ThreadSafe
+public class InstrumentedReadWriteLock extends ReentrantReadWriteLock {
+
+    private static final long serialVersionUID = 1L;
+
+    private final transient LockCounter readCounter = new LockCounter();
+
+    private final transient LockCounter writeCounter = new LockCounter();
+
+    private final ReadLock readLock = new CountingReadLock(this);
+
+    private final WriteLock writeLock = new CountingWriteLock(this);
+
+    @Override
+    public ReadLock readLock() {
+        return readLock;
+    }
+
+    @Override
+    public WriteLock writeLock() {
+        return writeLock;
+    }
+
+    public LockStats readLockStats() {
+        return readCounter.snapshot();
+    }
+
+    public LockStats writeLockStats() {
+        return writeCounter.snapshot();
+    }
+
+    /**
+     * @return read and write acquisitions together
+     */
+    public LockStats stats() {
+        return readLockStats().plus(writeLockStats());
+    }
+
+    private static final class CountingReadLock extends ReadLock {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient LockCounter counter;
+
+        private final InstrumentedReadWriteLock owner;
+
+        private CountingReadLock(InstrumentedReadWriteLock lock) {
+            super(lock);
+            this.counter = lock.readCounter;
+            this.owner = lock;
+        }
+
+        @Override
+        public void lock() {
+            // re-entry and read lock of the writer never wait
+            if ((owner.getReadHoldCount() > 0) || owner.isWriteLockedByCurrentThread()) {
+                super.lock();
+                counter.recordAcquisition();
+                return;
+            }
+            if (!owner.hasQueuedThreads() && super.tryLock()) {
+                counter.recordAcquisition();
+                return;
+            }
+            long start = System.nanoTime();
+            super.lock();
+            counter.recordContendedAcquisition(System.nanoTime() - start);
+        }
+    }
+
+    private static final class CountingWriteLock extends WriteLock {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient LockCounter counter;
+
+        private final InstrumentedReadWriteLock owner;
+
+        private CountingWriteLock(InstrumentedReadWriteLock lock) {
+            super(lock);
+            this.counter = lock.writeCounter;
+            this.owner = lock;
+        }
+
+        @Override
+        public void lock() {
+            if (owner.isWriteLockedByCurrentThread()) {
+                super.lock();
+                counter.recordAcquisition();
+                return;
+            }
+            if (!owner.hasQueuedThreads() && super.tryLock()) {
+                counter.recordAcquisition();
+                return;
+            }
+            long start = System.nanoTime();
+            super.lock();
+            counter.recordContendedAcquisition(System.nanoTime() - start);
+        }
+    }
+}
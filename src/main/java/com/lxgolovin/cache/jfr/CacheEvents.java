@@ -0,0 +1,49 @@
+package com.lxgolovin.cache.jfr;
+
+import jdk.jfr.Recording;
+
+import java.time.Duration;
+
+/**
+ * Names of Java Flight Recorder events of the cache. Events are recorded only if they take longer
+ * than threshold, {@value #DEFAULT_THRESHOLD} by default. Threshold is changed by JFR settings,
+ * like {@code -XX:StartFlightRecording:settings=cache.jfc} with
+ * {@code <event name="com.lxgolovin.cache.StorageIo"><setting name="threshold">5 ms</setting></event>},
+ * or by {@link #enable(Recording, Duration)}. Disabled events cost almost nothing:
+ * they are created, but not committed, and JIT removes them
+ *
+ * @see CacheOperationEvent
+ * @see LevelTransferEvent
+ * @see StorageIoEvent
+ */
+public final class CacheEvents {
+
+    public static final String CATEGORY = "Cache";
+
+    public static final String CACHE_OPERATION = "com.lxgolovin.cache.CacheOperation";
+
+    public static final String LEVEL_TRANSFER = "com.lxgolovin.cache.LevelTransfer";
+
+    public static final String STORAGE_IO = "com.lxgolovin.cache.StorageIo";
+
+    public static final String DEFAULT_THRESHOLD = "20 ms";
+
+    private CacheEvents() {
+    }
+
+    /**
+     * Enables all cache events in the recording
+     *
+     * @param recording to record events, cannot be null
+     * @param threshold minimal duration of recorded operation, cannot be null
+     * @throws IllegalArgumentException if any parameter is null
+     */
+    public static void enable(Recording recording, Duration threshold) {
+        if ((recording == null) || (threshold == null)) {
+            throw new IllegalArgumentException("Recording and threshold should not be null");
+        }
+        for (String name : new String[] {CACHE_OPERATION, LEVEL_TRANSFER, STORAGE_IO}) {
+            recording.enable(name).withThreshold(threshold).withoutStackTrace();
+        }
+    }
+}
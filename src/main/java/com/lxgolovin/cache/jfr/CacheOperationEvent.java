@@ -0,0 +1,38 @@
+package com.lxgolovin.cache.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Slow {@code cache} or {@code get} of {@link com.lxgolovin.cache.CacheLevel}.
+ * Duration includes waiting for the level lock and work of the storage
+ */
+@Name(CacheEvents.CACHE_OPERATION)
+@Label("Cache Operation")
+@Description("Slow cache or get of a cache level")
+@Category({CacheEvents.CATEGORY})
+@Threshold(CacheEvents.DEFAULT_THRESHOLD)
+@StackTrace(false)
+public final class CacheOperationEvent extends jdk.jfr.Event {
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Key Hash")
+    public int keyHash;
+
+    @Label("Algorithm")
+    public String algorithm;
+
+    @Label("Hit")
+    @Description("Key was in the level for get, key was replaced for cache")
+    public boolean hit;
+
+    @Label("Evicted")
+    @Description("Entry was evicted to make room")
+    public boolean evicted;
+}
@@ -0,0 +1,32 @@
+package com.lxgolovin.cache.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Slow load of an entry into a level of {@link com.lxgolovin.cache.CacheController}.
+ * Loading into level 0 is a new or promoted entry, into other levels is a demotion
+ */
+@Name(CacheEvents.LEVEL_TRANSFER)
+@Label("Level Transfer")
+@Description("Slow load of an entry into a controller level")
+@Category({CacheEvents.CATEGORY})
+@Threshold(CacheEvents.DEFAULT_THRESHOLD)
+@StackTrace(false)
+public final class LevelTransferEvent extends jdk.jfr.Event {
+
+    @Label("Key Hash")
+    public int keyHash;
+
+    @Label("Level")
+    @Description("Index of the level the entry is loaded into, from 0")
+    public int level;
+
+    @Label("Evicted")
+    @Description("Entry was pushed out of the level")
+    public boolean evicted;
+}
@@ -0,0 +1,35 @@
+package com.lxgolovin.cache.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Slow read or write of a file of {@link com.lxgolovin.cache.storage.FileSystemStorage}
+ */
+@Name(CacheEvents.STORAGE_IO)
+@Label("Storage I/O")
+@Description("Slow read or write of a storage file")
+@Category({CacheEvents.CATEGORY})
+@Threshold(CacheEvents.DEFAULT_THRESHOLD)
+@StackTrace(false)
+public final class StorageIoEvent extends jdk.jfr.Event {
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Key Hash")
+    @Description("Hash of the key, 0 if the file could not be read")
+    public int keyHash;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+
+    @Label("Path")
+    public String path;
+}
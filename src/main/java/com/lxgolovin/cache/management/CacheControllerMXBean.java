@@ -0,0 +1,44 @@
+package com.lxgolovin.cache.management;
+
+/**
+ * Management interface of {@link com.lxgolovin.cache.CacheController}. Counters are taken
+ * from creation of the controller. Each level could be registered as {@link CacheLevelMXBean} too
+ *
+ * @see CacheMBeans
+ */
+public interface CacheControllerMXBean {
+
+    int getLevels();
+
+    int getSize();
+
+    int getMaxSize();
+
+    long getHitCount();
+
+    long getMissCount();
+
+    double getHitRate();
+
+    /**
+     * @return hits of each level, level 0 is the first one
+     */
+    long[] getLevelHitCounts();
+
+    long getEvictionCount();
+
+    long getPromotionCount();
+
+    long getDemotionCount();
+
+    long getLoadSuccessCount();
+
+    long getLoadFailureCount();
+
+    void clear();
+
+    /**
+     * @param index of the level, from 0
+     */
+    void clearLevel(int index);
+}
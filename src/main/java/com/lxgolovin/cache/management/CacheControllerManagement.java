@@ -0,0 +1,91 @@
+package com.lxgolovin.cache.management;
+
+import com.lxgolovin.cache.CacheController;
+import com.lxgolovin.cache.stats.CacheStats;
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.stream.IntStream;
+
+/**
+ * Exposes {@link CacheController} as {@link CacheControllerMXBean}
+ */
+@ThreadSafe
+final class CacheControllerManagement implements CacheControllerMXBean {
+
+    private final CacheController<?, ?> controller;
+
+    CacheControllerManagement(CacheController<?, ?> controller) {
+        this.controller = controller;
+    }
+
+    @Override
+    public int getLevels() {
+        return controller.levels();
+    }
+
+    @Override
+    public int getSize() {
+        return controller.size();
+    }
+
+    @Override
+    public int getMaxSize() {
+        return controller.sizeMax();
+    }
+
+    @Override
+    public long getHitCount() {
+        return controller.stats().hitCount();
+    }
+
+    @Override
+    public long getMissCount() {
+        return controller.stats().missCount();
+    }
+
+    @Override
+    public double getHitRate() {
+        return controller.stats().hitRate();
+    }
+
+    @Override
+    public long[] getLevelHitCounts() {
+        CacheStats stats = controller.stats();
+        return IntStream.range(0, controller.levels()).mapToLong(stats::levelHitCount).toArray();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return controller.stats().evictionCount();
+    }
+
+    @Override
+    public long getPromotionCount() {
+        return controller.stats().promotionCount();
+    }
+
+    @Override
+    public long getDemotionCount() {
+        return controller.stats().demotionCount();
+    }
+
+    @Override
+    public long getLoadSuccessCount() {
+        return controller.stats().loadSuccessCount();
+    }
+
+    @Override
+    public long getLoadFailureCount() {
+        return controller.stats().loadFailureCount();
+    }
+
+    @Override
+    public void clear() {
+        controller.clear();
+    }
+
+    @Override
+    public void clearLevel(int index) {
+        controller.clearLevel(index);
+    }
+}
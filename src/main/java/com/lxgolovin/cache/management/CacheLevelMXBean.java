@@ -0,0 +1,52 @@
+package com.lxgolovin.cache.management;
+
+/**
+ * Management interface of {@link com.lxgolovin.cache.CacheLevel}. Counters are taken
+ * from creation of the level
+ *
+ * @see CacheMBeans
+ */
+public interface CacheLevelMXBean {
+
+    int getSize();
+
+    int getMaxSize();
+
+    String getAlgorithmType();
+
+    long getHitCount();
+
+    long getMissCount();
+
+    double getHitRate();
+
+    long getEvictionCount();
+
+    long getLoadSuccessCount();
+
+    long getLoadFailureCount();
+
+    long getStorageReadCount();
+
+    long getStorageBytesRead();
+
+    long getStorageWriteCount();
+
+    long getStorageBytesWritten();
+
+    long getStorageDeleteCount();
+
+    /**
+     * Changes maximum size, extra elements are evicted by the algorithm
+     *
+     * @param maxSize new maximum size, should be greater then 1
+     */
+    void resize(int maxSize);
+
+    void clear();
+
+    /**
+     * @return false if the storage does not support compaction
+     */
+    boolean compact();
+}
@@ -0,0 +1,102 @@
+package com.lxgolovin.cache.management;
+
+import com.lxgolovin.cache.CacheLevel;
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * Exposes {@link CacheLevel} as {@link CacheLevelMXBean}
+ */
+@ThreadSafe
+final class CacheLevelManagement implements CacheLevelMXBean {
+
+    private final CacheLevel<?, ?> level;
+
+    CacheLevelManagement(CacheLevel<?, ?> level) {
+        this.level = level;
+    }
+
+    @Override
+    public int getSize() {
+        return level.size();
+    }
+
+    @Override
+    public int getMaxSize() {
+        return level.sizeMax();
+    }
+
+    @Override
+    public String getAlgorithmType() {
+        return level.getAlgorithmType();
+    }
+
+    @Override
+    public long getHitCount() {
+        return level.stats().hitCount();
+    }
+
+    @Override
+    public long getMissCount() {
+        return level.stats().missCount();
+    }
+
+    @Override
+    public double getHitRate() {
+        return level.stats().hitRate();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return level.stats().evictionCount();
+    }
+
+    @Override
+    public long getLoadSuccessCount() {
+        return level.stats().loadSuccessCount();
+    }
+
+    @Override
+    public long getLoadFailureCount() {
+        return level.stats().loadFailureCount();
+    }
+
+    @Override
+    public long getStorageReadCount() {
+        return level.storageIoStats().readCount();
+    }
+
+    @Override
+    public long getStorageBytesRead() {
+        return level.storageIoStats().bytesRead();
+    }
+
+    @Override
+    public long getStorageWriteCount() {
+        return level.storageIoStats().writeCount();
+    }
+
+    @Override
+    public long getStorageBytesWritten() {
+        return level.storageIoStats().bytesWritten();
+    }
+
+    @Override
+    public long getStorageDeleteCount() {
+        return level.storageIoStats().deleteCount();
+    }
+
+    @Override
+    public void resize(int maxSize) {
+        level.resize(maxSize);
+    }
+
+    @Override
+    public void clear() {
+        level.clear();
+    }
+
+    @Override
+    public boolean compact() {
+        return level.compact();
+    }
+}
@@ -0,0 +1,92 @@
+package com.lxgolovin.cache.management;
+
+import com.lxgolovin.cache.CacheController;
+import com.lxgolovin.cache.CacheLevel;
+import com.lxgolovin.cache.core.CacheException;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Registers caches in platform MBean server, so they could be watched and tuned by JConsole,
+ * VisualVM or any JMX client. Registration is optional, caches work the same without it.
+ * Names are {@code com.lxgolovin.cache:type=CacheLevel,name="<name>"} and
+ * {@code com.lxgolovin.cache:type=CacheController,name="<name>"}
+ *
+ * @see CacheLevelMXBean
+ * @see CacheControllerMXBean
+ */
+public final class CacheMBeans {
+
+    /**
+     * Domain of all object names
+     */
+    public static final String DOMAIN = "com.lxgolovin.cache";
+
+    private CacheMBeans() {
+    }
+
+    /**
+     * @param name unique name of the level, cannot be null
+     * @param level to register, cannot be null
+     * @return name of registered bean, used to unregister
+     * @throws IllegalArgumentException if any parameter is null
+     * @throws CacheException if name is not valid or is already registered
+     */
+    public static ObjectName register(String name, CacheLevel<?, ?> level) {
+        if ((name == null) || (level == null)) {
+            throw new IllegalArgumentException("Name and level should not be null");
+        }
+        return register(objectName("CacheLevel", name), new CacheLevelManagement(level));
+    }
+
+    /**
+     * @param name unique name of the controller, cannot be null
+     * @param controller to register, cannot be null
+     * @return name of registered bean, used to unregister
+     * @throws IllegalArgumentException if any parameter is null
+     * @throws CacheException if name is not valid or is already registered
+     */
+    public static ObjectName register(String name, CacheController<?, ?> controller) {
+        if ((name == null) || (controller == null)) {
+            throw new IllegalArgumentException("Name and controller should not be null");
+        }
+        return register(objectName("CacheController", name), new CacheControllerManagement(controller));
+    }
+
+    /**
+     * Unregisters the bean if it is registered
+     *
+     * @param objectName returned by register
+     * @throws CacheException if bean cannot be unregistered
+     */
+    public static void unregister(ObjectName objectName) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if ((objectName != null) && server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            throw new CacheException("Cannot unregister " + objectName, e);
+        }
+    }
+
+    private static ObjectName register(ObjectName objectName, Object bean) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(bean, objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new CacheException("Cannot register " + objectName, e);
+        }
+    }
+
+    private static ObjectName objectName(String type, String name) {
+        try {
+            return new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+        } catch (JMException e) {
+            throw new CacheException("Not valid name " + name, e);
+        }
+    }
+}
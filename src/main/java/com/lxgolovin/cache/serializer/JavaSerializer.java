@@ -0,0 +1,52 @@
+package com.lxgolovin.cache.serializer;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+
+/**
+ * Fallback {@link Serializer} using Java serialization. The object is written
+ * as length followed by the {@link ObjectOutputStream} bytes.
+ * Note, {@link #sizeOf(Object)} has to serialize the object, so the cost is paid twice
+ *
+ * @see Serializers#java()
+ */
+final class JavaSerializer implements Serializer<Object> {
+
+    static final JavaSerializer INSTANCE = new JavaSerializer();
+
+    private JavaSerializer() {}
+
+    @Override
+    public int sizeOf(Object value) {
+        return Integer.BYTES + serialize(value).length;
+    }
+
+    @Override
+    public void write(Object value, ByteBuffer buffer) {
+        byte[] bytes = serialize(value);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    @Override
+    public Object read(ByteBuffer buffer) {
+        byte[] bytes = new byte[Serializers.readLength(buffer)];
+        buffer.get(bytes);
+
+        try (ObjectInputStream objectInputStream = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return objectInputStream.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new IllegalArgumentException("Cannot deserialize object: " + e.getLocalizedMessage(), e);
+        }
+    }
+
+    private static byte[] serialize(Object value) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (ObjectOutputStream objectOutputStream = new ObjectOutputStream(outputStream)) {
+            objectOutputStream.writeObject(value);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot serialize object: " + e.getLocalizedMessage(), e);
+        }
+        return outputStream.toByteArray();
+    }
+}
@@ -0,0 +1,57 @@
+package com.lxgolovin.cache.serializer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts objects into compact binary form and back. Serializers write directly
+ * into {@link ByteBuffer}, so no streams or class descriptors are involved.
+ * Every serializer must be self-delimiting: {@link #read(ByteBuffer)} consumes exactly
+ * the bytes produced by {@link #write(Object, ByteBuffer)}, so several values
+ * could be written one after another into the same buffer.
+ *
+ * @param <T> type of the serialized objects
+ * @see Serializers
+ */
+public interface Serializer<T> {
+
+    /**
+     * @param value to be serialized, cannot be null
+     * @return number of bytes needed by {@link #write(Object, ByteBuffer)} for the value
+     */
+    int sizeOf(T value);
+
+    /**
+     * Writes value into the buffer starting at the current position
+     * @param value to be serialized, cannot be null
+     * @param buffer with at least {@link #sizeOf(Object)} bytes remaining
+     * @throws IllegalArgumentException if the value cannot be serialized
+     */
+    void write(T value, ByteBuffer buffer);
+
+    /**
+     * Reads value from the buffer starting at the current position
+     * @param buffer with serialized data
+     * @return deserialized value
+     * @throws IllegalArgumentException if data in buffer is corrupted
+     * @throws java.nio.BufferUnderflowException if buffer has not enough data
+     */
+    T read(ByteBuffer buffer);
+
+    /**
+     * @param value to be serialized, cannot be null
+     * @return byte array with serialized value
+     */
+    default byte[] toBytes(T value) {
+        byte[] bytes = new byte[sizeOf(value)];
+        write(value, ByteBuffer.wrap(bytes));
+        return bytes;
+    }
+
+    /**
+     * @param bytes with serialized value
+     * @return deserialized value
+     */
+    default T fromBytes(byte[] bytes) {
+        return read(ByteBuffer.wrap(bytes));
+    }
+}
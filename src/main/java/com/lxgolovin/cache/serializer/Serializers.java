@@ -0,0 +1,320 @@
+package com.lxgolovin.cache.serializer;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Built-in implementations of {@link Serializer}. Here are serializers for boxed primitives,
+ * {@link String} and byte arrays. Composite value classes could be described as a set of
+ * components with {@link #composite(Serializer, Function, Serializer, Function, BiFunction)}.
+ * If no compact serializer fits, {@link #java()} falls back to Java serialization.
+ *
+ * @see Serializer
+ */
+public final class Serializers {
+
+    public static final Serializer<Boolean> BOOLEAN = new FixedSizeSerializer<Boolean>(Byte.BYTES) {
+        @Override
+        public void write(Boolean value, ByteBuffer buffer) {
+            buffer.put((byte) (value ? 1 : 0));
+        }
+
+        @Override
+        public Boolean read(ByteBuffer buffer) {
+            return buffer.get() != 0;
+        }
+    };
+
+    public static final Serializer<Byte> BYTE = new FixedSizeSerializer<Byte>(Byte.BYTES) {
+        @Override
+        public void write(Byte value, ByteBuffer buffer) {
+            buffer.put(value);
+        }
+
+        @Override
+        public Byte read(ByteBuffer buffer) {
+            return buffer.get();
+        }
+    };
+
+    public static final Serializer<Short> SHORT = new FixedSizeSerializer<Short>(Short.BYTES) {
+        @Override
+        public void write(Short value, ByteBuffer buffer) {
+            buffer.putShort(value);
+        }
+
+        @Override
+        public Short read(ByteBuffer buffer) {
+            return buffer.getShort();
+        }
+    };
+
+    public static final Serializer<Character> CHARACTER = new FixedSizeSerializer<Character>(Character.BYTES) {
+        @Override
+        public void write(Character value, ByteBuffer buffer) {
+            buffer.putChar(value);
+        }
+
+        @Override
+        public Character read(ByteBuffer buffer) {
+            return buffer.getChar();
+        }
+    };
+
+    public static final Serializer<Integer> INTEGER = new FixedSizeSerializer<Integer>(Integer.BYTES) {
+        @Override
+        public void write(Integer value, ByteBuffer buffer) {
+            buffer.putInt(value);
+        }
+
+        @Override
+        public Integer read(ByteBuffer buffer) {
+            return buffer.getInt();
+        }
+    };
+
+    public static final Serializer<Long> LONG = new FixedSizeSerializer<Long>(Long.BYTES) {
+        @Override
+        public void write(Long value, ByteBuffer buffer) {
+            buffer.putLong(value);
+        }
+
+        @Override
+        public Long read(ByteBuffer buffer) {
+            return buffer.getLong();
+        }
+    };
+
+    public static final Serializer<Float> FLOAT = new FixedSizeSerializer<Float>(Float.BYTES) {
+        @Override
+        public void write(Float value, ByteBuffer buffer) {
+            buffer.putFloat(value);
+        }
+
+        @Override
+        public Float read(ByteBuffer buffer) {
+            return buffer.getFloat();
+        }
+    };
+
+    public static final Serializer<Double> DOUBLE = new FixedSizeSerializer<Double>(Double.BYTES) {
+        @Override
+        public void write(Double value, ByteBuffer buffer) {
+            buffer.putDouble(value);
+        }
+
+        @Override
+        public Double read(ByteBuffer buffer) {
+            return buffer.getDouble();
+        }
+    };
+
+    /**
+     * Writes byte array as length followed by the content
+     */
+    public static final Serializer<byte[]> BYTE_ARRAY = new Serializer<byte[]>() {
+        @Override
+        public int sizeOf(byte[] value) {
+            return Integer.BYTES + value.length;
+        }
+
+        @Override
+        public void write(byte[] value, ByteBuffer buffer) {
+            buffer.putInt(value.length);
+            buffer.put(value);
+        }
+
+        @Override
+        public byte[] read(ByteBuffer buffer) {
+            byte[] value = new byte[readLength(buffer)];
+            buffer.get(value);
+            return value;
+        }
+    };
+
+    /**
+     * Writes string as length of UTF-8 representation followed by the UTF-8 bytes
+     */
+    public static final Serializer<String> STRING = new Serializer<String>() {
+        @Override
+        public int sizeOf(String value) {
+            return Integer.BYTES + utf8Length(value);
+        }
+
+        @Override
+        public void write(String value, ByteBuffer buffer) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+
+        @Override
+        public String read(ByteBuffer buffer) {
+            int length = readLength(buffer);
+            if (buffer.hasArray()) {
+                String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                        StandardCharsets.UTF_8);
+                buffer.position(buffer.position() + length);
+                return value;
+            }
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+
+    private Serializers() {}
+
+    /**
+     * Fallback to Java serialization. It is the slowest and the most bloated option,
+     * use it only for types without compact serializer
+     * @param <T> serializable type
+     * @return serializer based on {@link java.io.ObjectOutputStream}
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Serializer<T> java() {
+        return (Serializer<T>) JavaSerializer.INSTANCE;
+    }
+
+    /**
+     * Same as {@link #java()} but bounded to {@link Serializable} types at compile time
+     * @param type of serialized objects
+     * @param <T> serializable type
+     * @return serializer based on {@link java.io.ObjectOutputStream}
+     */
+    public static <T extends Serializable> Serializer<T> java(Class<T> type) {
+        return java();
+    }
+
+    /**
+     * Creates serializer for value class with two components. Components are written
+     * one after another, no field names or class descriptors are stored.
+     * @param first serializer of the first component
+     * @param firstGetter extracts the first component from the value
+     * @param second serializer of the second component
+     * @param secondGetter extracts the second component from the value
+     * @param constructor creates value from components
+     * @param <T> type of the value
+     * @param <A> type of the first component
+     * @param <B> type of the second component
+     * @return serializer for the composite value
+     */
+    public static <T, A, B> Serializer<T> composite(Serializer<A> first, Function<T, A> firstGetter,
+                                                    Serializer<B> second, Function<T, B> secondGetter,
+                                                    BiFunction<A, B, T> constructor) {
+        return new Serializer<T>() {
+            @Override
+            public int sizeOf(T value) {
+                return first.sizeOf(firstGetter.apply(value)) + second.sizeOf(secondGetter.apply(value));
+            }
+
+            @Override
+            public void write(T value, ByteBuffer buffer) {
+                first.write(firstGetter.apply(value), buffer);
+                second.write(secondGetter.apply(value), buffer);
+            }
+
+            @Override
+            public T read(ByteBuffer buffer) {
+                A a = first.read(buffer);
+                B b = second.read(buffer);
+                return constructor.apply(a, b);
+            }
+        };
+    }
+
+    /**
+     * Creates serializer for value class with three components.
+     * @see #composite(Serializer, Function, Serializer, Function, BiFunction)
+     */
+    public static <T, A, B, C> Serializer<T> composite(Serializer<A> first, Function<T, A> firstGetter,
+                                                       Serializer<B> second, Function<T, B> secondGetter,
+                                                       Serializer<C> third, Function<T, C> thirdGetter,
+                                                       TriFunction<A, B, C, T> constructor) {
+        return new Serializer<T>() {
+            @Override
+            public int sizeOf(T value) {
+                return first.sizeOf(firstGetter.apply(value))
+                        + second.sizeOf(secondGetter.apply(value))
+                        + third.sizeOf(thirdGetter.apply(value));
+            }
+
+            @Override
+            public void write(T value, ByteBuffer buffer) {
+                first.write(firstGetter.apply(value), buffer);
+                second.write(secondGetter.apply(value), buffer);
+                third.write(thirdGetter.apply(value), buffer);
+            }
+
+            @Override
+            public T read(ByteBuffer buffer) {
+                A a = first.read(buffer);
+                B b = second.read(buffer);
+                C c = third.read(buffer);
+                return constructor.apply(a, b, c);
+            }
+        };
+    }
+
+    /**
+     * Constructor reference for composite values with three components
+     */
+    @FunctionalInterface
+    public interface TriFunction<A, B, C, R> {
+        R apply(A a, B b, C c);
+    }
+
+    /**
+     * Reads length prefix and checks it against remaining data
+     */
+    static int readLength(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if ((length < 0) || (length > buffer.remaining())) {
+            throw new IllegalArgumentException("Corrupted data: wrong length " + length);
+        }
+        return length;
+    }
+
+    /**
+     * Calculates length of UTF-8 representation without encoding the string
+     */
+    private static int utf8Length(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && (i + 1 < value.length())
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                // unpaired surrogates are replaced with '?' by the encoder
+                length += Character.isSurrogate(c) ? 1 : 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Base class for serializers of fixed length
+     */
+    private abstract static class FixedSizeSerializer<T> implements Serializer<T> {
+
+        private final int size;
+
+        FixedSizeSerializer(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public int sizeOf(T value) {
+            return size;
+        }
+    }
+}
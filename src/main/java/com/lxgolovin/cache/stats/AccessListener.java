@@ -0,0 +1,37 @@
+package com.lxgolovin.cache.stats;
+
+/**
+ * Receives keys accessed in a cache, e.g. to find hot keys by {@link HotKeyTracker}.
+ * Listener is called by the thread of the access after the cache lock is released,
+ * so it should be thread safe, fast and should not throw exceptions
+ *
+ * @param <K> key
+ * @see com.lxgolovin.cache.CacheLevel#addAccessListener(AccessListener)
+ */
+@FunctionalInterface
+public interface AccessListener<K> {
+
+    /**
+     * Kinds of access
+     */
+    enum Access {
+        /**
+         * Get of a key which is in the cache
+         */
+        HIT,
+        /**
+         * Get of a key which is not in the cache
+         */
+        MISS,
+        /**
+         * Put of a key into the cache
+         */
+        CACHE
+    }
+
+    /**
+     * @param key accessed key, not null
+     * @param access kind of the access
+     */
+    void onAccess(K key, Access access);
+}
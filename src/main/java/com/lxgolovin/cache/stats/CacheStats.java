@@ -0,0 +1,302 @@
+package com.lxgolovin.cache.stats;
+
+import net.jcip.annotations.Immutable;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Snapshot of cache statistics. Counts hits and misses of requests, evictions by
+ * {@link EvictionCause}, moves of entries between levels and loads of missed values.
+ * For multilevel cache hits are also counted for each level, level 0 is the first one.
+ * Snapshots are taken from {@link StatsCounter} and could be subtracted to get numbers
+ * for a period of time. Acquisitions of cache locks are added by name, see {@link #lockStats()}
+ *
+ * @see StatsCounter
+ */
+@Immutable
+public final class CacheStats {
+
+    private static final CacheStats EMPTY = new CacheStats(0, 0, new long[EvictionCause.values().length],
+            0, 0, 0, 0, 0, new long[0]);
+
+    private final long hitCount;
+
+    private final long missCount;
+
+    private final long[] evictionCounts;
+
+    private final long promotionCount;
+
+    private final long demotionCount;
+
+    private final long loadSuccessCount;
+
+    private final long loadFailureCount;
+
+    private final long totalLoadTime;
+
+    private final long[] levelHitCounts;
+
+    private final SortedMap<String, LockStats> lockStats;
+
+    CacheStats(long hitCount, long missCount, long[] evictionCounts, long promotionCount, long demotionCount,
+               long loadSuccessCount, long loadFailureCount, long totalLoadTime, long[] levelHitCounts) {
+        this(hitCount, missCount, evictionCounts, promotionCount, demotionCount, loadSuccessCount,
+                loadFailureCount, totalLoadTime, levelHitCounts, Collections.emptySortedMap());
+    }
+
+    private CacheStats(long hitCount, long missCount, long[] evictionCounts, long promotionCount,
+                       long demotionCount, long loadSuccessCount, long loadFailureCount, long totalLoadTime,
+                       long[] levelHitCounts, SortedMap<String, LockStats> lockStats) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCounts = evictionCounts;
+        this.promotionCount = promotionCount;
+        this.demotionCount = demotionCount;
+        this.loadSuccessCount = loadSuccessCount;
+        this.loadFailureCount = loadFailureCount;
+        this.totalLoadTime = totalLoadTime;
+        this.levelHitCounts = levelHitCounts;
+        this.lockStats = lockStats;
+    }
+
+    /**
+     * @return statistics with all counts equal to zero
+     */
+    public static CacheStats empty() {
+        return EMPTY;
+    }
+
+    public long hitCount() {
+        return hitCount;
+    }
+
+    public long missCount() {
+        return missCount;
+    }
+
+    /**
+     * @return number of hits and misses
+     */
+    public long requestCount() {
+        return hitCount + missCount;
+    }
+
+    /**
+     * @return part of requests which are hits, 1.0 if there are no requests
+     */
+    public double hitRate() {
+        long requests = requestCount();
+        return (requests == 0) ? 1.0 : (double) hitCount / requests;
+    }
+
+    /**
+     * @return part of requests which are misses, 0.0 if there are no requests
+     */
+    public double missRate() {
+        long requests = requestCount();
+        return (requests == 0) ? 0.0 : (double) missCount / requests;
+    }
+
+    /**
+     * @return number of levels with counted hits
+     */
+    public int levels() {
+        return levelHitCounts.length;
+    }
+
+    /**
+     * @param level index of level, from 0
+     * @return number of hits in the level, 0 for unknown level
+     */
+    public long levelHitCount(int level) {
+        return ((level >= 0) && (level < levelHitCounts.length)) ? levelHitCounts[level] : 0;
+    }
+
+    /**
+     * @param level index of level, from 0
+     * @return part of requests which are hits in the level, 0.0 if there are no requests
+     */
+    public double levelHitRate(int level) {
+        long requests = requestCount();
+        return (requests == 0) ? 0.0 : (double) levelHitCount(level) / requests;
+    }
+
+    /**
+     * @return number of evictions of all causes
+     */
+    public long evictionCount() {
+        return Arrays.stream(evictionCounts).sum();
+    }
+
+    /**
+     * @param cause of eviction, cannot be null
+     * @return number of evictions by the cause
+     * @throws IllegalArgumentException if cause is null
+     */
+    public long evictionCount(EvictionCause cause) {
+        if (cause == null) {
+            throw new IllegalArgumentException("Cause should not be null");
+        }
+        return evictionCounts[cause.ordinal()];
+    }
+
+    /**
+     * @return number of entries moved to upper level on hit
+     */
+    public long promotionCount() {
+        return promotionCount;
+    }
+
+    /**
+     * @return number of entries pushed to lower level to make room
+     */
+    public long demotionCount() {
+        return demotionCount;
+    }
+
+    public long loadSuccessCount() {
+        return loadSuccessCount;
+    }
+
+    public long loadFailureCount() {
+        return loadFailureCount;
+    }
+
+    public long loadCount() {
+        return loadSuccessCount + loadFailureCount;
+    }
+
+    /**
+     * @return time spent in loading values, in nanoseconds
+     */
+    public long totalLoadTime() {
+        return totalLoadTime;
+    }
+
+    /**
+     * @return average time of one load in nanoseconds, 0.0 if there were no loads
+     */
+    public double averageLoadPenalty() {
+        long loads = loadCount();
+        return (loads == 0) ? 0.0 : (double) totalLoadTime / loads;
+    }
+
+    /**
+     * @return acquisitions of instrumented locks by their names, e.g. "level", "algorithm" or "storage"
+     */
+    public Map<String, LockStats> lockStats() {
+        return lockStats;
+    }
+
+    /**
+     * @param name of the lock
+     * @return acquisitions of the lock, empty if there is no such lock
+     */
+    public LockStats lockStats(String name) {
+        LockStats stats = lockStats.get(name);
+        return (stats == null) ? LockStats.empty() : stats;
+    }
+
+    /**
+     * @param locks statistics of locks by names, cannot be null
+     * @return copy of these statistics with the locks
+     * @throws IllegalArgumentException if locks are null
+     */
+    public CacheStats withLockStats(Map<String, LockStats> locks) {
+        if (locks == null) {
+            throw new IllegalArgumentException("Lock statistics should not be null");
+        }
+        return new CacheStats(hitCount, missCount, evictionCounts, promotionCount, demotionCount,
+                loadSuccessCount, loadFailureCount, totalLoadTime, levelHitCounts,
+                Collections.unmodifiableSortedMap(new TreeMap<>(locks)));
+    }
+
+    /**
+     * Difference of two snapshots of the same counter, negative values are changed to zero
+     *
+     * @param other earlier snapshot, cannot be null
+     * @return statistics of the period between snapshots
+     * @throws IllegalArgumentException if other is null
+     */
+    public CacheStats minus(CacheStats other) {
+        if (other == null) {
+            throw new IllegalArgumentException("Statistics should not be null");
+        }
+
+        long[] evictions = new long[evictionCounts.length];
+        for (int i = 0; i < evictions.length; i++) {
+            evictions[i] = Math.max(0, evictionCounts[i] - other.evictionCounts[i]);
+        }
+        long[] levelHits = new long[levelHitCounts.length];
+        for (int i = 0; i < levelHits.length; i++) {
+            levelHits[i] = Math.max(0, levelHitCounts[i] - other.levelHitCount(i));
+        }
+        SortedMap<String, LockStats> locks = new TreeMap<>();
+        lockStats.forEach((name, stats) -> locks.put(name, stats.minus(other.lockStats(name))));
+        return new CacheStats(
+                Math.max(0, hitCount - other.hitCount),
+                Math.max(0, missCount - other.missCount),
+                evictions,
+                Math.max(0, promotionCount - other.promotionCount),
+                Math.max(0, demotionCount - other.demotionCount),
+                Math.max(0, loadSuccessCount - other.loadSuccessCount),
+                Math.max(0, loadFailureCount - other.loadFailureCount),
+                Math.max(0, totalLoadTime - other.totalLoadTime),
+                levelHits,
+                Collections.unmodifiableSortedMap(locks));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CacheStats)) {
+            return false;
+        }
+        CacheStats other = (CacheStats) o;
+        return (hitCount == other.hitCount)
+                && (missCount == other.missCount)
+                && Arrays.equals(evictionCounts, other.evictionCounts)
+                && (promotionCount == other.promotionCount)
+                && (demotionCount == other.demotionCount)
+                && (loadSuccessCount == other.loadSuccessCount)
+                && (loadFailureCount == other.loadFailureCount)
+                && (totalLoadTime == other.totalLoadTime)
+                && Arrays.equals(levelHitCounts, other.levelHitCounts)
+                && lockStats.equals(other.lockStats);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Long.hashCode(hitCount);
+        result = 31 * result + Long.hashCode(missCount);
+        result = 31 * result + Arrays.hashCode(evictionCounts);
+        result = 31 * result + Long.hashCode(promotionCount);
+        result = 31 * result + Long.hashCode(demotionCount);
+        result = 31 * result + Long.hashCode(loadSuccessCount);
+        result = 31 * result + Long.hashCode(loadFailureCount);
+        result = 31 * result + Long.hashCode(totalLoadTime);
+        result = 31 * result + Arrays.hashCode(levelHitCounts);
+        return 31 * result + lockStats.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{hits=" + hitCount
+                + ", misses=" + missCount
+                + ", levelHits=" + Arrays.toString(levelHitCounts)
+                + ", evictions=" + evictionCount()
+                + ", promotions=" + promotionCount
+                + ", demotions=" + demotionCount
+                + ", loadSuccesses=" + loadSuccessCount
+                + ", loadFailures=" + loadFailureCount
+                + ", totalLoadTime=" + totalLoadTime + "ns"
+                + (lockStats.isEmpty() ? "" : ", locks=" + lockStats) + "}";
+    }
+}
@@ -0,0 +1,24 @@
+package com.lxgolovin.cache.stats;
+
+/**
+ * Reasons why an entry leaves a cache
+ *
+ * @see CacheStats
+ */
+public enum EvictionCause {
+
+    /**
+     * Removed by the algorithm to make room for a new entry
+     */
+    SIZE,
+
+    /**
+     * Removed by explicit call of {@code pop()}
+     */
+    POPPED,
+
+    /**
+     * Removed by explicit call of {@code delete(key)}
+     */
+    DELETED
+}
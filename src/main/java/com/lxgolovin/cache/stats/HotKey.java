@@ -0,0 +1,68 @@
+package com.lxgolovin.cache.stats;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * Key with estimated number of accesses, returned by {@link HotKeyTracker}.
+ * Real number of accesses is between {@link #guaranteedCount()} and {@link #count()}
+ *
+ * @param <K> key
+ */
+@Immutable
+public final class HotKey<K> {
+
+    private final K key;
+
+    private final long count;
+
+    private final long error;
+
+    private final double ratePerSecond;
+
+    HotKey(K key, long count, long error, double ratePerSecond) {
+        this.key = key;
+        this.count = count;
+        this.error = error;
+        this.ratePerSecond = ratePerSecond;
+    }
+
+    public K key() {
+        return key;
+    }
+
+    /**
+     * @return estimated number of accesses, never lower then the real one
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * @return maximum overestimation of the count
+     */
+    public long error() {
+        return error;
+    }
+
+    /**
+     * @return number of accesses the key surely had
+     */
+    public long guaranteedCount() {
+        return count - error;
+    }
+
+    /**
+     * @return estimated accesses per second since the tracker was started or reset
+     */
+    public double ratePerSecond() {
+        return ratePerSecond;
+    }
+
+    @Override
+    public String toString() {
+        return "HotKey{key=" + key
+                + ", count=" + count
+                + ", error=" + error
+                + ", ratePerSecond=" + String.format("%.2f", ratePerSecond) + "}";
+    }
+}
@@ -0,0 +1,296 @@
+package com.lxgolovin.cache.stats;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Finds the most accessed keys in bounded memory by Space-Saving algorithm. At most
+ * {@code capacity} keys are counted, a new key replaces the key with the lowest count
+ * and takes its count plus one. Any key accessed more often then
+ * {@code accesses / capacity} times is surely among counted keys, counts are never underestimated.
+ * <p>
+ * Accesses are not counted on the caller thread. They are added to one of striped lock-free buffers,
+ * chosen by thread, and the buffers are drained into the counters in batches by whichever thread
+ * gets the lock without waiting. Only if a buffer is full the caller waits for the lock, so no access
+ * is lost. {@link #topK(int)} drains all buffers first, so it sees every recorded access.
+ * Usually it is added to a cache level by
+ * {@link com.lxgolovin.cache.CacheLevel#addAccessListener(AccessListener)}
+ *
+ * @param <K> key
+ * @see HotKey
+ */
+@ThreadSafe
+public final class HotKeyTracker<K> implements AccessListener<K> {
+
+    public static final int DEFAULT_CAPACITY = 1000;
+
+    /**
+     * Number of keys in one buffer, power of two
+     */
+    static final int BUFFER_SIZE = 64;
+
+    /**
+     * Threads are spread over buffers by id, so more buffers then processors make collisions rare
+     */
+    private static final int BUFFERS_PER_PROCESSOR = 4;
+
+    /**
+     * Buffer is drained when it has this number of keys
+     */
+    private static final int DRAIN_THRESHOLD = BUFFER_SIZE / 2;
+
+    private final int capacity;
+
+    private final AccessBuffer<K>[] buffers;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    @GuardedBy("lock")
+    private final Map<K, Counter<K>> counters = new HashMap<>();
+
+    /**
+     * Counters from the lowest count, ties by age
+     */
+    @GuardedBy("lock")
+    private final TreeSet<Counter<K>> byCount = new TreeSet<>(
+            Comparator.<Counter<K>>comparingLong(c -> c.count).thenComparingLong(c -> c.id));
+
+    @GuardedBy("lock")
+    private long nextId;
+
+    @GuardedBy("lock")
+    private long startNanos;
+
+    private final LongSupplier ticker;
+
+    public HotKeyTracker() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity maximum number of counted keys, should be positive
+     * @throws IllegalArgumentException if capacity is not positive
+     */
+    public HotKeyTracker(int capacity) {
+        this(capacity, System::nanoTime);
+    }
+
+    HotKeyTracker(int capacity, LongSupplier ticker) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity should be positive");
+        }
+        this.capacity = capacity;
+        this.ticker = ticker;
+        this.startNanos = ticker.getAsLong();
+        this.buffers = createBuffers();
+    }
+
+    /**
+     * Records access of any kind into buffer of the thread, null key is ignored.
+     * The buffer is drained if it is filled enough and no other thread holds the lock.
+     * If the buffer is full, the key is counted under the lock
+     */
+    @Override
+    public void onAccess(K key, Access access) {
+        if (key == null) {
+            return;
+        }
+
+        AccessBuffer<K> buffer = buffers[(int) Thread.currentThread().getId() & (buffers.length - 1)];
+        if (!buffer.offer(key)) {
+            lock.lock();
+            try {
+                drainBuffers();
+                count(key);
+            } finally {
+                lock.unlock();
+            }
+        } else if ((buffer.size() >= DRAIN_THRESHOLD) && lock.tryLock()) {
+            try {
+                drainBuffers();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @GuardedBy("lock")
+    private void drainBuffers() {
+        for (AccessBuffer<K> buffer : buffers) {
+            buffer.drainTo(this::count);
+        }
+    }
+
+    @GuardedBy("lock")
+    private void count(K key) {
+        Counter<K> counter = counters.get(key);
+        if (counter != null) {
+            byCount.remove(counter);
+            counter.count++;
+            byCount.add(counter);
+            return;
+        }
+
+        long error = 0;
+        if (counters.size() >= capacity) {
+            Counter<K> replaced = byCount.pollFirst();
+            counters.remove(replaced.key);
+            error = replaced.count;
+        }
+        counter = new Counter<>(key, error + 1, error, nextId++);
+        counters.put(key, counter);
+        byCount.add(counter);
+    }
+
+    /**
+     * @param k number of keys, should be positive
+     * @return at most k keys from the most accessed one
+     * @throws IllegalArgumentException if k is not positive
+     */
+    public List<HotKey<K>> topK(int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("Number of keys should be positive");
+        }
+
+        lock.lock();
+        try {
+            drainBuffers();
+            double seconds = Math.max(1, ticker.getAsLong() - startNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+            List<HotKey<K>> hotKeys = new ArrayList<>(Math.min(k, counters.size()));
+            Iterator<Counter<K>> iterator = byCount.descendingIterator();
+            while (iterator.hasNext() && (hotKeys.size() < k)) {
+                Counter<K> counter = iterator.next();
+                hotKeys.add(new HotKey<>(counter.key, counter.count, counter.error, counter.count / seconds));
+            }
+            return hotKeys;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forgets all counts and starts time of rates again
+     */
+    public void reset() {
+        lock.lock();
+        try {
+            for (AccessBuffer<K> buffer : buffers) {
+                buffer.drainTo(key -> { });
+            }
+            counters.clear();
+            byCount.clear();
+            startNanos = ticker.getAsLong();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return maximum number of counted keys
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return {@link #BUFFERS_PER_PROCESSOR} buffers per processor, rounded up to power of two
+     */
+    @SuppressWarnings("unchecked")
+    private static <K> AccessBuffer<K>[] createBuffers() {
+        int buffersNeeded = BUFFERS_PER_PROCESSOR * Runtime.getRuntime().availableProcessors();
+        int count = Integer.highestOneBit(buffersNeeded - 1) << 1;
+        AccessBuffer<K>[] buffers = new AccessBuffer[count];
+        for (int i = 0; i < count; i++) {
+            buffers[i] = new AccessBuffer<>();
+        }
+        return buffers;
+    }
+
+    /**
+     * Bounded ring of keys. Any thread offers keys without locks, one thread at a time drains it
+     */
+    private static final class AccessBuffer<K> {
+
+        private final AtomicReferenceArray<K> keys = new AtomicReferenceArray<>(BUFFER_SIZE);
+
+        /**
+         * Number of reserved slots from creation
+         */
+        private final AtomicLong writes = new AtomicLong();
+
+        /**
+         * Number of drained slots from creation, changed only under the lock of the tracker
+         */
+        private volatile long reads;
+
+        /**
+         * @return false if the buffer is full
+         */
+        private boolean offer(K key) {
+            while (true) {
+                long write = writes.get();
+                if (write - reads >= BUFFER_SIZE) {
+                    return false;
+                }
+                if (writes.compareAndSet(write, write + 1)) {
+                    keys.lazySet((int) write & (BUFFER_SIZE - 1), key);
+                    return true;
+                }
+            }
+        }
+
+        private long size() {
+            return writes.get() - reads;
+        }
+
+        /**
+         * Passes keys in order of writes. Stops at a slot reserved but not yet written
+         */
+        private void drainTo(Consumer<K> consumer) {
+            long read = reads;
+            long write = writes.get();
+            for (; read < write; read++) {
+                int index = (int) read & (BUFFER_SIZE - 1);
+                K key = keys.get(index);
+                if (key == null) {
+                    break;
+                }
+                keys.lazySet(index, null);
+                consumer.accept(key);
+            }
+            reads = read;
+        }
+    }
+
+    private static final class Counter<K> {
+
+        private final K key;
+
+        private long count;
+
+        private final long error;
+
+        private final long id;
+
+        private Counter(K key, long count, long error, long id) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.lxgolovin.cache.stats;
+
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies in nanoseconds with fixed memory and log-linear buckets, like HdrHistogram.
+ * Values below {@value #SUB_BUCKETS} are counted exactly, each larger power of two is split into
+ * {@value #SUB_BUCKETS} equal buckets, so relative error is about 3% for any value.
+ * Values above {@link #MAX_TRACKABLE} (about 68 seconds) are counted in the last bucket, maximum
+ * is kept exactly. Recording is an atomic increment, no locks and no allocation
+ *
+ * @see LatencySnapshot
+ * @see SlidingWindowHistogram
+ */
+@ThreadSafe
+public final class LatencyHistogram {
+
+    /**
+     * Bits of value kept in each bucket
+     */
+    private static final int SUB_BUCKET_BITS = 5;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * Highest power of two tracked by buckets
+     */
+    private static final int MAX_EXPONENT = 36;
+
+    /**
+     * Largest value counted in its own bucket, in nanoseconds
+     */
+    public static final long MAX_TRACKABLE = (1L << MAX_EXPONENT) - 1;
+
+    static final int BUCKETS = SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param nanos latency, negative values are counted as zero
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        long currentMax = max.get();
+        while ((value > currentMax) && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * Sets all counts to zero. Values recorded at the same time could be lost
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        max.set(0);
+    }
+
+    public LatencySnapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        addTo(copy);
+        return new LatencySnapshot(copy, max.get());
+    }
+
+    /**
+     * Adds counts of this histogram to the array
+     */
+    void addTo(long[] target) {
+        for (int i = 0; i < BUCKETS; i++) {
+            target[i] += counts.get(i);
+        }
+    }
+
+    long max() {
+        return max.get();
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        if (value > MAX_TRACKABLE) {
+            return BUCKETS - 1;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) - SUB_BUCKETS;
+        return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @return largest value counted in the bucket
+     */
+    static long highestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = (bucket - SUB_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS;
+        long subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
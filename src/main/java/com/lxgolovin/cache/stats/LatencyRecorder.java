@@ -0,0 +1,128 @@
+package com.lxgolovin.cache.stats;
+
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Latencies of cache operations, one {@link SlidingWindowHistogram} for each {@link Operation}.
+ * Recording is optional, a cache keeps no histograms until a recorder is set, e.g.
+ * {@code CacheLevel.recordLatencies(new LatencyRecorder())}.
+ * By default the window is {@value #DEFAULT_SLOTS} slots of {@value #DEFAULT_SLOT_SECONDS} seconds,
+ * so the last minute is reported
+ *
+ * @see LatencySnapshot
+ */
+@ThreadSafe
+public final class LatencyRecorder {
+
+    public static final int DEFAULT_SLOTS = 6;
+
+    public static final long DEFAULT_SLOT_SECONDS = 10;
+
+    /**
+     * Operations with measured latency
+     */
+    public enum Operation {
+        /**
+         * Get of a key which is in the cache
+         */
+        GET_HIT,
+        /**
+         * Get of a key which is not in the cache
+         */
+        GET_MISS,
+        CACHE,
+        POP,
+        /**
+         * Move of an entry to the next level of controller
+         */
+        DEMOTE,
+        /**
+         * Read of a value from storage, includes waiting for the storage lock
+         */
+        STORAGE_READ,
+        /**
+         * Write of a value to storage, includes waiting for the storage lock
+         */
+        STORAGE_WRITE
+    }
+
+    private final Map<Operation, SlidingWindowHistogram> histograms = new EnumMap<>(Operation.class);
+
+    private final LongSupplier ticker;
+
+    public LatencyRecorder() {
+        this(DEFAULT_SLOTS, DEFAULT_SLOT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @param slots number of slots in window, should be positive
+     * @param slotDuration duration of one slot, should be positive
+     * @param unit of duration, cannot be null
+     * @throws IllegalArgumentException if any parameter is wrong
+     */
+    public LatencyRecorder(int slots, long slotDuration, TimeUnit unit) {
+        this(slots, (unit == null) ? 0 : unit.toNanos(slotDuration), System::nanoTime);
+    }
+
+    LatencyRecorder(int slots, long slotNanos, LongSupplier ticker) {
+        this.ticker = ticker;
+        for (Operation operation : Operation.values()) {
+            histograms.put(operation, new SlidingWindowHistogram(slots, slotNanos, ticker));
+        }
+    }
+
+    /**
+     * @return current time to pass later to {@link #recordSince(Operation, long)}
+     */
+    public long start() {
+        return ticker.getAsLong();
+    }
+
+    /**
+     * Records time passed from the start
+     * @param operation cannot be null
+     * @param startNanos value of {@link #start()} before the operation
+     */
+    public void recordSince(Operation operation, long startNanos) {
+        record(operation, ticker.getAsLong() - startNanos);
+    }
+
+    /**
+     * @param operation cannot be null
+     * @param nanos latency of the operation
+     * @throws IllegalArgumentException if operation is null
+     */
+    public void record(Operation operation, long nanos) {
+        histogram(operation).record(nanos);
+    }
+
+    /**
+     * @param operation cannot be null
+     * @return latencies of the operation in the window
+     * @throws IllegalArgumentException if operation is null
+     */
+    public LatencySnapshot snapshot(Operation operation) {
+        return histogram(operation).snapshot();
+    }
+
+    /**
+     * @return latencies of all operations in the window
+     */
+    public Map<Operation, LatencySnapshot> snapshot() {
+        Map<Operation, LatencySnapshot> snapshots = new EnumMap<>(Operation.class);
+        histograms.forEach((operation, histogram) -> snapshots.put(operation, histogram.snapshot()));
+        return snapshots;
+    }
+
+    private SlidingWindowHistogram histogram(Operation operation) {
+        if (operation == null) {
+            throw new IllegalArgumentException("Operation should not be null");
+        }
+        return histograms.get(operation);
+    }
+}
@@ -0,0 +1,89 @@
+package com.lxgolovin.cache.stats;
+
+import net.jcip.annotations.Immutable;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts of {@link LatencyHistogram} at some moment. Percentiles are the highest value of
+ * the bucket where they fall, so they are never lower then real ones. Values are in nanoseconds
+ */
+@Immutable
+public final class LatencySnapshot {
+
+    private final long[] counts;
+
+    private final long count;
+
+    private final long max;
+
+    LatencySnapshot(long[] counts, long max) {
+        this.counts = counts;
+        long sum = 0;
+        for (long bucketCount : counts) {
+            sum += bucketCount;
+        }
+        this.count = sum;
+        this.max = max;
+    }
+
+    /**
+     * @return number of recorded values
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * @param percentile from 0 to 100
+     * @return value such that the percentile of recorded values are not greater, 0 if nothing recorded
+     * @throws IllegalArgumentException if percentile is out of range
+     */
+    public long percentile(double percentile) {
+        if ((percentile < 0) || (percentile > 100)) {
+            throw new IllegalArgumentException("Percentile should be from 0 to 100");
+        }
+        if (count == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        long seen = 0;
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return Math.min(LatencyHistogram.highestValueOf(bucket), max);
+            }
+        }
+        return max;
+    }
+
+    public long p50() {
+        return percentile(50);
+    }
+
+    public long p99() {
+        return percentile(99);
+    }
+
+    public long p999() {
+        return percentile(99.9);
+    }
+
+    public long max() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return "LatencySnapshot{count=" + count
+                + ", p50=" + micros(p50())
+                + ", p99=" + micros(p99())
+                + ", p999=" + micros(p999())
+                + ", max=" + micros(max) + "}";
+    }
+
+    private static String micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos) + "us";
+    }
+}
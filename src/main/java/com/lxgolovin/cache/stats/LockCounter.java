@@ -0,0 +1,39 @@
+package com.lxgolovin.cache.stats;
+
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Accumulates acquisitions of a lock, see {@link LockStats}
+ */
+@ThreadSafe
+public final class LockCounter {
+
+    private final LongAdder acquisitionCount = new LongAdder();
+
+    private final LongAdder contendedCount = new LongAdder();
+
+    private final LongAdder totalWaitTime = new LongAdder();
+
+    /**
+     * Records acquisition of free lock
+     */
+    public void recordAcquisition() {
+        acquisitionCount.increment();
+    }
+
+    /**
+     * Records acquisition after waiting for another thread
+     * @param waitNanos time of waiting
+     */
+    public void recordContendedAcquisition(long waitNanos) {
+        acquisitionCount.increment();
+        contendedCount.increment();
+        totalWaitTime.add(waitNanos);
+    }
+
+    public LockStats snapshot() {
+        return new LockStats(acquisitionCount.sum(), contendedCount.sum(), totalWaitTime.sum());
+    }
+}
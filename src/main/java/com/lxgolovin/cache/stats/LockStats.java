@@ -0,0 +1,120 @@
+package com.lxgolovin.cache.stats;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * Acquisitions of a lock counted by {@link LockCounter}. Acquisition is contended if the lock
+ * was held by another thread, wait time is counted only for contended acquisitions, in nanoseconds
+ *
+ * @see com.lxgolovin.cache.core.InstrumentedLock
+ * @see com.lxgolovin.cache.core.InstrumentedReadWriteLock
+ */
+@Immutable
+public final class LockStats {
+
+    private static final LockStats EMPTY = new LockStats(0, 0, 0);
+
+    private final long acquisitionCount;
+
+    private final long contendedCount;
+
+    private final long totalWaitTime;
+
+    LockStats(long acquisitionCount, long contendedCount, long totalWaitTime) {
+        this.acquisitionCount = acquisitionCount;
+        this.contendedCount = contendedCount;
+        this.totalWaitTime = totalWaitTime;
+    }
+
+    /**
+     * @return statistics of a lock which is not instrumented
+     */
+    public static LockStats empty() {
+        return EMPTY;
+    }
+
+    public long acquisitionCount() {
+        return acquisitionCount;
+    }
+
+    public long contendedCount() {
+        return contendedCount;
+    }
+
+    /**
+     * @return nanoseconds threads waited for the lock
+     */
+    public long totalWaitTime() {
+        return totalWaitTime;
+    }
+
+    /**
+     * @return part of acquisitions which waited, 0 if there were no acquisitions
+     */
+    public double contentionRate() {
+        return (acquisitionCount == 0) ? 0.0 : (double) contendedCount / acquisitionCount;
+    }
+
+    /**
+     * @return nanoseconds of waiting per contended acquisition
+     */
+    public double averageWaitTime() {
+        return (contendedCount == 0) ? 0.0 : (double) totalWaitTime / contendedCount;
+    }
+
+    /**
+     * @param other cannot be null
+     * @return sum of statistics, e.g. of several locks of one cache
+     * @throws IllegalArgumentException if other is null
+     */
+    public LockStats plus(LockStats other) {
+        if (other == null) {
+            throw new IllegalArgumentException("Statistics should not be null");
+        }
+        return new LockStats(acquisitionCount + other.acquisitionCount,
+                contendedCount + other.contendedCount,
+                totalWaitTime + other.totalWaitTime);
+    }
+
+    /**
+     * @param other cannot be null
+     * @return difference of statistics, negative values are replaced by zero
+     * @throws IllegalArgumentException if other is null
+     */
+    public LockStats minus(LockStats other) {
+        if (other == null) {
+            throw new IllegalArgumentException("Statistics should not be null");
+        }
+        return new LockStats(Math.max(0, acquisitionCount - other.acquisitionCount),
+                Math.max(0, contendedCount - other.contendedCount),
+                Math.max(0, totalWaitTime - other.totalWaitTime));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof LockStats)) {
+            return false;
+        }
+        LockStats other = (LockStats) o;
+        return (acquisitionCount == other.acquisitionCount)
+                && (contendedCount == other.contendedCount)
+                && (totalWaitTime == other.totalWaitTime);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Long.hashCode(acquisitionCount);
+        result = 31 * result + Long.hashCode(contendedCount);
+        return 31 * result + Long.hashCode(totalWaitTime);
+    }
+
+    @Override
+    public String toString() {
+        return "LockStats{acquisitions=" + acquisitionCount
+                + ", contended=" + contendedCount
+                + ", totalWaitTime=" + totalWaitTime + "ns}";
+    }
+}
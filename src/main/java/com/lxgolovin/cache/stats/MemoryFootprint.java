@@ -0,0 +1,94 @@
+package com.lxgolovin.cache.stats;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * Approximate heap memory retained by a cache level, in bytes. Keys and values are measured by
+ * {@link SizeEstimator}, structures of storage and algorithm by their overhead per entry, see
+ * {@link com.lxgolovin.cache.storage.Storage#entryOverhead()} and
+ * {@link com.lxgolovin.cache.algorithm.CacheAlgorithm#entryOverhead()}.
+ * Values kept out of heap, e.g. in files, are not counted. If only part of entries is sampled,
+ * sizes of keys and values are extrapolated to all entries
+ */
+@Immutable
+public final class MemoryFootprint {
+
+    private final long entries;
+
+    private final long sampledEntries;
+
+    private final long keyBytes;
+
+    private final long valueBytes;
+
+    private final long storageOverhead;
+
+    private final long algorithmOverhead;
+
+    /**
+     * @param entries number of entries of the cache
+     * @param sampledEntries number of entries measured by estimators
+     * @param keyBytes size of keys
+     * @param valueBytes size of values kept in heap
+     * @param storageOverhead size of storage structures without keys and values
+     * @param algorithmOverhead size of algorithm structures without keys
+     */
+    public MemoryFootprint(long entries, long sampledEntries, long keyBytes, long valueBytes,
+                           long storageOverhead, long algorithmOverhead) {
+        this.entries = entries;
+        this.sampledEntries = sampledEntries;
+        this.keyBytes = keyBytes;
+        this.valueBytes = valueBytes;
+        this.storageOverhead = storageOverhead;
+        this.algorithmOverhead = algorithmOverhead;
+    }
+
+    public long entries() {
+        return entries;
+    }
+
+    public long sampledEntries() {
+        return sampledEntries;
+    }
+
+    public long keyBytes() {
+        return keyBytes;
+    }
+
+    public long valueBytes() {
+        return valueBytes;
+    }
+
+    public long storageOverhead() {
+        return storageOverhead;
+    }
+
+    public long algorithmOverhead() {
+        return algorithmOverhead;
+    }
+
+    /**
+     * @return size of keys, values and structures together
+     */
+    public long totalBytes() {
+        return keyBytes + valueBytes + storageOverhead + algorithmOverhead;
+    }
+
+    /**
+     * @return average size of one entry, 0.0 for empty cache
+     */
+    public double bytesPerEntry() {
+        return (entries == 0) ? 0.0 : (double) totalBytes() / entries;
+    }
+
+    @Override
+    public String toString() {
+        return "MemoryFootprint{entries=" + entries
+                + ", sampled=" + sampledEntries
+                + ", keys=" + keyBytes
+                + ", values=" + valueBytes
+                + ", storageOverhead=" + storageOverhead
+                + ", algorithmOverhead=" + algorithmOverhead
+                + ", total=" + totalBytes() + "}";
+    }
+}
@@ -0,0 +1,325 @@
+package com.lxgolovin.cache.stats;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Estimates hit ratio of LRU cache of any size by SHARDS, spatially hashed sampling of reuse distances.
+ * Key is sampled if its hash is below threshold, so the same keys are always sampled. Reuse distance of
+ * a sampled get is the number of other sampled keys got since the previous get of the key, divided by
+ * sampling rate. Get hits a cache of size {@code n} if its reuse distance is less then {@code n}.
+ * Each sampled get stands for {@code 1 / samplingRate} gets of the time it was sampled, difference between
+ * estimated and real number of gets is counted as hits of any size, like SHARDS-adj does.
+ * <p>
+ * Memory is constant: at most {@code maxSampledKeys} keys are kept, when there are more, keys with
+ * the highest hash are dropped and the threshold is lowered to their hash. Distances are kept in
+ * log-linear buckets like {@link LatencyHistogram}. Not sampled gets cost one hash calculation.
+ * Caches are ignored, only gets form the access stream. Usually the estimator is added to a level
+ * by {@link com.lxgolovin.cache.CacheLevel#addAccessListener(AccessListener)}, then
+ * {@code hitRatios(level.sizeMax())} shows what other sizes of the level would give
+ *
+ * @param <K> key
+ * @see AccessListener
+ */
+@ThreadSafe
+public final class ShardsEstimator<K> implements AccessListener<K> {
+
+    public static final double DEFAULT_SAMPLING_RATE = 0.01;
+
+    public static final int DEFAULT_MAX_SAMPLED_KEYS = 8192;
+
+    /**
+     * Multipliers of the current size reported by {@link #hitRatios(int)}
+     */
+    private static final double[] SCALES = {0.25, 0.5, 1, 2, 4};
+
+    /**
+     * Hashes are taken modulo this value
+     */
+    private static final int MODULUS = 1 << 24;
+
+    private final int maxSampledKeys;
+
+    /**
+     * Key is sampled if its hash is less then threshold. Read without lock
+     */
+    private volatile int threshold;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    @GuardedBy("lock")
+    private final Map<K, Sample<K>> samples = new HashMap<>();
+
+    /**
+     * Samples from the lowest hash, to find the ones to drop
+     */
+    @GuardedBy("lock")
+    private final TreeSet<Sample<K>> byHash = new TreeSet<>(
+            Comparator.<Sample<K>>comparingInt(s -> s.hash).thenComparingLong(s -> s.id));
+
+    /**
+     * Fenwick tree with one at the time of the last access of each sample
+     */
+    @GuardedBy("lock")
+    private long[] accessTimes;
+
+    @GuardedBy("lock")
+    private int clock;
+
+    @GuardedBy("lock")
+    private long nextId;
+
+    /**
+     * Estimated number of all gets by reuse distance, each sampled get is weighted by
+     * {@code 1 / samplingRate} of its time
+     */
+    @GuardedBy("lock")
+    private final double[] distanceWeights = new double[LatencyHistogram.BUCKETS];
+
+    /**
+     * Estimated number of all gets, including gets of keys not seen before
+     */
+    @GuardedBy("lock")
+    private double totalWeight;
+
+    @GuardedBy("lock")
+    private long sampledCount;
+
+    /**
+     * All gets, sampled or not
+     */
+    private final LongAdder getCount = new LongAdder();
+
+    public ShardsEstimator() {
+        this(DEFAULT_SAMPLING_RATE, DEFAULT_MAX_SAMPLED_KEYS);
+    }
+
+    /**
+     * @param samplingRate initial part of keys to sample, from 0 exclusive to 1 inclusive
+     * @param maxSampledKeys maximum number of kept keys, should be positive
+     * @throws IllegalArgumentException if any parameter is out of range
+     */
+    public ShardsEstimator(double samplingRate, int maxSampledKeys) {
+        if ((samplingRate <= 0) || (samplingRate > 1) || (maxSampledKeys <= 0)) {
+            throw new IllegalArgumentException("Sampling rate should be in (0, 1], number of keys should be positive");
+        }
+        this.threshold = Math.max(1, (int) (samplingRate * MODULUS));
+        this.maxSampledKeys = maxSampledKeys;
+        this.accessTimes = new long[2 * maxSampledKeys + 1];
+    }
+
+    @Override
+    public void onAccess(K key, Access access) {
+        if ((key == null) || (access == Access.CACHE)) {
+            return;
+        }
+        getCount.increment();
+        int hash = hash(key);
+        if (hash >= threshold) {
+            return;
+        }
+
+        lock.lock();
+        try {
+            // threshold could be lowered while waiting for the lock
+            if (hash < threshold) {
+                sample(key, hash);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @GuardedBy("lock")
+    private void sample(K key, int hash) {
+        sampledCount++;
+        double weight = MODULUS / (double) threshold;
+        totalWeight += weight;
+        Sample<K> sample = samples.get(key);
+        if (sample == null) {
+            sample = new Sample<>(key, hash, nextId++);
+            samples.put(key, sample);
+            byHash.add(sample);
+            if (samples.size() > maxSampledKeys) {
+                dropHighestHashes();
+            }
+        } else {
+            long newer = samples.size() - prefixSum(sample.time);
+            distanceWeights[LatencyHistogram.bucketOf((long) (newer * weight))] += weight;
+            add(sample.time, -1);
+            sample.time = 0;
+        }
+
+        // the key could be dropped itself if it has the highest hash
+        if (samples.get(key) == sample) {
+            if (clock + 1 >= accessTimes.length) {
+                renumberTimes();
+            }
+            sample.time = ++clock;
+            add(sample.time, 1);
+        }
+    }
+
+    /**
+     * Drops keys with the highest hash and lowers threshold, so they are not sampled any more
+     */
+    @GuardedBy("lock")
+    private void dropHighestHashes() {
+        int highest = byHash.last().hash;
+        while (!byHash.isEmpty() && (byHash.last().hash == highest)) {
+            Sample<K> dropped = byHash.pollLast();
+            samples.remove(dropped.key);
+            if (dropped.time > 0) {
+                add(dropped.time, -1);
+            }
+        }
+        threshold = highest;
+    }
+
+    /**
+     * Gives kept samples times from 1 in the same order, so the tree does not grow
+     */
+    @GuardedBy("lock")
+    private void renumberTimes() {
+        Sample<?>[] ordered = samples.values().stream()
+                .filter(s -> s.time > 0)
+                .sorted(Comparator.comparingInt(s -> s.time))
+                .toArray(Sample[]::new);
+        accessTimes = new long[accessTimes.length];
+        clock = 0;
+        for (Sample<?> sample : ordered) {
+            sample.time = ++clock;
+            add(sample.time, 1);
+        }
+    }
+
+    @GuardedBy("lock")
+    private void add(int time, int delta) {
+        for (int i = time; i < accessTimes.length; i += i & -i) {
+            accessTimes[i] += delta;
+        }
+    }
+
+    @GuardedBy("lock")
+    private long prefixSum(int time) {
+        long sum = 0;
+        for (int i = time; i > 0; i -= i & -i) {
+            sum += accessTimes[i];
+        }
+        return sum;
+    }
+
+    /**
+     * @param cacheSize number of entries, should be positive
+     * @return estimated part of gets which are hits in LRU cache of this size, 0 if nothing sampled
+     * @throws IllegalArgumentException if size is not positive
+     */
+    public double hitRatio(int cacheSize) {
+        if (cacheSize <= 0) {
+            throw new IllegalArgumentException("Cache size should be positive");
+        }
+
+        lock.lock();
+        try {
+            long gets = getCount.sum();
+            if ((sampledCount == 0) || (gets == 0)) {
+                return 0;
+            }
+            // difference of estimated and real number of gets is added to the smallest distance
+            double hits = gets - totalWeight;
+            for (int bucket = 0; bucket < distanceWeights.length; bucket++) {
+                if (LatencyHistogram.highestValueOf(bucket) >= cacheSize) {
+                    break;
+                }
+                hits += distanceWeights[bucket];
+            }
+            return Math.min(1, Math.max(0, hits / gets));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return estimated part of gets which are misses in LRU cache of this size
+     * @throws IllegalArgumentException if size is not positive
+     */
+    public double missRatio(int cacheSize) {
+        return 1 - hitRatio(cacheSize);
+    }
+
+    /**
+     * @param currentSize size of the cache, usually {@code sizeMax()} of the level
+     * @return estimated hit ratios of sizes 0.25, 0.5, 1, 2 and 4 times of the current size, by sizes
+     * @throws IllegalArgumentException if size is not positive
+     */
+    public SortedMap<Integer, Double> hitRatios(int currentSize) {
+        if (currentSize <= 0) {
+            throw new IllegalArgumentException("Cache size should be positive");
+        }
+        SortedMap<Integer, Double> ratios = new TreeMap<>();
+        for (double scale : SCALES) {
+            int size = (int) Math.max(1, Math.min(Integer.MAX_VALUE, Math.round(currentSize * scale)));
+            ratios.put(size, hitRatio(size));
+        }
+        return ratios;
+    }
+
+    /**
+     * @return current part of sampled keys
+     */
+    public double samplingRate() {
+        return threshold / (double) MODULUS;
+    }
+
+    /**
+     * @return number of sampled gets
+     */
+    public long sampledCount() {
+        lock.lock();
+        try {
+            return sampledCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Mixes hash of the key, so keys with close hash codes are sampled evenly
+     */
+    private static int hash(Object key) {
+        long h = key.hashCode() * 0x9E3779B97F4A7C15L;
+        h ^= (h >>> 32);
+        h *= 0xBF58476D1CE4E5B9L;
+        h ^= (h >>> 29);
+        return (int) (h & (MODULUS - 1));
+    }
+
+    private static final class Sample<K> {
+
+        private final K key;
+
+        private final int hash;
+
+        private final long id;
+
+        /**
+         * Time of the last access, 0 before the first one
+         */
+        private int time;
+
+        private Sample(K key, int hash, long id) {
+            this.key = key;
+            this.hash = hash;
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.lxgolovin.cache.stats;
+
+/**
+ * Estimates heap memory retained by an object, used by
+ * {@link com.lxgolovin.cache.CacheLevel#footprint(SizeEstimator, SizeEstimator, int)}.
+ * Ready estimators are in {@link SizeEstimators}
+ *
+ * @param <T> type of estimated objects
+ */
+@FunctionalInterface
+public interface SizeEstimator<T> {
+
+    /**
+     * @param object not null
+     * @return bytes of heap retained by the object, including its header and padding
+     */
+    long sizeOf(T object);
+}
@@ -0,0 +1,117 @@
+package com.lxgolovin.cache.stats;
+
+import com.lxgolovin.cache.serializer.Serializer;
+
+/**
+ * Sizes of objects and structures for 64-bit JVM with compressed references, which is
+ * the default for heaps below 32 GB: object header is {@value #OBJECT_HEADER} bytes, array header is
+ * {@value #ARRAY_HEADER} bytes, reference is {@value #REFERENCE} bytes, objects are aligned to
+ * {@value #ALIGNMENT} bytes. Strings are assumed compact (Java 9+), one byte per Latin-1 char
+ *
+ * @see SizeEstimator
+ */
+public final class SizeEstimators {
+
+    public static final int OBJECT_HEADER = 12;
+
+    public static final int ARRAY_HEADER = 16;
+
+    public static final int REFERENCE = 4;
+
+    public static final int ALIGNMENT = 8;
+
+    /**
+     * Entry of {@code HashMap} or {@code ConcurrentHashMap}: node with hash, key, value and next
+     * references (32 bytes) and its average part of the table, which is from 1.33 to 2.67
+     * references per entry with load factor 0.75
+     */
+    public static final long HASH_ENTRY = align(OBJECT_HEADER + 4 + 3 * REFERENCE) + 2 * REFERENCE;
+
+    public static final SizeEstimator<Integer> INTEGER = value -> align(OBJECT_HEADER + 4);
+
+    public static final SizeEstimator<Long> LONG = value -> align(OBJECT_HEADER + 8);
+
+    /**
+     * String object with hash and coder fields and its byte array
+     */
+    public static final SizeEstimator<String> STRING = value ->
+            align(OBJECT_HEADER + REFERENCE + 4 + 1 + 1) + byteArray(isLatin1(value) ? value.length() : 2L * value.length());
+
+    public static final SizeEstimator<byte[]> BYTE_ARRAY = value -> byteArray(value.length);
+
+    /**
+     * Uses size of known types: strings, arrays of bytes, boxed numbers, other objects are counted
+     * as objects with one field
+     */
+    public static final SizeEstimator<Object> DEFAULT = SizeEstimators::defaultSizeOf;
+
+    private SizeEstimators() {
+    }
+
+    /**
+     * @param bytes size of object without padding
+     * @return size rounded up to {@link #ALIGNMENT}
+     */
+    public static long align(long bytes) {
+        return (bytes + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    /**
+     * @param length number of bytes in the array
+     * @return size of the array with header and padding
+     */
+    public static long byteArray(long length) {
+        return align(ARRAY_HEADER + length);
+    }
+
+    /**
+     * @param bytes size of every object
+     * @return estimator with the same size for any object
+     * @throws IllegalArgumentException if size is negative
+     */
+    public static <T> SizeEstimator<T> fixed(long bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("Size should not be negative");
+        }
+        return value -> bytes;
+    }
+
+    /**
+     * Estimates objects by size of their serialized form kept in a byte array. It suits
+     * objects like strings and arrays, objects with many references are bigger on heap
+     * @param serializer cannot be null
+     * @return estimator by {@link Serializer#sizeOf(Object)}
+     * @throws IllegalArgumentException if serializer is null
+     */
+    public static <T> SizeEstimator<T> serialized(Serializer<T> serializer) {
+        if (serializer == null) {
+            throw new IllegalArgumentException("Serializer should not be null");
+        }
+        return value -> byteArray(serializer.sizeOf(value));
+    }
+
+    private static long defaultSizeOf(Object value) {
+        if (value instanceof String) {
+            return STRING.sizeOf((String) value);
+        }
+        if (value instanceof byte[]) {
+            return BYTE_ARRAY.sizeOf((byte[]) value);
+        }
+        if ((value instanceof Long) || (value instanceof Double)) {
+            return LONG.sizeOf(0L);
+        }
+        if (value instanceof Number) {
+            return INTEGER.sizeOf(0);
+        }
+        return align(OBJECT_HEADER + REFERENCE);
+    }
+
+    private static boolean isLatin1(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,103 @@
+package com.lxgolovin.cache.stats;
+
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Latencies of the last period of time. The period is split into slots, each slot is
+ * a {@link LatencyHistogram}. Value is recorded into slot of current time, slot of the same
+ * place in the ring is reset when its time comes again. Snapshot merges slots of the window,
+ * so it covers from {@code slots - 1} to {@code slots} durations of slot.
+ * Memory is fixed: {@code slots + 1} histograms
+ */
+@ThreadSafe
+public final class SlidingWindowHistogram {
+
+    private final LatencyHistogram[] histograms;
+
+    /**
+     * Index of time interval each slot keeps now
+     */
+    private final AtomicLongArray intervals;
+
+    private final int slots;
+
+    private final long slotNanos;
+
+    private final LongSupplier ticker;
+
+    /**
+     * @param slots number of slots in window, should be positive
+     * @param slotDuration duration of one slot, should be positive
+     * @param unit of duration, cannot be null
+     * @throws IllegalArgumentException if any parameter is wrong
+     */
+    public SlidingWindowHistogram(int slots, long slotDuration, TimeUnit unit) {
+        this(slots, (unit == null) ? 0 : unit.toNanos(slotDuration), System::nanoTime);
+    }
+
+    SlidingWindowHistogram(int slots, long slotNanos, LongSupplier ticker) {
+        if ((slots <= 0) || (slotNanos <= 0)) {
+            throw new IllegalArgumentException("Number and duration of slots should be positive");
+        }
+        this.slots = slots;
+        this.slotNanos = slotNanos;
+        this.ticker = ticker;
+        // one slot more, so the current one is not reset while the window is read
+        this.histograms = new LatencyHistogram[slots + 1];
+        this.intervals = new AtomicLongArray(slots + 1);
+        long interval = currentInterval();
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+            intervals.set(i, interval - Math.floorMod(interval - i, histograms.length));
+        }
+    }
+
+    /**
+     * Slot only moves forward in time, sample of interval older than the slot keeps is dropped
+     *
+     * @param nanos latency to record
+     */
+    public void record(long nanos) {
+        long interval = currentInterval();
+        int slot = (int) Math.floorMod(interval, (long) histograms.length);
+        long slotInterval = intervals.get(slot);
+        while (slotInterval < interval) {
+            if (intervals.compareAndSet(slot, slotInterval, interval)) {
+                histograms[slot].reset();
+                slotInterval = interval;
+            } else {
+                slotInterval = intervals.get(slot);
+            }
+        }
+        // thread was delayed and the slot keeps later interval already, the sample is out of window
+        if (slotInterval > interval) {
+            return;
+        }
+        histograms[slot].record(nanos);
+    }
+
+    /**
+     * @return latencies of slots in the window
+     */
+    public LatencySnapshot snapshot() {
+        long interval = currentInterval();
+        long[] counts = new long[LatencyHistogram.BUCKETS];
+        long max = 0;
+        for (int slot = 0; slot < histograms.length; slot++) {
+            long age = interval - intervals.get(slot);
+            if ((age >= 0) && (age < slots)) {
+                histograms[slot].addTo(counts);
+                max = Math.max(max, histograms[slot].max());
+            }
+        }
+        return new LatencySnapshot(counts, max);
+    }
+
+    private long currentInterval() {
+        return Math.floorDiv(ticker.getAsLong(), slotNanos);
+    }
+}
@@ -0,0 +1,180 @@
+package com.lxgolovin.cache.stats;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Accumulates statistics of a cache. Counters are {@link LongAdder}s, so threads which record
+ * at the same time do not contend on one memory cell, and recording costs about as much as
+ * a plain increment. {@link #snapshot()} sums the counters, it is slower and is not atomic:
+ * operations recorded during the snapshot could be counted partially
+ *
+ * @see CacheStats
+ */
+@ThreadSafe
+public final class StatsCounter {
+
+    private final LongAdder hitCount = new LongAdder();
+
+    private final LongAdder missCount = new LongAdder();
+
+    private final LongAdder[] evictionCounts = createAdders(EvictionCause.values().length);
+
+    private final LongAdder promotionCount = new LongAdder();
+
+    private final LongAdder demotionCount = new LongAdder();
+
+    private final LongAdder loadSuccessCount = new LongAdder();
+
+    private final LongAdder loadFailureCount = new LongAdder();
+
+    private final LongAdder totalLoadTime = new LongAdder();
+
+    /**
+     * Hits by levels. Grows when a hit in new level is recorded, array is replaced, not changed
+     */
+    @GuardedBy("this")
+    private volatile LongAdder[] levelHitCounts = new LongAdder[0];
+
+    /**
+     * Records hit of single level cache
+     */
+    public void recordHit() {
+        hitCount.increment();
+    }
+
+    /**
+     * Records hit of multilevel cache
+     *
+     * @param level index of level where the key is found, from 0
+     * @throws IllegalArgumentException if level is negative
+     */
+    public void recordHit(int level) {
+        if (level < 0) {
+            throw new IllegalArgumentException("Level should not be negative");
+        }
+        hitCount.increment();
+        levelCounter(level).increment();
+    }
+
+    public void recordMiss() {
+        missCount.increment();
+    }
+
+    /**
+     * @param cause of eviction, cannot be null
+     * @throws IllegalArgumentException if cause is null
+     */
+    public void recordEviction(EvictionCause cause) {
+        if (cause == null) {
+            throw new IllegalArgumentException("Cause should not be null");
+        }
+        evictionCounts[cause.ordinal()].increment();
+    }
+
+    public void recordPromotion() {
+        promotionCount.increment();
+    }
+
+    public void recordDemotion() {
+        demotionCount.increment();
+    }
+
+    /**
+     * @param loadTime time of the load in nanoseconds
+     */
+    public void recordLoadSuccess(long loadTime) {
+        loadSuccessCount.increment();
+        totalLoadTime.add(loadTime);
+    }
+
+    /**
+     * @param loadTime time of the load in nanoseconds
+     */
+    public void recordLoadFailure(long loadTime) {
+        loadFailureCount.increment();
+        totalLoadTime.add(loadTime);
+    }
+
+    /**
+     * Calls the loader and records its time. Null value or exception is a failure
+     *
+     * @param key to load value for
+     * @param loader to get value, cannot be null
+     * @return loaded value or null
+     * @throws IllegalArgumentException if loader is null
+     */
+    public <K, V> V load(K key, Function<? super K, ? extends V> loader) {
+        if (loader == null) {
+            throw new IllegalArgumentException("Loader should not be null");
+        }
+
+        long start = System.nanoTime();
+        V value;
+        try {
+            value = loader.apply(key);
+        } catch (RuntimeException | Error e) {
+            recordLoadFailure(System.nanoTime() - start);
+            throw e;
+        }
+        long loadTime = System.nanoTime() - start;
+        if (value == null) {
+            recordLoadFailure(loadTime);
+        } else {
+            recordLoadSuccess(loadTime);
+        }
+        return value;
+    }
+
+    /**
+     * @return current values of all counters
+     */
+    public CacheStats snapshot() {
+        return new CacheStats(
+                hitCount.sum(),
+                missCount.sum(),
+                sums(evictionCounts),
+                promotionCount.sum(),
+                demotionCount.sum(),
+                loadSuccessCount.sum(),
+                loadFailureCount.sum(),
+                totalLoadTime.sum(),
+                sums(levelHitCounts));
+    }
+
+    private LongAdder levelCounter(int level) {
+        LongAdder[] counters = levelHitCounts;
+        if (level < counters.length) {
+            return counters[level];
+        }
+
+        synchronized (this) {
+            counters = levelHitCounts;
+            if (level >= counters.length) {
+                LongAdder[] grown = Arrays.copyOf(counters, level + 1);
+                for (int i = counters.length; i < grown.length; i++) {
+                    grown[i] = new LongAdder();
+                }
+                levelHitCounts = grown;
+                counters = grown;
+            }
+            return counters[level];
+        }
+    }
+
+    private static LongAdder[] createAdders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    private static long[] sums(LongAdder[] adders) {
+        return Arrays.stream(adders).mapToLong(LongAdder::sum).toArray();
+    }
+}
@@ -0,0 +1,623 @@
+package com.lxgolovin.cache.storage;
+
+import com.lxgolovin.cache.core.CacheException;
+import com.lxgolovin.cache.serializer.Serializer;
+import net.jcip.annotations.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Implementation of {@link Storage} to keep data in files with non-blocking I/O.
+ * Each entry is kept in separate file as key followed by value, like in {@link FileSystemStorage},
+ * but files are read and written by {@link AsynchronousFileChannel}. Methods {@link #getAsync(Object)},
+ * {@link #putAsync(Object, Object)} and {@link #removeAsync(Object)} return at once, so one thread
+ * can keep many reads and writes in flight, and the drive gets enough queue depth.
+ * Writes and removes with the same key are done in order of calls. Reads with the key wait only
+ * for earlier writes, a read in flight is shared by later reads until the next write. Operations
+ * with different keys are done in parallel. Blocking methods of {@link Storage} wait for the operation to complete
+ *
+ * @see Storage
+ * @see FileSystemStorage
+ */
+@ThreadSafe
+public class AsyncFileSystemStorage<K, V> implements Storage<K, V>, Closeable {
+
+    /**
+     * If the directory is created temporary this prefix is used
+     */
+    private static final String TEMP_DIR_PREFIX = "asyncFsStorage";
+
+    /**
+     * Only files with this suffix are read as entries
+     */
+    private static final String ENTRY_SUFFIX = ".entry";
+
+    /**
+     * Files of entries by keys. Entry is added when its file is written
+     */
+    private final ConcurrentMap<K, Path> indexMap = new ConcurrentHashMap<>();
+
+    private static final CompletableFuture<?> DONE = CompletableFuture.completedFuture(null);
+
+    /**
+     * Pending operations for each key, removed when all of them complete
+     */
+    private final ConcurrentMap<K, KeyOperations<V>> pendingOperations = new ConcurrentHashMap<>();
+
+    private final Path directory;
+
+    private final Serializer<K> keySerializer;
+
+    private final Serializer<V> valueSerializer;
+
+    private final Logger logger = LoggerFactory.getLogger(AsyncFileSystemStorage.class);
+
+    /**
+     * Creates storage and reads all entries from the directory
+     *
+     * @param path directory to keep files. If null, temporary directory is created
+     * @param keySerializer to write keys, cannot be null
+     * @param valueSerializer to write values, cannot be null
+     * @throws IllegalArgumentException if any serializer is null
+     * @throws CacheException if directory cannot be created or read
+     */
+    public AsyncFileSystemStorage(Path path, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        if ((keySerializer == null) || (valueSerializer == null)) {
+            throw new IllegalArgumentException("Serializers should not be null");
+        }
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.directory = createDirectory(path);
+        loadIndex();
+    }
+
+    /**
+     * @param key cannot be null
+     * @return future with value, completed exceptionally with {@link CacheException} on I/O error
+     * @throws IllegalArgumentException if key is null
+     */
+    public CompletableFuture<Optional<V>> getAsync(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key should not be null");
+        }
+        return submitRead(key);
+    }
+
+    /**
+     * @param key   cannot be null
+     * @param value cannot be null
+     * @return future with old value, completed exceptionally with {@link CacheException} on I/O error
+     * @throws IllegalArgumentException if any key or value is null
+     */
+    public CompletableFuture<Optional<V>> putAsync(K key, V value) {
+        if ((key == null) || (value == null)) {
+            throw new IllegalArgumentException("Key and value should not be null");
+        }
+
+        return submit(key, k -> {
+            Path path = indexMap.get(k);
+            return readValue(path).thenCompose(oldValue -> {
+                // element need to be updated
+                if (oldValue.isPresent() && oldValue.get().equals(value)) {
+                    return CompletableFuture.completedFuture(oldValue);
+                }
+                return writeEntry(k, value, path).thenApply(ignored -> oldValue);
+            });
+        });
+    }
+
+    /**
+     * @param key cannot be null
+     * @return future with removed value, completed exceptionally with {@link CacheException} on I/O error
+     * @throws IllegalArgumentException if key is null
+     */
+    public CompletableFuture<Optional<V>> removeAsync(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Input key should not be null");
+        }
+
+        return submit(key, k -> {
+            Path path = indexMap.get(k);
+            return readValue(path).thenApply(removedValue -> {
+                if (path != null) {
+                    indexMap.remove(k, path);
+                    deleteFile(path);
+                }
+                return removedValue;
+            });
+        });
+    }
+
+    /**
+     * @param key   cannot be null
+     * @param value cannot be null
+     * @throws IllegalArgumentException if any key or value is null
+     */
+    public Optional<V> put(K key, V value) {
+        return join(putAsync(key, value));
+    }
+
+    /**
+     * @param key cannot be null
+     * @throws IllegalArgumentException if key is null
+     */
+    public Optional<V> get(K key) {
+        return join(getAsync(key));
+    }
+
+    /**
+     * @param key cannot be null
+     * @throws IllegalArgumentException if key is null
+     */
+    public Optional<V> remove(K key) {
+        return join(removeAsync(key));
+    }
+
+    /**
+     * Compares bytes of the file with the serialized entry, so the old value is not deserialized
+     *
+     * @param key   cannot be null
+     * @param value cannot be null
+     * @throws IllegalArgumentException if any key or value is null
+     */
+    public boolean putIfChanged(K key, V value) {
+        byte[] entry = serialize(key, value);
+        return join(submit(key, k -> {
+            Path path = indexMap.get(k);
+            return readBytes(path).thenCompose(oldEntry -> {
+                if (oldEntry.isPresent() && oldEntry.get().equals(ByteBuffer.wrap(entry))) {
+                    return CompletableFuture.completedFuture(false);
+                }
+                return writeEntry(k, entry, path).thenApply(ignored -> true);
+            });
+        }));
+    }
+
+    /**
+     * Writes the file without reading the old one
+     *
+     * @param key   cannot be null
+     * @param value cannot be null
+     * @throws IllegalArgumentException if any key or value is null
+     */
+    public void putSilently(K key, V value) {
+        byte[] entry = serialize(key, value);
+        join(submit(key, k -> writeEntry(k, entry, indexMap.get(k))));
+    }
+
+    /**
+     * Deletes the file without reading it
+     *
+     * @param key cannot be null
+     * @throws IllegalArgumentException if key is null
+     */
+    public boolean removeSilently(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Input key should not be null");
+        }
+
+        return join(submit(key, k -> {
+            Path path = indexMap.get(k);
+            if (path != null) {
+                indexMap.remove(k, path);
+                deleteFile(path);
+            }
+            return CompletableFuture.completedFuture(path != null);
+        }));
+    }
+
+    /**
+     * Waits for pending operations and reads all files in parallel
+     */
+    public Map<K, V> getAll() {
+        awaitPending();
+
+        List<CompletableFuture<Optional<Map.Entry<K, V>>>> reads = indexMap.values().stream()
+                .map(this::readEntry)
+                .collect(Collectors.toList());
+        join(CompletableFuture.allOf(reads.toArray(new CompletableFuture<?>[0])));
+
+        Map<K, V> loadedMap = new HashMap<>();
+        reads.forEach(read -> read.join().ifPresent(e -> loadedMap.put(e.getKey(), e.getValue())));
+        return loadedMap;
+    }
+
+    /**
+     * Reads files one by one while the stream is consumed, entries removed meanwhile are skipped
+     */
+    public Stream<Map.Entry<K, V>> entries() {
+        return keys()
+                .map(key -> get(key).map(value -> (Map.Entry<K, V>) new AbstractMap.SimpleImmutableEntry<>(key, value)))
+                .filter(Optional::isPresent)
+                .map(Optional::get);
+    }
+
+    /**
+     * Keys of entries with completed writes, taken from the index without reading files
+     */
+    public Stream<K> keys() {
+        return new ArrayList<>(indexMap.keySet()).stream();
+    }
+
+    /**
+     * Shows entries with completed writes
+     */
+    public boolean containsKey(K key) {
+        return ((key != null) && indexMap.containsKey(key));
+    }
+
+    /**
+     * Waits for pending operations and deletes all files
+     */
+    public void clear() {
+        awaitPending();
+        indexMap.forEach((key, path) -> {
+            indexMap.remove(key, path);
+            deleteFile(path);
+        });
+    }
+
+    /**
+     * Counts entries with completed writes
+     */
+    public int size() {
+        return indexMap.size();
+    }
+
+    public boolean isEmpty() {
+        return indexMap.isEmpty();
+    }
+
+    /**
+     * Waits for all pending operations
+     */
+    @Override
+    public void close() {
+        awaitPending();
+    }
+
+    Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Starts write or remove after previous operations with the same key complete.
+     * Operation is started after the pending operations are updated, so no I/O is done inside
+     * {@link ConcurrentMap#compute}
+     *
+     * @param key of the operation
+     * @param operation to start
+     * @return future completed with the operation
+     */
+    private <R> CompletableFuture<R> submit(K key, Function<K, CompletableFuture<R>> operation) {
+        CompletableFuture<R> result = new CompletableFuture<>();
+        AtomicReference<CompletableFuture<?>> start = new AtomicReference<>(DONE);
+        KeyOperations<V> operations = pendingOperations.compute(key, (k, previous) -> {
+            if (previous != null) {
+                start.set(previous.all());
+            }
+            return new KeyOperations<>(result, DONE, null);
+        });
+        start(key, start.get(), operation, result);
+        operations.all().whenComplete((r, e) -> pendingOperations.remove(key, operations));
+        return result;
+    }
+
+    /**
+     * Starts read after previous write with the same key completes. Read in flight is shared
+     *
+     * @param key of the operation
+     * @return future completed with the value
+     */
+    private CompletableFuture<Optional<V>> submitRead(K key) {
+        CompletableFuture<Optional<V>> result = new CompletableFuture<>();
+        AtomicReference<CompletableFuture<?>> start = new AtomicReference<>();
+        KeyOperations<V> operations = pendingOperations.compute(key, (k, previous) -> {
+            if (previous == null) {
+                start.set(DONE);
+                return new KeyOperations<>(DONE, result, result);
+            }
+            if (previous.read != null) {
+                return previous;
+            }
+            start.set(previous.write);
+            return new KeyOperations<>(previous.write, CompletableFuture.allOf(previous.reads, result), result);
+        });
+
+        if (start.get() == null) {
+            return operations.read.thenApply(Function.identity());
+        }
+        start(key, start.get(), k -> readValue(indexMap.get(k)), result);
+        operations.all().whenComplete((r, e) -> pendingOperations.remove(key, operations));
+        return result;
+    }
+
+    private <R> void start(K key, CompletableFuture<?> start, Function<K, CompletableFuture<R>> operation,
+                           CompletableFuture<R> result) {
+        start.handle((r, e) -> null)
+                .thenCompose(ignored -> operation.apply(key))
+                .whenComplete((r, e) -> {
+                    if (e == null) {
+                        result.complete(r);
+                    } else {
+                        result.completeExceptionally(unwrap(e));
+                    }
+                });
+    }
+
+    private void awaitPending() {
+        CompletableFuture<?>[] pending = pendingOperations.values().stream()
+                .map(KeyOperations::all)
+                .toArray(CompletableFuture<?>[]::new);
+        CompletableFuture.allOf(pending).handle((r, e) -> null).join();
+    }
+
+    private CompletableFuture<Optional<V>> readValue(Path path) {
+        return readEntry(path).thenApply(entry -> entry.map(Map.Entry::getValue));
+    }
+
+    /**
+     * @param path to the file, can be null
+     * @return future with entry from the file, empty if there is no file or it cannot be parsed
+     */
+    private CompletableFuture<Optional<Map.Entry<K, V>>> readEntry(Path path) {
+        return readBytes(path).thenApply(bytes -> bytes.flatMap(buffer -> {
+            try {
+                K key = keySerializer.read(buffer);
+                V value = valueSerializer.read(buffer);
+                return Optional.of(new AbstractMap.SimpleImmutableEntry<>(key, value));
+            } catch (BufferUnderflowException | IllegalArgumentException ex) {
+                logger.error("Cannot get data from file {} from storage: {}", path.toUri(), ex.getLocalizedMessage());
+                return Optional.empty();
+            }
+        }));
+    }
+
+    /**
+     * @param path to the file, can be null
+     * @return future with bytes of the file, empty if there is no file
+     */
+    private CompletableFuture<Optional<ByteBuffer>> readBytes(Path path) {
+        if (path == null) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+
+        AsynchronousFileChannel channel;
+        ByteBuffer buffer;
+        try {
+            channel = AsynchronousFileChannel.open(path, StandardOpenOption.READ);
+            buffer = ByteBuffer.allocate((int) channel.size());
+        } catch (NoSuchFileException e) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        } catch (IOException | SecurityException e) {
+            return failed("IO error. Please check your storage drive", e);
+        }
+
+        return transfer(channel, buffer, false).handle((ignored, e) -> {
+            closeChannel(channel);
+            if (e != null) {
+                throw new CacheException("IO error. Please check your storage drive", unwrap(e));
+            }
+
+            buffer.flip();
+            return Optional.of(buffer);
+        });
+    }
+
+    /**
+     * Writes mapping key-value to file and adds it to index when written
+     *
+     * @param path of existing file for the key, null to create new file
+     */
+    private CompletableFuture<Void> writeEntry(K key, V value, Path path) {
+        byte[] entry;
+        try {
+            entry = serialize(key, value);
+        } catch (IllegalArgumentException e) {
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+        return writeEntry(key, entry, path);
+    }
+
+    /**
+     * Writes serialized entry to file and adds it to index when written
+     *
+     * @param path of existing file for the key, null to create new file
+     */
+    private CompletableFuture<Void> writeEntry(K key, byte[] entry, Path path) {
+        AsynchronousFileChannel channel;
+        ByteBuffer buffer = ByteBuffer.wrap(entry);
+        Path filePath;
+        try {
+            filePath = (path == null) ? Files.createTempFile(directory, null, ENTRY_SUFFIX) : path;
+            channel = AsynchronousFileChannel.open(filePath, StandardOpenOption.WRITE,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException | SecurityException e) {
+            return failed("Unable to put data into storage", e);
+        }
+
+        return transfer(channel, buffer, true).handle((ignored, e) -> {
+            closeChannel(channel);
+            if (e != null) {
+                throw new CacheException("Unable to put data into storage", unwrap(e));
+            }
+            indexMap.put(key, filePath);
+            return null;
+        });
+    }
+
+    /**
+     * @return key followed by value, the format of entry files
+     * @throws IllegalArgumentException if any key or value is null or cannot be serialized
+     */
+    private byte[] serialize(K key, V value) {
+        if ((key == null) || (value == null)) {
+            throw new IllegalArgumentException("Key and value should not be null");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(keySerializer.sizeOf(key) + valueSerializer.sizeOf(value));
+        keySerializer.write(key, buffer);
+        valueSerializer.write(value, buffer);
+        return buffer.array();
+    }
+
+    /**
+     * Reads or writes the whole buffer from the beginning of the file
+     */
+    private static CompletableFuture<Void> transfer(AsynchronousFileChannel channel, ByteBuffer buffer, boolean write) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        CompletionHandler<Integer, Long> handler = new CompletionHandler<Integer, Long>() {
+            @Override
+            public void completed(Integer transferred, Long position) {
+                if ((transferred < 0) || !buffer.hasRemaining()) {
+                    future.complete(null);
+                    return;
+                }
+                long next = position + transferred;
+                if (write) {
+                    channel.write(buffer, next, next, this);
+                } else {
+                    channel.read(buffer, next, next, this);
+                }
+            }
+
+            @Override
+            public void failed(Throwable e, Long position) {
+                future.completeExceptionally(e);
+            }
+        };
+        handler.completed(0, 0L);
+        return future;
+    }
+
+    private void closeChannel(AsynchronousFileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.warn("Cannot close file channel: {}", e.getLocalizedMessage());
+        }
+    }
+
+    private void deleteFile(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warn("File {} not deleted", path.toUri());
+        }
+    }
+
+    private void loadIndex() {
+        List<CompletableFuture<Optional<Map.Entry<K, V>>>> reads = new ArrayList<>();
+        List<Path> paths = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(p -> p.getFileName().toString().endsWith(ENTRY_SUFFIX))
+                    .filter(Files::isRegularFile)
+                    .forEach(p -> {
+                        paths.add(p);
+                        reads.add(readEntry(p));
+                    });
+        } catch (IOException | SecurityException e) {
+            throw new CacheException("Contact admin. Cannot read directory " + directory, e);
+        }
+
+        for (int i = 0; i < reads.size(); i++) {
+            Path path = paths.get(i);
+            join(reads.get(i)).ifPresent(entry -> indexMap.put(entry.getKey(), path));
+        }
+    }
+
+    private static Path createDirectory(Path path) {
+        try {
+            if (path == null) {
+                Path tempDirectory = Files.createTempDirectory(TEMP_DIR_PREFIX);
+                tempDirectory.toFile().deleteOnExit();
+                return tempDirectory;
+            }
+            return Files.createDirectories(path);
+        } catch (IOException | SecurityException e) {
+            throw new CacheException("Cannot create directory " + path, e);
+        }
+    }
+
+    private static <R> CompletableFuture<R> failed(String message, Exception e) {
+        CompletableFuture<R> future = new CompletableFuture<>();
+        future.completeExceptionally(new CacheException(message, e));
+        return future;
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return ((e instanceof CompletionException) && (e.getCause() != null)) ? e.getCause() : e;
+    }
+
+    /**
+     * Waits for the future, rethrows runtime exceptions as is and wraps others
+     */
+    private static <R> R join(CompletableFuture<R> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = unwrap(e);
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new CacheException("Storage operation failed", cause);
+        }
+    }
+
+    /**
+     * Operations with one key. New state replaces the old one, so it is never changed
+     */
+    private static final class KeyOperations<V> {
+
+        /**
+         * Last write or remove
+         */
+        private final CompletableFuture<?> write;
+
+        /**
+         * Reads started after the last write
+         */
+        private final CompletableFuture<?> reads;
+
+        /**
+         * Read shared by later reads, null after write
+         */
+        private final CompletableFuture<Optional<V>> read;
+
+        private KeyOperations(CompletableFuture<?> write, CompletableFuture<?> reads, CompletableFuture<Optional<V>> read) {
+            this.write = write;
+            this.reads = reads;
+            this.read = read;
+        }
+
+        private CompletableFuture<?> all() {
+            return CompletableFuture.allOf(write, reads);
+        }
+    }
+}
@@ -0,0 +1,687 @@
+package com.lxgolovin.cache.storage;
+
+import com.lxgolovin.cache.core.CacheException;
+import com.lxgolovin.cache.core.Crc32c;
+import com.lxgolovin.cache.serializer.Serializer;
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Implementation of {@link Storage} for large binary values, like rendered media.
+ * Each value is kept in its own directory as chunk files of fixed size and a manifest with the key,
+ * the length and CRC-32C of every chunk. Values are written by {@link #putFromStream(Object, InputStream)}
+ * and read by {@link #openValueStream(Object)} one buffer at a time, so a value is never
+ * materialized on heap. {@link #transferTo(Object, WritableByteChannel)} sends chunks with
+ * {@link FileChannel#transferTo(long, long, WritableByteChannel)}, so the kernel copies data
+ * to a socket without passing it through Java at all.
+ * <p>
+ * Manifest is written after all chunks and renamed into place, so a value becomes visible only
+ * when it is complete. Chunks and manifest are forced to the drive before the rename and the directory
+ * after it, so a crash never leaves manifest of lost chunks. Directories without manifest are left by crashes and deleted on start.
+ * New value of a key is written into new directory, old directory is deleted when index points
+ * to the new one. Streams opened before keep reading the old chunks. Every manifest has a write sequence,
+ * so if a crash leaves two directories of one key, the later value is kept on start.
+ * Methods of {@link Storage} are kept for small values, they read and write whole arrays
+ *
+ * @see Storage
+ * @see FileSystemStorage
+ */
+@ThreadSafe
+public class ChunkedFileStorage<K> implements Storage<K, byte[]> {
+
+    /**
+     * Default size of chunk files, 4 MiB
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 4 << 20;
+
+    /**
+     * If the directory is created temporary this prefix is used
+     */
+    private static final String TEMP_DIR_PREFIX = "chunkedStorage";
+
+    private static final String MANIFEST_FILE = "manifest";
+
+    private static final String WRITING_SUFFIX = ".tmp";
+
+    private static final String CHUNK_FILE_FORMAT = "chunk-%08d";
+
+    /**
+     * "CHK2" in ASCII, starts every manifest
+     */
+    private static final int MANIFEST_MAGIC = 0x43484B32;
+
+    /**
+     * Size of buffer to copy streams
+     */
+    private static final int COPY_BUFFER_SIZE = 64 << 10;
+
+    /**
+     * Largest array most of JVMs can allocate
+     */
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    /**
+     * Manifests of values by keys. Changed only under write lock
+     */
+    private final ConcurrentMap<K, Manifest<K>> indexMap = new ConcurrentHashMap<>();
+
+    /**
+     * Readers open chunk files under read lock, writers replace and delete directories under write lock.
+     * Chunks are written without the lock
+     */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Last write sequence. Continues from the highest sequence found on start
+     */
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final Path directory;
+
+    private final Serializer<K> keySerializer;
+
+    private final int chunkSize;
+
+    private final Logger logger = LoggerFactory.getLogger(ChunkedFileStorage.class);
+
+    public ChunkedFileStorage(Path path, Serializer<K> keySerializer) {
+        this(path, keySerializer, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Creates storage and reads manifests of all values in the directory
+     *
+     * @param path directory to keep files. If null, temporary directory is created
+     * @param keySerializer to write keys, cannot be null
+     * @param chunkSize maximum size of one chunk file in bytes, should be positive
+     * @throws IllegalArgumentException if serializer is null or chunk size is not positive
+     * @throws CacheException if directory cannot be created or read
+     */
+    public ChunkedFileStorage(Path path, Serializer<K> keySerializer, int chunkSize) {
+        if (keySerializer == null) {
+            throw new IllegalArgumentException("Serializer should not be null");
+        }
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size should be positive");
+        }
+        this.keySerializer = keySerializer;
+        this.chunkSize = chunkSize;
+        this.directory = createDirectory(path);
+        loadIndex();
+    }
+
+    /**
+     * Writes value from the stream in chunks. The stream is read to its end, but not closed
+     *
+     * @param key cannot be null
+     * @param input stream with value, cannot be null
+     * @return number of bytes written
+     * @throws IllegalArgumentException if any key or input is null
+     * @throws CacheException if stream cannot be read or files cannot be written
+     */
+    public long putFromStream(K key, InputStream input) {
+        if ((key == null) || (input == null)) {
+            throw new IllegalArgumentException("Key and input stream should not be null");
+        }
+
+        Manifest<K> manifest = writeValue(key, input);
+        lock.writeLock().lock();
+        try {
+            index(manifest);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return manifest.length;
+    }
+
+    /**
+     * Opens stream to read the value. Stream checks CRC-32C of every chunk when it is read to the end
+     * and throws {@link IOException} if it does not match. All chunk files are opened at once,
+     * so the stream reads the value even if the key is changed or removed later. Stream should be closed
+     *
+     * @param key cannot be null
+     * @return stream of the value if key is present
+     * @throws IllegalArgumentException if key is null
+     * @throws CacheException if files cannot be opened
+     */
+    public Optional<InputStream> openValueStream(K key) {
+        return openChunks(key).map(ChunkInputStream::new);
+    }
+
+    /**
+     * Sends value to the channel with zero-copy {@link FileChannel#transferTo(long, long, WritableByteChannel)}.
+     * Checksums are not checked, data is not read by Java
+     *
+     * @param key cannot be null
+     * @param target channel to write into, like socket channel. Cannot be null
+     * @return true if key is present and the value is sent
+     * @throws IllegalArgumentException if any key or target is null
+     * @throws CacheException if files cannot be read or target cannot be written
+     */
+    public boolean transferTo(K key, WritableByteChannel target) {
+        if (target == null) {
+            throw new IllegalArgumentException("Target channel should not be null");
+        }
+
+        Optional<OpenChunks> chunks = openChunks(key);
+        if (!chunks.isPresent()) {
+            return false;
+        }
+        try (OpenChunks open = chunks.get()) {
+            for (FileChannel channel : open.channels) {
+                long position = 0;
+                long size = channel.size();
+                while (position < size) {
+                    position += channel.transferTo(position, size - position, target);
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            throw new CacheException("Cannot transfer value of key " + key, e);
+        }
+    }
+
+    /**
+     * @param key cannot be null
+     * @return length of the value in bytes if key is present
+     * @throws IllegalArgumentException if key is null
+     */
+    public Optional<Long> length(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key should not be null");
+        }
+        return Optional.ofNullable(indexMap.get(key)).map(manifest -> manifest.length);
+    }
+
+    /**
+     * @param key cannot be null
+     * @param value cannot be null
+     * @return old value, read fully into heap
+     * @throws IllegalArgumentException if any key or value is null
+     */
+    @Override
+    public Optional<byte[]> put(K key, byte[] value) {
+        if ((key == null) || (value == null)) {
+            throw new IllegalArgumentException("Key and value should not be null");
+        }
+        Optional<byte[]> oldValue = get(key);
+        putFromStream(key, new ByteArrayInputStream(value));
+        return oldValue;
+    }
+
+    @Override
+    public void putSilently(K key, byte[] value) {
+        if ((key == null) || (value == null)) {
+            throw new IllegalArgumentException("Key and value should not be null");
+        }
+        putFromStream(key, new ByteArrayInputStream(value));
+    }
+
+    /**
+     * Reads whole value into array, so it should be used for small values only
+     *
+     * @throws CacheException if value does not fit into array or chunk is corrupted
+     */
+    @Override
+    public Optional<byte[]> get(K key) {
+        Optional<OpenChunks> chunks = openChunks(key);
+        if (!chunks.isPresent()) {
+            return Optional.empty();
+        }
+
+        try (InputStream input = new ChunkInputStream(chunks.get())) {
+            long length = chunks.get().manifest.length;
+            if (length > MAX_ARRAY_SIZE) {
+                throw new CacheException("Value of key " + key + " is too large for array, use openValueStream");
+            }
+            ByteArrayOutputStream output = new ByteArrayOutputStream((int) length);
+            copy(input, output);
+            return Optional.of(output.toByteArray());
+        } catch (IOException e) {
+            throw new CacheException("Cannot read value of key " + key, e);
+        }
+    }
+
+    /**
+     * @param key cannot be null
+     * @throws IllegalArgumentException if key is null
+     */
+    @Override
+    public Optional<byte[]> remove(K key) {
+        Optional<byte[]> value = get(key);
+        removeSilently(key);
+        return value;
+    }
+
+    @Override
+    public boolean removeSilently(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Input key should not be null");
+        }
+
+        lock.writeLock().lock();
+        try {
+            Manifest<K> removed = indexMap.remove(key);
+            if (removed != null) {
+                deleteDirectory(removed.directory);
+            }
+            return removed != null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Map<K, byte[]> getAll() {
+        Map<K, byte[]> map = new HashMap<>();
+        indexMap.keySet().forEach(key -> get(key).ifPresent(value -> map.put(key, value)));
+        return map;
+    }
+
+    /**
+     * Reads values while the stream is consumed
+     */
+    @Override
+    public Stream<Map.Entry<K, byte[]>> entries() {
+        return keys().map(key -> get(key).map(value -> (Map.Entry<K, byte[]>) new AbstractMap.SimpleImmutableEntry<>(key, value)))
+                .filter(Optional::isPresent)
+                .map(Optional::get);
+    }
+
+    @Override
+    public Stream<K> keys() {
+        return new ArrayList<>(indexMap.keySet()).stream();
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key should not be null");
+        }
+        return indexMap.containsKey(key);
+    }
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            indexMap.values().forEach(manifest -> deleteDirectory(manifest.directory));
+            indexMap.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        return indexMap.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return indexMap.isEmpty();
+    }
+
+    /**
+     * Opens all chunk files of the key under read lock
+     */
+    private Optional<OpenChunks> openChunks(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key should not be null");
+        }
+
+        lock.readLock().lock();
+        try {
+            Manifest<K> manifest = indexMap.get(key);
+            if (manifest == null) {
+                return Optional.empty();
+            }
+
+            List<FileChannel> channels = new ArrayList<>(manifest.checksums.length);
+            try {
+                for (int i = 0; i < manifest.checksums.length; i++) {
+                    channels.add(FileChannel.open(chunkFile(manifest.directory, i), StandardOpenOption.READ));
+                }
+            } catch (IOException e) {
+                new OpenChunks(manifest, channels).close();
+                throw new CacheException("Cannot open chunks of key " + key, e);
+            }
+            return Optional.of(new OpenChunks(manifest, channels));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes chunks into new directory, then manifest
+     */
+    private Manifest<K> writeValue(K key, InputStream input) {
+        long writeSequence = sequence.incrementAndGet();
+        Path entryDirectory = directory.resolve(UUID.randomUUID().toString());
+        try {
+            Files.createDirectory(entryDirectory);
+            List<Integer> checksums = new ArrayList<>();
+            byte[] buffer = new byte[Math.min(chunkSize, COPY_BUFFER_SIZE)];
+            long length = 0;
+            boolean endOfStream = false;
+
+            while (!endOfStream) {
+                Crc32c checksum = new Crc32c();
+                int written = 0;
+                try (FileChannel channel = FileChannel.open(chunkFile(entryDirectory, checksums.size()),
+                        StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                    while (written < chunkSize) {
+                        int read = input.read(buffer, 0, Math.min(buffer.length, chunkSize - written));
+                        if (read < 0) {
+                            endOfStream = true;
+                            break;
+                        }
+                        checksum.update(buffer, 0, read);
+                        ByteBuffer data = ByteBuffer.wrap(buffer, 0, read);
+                        while (data.hasRemaining()) {
+                            channel.write(data);
+                        }
+                        written += read;
+                    }
+                    channel.force(true);
+                }
+                if ((written == 0) && !checksums.isEmpty()) {
+                    Files.delete(chunkFile(entryDirectory, checksums.size()));
+                } else {
+                    checksums.add((int) checksum.getValue());
+                    length += written;
+                }
+            }
+
+            Manifest<K> manifest = new Manifest<>(key, entryDirectory, writeSequence, length,
+                    checksums.stream().mapToInt(Integer::intValue).toArray());
+            writeManifest(manifest);
+            return manifest;
+        } catch (IOException | SecurityException e) {
+            deleteDirectory(entryDirectory);
+            throw new CacheException("Cannot write value of key " + key, e);
+        } catch (RuntimeException e) {
+            deleteDirectory(entryDirectory);
+            throw e;
+        }
+    }
+
+    /**
+     * Manifest is: magic, write sequence, length, number of chunks, checksum of each chunk, key.
+     * Checksum of manifest itself ends the file
+     */
+    private void writeManifest(Manifest<K> manifest) throws IOException {
+        int keySize = keySerializer.sizeOf(manifest.key);
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + Long.BYTES + Long.BYTES + Integer.BYTES
+                + manifest.checksums.length * Integer.BYTES + keySize + Integer.BYTES);
+        buffer.putInt(MANIFEST_MAGIC);
+        buffer.putLong(manifest.sequence);
+        buffer.putLong(manifest.length);
+        buffer.putInt(manifest.checksums.length);
+        for (int checksum : manifest.checksums) {
+            buffer.putInt(checksum);
+        }
+        keySerializer.write(manifest.key, buffer);
+        buffer.putInt(Crc32c.compute(buffer.array(), 0, buffer.position()));
+        buffer.flip();
+
+        Path temporary = manifest.directory.resolve(MANIFEST_FILE + WRITING_SUFFIX);
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, manifest.directory.resolve(MANIFEST_FILE), StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory(manifest.directory);
+        forceDirectory(directory);
+    }
+
+    /**
+     * Forces the directory, so renamed and created files are not lost
+     */
+    private void forceDirectory(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // some platforms cannot open directories, the files are forced anyway
+            logger.debug("Cannot force directory {}: {}", path.toUri(), e.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * @return manifest from the directory or empty if it is missing or corrupted
+     */
+    private Optional<Manifest<K>> readManifest(Path entryDirectory) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(entryDirectory.resolve(MANIFEST_FILE)));
+            int end = buffer.limit() - Integer.BYTES;
+            if ((end < Integer.BYTES) || (buffer.getInt(end) != Crc32c.compute(buffer.array(), 0, end))) {
+                return Optional.empty();
+            }
+            int magic = buffer.getInt();
+            if (magic != MANIFEST_MAGIC) {
+                return Optional.empty();
+            }
+            long writeSequence = buffer.getLong();
+            long length = buffer.getLong();
+            int[] checksums = new int[buffer.getInt()];
+            for (int i = 0; i < checksums.length; i++) {
+                checksums[i] = buffer.getInt();
+            }
+            K key = keySerializer.read(buffer);
+            return Optional.of(new Manifest<>(key, entryDirectory, writeSequence, length, checksums));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException e) {
+            logger.error("Cannot read manifest in {}: {}", entryDirectory.toUri(), e.getLocalizedMessage());
+            return Optional.empty();
+        } catch (IOException e) {
+            throw new CacheException("IO error. Please check your storage drive", e);
+        }
+    }
+
+    private void loadIndex() {
+        try (Stream<Path> directories = Files.list(directory)) {
+            directories.filter(Files::isDirectory).forEach(entryDirectory -> {
+                Optional<Manifest<K>> manifest = readManifest(entryDirectory);
+                if (!manifest.isPresent()) {
+                    logger.warn("Incomplete value in {} deleted", entryDirectory.toUri());
+                    deleteDirectory(entryDirectory);
+                    return;
+                }
+                sequence.accumulateAndGet(manifest.get().sequence, Math::max);
+                index(manifest.get());
+            });
+        } catch (IOException | SecurityException e) {
+            throw new CacheException("Contact admin. Cannot read directory " + directory, e);
+        }
+    }
+
+    /**
+     * Puts manifest into index unless the key has a manifest with higher sequence.
+     * Directory of the manifest that lost is deleted
+     */
+    private void index(Manifest<K> manifest) {
+        Manifest<K> previous = indexMap.get(manifest.key);
+        if ((previous != null) && (previous.sequence > manifest.sequence)) {
+            deleteDirectory(manifest.directory);
+            return;
+        }
+        indexMap.put(manifest.key, manifest);
+        if (previous != null) {
+            deleteDirectory(previous.directory);
+        }
+    }
+
+    private void deleteDirectory(Path entryDirectory) {
+        try (Stream<Path> files = Files.walk(entryDirectory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> {
+                if (!path.toFile().delete()) {
+                    logger.warn("File {} not deleted", path.toUri());
+                }
+            });
+        } catch (NoSuchFileException e) {
+            logger.debug("Directory {} already deleted", entryDirectory.toUri());
+        } catch (IOException e) {
+            logger.warn("Directory {} not deleted: {}", entryDirectory.toUri(), e.getLocalizedMessage());
+        }
+    }
+
+    private static Path chunkFile(Path entryDirectory, int index) {
+        return entryDirectory.resolve(String.format(CHUNK_FILE_FORMAT, index));
+    }
+
+    private static void copy(InputStream input, OutputStream output) throws IOException {
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        int read;
+        while ((read = input.read(buffer)) >= 0) {
+            output.write(buffer, 0, read);
+        }
+    }
+
+    private static Path createDirectory(Path path) {
+        try {
+            if (path == null) {
+                Path tempDirectory = Files.createTempDirectory(TEMP_DIR_PREFIX);
+                tempDirectory.toFile().deleteOnExit();
+                return tempDirectory;
+            }
+            return Files.createDirectories(path);
+        } catch (IOException | SecurityException e) {
+            throw new CacheException("Cannot create directory " + path, e);
+        }
+    }
+
+    /**
+     * Key, directory, write sequence, length and chunk checksums of a stored value
+     */
+    @Immutable
+    private static final class Manifest<K> {
+
+        private final K key;
+
+        private final Path directory;
+
+        private final long sequence;
+
+        private final long length;
+
+        private final int[] checksums;
+
+        private Manifest(K key, Path directory, long sequence, long length, int[] checksums) {
+            this.key = key;
+            this.directory = directory;
+            this.sequence = sequence;
+            this.length = length;
+            this.checksums = checksums;
+        }
+    }
+
+    /**
+     * Opened channels of all chunks of a value
+     */
+    private final class OpenChunks implements AutoCloseable {
+
+        private final Manifest<K> manifest;
+
+        private final List<FileChannel> channels;
+
+        private OpenChunks(Manifest<K> manifest, List<FileChannel> channels) {
+            this.manifest = manifest;
+            this.channels = channels;
+        }
+
+        @Override
+        public void close() {
+            for (FileChannel channel : channels) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    logger.warn("Cannot close chunk channel: {}", e.getLocalizedMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads chunks one after another and checks checksum at the end of each chunk
+     */
+    private final class ChunkInputStream extends InputStream {
+
+        private final OpenChunks chunks;
+
+        private int chunk;
+
+        private final Crc32c checksum = new Crc32c();
+
+        private ChunkInputStream(OpenChunks chunks) {
+            this.chunks = chunks;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int read = read(single, 0, 1);
+            return (read < 0) ? -1 : (single[0] & 0xFF);
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            while (chunk < chunks.channels.size()) {
+                int read = chunks.channels.get(chunk).read(ByteBuffer.wrap(bytes, offset, length));
+                if (read > 0) {
+                    checksum.update(bytes, offset, read);
+                    return read;
+                }
+                if (read < 0) {
+                    if ((int) checksum.getValue() != chunks.manifest.checksums[chunk]) {
+                        throw new IOException("Checksum of chunk " + chunk + " in "
+                                + chunks.manifest.directory + " does not match");
+                    }
+                    checksum.reset();
+                    chunk++;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public void close() {
+            chunks.close();
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.lxgolovin.cache.storage;
+
+/**
+ * Storage which keeps garbage of removed and replaced entries and could reclaim it on demand
+ *
+ * @see com.lxgolovin.cache.storage.lsm.LsmStorage
+ */
+public interface Compactable {
+
+    /**
+     * Reclaims space of removed and replaced entries, waits until it is done
+     *
+     * @throws com.lxgolovin.cache.core.CacheException if compaction fails
+     */
+    void compact();
+}
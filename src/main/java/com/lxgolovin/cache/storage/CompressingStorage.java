@@ -0,0 +1,280 @@
+package com.lxgolovin.cache.storage;
+
+import com.lxgolovin.cache.core.CacheException;
+import com.lxgolovin.cache.serializer.Serializer;
+import com.lxgolovin.cache.stats.LockStats;
+import com.lxgolovin.cache.stats.SizeEstimator;
+import com.lxgolovin.cache.stats.SizeEstimators;
+import com.lxgolovin.cache.storage.compression.Codec;
+import com.lxgolovin.cache.storage.compression.Codecs;
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Decorator for {@link Storage} to compress values transparently. Values are serialized
+ * by {@link Serializer} and kept in the underlying storage as byte arrays, e.g. in
+ * {@link FileSystemStorage} with {@link com.lxgolovin.cache.serializer.Serializers#BYTE_ARRAY}.
+ * Values smaller then threshold are not compressed.
+ *
+ * Each stored value starts with header: id of the {@link Codec} and, for compressed values,
+ * the length of the data before compression. So values written with different codecs
+ * could be mixed in the same storage, all known codecs are used for reading.
+ *
+ * @param <K> key
+ * @param <V> value
+ * @see Storage
+ * @see Codec
+ * @see Codecs
+ */
+@Immutable
+@ThreadSafe
+public class CompressingStorage<K, V> implements Storage<K, V> {
+
+    /**
+     * Values with serialized size less then this threshold are stored uncompressed
+     */
+    public static final int DEFAULT_THRESHOLD = 256;
+
+    private static final int HEADER_SIZE = Byte.BYTES + Integer.BYTES;
+
+    private final Storage<K, byte[]> storage;
+
+    private final Serializer<V> valueSerializer;
+
+    /**
+     * Codec to compress new values
+     */
+    private final Codec codec;
+
+    private final int threshold;
+
+    /**
+     * All known codecs to read values, indexed by codec id
+     */
+    private final Codec[] codecs = new Codec[256];
+
+    public CompressingStorage(Storage<K, byte[]> storage, Serializer<V> valueSerializer) {
+        this(storage, valueSerializer, Codecs.DEFLATE, DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * @param storage underlying storage to keep compressed data, cannot be null
+     * @param valueSerializer to convert values to bytes, cannot be null
+     * @param codec to compress new values, cannot be null
+     * @param threshold minimal serialized size of the value to be compressed
+     * @param decoders additional codecs to read values written earlier with other codecs
+     * @throws IllegalArgumentException if any parameter is null or codec ids are duplicated
+     */
+    public CompressingStorage(Storage<K, byte[]> storage, Serializer<V> valueSerializer,
+                              Codec codec, int threshold, Codec... decoders) {
+        if ((storage == null) || (valueSerializer == null) || (codec == null)) {
+            throw new IllegalArgumentException("Storage, serializer and codec should not be null");
+        }
+        this.storage = storage;
+        this.valueSerializer = valueSerializer;
+        this.codec = codec;
+        this.threshold = Math.max(0, threshold);
+
+        register(Codecs.NONE);
+        register(Codecs.DEFLATE);
+        register(codec);
+        for (Codec decoder : decoders) {
+            register(decoder);
+        }
+    }
+
+    private void register(Codec newCodec) {
+        int index = newCodec.id() & 0xFF;
+        if ((codecs[index] != null) && (codecs[index] != newCodec)) {
+            throw new IllegalArgumentException("Codec with id " + index + " is already registered");
+        }
+        codecs[index] = newCodec;
+    }
+
+    /**
+     * @param key cannot be null
+     * @param value cannot be null
+     * @throws IllegalArgumentException if any key or value is null
+     */
+    @Override
+    public Optional<V> put(K key, V value) {
+        if ((key == null) || (value == null)) {
+            throw new IllegalArgumentException("Input key and value should not be null");
+        }
+        return storage.put(key, encode(value)).map(this::decode);
+    }
+
+    /**
+     * Encoding is deterministic, so the decorated storage compares encoded bytes
+     */
+    @Override
+    public boolean putIfChanged(K key, V value) {
+        if ((key == null) || (value == null)) {
+            throw new IllegalArgumentException("Input key and value should not be null");
+        }
+        return storage.putIfChanged(key, encode(value));
+    }
+
+    /**
+     * Old value is not decoded
+     */
+    @Override
+    public void putSilently(K key, V value) {
+        if ((key == null) || (value == null)) {
+            throw new IllegalArgumentException("Input key and value should not be null");
+        }
+        storage.putSilently(key, encode(value));
+    }
+
+    @Override
+    public Optional<V> get(K key) {
+        return storage.get(key).map(this::decode);
+    }
+
+    @Override
+    public Optional<V> remove(K key) {
+        return storage.remove(key).map(this::decode);
+    }
+
+    /**
+     * Old value is not decoded
+     */
+    @Override
+    public boolean removeSilently(K key) {
+        return storage.removeSilently(key);
+    }
+
+    @Override
+    public Map<K, V> getAll() {
+        Map<K, V> map = new HashMap<>();
+        storage.getAll().forEach((k, v) -> map.put(k, decode(v)));
+        return map;
+    }
+
+    @Override
+    public Stream<Map.Entry<K, V>> entries() {
+        return storage.entries()
+                .map(e -> new AbstractMap.SimpleImmutableEntry<>(e.getKey(), decode(e.getValue())));
+    }
+
+    @Override
+    public Stream<K> keys() {
+        return storage.keys();
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        return storage.containsKey(key);
+    }
+
+    @Override
+    public void clear() {
+        storage.clear();
+    }
+
+    @Override
+    public int size() {
+        return storage.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return storage.isEmpty();
+    }
+
+    @Override
+    public IoStats ioStats() {
+        return storage.ioStats();
+    }
+
+    @Override
+    public LockStats lockStats() {
+        return storage.lockStats();
+    }
+
+    @Override
+    public long entryOverhead() {
+        return storage.entryOverhead();
+    }
+
+    @Override
+    public boolean valuesOnHeap() {
+        return storage.valuesOnHeap();
+    }
+
+    /**
+     * Values are kept encoded, so the stored byte array is measured and the estimator is not used
+     */
+    @Override
+    public long valueHeapSize(K key, SizeEstimator<? super V> estimator) {
+        return storage.valueHeapSize(key, SizeEstimators.BYTE_ARRAY);
+    }
+
+    /**
+     * Serializes and compresses value. If compressed data is not smaller then
+     * original, value is kept uncompressed
+     */
+    byte[] encode(V value) {
+        byte[] data = valueSerializer.toBytes(value);
+        if ((data.length >= threshold) && (codec != Codecs.NONE)) {
+            byte[] compressed = codec.compress(data);
+            if (compressed.length + HEADER_SIZE < data.length + Byte.BYTES) {
+                return ByteBuffer.allocate(HEADER_SIZE + compressed.length)
+                        .put(codec.id())
+                        .putInt(data.length)
+                        .put(compressed)
+                        .array();
+            }
+        }
+
+        return ByteBuffer.allocate(Byte.BYTES + data.length)
+                .put(Codecs.NONE.id())
+                .put(data)
+                .array();
+    }
+
+    /**
+     * Reads codec from header, decompresses and deserializes the value
+     * @throws CacheException if codec is unknown or data is corrupted
+     */
+    V decode(byte[] stored) {
+        if (stored.length < Byte.BYTES) {
+            throw new CacheException("Corrupted value: empty data");
+        }
+
+        int codecId = stored[0] & 0xFF;
+        Codec valueCodec = codecs[codecId];
+        if (valueCodec == null) {
+            throw new CacheException("Unknown compression codec with id " + codecId);
+        }
+
+        if (valueCodec == Codecs.NONE) {
+            try {
+                return valueSerializer.read(ByteBuffer.wrap(stored, Byte.BYTES, stored.length - Byte.BYTES));
+            } catch (RuntimeException e) {
+                throw new CacheException("Corrupted value: " + e.getLocalizedMessage(), e);
+            }
+        }
+
+        if (stored.length < HEADER_SIZE) {
+            throw new CacheException("Corrupted compressed value: header is " + stored.length + " bytes");
+        }
+        int originalLength = ByteBuffer.wrap(stored, Byte.BYTES, Integer.BYTES).getInt();
+        if ((originalLength < 0) || (originalLength > valueCodec.maxOriginalLength(stored.length - HEADER_SIZE))) {
+            throw new CacheException("Corrupted compressed value: wrong original length " + originalLength);
+        }
+        try {
+            byte[] data = valueCodec.decompress(stored, HEADER_SIZE, stored.length - HEADER_SIZE, originalLength);
+            return valueSerializer.fromBytes(data);
+        } catch (RuntimeException e) {
+            throw new CacheException("Corrupted compressed value: " + e.getLocalizedMessage(), e);
+        }
+    }
+}
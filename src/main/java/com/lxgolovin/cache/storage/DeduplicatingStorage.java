@@ -0,0 +1,305 @@
+package com.lxgolovin.cache.storage;
+
+import com.lxgolovin.cache.core.CacheException;
+import com.lxgolovin.cache.serializer.Serializer;
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Decorator for {@link Storage} to keep equal values only once. Values are serialized by
+ * {@link Serializer} and stored in blob storage under SHA-256 hash of their bytes.
+ * Keys are stored in reference storage and point to the hash, so writing a value that is
+ * already stored changes only the reference. Blob is deleted when no key points to it.
+ * Both storages are usually {@link FileSystemStorage}.
+ * <p>
+ * Number of references for each hash is kept in memory and counted again from reference storage
+ * on start. Blob is written before the reference and deleted after it, so a crash could
+ * leave a blob without references, such blobs are deleted on start
+ *
+ * @param <K> key
+ * @param <V> value
+ * @see Storage
+ * @see CompressingStorage
+ */
+@ThreadSafe
+public class DeduplicatingStorage<K, V> implements Storage<K, V> {
+
+    private static final String HASH_ALGORITHM = "SHA-256";
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final Storage<K, byte[]> references;
+
+    private final Storage<String, byte[]> blobs;
+
+    private final Serializer<V> valueSerializer;
+
+    @GuardedBy("lock")
+    private final Map<String, Integer> referenceCounts = new HashMap<>();
+
+    /**
+     * Keeps references, blobs and counts consistent for writers
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Counts references of existing data and deletes blobs without references
+     *
+     * @param references storage of keys with hashes of values, cannot be null
+     * @param blobs storage of serialized values by hashes in hex, cannot be null
+     * @param valueSerializer to convert values to bytes, cannot be null
+     * @throws IllegalArgumentException if any parameter is null
+     */
+    public DeduplicatingStorage(Storage<K, byte[]> references, Storage<String, byte[]> blobs,
+                                Serializer<V> valueSerializer) {
+        if ((references == null) || (blobs == null) || (valueSerializer == null)) {
+            throw new IllegalArgumentException("Storages and serializer should not be null");
+        }
+        this.references = references;
+        this.blobs = blobs;
+        this.valueSerializer = valueSerializer;
+
+        try (Stream<Map.Entry<K, byte[]>> entries = references.entries()) {
+            entries.forEach(e -> referenceCounts.merge(toHex(e.getValue()), 1, Integer::sum));
+        }
+        try (Stream<String> hashes = blobs.keys()) {
+            Iterator<String> iterator = hashes.iterator();
+            while (iterator.hasNext()) {
+                String hash = iterator.next();
+                if (!referenceCounts.containsKey(hash)) {
+                    blobs.removeSilently(hash);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param key cannot be null
+     * @param value cannot be null
+     * @throws IllegalArgumentException if any key or value is null
+     */
+    @Override
+    public Optional<V> put(K key, V value) {
+        if ((key == null) || (value == null)) {
+            throw new IllegalArgumentException("Input key and value should not be null");
+        }
+
+        lock.lock();
+        try {
+            Optional<String> oldHash = references.get(key).map(DeduplicatingStorage::toHex);
+            Optional<V> oldValue = oldHash.flatMap(this::readBlob);
+            store(key, value, oldHash);
+            return oldValue;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Compares hashes of values, so no blob is read
+     */
+    @Override
+    public boolean putIfChanged(K key, V value) {
+        if ((key == null) || (value == null)) {
+            throw new IllegalArgumentException("Input key and value should not be null");
+        }
+
+        lock.lock();
+        try {
+            return store(key, value, references.get(key).map(DeduplicatingStorage::toHex));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void putSilently(K key, V value) {
+        putIfChanged(key, value);
+    }
+
+    @Override
+    public Optional<V> get(K key) {
+        return references.get(key).flatMap(hash -> readBlob(toHex(hash)));
+    }
+
+    /**
+     * @param key cannot be null
+     * @throws IllegalArgumentException if key is null
+     */
+    @Override
+    public Optional<V> remove(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Input key should not be null");
+        }
+
+        lock.lock();
+        try {
+            Optional<String> hash = references.get(key).map(DeduplicatingStorage::toHex);
+            Optional<V> removedValue = hash.flatMap(this::readBlob);
+            if (hash.isPresent()) {
+                references.removeSilently(key);
+                release(hash.get());
+            }
+            return removedValue;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean removeSilently(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Input key should not be null");
+        }
+
+        lock.lock();
+        try {
+            Optional<String> hash = references.get(key).map(DeduplicatingStorage::toHex);
+            if (hash.isPresent()) {
+                references.removeSilently(key);
+                release(hash.get());
+            }
+            return hash.isPresent();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Map<K, V> getAll() {
+        Map<K, V> map = new HashMap<>();
+        try (Stream<Map.Entry<K, V>> entries = entries()) {
+            entries.forEach(e -> map.put(e.getKey(), e.getValue()));
+        }
+        return map;
+    }
+
+    /**
+     * Reads blobs while the stream is consumed, entries with removed blobs are skipped
+     */
+    @Override
+    public Stream<Map.Entry<K, V>> entries() {
+        return references.entries()
+                .map(e -> readBlob(toHex(e.getValue()))
+                        .map(value -> (Map.Entry<K, V>) new AbstractMap.SimpleImmutableEntry<>(e.getKey(), value)))
+                .filter(Optional::isPresent)
+                .map(Optional::get);
+    }
+
+    @Override
+    public Stream<K> keys() {
+        return references.keys();
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        return references.containsKey(key);
+    }
+
+    @Override
+    public void clear() {
+        lock.lock();
+        try {
+            references.clear();
+            blobs.clear();
+            referenceCounts.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        return references.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return references.isEmpty();
+    }
+
+    /**
+     * @return drive operations of reference and blob storages together
+     */
+    @Override
+    public IoStats ioStats() {
+        return references.ioStats().plus(blobs.ioStats());
+    }
+
+    /**
+     * @return number of different values stored
+     */
+    public int uniqueValues() {
+        lock.lock();
+        try {
+            return referenceCounts.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes blob if it is new, then reference, then releases the old blob
+     *
+     * @return false if the key already points to the same value
+     */
+    @GuardedBy("lock")
+    private boolean store(K key, V value, Optional<String> oldHash) {
+        byte[] bytes = valueSerializer.toBytes(value);
+        byte[] hash = hash(bytes);
+        String hex = toHex(hash);
+        if (oldHash.isPresent() && oldHash.get().equals(hex)) {
+            return false;
+        }
+
+        if (!referenceCounts.containsKey(hex)) {
+            blobs.putSilently(hex, bytes);
+        }
+        references.putSilently(key, hash);
+        referenceCounts.merge(hex, 1, Integer::sum);
+        oldHash.ifPresent(this::release);
+        return true;
+    }
+
+    /**
+     * Decrements number of references and deletes blob without references
+     */
+    @GuardedBy("lock")
+    private void release(String hash) {
+        Integer count = referenceCounts.computeIfPresent(hash, (h, c) -> (c > 1) ? c - 1 : null);
+        if (count == null) {
+            blobs.removeSilently(hash);
+        }
+    }
+
+    private Optional<V> readBlob(String hash) {
+        return blobs.get(hash).map(valueSerializer::fromBytes);
+    }
+
+    private static byte[] hash(byte[] bytes) {
+        try {
+            return MessageDigest.getInstance(HASH_ALGORITHM).digest(bytes);
+        } catch (NoSuchAlgorithmException e) {
+            throw new CacheException("No " + HASH_ALGORITHM + " in this Java runtime", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] chars = new char[2 * bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[2 * i] = HEX_DIGITS[(bytes[i] >>> 4) & 0x0F];
+            chars[2 * i + 1] = HEX_DIGITS[bytes[i] & 0x0F];
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,107 @@
+package com.lxgolovin.cache.storage;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * Defines when data written by disk storage is forced to the drive by {@code FileChannel.force}.
+ * Forcing every write separately is too slow, so three modes are available:
+ * <ul>
+ *     <li>{@link Mode#NONE} - data is never forced, operating system writes it when it wants.
+ *     The fastest mode, but a crash could lose any number of acknowledged writes</li>
+ *     <li>{@link Mode#PERIODIC} - background thread forces all written data every interval.
+ *     Writers do not wait, so latency is the same as for {@link Mode#NONE}, and throughput
+ *     drops only by one force per interval. A crash could lose writes of the last interval</li>
+ *     <li>{@link Mode#GROUP_COMMIT} - writer returns only after its data is forced. Concurrent
+ *     writers are batched: one of them forces data of all the others in one call. No acknowledged
+ *     write is lost, every write waits for one force, but under load many writes share it</li>
+ * </ul>
+ *
+ * @see FileSystemStorage
+ */
+@Immutable
+public final class Durability {
+
+    public enum Mode {
+        NONE,
+        PERIODIC,
+        GROUP_COMMIT
+    }
+
+    private static final Durability NONE = new Durability(Mode.NONE, 0);
+
+    private static final Durability GROUP_COMMIT = new Durability(Mode.GROUP_COMMIT, 0);
+
+    private final Mode mode;
+
+    private final long intervalMillis;
+
+    private Durability(Mode mode, long intervalMillis) {
+        this.mode = mode;
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * @return mode without forcing data to the drive
+     */
+    public static Durability none() {
+        return NONE;
+    }
+
+    /**
+     * @param intervalMillis interval between forcing data to the drive, should be positive
+     * @return mode to force data periodically in background
+     * @throws IllegalArgumentException if interval is not positive
+     */
+    public static Durability periodic(long intervalMillis) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Interval should be positive");
+        }
+        return new Durability(Mode.PERIODIC, intervalMillis);
+    }
+
+    /**
+     * @return mode to force data before writer returns, batching concurrent writers
+     */
+    public static Durability groupCommit() {
+        return GROUP_COMMIT;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return interval between forcing data for {@link Mode#PERIODIC}, otherwise 0
+     */
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    /**
+     * @return true if write is on the drive when writer returns. It costs writer
+     *          the latency of one force, shared with concurrent writers
+     */
+    public boolean isWriteDurableOnReturn() {
+        return mode == Mode.GROUP_COMMIT;
+    }
+
+    /**
+     * @return maximum time of acknowledged writes that could be lost on crash,
+     *          {@link Long#MAX_VALUE} if unbounded
+     */
+    public long getMaxLossWindowMillis() {
+        switch (mode) {
+            case GROUP_COMMIT:
+                return 0;
+            case PERIODIC:
+                return intervalMillis;
+            default:
+                return Long.MAX_VALUE;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return (mode == Mode.PERIODIC) ? mode + "(" + intervalMillis + "ms)" : mode.toString();
+    }
+}
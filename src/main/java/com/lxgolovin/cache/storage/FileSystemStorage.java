@@ -1,32 +1,67 @@
 package com.lxgolovin.cache.storage;
 
 import com.lxgolovin.cache.core.CacheException;
-
+import com.lxgolovin.cache.core.Crc32c;
+import com.lxgolovin.cache.core.InstrumentedReadWriteLock;
+import com.lxgolovin.cache.jfr.StorageIoEvent;
+import com.lxgolovin.cache.serializer.Serializer;
+import com.lxgolovin.cache.serializer.Serializers;
+import com.lxgolovin.cache.stats.LockStats;
+import com.lxgolovin.cache.stats.SizeEstimators;
 import net.jcip.annotations.GuardedBy;
 import net.jcip.annotations.Immutable;
 import net.jcip.annotations.ThreadSafe;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.*;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.AbstractMap;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.Set;
 import java.util.stream.Stream;
 
 /**
  * Implementation of {@link Storage} to keep data in files
+ * Each entry is kept in separate file as key followed by value. Keys and values are
+ * written by {@link Serializer}. If no serializers are defined, Java serialization is used,
+ * so keys and values should be {@link java.io.Serializable} in this case
+ * Written files are forced to the drive according to {@link Durability}, by default they are not forced.
+ * Files are spread over two levels of subdirectories by key hash, so no directory gets too many files.
+ * Index of files is split into {@link #DEFAULT_STRIPES} or given number of stripes by key hash,
+ * each stripe has its own lock, so a slow write blocks only keys of its stripe. Index keeps 64-bit hash of each value content, so
+ * {@link #putIfChanged(Object, Object)}, {@link #putSilently(Object, Object)} and
+ * {@link #removeSilently(Object)} do not read files at all.
+ * Each file starts with magic and CRC-32C checksum of the entry. Files are written into temporary file
+ * and renamed, so a crash never leaves half-written entry. File without the header, with wrong checksum
+ * or broken data is moved into {@code quarantine} subdirectory and read as a miss, the rest of entries
+ * are read as usual. Checksum is verified also when only keys are read.
+ * Earlier versions kept each entry as {@link Map.Entry} written by {@link java.io.ObjectOutputStream} into
+ * {@code .tmp} file right in the directory. Such files are rewritten in the current format when the storage
+ * is opened, files which cannot be deserialized are quarantined
  *
  * @see Storage
  * @see MemoryStorage
+ * @see Serializers
  */
 @ThreadSafe
 @Immutable
-public class FileSystemStorage<K extends Serializable, V extends Serializable> implements Storage<K, V> {
+public class FileSystemStorage<K, V> implements Storage<K, V>, Closeable {
 
     /**
      * If the directory is created temporary this prefix is used
@@ -39,16 +74,63 @@ public class FileSystemStorage<K extends Serializable, V extends Serializable> i
      */
     private static final boolean EMPTY_STORAGE_DEFAULT = false;
 
-    @GuardedBy("this")
-    private final Map<K, Path> indexMap;
+    /**
+     * Default number of index stripes
+     */
+    public static final int DEFAULT_STRIPES = 16;
+
+    /**
+     * Stripe is chosen by the top 8 bits of the spread hash
+     */
+    public static final int MAX_STRIPES = 256;
+
+    /**
+     * Suffix of files with entries
+     */
+    private static final String ENTRY_SUFFIX = ".entry";
+
+    /**
+     * Number of bytes read from the beginning of file to get the key
+     */
+    private static final int KEY_PREFIX_SIZE = 4096;
+
+    /**
+     * "FSE1" in ASCII, starts every file with checksum. Entry file without it is corrupted
+     */
+    private static final int RECORD_MAGIC = 0x46534531;
+
+    /**
+     * Magic and checksum
+     */
+    private static final int RECORD_HEADER_SIZE = 2 * Integer.BYTES;
+
+    /**
+     * Suffix of file while it is written
+     */
+    private static final String WRITING_SUFFIX = ".tmp";
+
+    /**
+     * Subdirectory for corrupted files
+     */
+    static final String QUARANTINE_DIRECTORY = "quarantine";
 
-    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Stripe<K>[] stripes;
 
     /**
      * Defining the directory to keep all data
      */
     private final Path directory;
 
+    private final Serializer<K> keySerializer;
+
+    private final Serializer<V> valueSerializer;
+
+    private final Durability durability;
+
+    private final Syncer<Path> syncer;
+
+    private final IoCounter ioCounter = new IoCounter();
+
     private final Logger logger = LoggerFactory.getLogger(FileSystemStorage.class);
 
     public FileSystemStorage() {
@@ -60,24 +142,62 @@ public class FileSystemStorage<K extends Serializable, V extends Serializable> i
     }
 
     public FileSystemStorage(Path path, boolean emptyStorage) {
+        this(path, emptyStorage, Serializers.java(), Serializers.java());
+    }
+
+    public FileSystemStorage(Path path, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        this(path, FileSystemStorage.EMPTY_STORAGE_DEFAULT, keySerializer, valueSerializer);
+    }
+
+    public FileSystemStorage(Path path, boolean emptyStorage, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        this(path, emptyStorage, keySerializer, valueSerializer, Durability.none());
+    }
+
+    public FileSystemStorage(Path path, boolean emptyStorage, Serializer<K> keySerializer,
+                             Serializer<V> valueSerializer, Durability durability) {
+        this(path, emptyStorage, keySerializer, valueSerializer, durability, DEFAULT_STRIPES);
+    }
+
+    /**
+     * @param path directory to keep files. If null, temporary directory is created
+     * @param emptyStorage if true, all files in directory are deleted
+     * @param keySerializer to write keys, cannot be null
+     * @param valueSerializer to write values, cannot be null
+     * @param durability defines when written files are forced to the drive, cannot be null
+     * @param stripes number of index stripes, rounded up to power of two, from 1 to {@value #MAX_STRIPES}
+     * @throws IllegalArgumentException if any serializer or durability is null or stripes are out of range
+     * @throws CacheException if files of earlier versions cannot be read or converted
+     */
+    public FileSystemStorage(Path path, boolean emptyStorage, Serializer<K> keySerializer,
+                             Serializer<V> valueSerializer, Durability durability, int stripes) {
+        if ((keySerializer == null) || (valueSerializer == null)) {
+            throw new IllegalArgumentException("Serializers should not be null");
+        }
+        if (durability == null) {
+            throw new IllegalArgumentException("Durability should not be null");
+        }
+        if ((stripes < 1) || (stripes > MAX_STRIPES)) {
+            throw new IllegalArgumentException("Number of stripes should be from 1 to " + MAX_STRIPES);
+        }
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.durability = durability;
         this.directory = (path != null && checkDirectoryByPath(path))
                 ? path
                 : createTempDirectory();
         if (emptyStorage) {
             emptyDir();
         }
-        indexMap = new HashMap<>();
+        this.stripes = createStripes((stripes == 1) ? 1 : Integer.highestOneBit(stripes - 1) << 1);
+        syncer = new Syncer<>(durability, this::forceFiles);
+        migrateLegacyFiles();
     }
 
     /**
      * @param map can be null. If it is, storage is created empty
      */
     public FileSystemStorage(Path path, Map<K, V> map) {
-        indexMap = new HashMap<>();
-        this.directory = (path != null && checkDirectoryByPath(path))
-                ? path
-                : createTempDirectory();
-        emptyDir();
+        this(path, true);
 
         if (map != null) {
             map.forEach(this::put);
@@ -90,20 +210,47 @@ public class FileSystemStorage<K extends Serializable, V extends Serializable> i
      */
     public Map<K, V> getAll() {
         Map<K, V> loadedMap = new HashMap<>();
-        lock.readLock().lock();
-        try {
-            try (Stream<Path> dirTree = Files.walk(directory)) {
-                dirTree.filter(Files::isRegularFile)
-                        .map(this::readEntryFromFile)
-                        .filter(Optional::isPresent)
-                        .forEach(e -> loadedMap.put(e.get().getKey(), e.get().getValue()));
-                return loadedMap;
-            } catch (IOException | SecurityException e) {
-                throw new CacheException("Contact admin. Cannot read directory " + directory);
-            }
+        Map<K, IndexEntry> loadedPaths = new HashMap<>();
+        lockAll(false);
+        try (Stream<Path> dirTree = walkFiles()) {
+            dirTree.forEach(path -> readEntryFromFile(path).ifPresent(e -> {
+                loadedMap.put(e.getKey(), e.getValue());
+                loadedPaths.put(e.getKey(), new IndexEntry(path, e.contentHash));
+            }));
         } finally {
-            lock.readLock().unlock();
+            unlockAll(false);
         }
+
+        loadedPaths.forEach(this::addToIndex);
+        return loadedMap;
+    }
+
+    /**
+     * Reads files one by one while the stream is consumed and adds them to index
+     */
+    @Override
+    public Stream<Map.Entry<K, V>> entries() {
+        return walkFiles()
+                .map(path -> readEntryFromFile(path).map(entry -> {
+                    addToIndex(entry.getKey(), new IndexEntry(path, entry.contentHash));
+                    return entry;
+                }))
+                .filter(Optional::isPresent)
+                .map(Optional::get);
+    }
+
+    /**
+     * Reads only keys from the beginning of files while the stream is consumed and adds them to index
+     */
+    @Override
+    public Stream<K> keys() {
+        return walkFiles()
+                .map(path -> readKeyFromFile(path).map(key -> {
+                    addToIndex(key, new IndexEntry(path));
+                    return key;
+                }))
+                .filter(Optional::isPresent)
+                .map(Optional::get);
     }
 
     /**
@@ -116,30 +263,77 @@ public class FileSystemStorage<K extends Serializable, V extends Serializable> i
             throw new IllegalArgumentException("Key and value should not be null");
         }
 
-        lock.writeLock().lock();
-        try {
-            Optional<V> oldValue = get(key);
-            // element need to be updated
-            if (!oldValue.isPresent() || !oldValue.get().equals(value)) {
-                putDataToStorage(key, value, indexMap.get(key));
-            }
+        Map.Entry<Optional<V>, Long> result = putAndRegister(key, value);
 
-            return oldValue;
-        } finally {
-            lock.writeLock().unlock();
-        }
+        // wait for the drive outside of the lock, so concurrent writers are forced together
+        syncer.await(result.getValue());
+        return result.getKey();
     }
 
     boolean putAll(Map<K, V> map) {
         if (map == null)
             return false;
 
-        lock.writeLock().lock();
+        long ticket = 0;
+        for (Map.Entry<K, V> entry : map.entrySet()) {
+            ticket = Math.max(ticket, putAndRegister(entry.getKey(), entry.getValue()).getValue());
+        }
+
+        syncer.await(ticket);
+        return true;
+    }
+
+    /**
+     * Compares hash of the value content with the hash in index, so the old value is not read
+     *
+     * @param key   cannot be null
+     * @param value cannot be null
+     * @throws IllegalArgumentException if any key or value is null
+     */
+    @Override
+    public boolean putIfChanged(K key, V value) {
+        long ticket = putIfChangedAndRegister(key, value);
+        if (ticket < 0) {
+            return false;
+        }
+
+        syncer.await(ticket);
+        return true;
+    }
+
+    /**
+     * @param key   cannot be null
+     * @param value cannot be null
+     * @throws IllegalArgumentException if any key or value is null
+     */
+    @Override
+    public void putSilently(K key, V value) {
+        putIfChanged(key, value);
+    }
+
+    /**
+     * Deletes the file without reading it
+     *
+     * @param key cannot be null
+     * @throws IllegalArgumentException if key is null
+     */
+    @Override
+    public boolean removeSilently(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Input key should not be null");
+        }
+
+        Stripe<K> stripe = stripeFor(key);
+        stripe.lock.writeLock().lock();
         try {
-            map.forEach(this::put);
+            IndexEntry entry = stripe.indexMap.remove(key);
+            if (entry == null) {
+                return false;
+            }
+            deleteFile(entry.path);
             return true;
         } finally {
-            lock.writeLock().unlock();
+            stripe.lock.writeLock().unlock();
         }
     }
 
@@ -152,21 +346,35 @@ public class FileSystemStorage<K extends Serializable, V extends Serializable> i
             throw new IllegalArgumentException("Key should not be null");
         }
 
-        lock.readLock().lock();
+        Stripe<K> stripe = stripeFor(key);
+        IndexEntry entry;
+        Optional<V> value;
+        stripe.lock.readLock().lock();
         try {
-            Path path = indexMap.get(key);
-            return readValueFromFile(path);
+            entry = stripe.indexMap.get(key);
+            value = (entry == null) ? Optional.empty() : readValueFromFile(entry.path);
         } finally {
-            lock.readLock().unlock();
+            stripe.lock.readLock().unlock();
+        }
+
+        if ((entry != null) && !value.isPresent()) {
+            // file is corrupted and quarantined, the key is a miss from now on
+            removeFromIndex(key, entry);
         }
+        return value;
     }
 
     public boolean containsKey(K key) {
-        lock.readLock().lock();
+        if (key == null) {
+            return false;
+        }
+
+        Stripe<K> stripe = stripeFor(key);
+        stripe.lock.readLock().lock();
         try {
-            return ((key != null) && indexMap.containsKey(key));
+            return stripe.indexMap.containsKey(key);
         } finally {
-            lock.readLock().unlock();
+            stripe.lock.readLock().unlock();
         }
     }
 
@@ -179,86 +387,395 @@ public class FileSystemStorage<K extends Serializable, V extends Serializable> i
             throw new IllegalArgumentException("Input key should not be null");
         }
 
-        lock.writeLock().lock();
+        Stripe<K> stripe = stripeFor(key);
+        stripe.lock.writeLock().lock();
         try {
             Optional<V> removedValue = get(key);
 
-            Path path = indexMap.remove(key);
-            deleteFile(path);
+            IndexEntry entry = stripe.indexMap.remove(key);
+            if (entry != null) {
+                deleteFile(entry.path);
+            }
 
             return removedValue;
         } finally {
-            lock.writeLock().unlock();
+            stripe.lock.writeLock().unlock();
         }
     }
 
     public void clear() {
-        lock.writeLock().lock();
+        lockAll(true);
         try {
-            indexMap.values().forEach(this::deleteFile);
-            indexMap.clear();
+            for (Stripe<K> stripe : stripes) {
+                stripe.indexMap.values().forEach(entry -> deleteFile(entry.path));
+                stripe.indexMap.clear();
+            }
         } finally {
-            lock.writeLock().unlock();
+            unlockAll(true);
         }
     }
 
     public int size() {
-        lock.readLock().lock();
-        try {
-            return indexMap.size();
-
-        } finally {
-            lock.readLock().unlock();
+        int size = 0;
+        for (Stripe<K> stripe : stripes) {
+            stripe.lock.readLock().lock();
+            try {
+                size += stripe.indexMap.size();
+            } finally {
+                stripe.lock.readLock().unlock();
+            }
         }
+        return size;
     }
 
     public boolean isEmpty() {
-        lock.readLock().lock();
-        try {
-            return indexMap.isEmpty();
-        } finally {
-            lock.readLock().unlock();
+        for (Stripe<K> stripe : stripes) {
+            stripe.lock.readLock().lock();
+            try {
+                if (!stripe.indexMap.isEmpty()) {
+                    return false;
+                }
+            } finally {
+                stripe.lock.readLock().unlock();
+            }
         }
+        return true;
+    }
+
+    /**
+     * Forces all written files to the drive. Does nothing for {@link Durability.Mode#NONE}
+     * @throws CacheException if files cannot be forced
+     */
+    public void flush() {
+        syncer.syncAll();
+    }
+
+    /**
+     * Stops periodic forcing and forces all written files to the drive
+     * @throws CacheException if files cannot be forced
+     */
+    @Override
+    public void close() {
+        syncer.close();
+    }
+
+    /**
+     * Counts files read, written and deleted. Reading of key prefix while streaming keys is a read too
+     */
+    @Override
+    public IoStats ioStats() {
+        return ioCounter.snapshot();
+    }
+
+    /**
+     * Index entry in heap: entry of the map, {@link IndexEntry} and its path with bytes of the full
+     * file name. Values are in files, only keys are kept in heap
+     */
+    @Override
+    public long entryOverhead() {
+        // directory, two levels of subdirectories and name of temporary file with suffix
+        long pathLength = directory.toAbsolutePath().toString().length() + 6 + 20 + ENTRY_SUFFIX.length();
+        long indexEntry = SizeEstimators.align(SizeEstimators.OBJECT_HEADER + SizeEstimators.REFERENCE + Long.BYTES + 1);
+        long path = SizeEstimators.align(SizeEstimators.OBJECT_HEADER + 2 * SizeEstimators.REFERENCE + Integer.BYTES)
+                + SizeEstimators.byteArray(pathLength);
+        return SizeEstimators.HASH_ENTRY + indexEntry + path;
+    }
+
+    /**
+     * Sums acquisitions of locks of all index stripes
+     */
+    @Override
+    public LockStats lockStats() {
+        LockStats stats = LockStats.empty();
+        for (Stripe<K> stripe : stripes) {
+            stats = stats.plus(stripe.lock.stats());
+        }
+        return stats;
+    }
+
+    public Durability getDurability() {
+        return durability;
     }
 
     Path getDirectory() {
         return directory;
     }
 
-    private void putDataToStorage(K key, V value, Path path) {
+    int getStripes() {
+        return stripes.length;
+    }
+
+    /**
+     * @return number of batches forced to the drive
+     */
+    long syncCount() {
+        return syncer.syncCount();
+    }
+
+    /**
+     * Puts the entry under the lock of its stripe
+     *
+     * @return old value and ticket to wait for the file to be forced
+     */
+    private Map.Entry<Optional<V>, Long> putAndRegister(K key, V value) {
+        if ((key == null) || (value == null)) {
+            throw new IllegalArgumentException("Key and value should not be null");
+        }
+
+        Stripe<K> stripe = stripeFor(key);
+        stripe.lock.writeLock().lock();
         try {
-            Path filePath = (path == null) ? createFile() : path;
+            Optional<V> oldValue = get(key);
+            long ticket = 0;
+            // element need to be updated
+            if (!oldValue.isPresent() || !oldValue.get().equals(value)) {
+                byte[] valueBytes = valueSerializer.toBytes(value);
+                ticket = putDataToStorage(key, valueBytes, contentHash(ByteBuffer.wrap(valueBytes)), stripe);
+            }
+            return new AbstractMap.SimpleImmutableEntry<>(oldValue, ticket);
+        } finally {
+            stripe.lock.writeLock().unlock();
+        }
+    }
 
-            Map.Entry<K, V> newcomer = new AbstractMap.SimpleImmutableEntry<>(key, value);
-            writeEntryToFile(newcomer, filePath);
+    /**
+     * Puts the entry under the lock of its stripe if hash of the value content differs from the hash in index.
+     * Different values with the same 64-bit hash are taken as equal, the chance of it is negligible
+     *
+     * @return ticket to wait for the file to be forced, -1 if the value is not changed
+     */
+    private long putIfChangedAndRegister(K key, V value) {
+        if ((key == null) || (value == null)) {
+            throw new IllegalArgumentException("Key and value should not be null");
+        }
+
+        byte[] valueBytes = valueSerializer.toBytes(value);
+        long hash = contentHash(ByteBuffer.wrap(valueBytes));
+
+        Stripe<K> stripe = stripeFor(key);
+        stripe.lock.writeLock().lock();
+        try {
+            IndexEntry entry = stripe.indexMap.get(key);
+            if ((entry != null) && entry.hashKnown && (entry.contentHash == hash)) {
+                return -1;
+            }
+            return putDataToStorage(key, valueBytes, hash, stripe);
+        } finally {
+            stripe.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return ticket to wait for the file to be forced
+     */
+    @GuardedBy("stripe.lock")
+    private long putDataToStorage(K key, byte[] valueBytes, long contentHash, Stripe<K> stripe) {
+        try {
+            IndexEntry entry = stripe.indexMap.get(key);
+            Path filePath = (entry == null) ? createFile(key) : entry.path;
 
-            indexMap.put(key, filePath);
+            writeEntryToFile(key, valueBytes, filePath);
+
+            stripe.indexMap.put(key, new IndexEntry(filePath, contentHash));
+            return syncer.register(filePath);
         } catch (IOException e) {
             logger.error("Unable to put data into storage: ", e);
+            return 0;
+        }
+    }
+
+    /**
+     * Forces batch of files and the directory with them, so created files are not lost.
+     * Files removed after writing are skipped
+     */
+    private void forceFiles(Collection<Path> batch) throws IOException {
+        Set<Path> directories = new LinkedHashSet<>();
+        for (Path path : batch) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                channel.force(true);
+            } catch (NoSuchFileException e) {
+                logger.debug("File {} removed before forcing", path.toUri());
+            }
+            directories.add(path.getParent());
+        }
+
+        for (Path parent : directories) {
+            try (FileChannel channel = FileChannel.open(parent, StandardOpenOption.READ)) {
+                channel.force(true);
+            } catch (IOException e) {
+                // some platforms cannot open directories, the files are forced anyway
+                logger.debug("Cannot force directory {}: {}", parent.toUri(), e.getLocalizedMessage());
+            }
+        }
+    }
+
+    /**
+     * Writes mapping key-value to file. Header with checksum is written first, then key,
+     * value is written right after it. Data is written into temporary file, which replaces
+     * the file by atomic rename
+     *
+     * @param key   to be written
+     * @param valueBytes serialized value to be written
+     * @param path  path to the file
+     * @throws IllegalArgumentException if key cannot be serialized
+     */
+    private void writeEntryToFile(K key, byte[] valueBytes, Path path) throws IOException {
+        int length = keySerializer.sizeOf(key) + valueBytes.length;
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + length);
+        buffer.position(RECORD_HEADER_SIZE);
+        keySerializer.write(key, buffer);
+        buffer.put(valueBytes);
+        buffer.putInt(0, RECORD_MAGIC)
+                .putInt(Integer.BYTES, Crc32c.compute(buffer.array(), RECORD_HEADER_SIZE, length));
+        buffer.flip();
+
+        StorageIoEvent event = new StorageIoEvent();
+        event.begin();
+        Path writingPath = path.resolveSibling(path.getFileName() + WRITING_SUFFIX);
+        try (FileChannel channel = FileChannel.open(writingPath, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
         }
+        Files.move(writingPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        ioCounter.recordWrite(buffer.limit());
+        commitEvent(event, "write", key.hashCode(), buffer.limit(), path);
     }
 
     /**
-     * Writes mapping key-value to file
+     * Creates file in subdirectory defined by key hash, like {@code directory/3f/a0/}
      *
-     * @param entry mapping key-value
-     * @param path  path to the file. If null, file is created
+     * @return path to created file
      */
-    private void writeEntryToFile(Map.Entry<K, V> entry, Path path) throws IOException {
+    private Path createFile(K key) throws IOException {
+        int hash = spread(key.hashCode());
+        Path subdirectory = directory
+                .resolve(String.format("%02x", (hash >>> 8) & 0xFF))
+                .resolve(String.format("%02x", hash & 0xFF));
+        Files.createDirectories(subdirectory);
+        return Files.createTempFile(subdirectory, null, ENTRY_SUFFIX);
+    }
 
-        try (OutputStream outputStream = Files.newOutputStream(path);
-             ObjectOutputStream objectOutputStream = new ObjectOutputStream(outputStream)) {
+    /**
+     * Rewrites files of earlier versions in the current format. They are serialized entries
+     * directly in the directory, while current files are only in subdirectories
+     */
+    private void migrateLegacyFiles() {
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(path -> path.getFileName().toString().endsWith(WRITING_SUFFIX))
+                    .filter(Files::isRegularFile)
+                    .forEach(this::migrateLegacyFile);
+        } catch (IOException | SecurityException e) {
+            throw new CacheException("Contact admin. Cannot read directory " + directory, e);
+        }
+    }
 
-            objectOutputStream.writeObject(entry);
-            objectOutputStream.flush();
+    @SuppressWarnings("unchecked")
+    private void migrateLegacyFile(Path path) {
+        Map.Entry<K, V> entry;
+        try (ObjectInputStream input = new ObjectInputStream(Files.newInputStream(path))) {
+            entry = (Map.Entry<K, V>) input.readObject();
+            ioCounter.recordRead(Files.size(path));
+        } catch (ClassNotFoundException | ClassCastException | ObjectStreamException | EOFException e) {
+            logger.error("Cannot get data from legacy file {}: {}", path.toUri(), e.getLocalizedMessage());
+            quarantine(path);
+            return;
+        } catch (IOException e) {
+            throw new CacheException("IO error. Please check your storage drive", e);
+        }
+
+        try {
+            writeEntryToFile(entry.getKey(), valueSerializer.toBytes(entry.getValue()), createFile(entry.getKey()));
+        } catch (ClassCastException | IllegalArgumentException | NullPointerException e) {
+            logger.error("Cannot convert legacy file {}: {}", path.toUri(), e.getLocalizedMessage());
+            quarantine(path);
+            return;
+        } catch (IOException e) {
+            throw new CacheException("Unable to convert legacy file " + path, e);
+        }
+        deleteFile(path);
+        logger.info("Legacy file {} converted", path.toUri());
+    }
+
+    /**
+     * Adds file read from directory to index, if the key was not written or removed meanwhile.
+     * Entry of the same file without known hash is replaced
+     */
+    private void addToIndex(K key, IndexEntry entry) {
+        Stripe<K> stripe = stripeFor(key);
+        stripe.lock.writeLock().lock();
+        try {
+            IndexEntry current = stripe.indexMap.get(key);
+            boolean added = (current == null) && Files.exists(entry.path);
+            boolean hashFound = (current != null) && !current.hashKnown && current.path.equals(entry.path);
+            if (added || hashFound) {
+                stripe.indexMap.put(key, entry);
+            }
+        } finally {
+            stripe.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the key from index if it still points to the same file
+     */
+    private void removeFromIndex(K key, IndexEntry entry) {
+        Stripe<K> stripe = stripeFor(key);
+        stripe.lock.writeLock().lock();
+        try {
+            stripe.indexMap.remove(key, entry);
+        } finally {
+            stripe.lock.writeLock().unlock();
+        }
+    }
+
+    private Stripe<K> stripeFor(K key) {
+        return stripes[(spread(key.hashCode()) >>> 24) & (stripes.length - 1)];
+    }
+
+    /**
+     * Locks all stripes in the same order to avoid deadlocks
+     */
+    private void lockAll(boolean write) {
+        for (Stripe<K> stripe : stripes) {
+            (write ? stripe.lock.writeLock() : stripe.lock.readLock()).lock();
+        }
+    }
+
+    private void unlockAll(boolean write) {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            (write ? stripes[i].lock.writeLock() : stripes[i].lock.readLock()).unlock();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K> Stripe<K>[] createStripes(int count) {
+        Stripe<K>[] stripes = (Stripe<K>[]) new Stripe<?>[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe<>();
+        }
+        return stripes;
+    }
+
+    /**
+     * @return 64-bit FNV-1a hash of remaining bytes of the buffer
+     */
+    private static long contentHash(ByteBuffer buffer) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = buffer.position(); i < buffer.limit(); i++) {
+            hash ^= buffer.get(i) & 0xFF;
+            hash *= 0x100000001b3L;
         }
+        return hash;
     }
 
     /**
-     * @return path to created temp file
+     * Mixes bits of hash code, so keys with close hash codes get different stripes and directories
      */
-    private Path createFile() throws IOException {
-        return Files.createTempFile(directory, null, null);
+    private static int spread(int hashCode) {
+        int hash = hashCode * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
     }
 
     /**
@@ -269,34 +786,189 @@ public class FileSystemStorage<K extends Serializable, V extends Serializable> i
     }
 
     /**
+     * @return stream of all entry files in directory tree, should be closed.
+     *          Files being written and quarantined files are skipped
+     */
+    private Stream<Path> walkFiles() {
+        Path quarantine = directory.resolve(QUARANTINE_DIRECTORY);
+        try {
+            return Files.walk(directory)
+                    .filter(path -> !path.startsWith(quarantine))
+                    .filter(path -> !path.getFileName().toString().endsWith(WRITING_SUFFIX))
+                    .filter(Files::isRegularFile);
+        } catch (IOException | SecurityException e) {
+            throw new CacheException("Contact admin. Cannot read directory " + directory, e);
+        }
+    }
+
+    /**
+     * Reads beginning of the file to get the key, the whole file is read only if the key is longer.
+     * The rest of the file is read in chunks only to check the checksum, the value is not deserialized.
+     * Corrupted file is quarantined
+     *
+     * @param path to the file
+     * @return optional key from the file
+     */
+    private Optional<K> readKeyFromFile(Path path) {
+        K key = null;
+        boolean corrupted = false;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            int fileSize = (int) channel.size();
+            ByteBuffer buffer = ByteBuffer.allocate(Math.min(fileSize, KEY_PREFIX_SIZE));
+            readFully(channel, buffer, 0);
+            int checksum = readHeader(buffer);
+
+            Crc32c crc = new Crc32c();
+            crc.update(buffer.array(), RECORD_HEADER_SIZE, buffer.remaining());
+            ByteBuffer chunk = ByteBuffer.allocate(KEY_PREFIX_SIZE);
+            for (long position = buffer.limit(); position < fileSize; position += chunk.limit()) {
+                chunk.clear();
+                readFully(channel, chunk, position);
+                crc.update(chunk.array(), 0, chunk.limit());
+            }
+            ioCounter.recordRead(fileSize);
+            if (checksum != (int) crc.getValue()) {
+                throw new IllegalArgumentException("Checksum does not match");
+            }
+
+            try {
+                key = keySerializer.read(buffer);
+            } catch (BufferUnderflowException e) {
+                if (buffer.limit() >= fileSize) {
+                    throw e;
+                }
+                ByteBuffer whole = ByteBuffer.allocate(fileSize);
+                readFully(channel, whole, 0);
+                ioCounter.recordRead(fileSize);
+                whole.position(RECORD_HEADER_SIZE);
+                key = keySerializer.read(whole);
+            }
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            logger.error("Cannot get key from file {} from storage: {}", path.toUri(), e.getLocalizedMessage());
+            corrupted = true;
+        } catch (SecurityException e) {
+            throw new CacheException("No rights to read the storage directory. Check access rights", e);
+        } catch (IOException e) {
+            throw new CacheException("IO error. Please check your storage drive", e);
+        }
+
+        if (corrupted) {
+            quarantine(path);
+        }
+        return Optional.ofNullable(key);
+    }
+
+    /**
+     * Reads channel from the position until the buffer is full or the file ends, then flips the buffer
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int read = 0;
+        while (buffer.hasRemaining() && (read >= 0)) {
+            read = channel.read(buffer, position + buffer.position());
+        }
+        buffer.flip();
+    }
+
+    /**
+     * Checks magic and moves position after header
+     *
+     * @return checksum from the header
+     * @throws IllegalArgumentException if the buffer has no header
+     */
+    private static int readHeader(ByteBuffer buffer) {
+        if ((buffer.remaining() < RECORD_HEADER_SIZE) || (buffer.getInt(buffer.position()) != RECORD_MAGIC)) {
+            throw new IllegalArgumentException("File has no header");
+        }
+        int checksum = buffer.getInt(buffer.position() + Integer.BYTES);
+        buffer.position(buffer.position() + RECORD_HEADER_SIZE);
+        return checksum;
+    }
+
+    /**
+     * Moves corrupted file into quarantine subdirectory, so it is not read again
+     */
+    private void quarantine(Path path) {
+        Path quarantine = directory.resolve(QUARANTINE_DIRECTORY);
+        Path target = quarantine.resolve(directory.relativize(path).toString().replace(path.getFileSystem().getSeparator(), "-"));
+        try {
+            Files.createDirectories(quarantine);
+            Files.move(path, target, StandardCopyOption.REPLACE_EXISTING);
+            logger.warn("Corrupted file {} moved to {}", path.toUri(), target.toUri());
+        } catch (NoSuchFileException e) {
+            logger.debug("File {} removed before quarantine", path.toUri());
+        } catch (IOException e) {
+            logger.error("Cannot move corrupted file {} to quarantine: {}", path.toUri(), e.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * Reads the file, checks its checksum. Corrupted file is quarantined
+     *
      * @param path to the file
      * @return optional entry from the file
      */
-    @SuppressWarnings("unchecked")
-    private Optional<Map.Entry<K, V>> readEntryFromFile(Path path) {
+    private Optional<FileEntry<K, V>> readEntryFromFile(Path path) {
         if (path == null) {
             return Optional.empty();
         }
 
-        Map.Entry<K, V> entry = null;
+        FileEntry<K, V> entry = null;
+        boolean corrupted = false;
+        long bytes = 0;
+        StorageIoEvent event = new StorageIoEvent();
+        event.begin();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            readFully(channel, buffer, 0);
+            bytes = buffer.limit();
+            ioCounter.recordRead(bytes);
 
-        try (InputStream inputStream = Files.newInputStream(path);
-             ObjectInputStream objectInputStream = new ObjectInputStream(inputStream)) {
+            int checksum = readHeader(buffer);
+            if (checksum != Crc32c.compute(buffer.array(), RECORD_HEADER_SIZE, buffer.remaining())) {
+                throw new IllegalArgumentException("Checksum does not match");
+            }
 
-            entry = (Map.Entry<K, V>) objectInputStream.readObject();
-            if (entry != null)
-                indexMap.put(entry.getKey(), path);
+            K key = keySerializer.read(buffer);
+            long hash = contentHash(buffer.slice());
+            V value = valueSerializer.read(buffer);
+            entry = new FileEntry<>(key, value, hash);
 
-        } catch (ClassNotFoundException | InvalidClassException | OptionalDataException e) {
+        } catch (NoSuchFileException e) {
+            logger.debug("File {} removed before reading", path.toUri());
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
             logger.error("Cannot get data from file {} from storage: {}", path.toUri(), e.getLocalizedMessage());
+            corrupted = true;
         } catch (SecurityException e) {
             throw new CacheException("No rights to read the storage directory. Check access rights", e);
         } catch (IOException e) {
             throw new CacheException("IO error. Please check your storage drive", e);
         }
+
+        commitEvent(event, "read", (entry == null) ? 0 : entry.getKey().hashCode(), bytes, path);
+        if (corrupted) {
+            quarantine(path);
+        }
         return Optional.ofNullable(entry);
     }
 
+    /**
+     * Commits the event if it is enabled and longer then its threshold
+     */
+    private static void commitEvent(StorageIoEvent event, String operation, int keyHash, long bytes, Path path) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.keyHash = keyHash;
+            event.bytes = bytes;
+            event.path = path.toString();
+            event.commit();
+        }
+    }
+
     /**
      * Deletes file by path
      *
@@ -307,6 +979,8 @@ public class FileSystemStorage<K extends Serializable, V extends Serializable> i
             boolean fileNotDeleted = !path.toFile().delete();
             if (fileNotDeleted) {
                 logger.warn("File {} not deleted", path.toUri());
+            } else {
+                ioCounter.recordDelete();
             }
         }
     }
@@ -342,4 +1016,56 @@ public class FileSystemStorage<K extends Serializable, V extends Serializable> i
             throw new CacheException("Cannot create temporary directory " + directory, e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Part of index with its own lock
+     */
+    private static final class Stripe<K> {
+
+        @GuardedBy("lock")
+        private final Map<K, IndexEntry> indexMap = new HashMap<>();
+
+        private final InstrumentedReadWriteLock lock = new InstrumentedReadWriteLock();
+    }
+
+    /**
+     * File of the entry and hash of its value content
+     */
+    @Immutable
+    private static final class IndexEntry {
+
+        private final Path path;
+
+        private final long contentHash;
+
+        /**
+         * False if only the key was read from file
+         */
+        private final boolean hashKnown;
+
+        private IndexEntry(Path path, long contentHash) {
+            this.path = path;
+            this.contentHash = contentHash;
+            this.hashKnown = true;
+        }
+
+        private IndexEntry(Path path) {
+            this.path = path;
+            this.contentHash = 0;
+            this.hashKnown = false;
+        }
+    }
+
+    /**
+     * Entry read from file with hash of its value content
+     */
+    private static final class FileEntry<K, V> extends AbstractMap.SimpleImmutableEntry<K, V> {
+
+        private final long contentHash;
+
+        private FileEntry(K key, V value, long contentHash) {
+            super(key, value);
+            this.contentHash = contentHash;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.lxgolovin.cache.storage;
+
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Accumulates drive operations of a storage, see {@link IoStats}
+ */
+@ThreadSafe
+final class IoCounter {
+
+    private final LongAdder readCount = new LongAdder();
+
+    private final LongAdder bytesRead = new LongAdder();
+
+    private final LongAdder writeCount = new LongAdder();
+
+    private final LongAdder bytesWritten = new LongAdder();
+
+    private final LongAdder deleteCount = new LongAdder();
+
+    void recordRead(long bytes) {
+        readCount.increment();
+        bytesRead.add(bytes);
+    }
+
+    void recordWrite(long bytes) {
+        writeCount.increment();
+        bytesWritten.add(bytes);
+    }
+
+    void recordDelete() {
+        deleteCount.increment();
+    }
+
+    IoStats snapshot() {
+        return new IoStats(readCount.sum(), bytesRead.sum(), writeCount.sum(), bytesWritten.sum(), deleteCount.sum());
+    }
+}
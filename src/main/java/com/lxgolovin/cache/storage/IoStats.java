@@ -0,0 +1,82 @@
+package com.lxgolovin.cache.storage;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * Snapshot of drive operations of a {@link Storage}: files or records read, written and deleted,
+ * and bytes moved. Storages in memory do not count anything
+ *
+ * @see Storage#ioStats()
+ */
+@Immutable
+public final class IoStats {
+
+    private static final IoStats EMPTY = new IoStats(0, 0, 0, 0, 0);
+
+    private final long readCount;
+
+    private final long bytesRead;
+
+    private final long writeCount;
+
+    private final long bytesWritten;
+
+    private final long deleteCount;
+
+    IoStats(long readCount, long bytesRead, long writeCount, long bytesWritten, long deleteCount) {
+        this.readCount = readCount;
+        this.bytesRead = bytesRead;
+        this.writeCount = writeCount;
+        this.bytesWritten = bytesWritten;
+        this.deleteCount = deleteCount;
+    }
+
+    /**
+     * @return statistics with all counts equal to zero
+     */
+    public static IoStats empty() {
+        return EMPTY;
+    }
+
+    public long readCount() {
+        return readCount;
+    }
+
+    public long bytesRead() {
+        return bytesRead;
+    }
+
+    public long writeCount() {
+        return writeCount;
+    }
+
+    public long bytesWritten() {
+        return bytesWritten;
+    }
+
+    public long deleteCount() {
+        return deleteCount;
+    }
+
+    /**
+     * @param other statistics to add, cannot be null
+     * @return sum of both statistics, like for storage made of two storages
+     * @throws IllegalArgumentException if other is null
+     */
+    public IoStats plus(IoStats other) {
+        if (other == null) {
+            throw new IllegalArgumentException("Statistics should not be null");
+        }
+        return new IoStats(readCount + other.readCount, bytesRead + other.bytesRead,
+                writeCount + other.writeCount, bytesWritten + other.bytesWritten, deleteCount + other.deleteCount);
+    }
+
+    @Override
+    public String toString() {
+        return "IoStats{reads=" + readCount
+                + ", bytesRead=" + bytesRead
+                + ", writes=" + writeCount
+                + ", bytesWritten=" + bytesWritten
+                + ", deletes=" + deleteCount + "}";
+    }
+}
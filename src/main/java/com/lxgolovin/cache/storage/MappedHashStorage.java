@@ -0,0 +1,703 @@
+package com.lxgolovin.cache.storage;
+
+import com.lxgolovin.cache.core.CacheException;
+import com.lxgolovin.cache.serializer.Serializer;
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Implementation of {@link Storage} to keep the whole hash table in one memory-mapped file.
+ * The table uses open addressing with linear probing. Removed entries do not leave tombstones:
+ * the following entries of the probe run are shifted back, so a miss stops at the first empty slot
+ * however many entries were removed before. Slots have fixed size; key and value
+ * are written into the slot by {@link Serializer}s. If the record does not fit into the slot,
+ * the rest of it is kept in a chain of fixed-size blocks in the overflow area at the end of file.
+ *
+ * Nothing but the file mapping is kept on heap. When the storage is opened again with
+ * the same file, data is available at once, no index has to be rebuilt. Data is read and
+ * written through the page cache, call {@link #flush()} to force it to the drive.
+ *
+ * Keys are compared by serialized form, so key serializer should produce the same bytes
+ * for equal keys.
+ *
+ * File layout: header, slots, overflow blocks.
+ * Slot: state, key hash, record length, first overflow block, inline part of the record.
+ * Block: next block, part of the record.
+ *
+ * @param <K> key
+ * @param <V> value
+ * @see Storage
+ * @see FileSystemStorage
+ */
+@ThreadSafe
+public class MappedHashStorage<K, V> implements Storage<K, V>, Closeable {
+
+    public static final int DEFAULT_SLOT_SIZE = 128;
+
+    public static final int DEFAULT_BLOCK_SIZE = 256;
+
+    private static final int MAGIC = 0x43484D53;
+
+    private static final int VERSION = 2;
+
+    private static final int HEADER_SIZE = 64;
+
+    private static final int HEADER_SLOT_COUNT = 8;
+    private static final int HEADER_SLOT_SIZE = 12;
+    private static final int HEADER_BLOCK_SIZE = 16;
+    private static final int HEADER_SIZE_FIELD = 20;
+    private static final int HEADER_FREE_BLOCK = 24;
+    private static final int HEADER_BLOCK_COUNT = 28;
+
+    private static final byte SLOT_EMPTY = 0;
+    private static final byte SLOT_USED = 1;
+
+    private static final int SLOT_STATE = 0;
+    private static final int SLOT_HASH = 1;
+    private static final int SLOT_LENGTH = 5;
+    private static final int SLOT_BLOCK = 9;
+    private static final int SLOT_HEADER_SIZE = 13;
+
+    private static final int BLOCK_HEADER_SIZE = Integer.BYTES;
+
+    private static final int NO_BLOCK = -1;
+
+    /**
+     * Number of overflow blocks mapped at once
+     */
+    private static final int BLOCKS_PER_SEGMENT = 4096;
+
+    /**
+     * Maximum share of used slots
+     */
+    private static final double LOAD_FACTOR = 0.75;
+
+    private final Path file;
+
+    private final FileChannel channel;
+
+    /**
+     * Mapping of the header and all slots
+     */
+    private final MappedByteBuffer table;
+
+    /**
+     * Mappings of overflow area, each one keeps {@link #BLOCKS_PER_SEGMENT} blocks
+     */
+    @GuardedBy("lock")
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+
+    private final int slotCount;
+
+    private final int slotSize;
+
+    private final int blockSize;
+
+    private final Serializer<K> keySerializer;
+
+    private final Serializer<V> valueSerializer;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public MappedHashStorage(Path file, int capacity, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        this(file, capacity, DEFAULT_SLOT_SIZE, keySerializer, valueSerializer);
+    }
+
+    /**
+     * Opens existing storage file or creates new one. If the file exists, its own
+     * capacity and slot size are used
+     * @param file to keep the table, cannot be null
+     * @param capacity maximum number of entries for new file
+     * @param slotSize size of one slot for new file. Records not larger then slot size
+     *                 minus slot header do not use overflow area
+     * @param keySerializer to write keys, cannot be null
+     * @param valueSerializer to write values, cannot be null
+     * @throws IllegalArgumentException if any parameter is null or sizes are wrong
+     * @throws CacheException if file cannot be opened or has wrong format
+     */
+    public MappedHashStorage(Path file, int capacity, int slotSize,
+                             Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        if ((file == null) || (keySerializer == null) || (valueSerializer == null)) {
+            throw new IllegalArgumentException("File and serializers should not be null");
+        }
+        if ((capacity < 1) || (slotSize <= SLOT_HEADER_SIZE)) {
+            throw new IllegalArgumentException("Capacity should be positive and slot size greater then "
+                    + SLOT_HEADER_SIZE);
+        }
+        this.file = file;
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+
+        try {
+            boolean exists = Files.exists(file) && (Files.size(file) >= HEADER_SIZE);
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+
+            if (exists) {
+                MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+                if ((header.getInt(0) != MAGIC) || (header.getInt(4) != VERSION)) {
+                    channel.close();
+                    throw new CacheException("File " + file + " is not a storage file");
+                }
+                this.slotCount = header.getInt(HEADER_SLOT_COUNT);
+                this.slotSize = header.getInt(HEADER_SLOT_SIZE);
+                this.blockSize = header.getInt(HEADER_BLOCK_SIZE);
+            } else {
+                this.slotCount = tableSize(capacity);
+                this.slotSize = slotSize;
+                this.blockSize = DEFAULT_BLOCK_SIZE;
+            }
+
+            long tableBytes = HEADER_SIZE + (long) slotCount * this.slotSize;
+            if (tableBytes > Integer.MAX_VALUE) {
+                channel.close();
+                throw new IllegalArgumentException("Table of " + tableBytes + " bytes cannot be mapped");
+            }
+            table = channel.map(FileChannel.MapMode.READ_WRITE, 0, tableBytes);
+
+            if (exists) {
+                int blockCount = table.getInt(HEADER_BLOCK_COUNT);
+                while ((long) segments.size() * BLOCKS_PER_SEGMENT < blockCount) {
+                    mapSegment();
+                }
+            } else {
+                table.putInt(0, MAGIC);
+                table.putInt(4, VERSION);
+                table.putInt(HEADER_SLOT_COUNT, slotCount);
+                table.putInt(HEADER_SLOT_SIZE, this.slotSize);
+                table.putInt(HEADER_BLOCK_SIZE, blockSize);
+                table.putInt(HEADER_SIZE_FIELD, 0);
+                table.putInt(HEADER_FREE_BLOCK, NO_BLOCK);
+                table.putInt(HEADER_BLOCK_COUNT, 0);
+            }
+        } catch (IOException e) {
+            throw new CacheException("Cannot open storage file " + file, e);
+        }
+    }
+
+    /**
+     * @param key cannot be null
+     * @param value cannot be null
+     * @throws IllegalArgumentException if any key or value is null
+     * @throws CacheException if the table is full
+     */
+    @Override
+    public Optional<V> put(K key, V value) {
+        if ((key == null) || (value == null)) {
+            throw new IllegalArgumentException("Key and value should not be null");
+        }
+
+        byte[] keyBytes = keySerializer.toBytes(key);
+        ByteBuffer record = ByteBuffer.allocate(keyBytes.length + valueSerializer.sizeOf(value));
+        record.put(keyBytes);
+        valueSerializer.write(value, record);
+        int hash = hash(keyBytes);
+
+        lock.writeLock().lock();
+        try {
+            int slot = findSlot(keyBytes, hash);
+            Optional<V> oldValue = Optional.empty();
+            int oldChain = NO_BLOCK;
+            if (slot >= 0) {
+                oldValue = Optional.of(readEntry(slot).getValue());
+                oldChain = table.getInt(slotOffset(slot) + SLOT_BLOCK);
+            } else {
+                if (size() >= slotCount * LOAD_FACTOR) {
+                    throw new CacheException("Mapped storage is full: " + size() + " entries");
+                }
+                slot = -slot - 1;
+            }
+
+            // old chain is freed only after the slot points to the new one,
+            // so the new record never overwrites blocks the slot still refers to
+            writeRecord(slot, hash, record.array());
+            freeChain(oldChain);
+            if (!oldValue.isPresent()) {
+                table.putInt(HEADER_SIZE_FIELD, table.getInt(HEADER_SIZE_FIELD) + 1);
+            }
+            return oldValue;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param key cannot be null
+     * @throws IllegalArgumentException if key is null
+     */
+    @Override
+    public Optional<V> get(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key should not be null");
+        }
+
+        byte[] keyBytes = keySerializer.toBytes(key);
+        lock.readLock().lock();
+        try {
+            int slot = findSlot(keyBytes, hash(keyBytes));
+            return (slot >= 0) ? Optional.of(readEntry(slot).getValue()) : Optional.empty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param key cannot be null
+     * @throws IllegalArgumentException if key is null
+     */
+    @Override
+    public Optional<V> remove(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Input key should not be null");
+        }
+
+        byte[] keyBytes = keySerializer.toBytes(key);
+        lock.writeLock().lock();
+        try {
+            int slot = findSlot(keyBytes, hash(keyBytes));
+            if (slot < 0) {
+                return Optional.empty();
+            }
+
+            V value = readEntry(slot).getValue();
+            freeChain(table.getInt(slotOffset(slot) + SLOT_BLOCK));
+            shiftBack(slot);
+            table.putInt(HEADER_SIZE_FIELD, table.getInt(HEADER_SIZE_FIELD) - 1);
+            return Optional.of(value);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Reads all entries by scanning the slots
+     */
+    @Override
+    public Map<K, V> getAll() {
+        Map<K, V> map = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            for (int slot = 0; slot < slotCount; slot++) {
+                if (table.get(slotOffset(slot) + SLOT_STATE) == SLOT_USED) {
+                    Map.Entry<K, V> entry = readEntry(slot);
+                    map.put(entry.getKey(), entry.getValue());
+                }
+            }
+            return map;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Scans the slots and reads each entry while the stream is consumed.
+     * Entries shifted back by concurrent removes may be missed or returned twice
+     */
+    @Override
+    public Stream<Map.Entry<K, V>> entries() {
+        return IntStream.range(0, slotCount)
+                .mapToObj(this::readEntryIfUsed)
+                .filter(Optional::isPresent)
+                .map(Optional::get);
+    }
+
+    /**
+     * Scans the slots and reads only key bytes, usually from the slot without overflow blocks.
+     * Values are not deserialized, so the storage is opened by a cache level at once
+     */
+    @Override
+    public Stream<K> keys() {
+        List<K> keys = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (int slot = 0; slot < slotCount; slot++) {
+                if (table.get(slotOffset(slot) + SLOT_STATE) == SLOT_USED) {
+                    keys.add(readKey(slot));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return keys.stream();
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        if (key == null) {
+            return false;
+        }
+
+        byte[] keyBytes = keySerializer.toBytes(key);
+        lock.readLock().lock();
+        try {
+            return findSlot(keyBytes, hash(keyBytes)) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Marks all slots empty. Overflow blocks are reused from the beginning of the area
+     */
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            for (int slot = 0; slot < slotCount; slot++) {
+                table.put(slotOffset(slot) + SLOT_STATE, SLOT_EMPTY);
+            }
+            table.putInt(HEADER_SIZE_FIELD, 0);
+            table.putInt(HEADER_FREE_BLOCK, NO_BLOCK);
+            table.putInt(HEADER_BLOCK_COUNT, 0);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        return table.getInt(HEADER_SIZE_FIELD);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * @return maximum number of entries in the table
+     */
+    public int capacity() {
+        return (int) (slotCount * LOAD_FACTOR);
+    }
+
+    /**
+     * Forces all changes to the drive
+     */
+    public void flush() {
+        lock.writeLock().lock();
+        try {
+            table.force();
+            segments.forEach(MappedByteBuffer::force);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Flushes data and closes the file. Storage cannot be used after closing
+     */
+    @Override
+    public void close() {
+        flush();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new CacheException("Cannot close storage file " + file, e);
+        }
+    }
+
+    Path getFile() {
+        return file;
+    }
+
+    /**
+     * @return number of slots looked through to find the key or to find out it is absent
+     */
+    int probeLength(K key) {
+        byte[] keyBytes = keySerializer.toBytes(key);
+        int hash = hash(keyBytes);
+        lock.readLock().lock();
+        try {
+            int found = findSlot(keyBytes, hash);
+            int slot = (found >= 0) ? found : -found - 1;
+            return ((slot - hash) & (slotCount - 1)) + 1;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Looks for the slot with the key
+     * @return index of the slot with the key if found. Otherwise returns (-(insertion slot) - 1),
+     *          where insertion slot is the first empty slot on the probe sequence
+     */
+    private int findSlot(byte[] keyBytes, int hash) {
+        int mask = slotCount - 1;
+
+        for (int i = 0, slot = hash & mask; i < slotCount; i++, slot = (slot + 1) & mask) {
+            int offset = slotOffset(slot);
+            if (table.get(offset + SLOT_STATE) == SLOT_EMPTY) {
+                return -slot - 1;
+            }
+            if ((table.getInt(offset + SLOT_HASH) == hash) && keyEquals(slot, keyBytes)) {
+                return slot;
+            }
+        }
+        throw new CacheException("Mapped storage is full: no free slots");
+    }
+
+    /**
+     * Empties the slot and moves back the following entries of the probe run which
+     * would not be found across the empty slot. Entry is moved if its home slot is not
+     * between the empty slot and its current slot
+     */
+    @GuardedBy("lock")
+    private void shiftBack(int empty) {
+        int mask = slotCount - 1;
+        byte[] slotData = new byte[slotSize];
+
+        for (int slot = (empty + 1) & mask; slot != empty; slot = (slot + 1) & mask) {
+            int offset = slotOffset(slot);
+            if (table.get(offset + SLOT_STATE) == SLOT_EMPTY) {
+                break;
+            }
+            int home = table.getInt(offset + SLOT_HASH) & mask;
+            if (((slot - home) & mask) >= ((slot - empty) & mask)) {
+                ByteBuffer source = table.duplicate();
+                source.position(offset);
+                source.get(slotData);
+                ByteBuffer target = table.duplicate();
+                target.position(slotOffset(empty));
+                target.put(slotData);
+                empty = slot;
+            }
+        }
+        table.put(slotOffset(empty) + SLOT_STATE, SLOT_EMPTY);
+    }
+
+    /**
+     * Compares key bytes with the beginning of the record in the slot.
+     * Serialized keys are self-delimiting, so equal prefix means equal keys
+     */
+    private boolean keyEquals(int slot, byte[] keyBytes) {
+        int offset = slotOffset(slot);
+        if (table.getInt(offset + SLOT_LENGTH) < keyBytes.length) {
+            return false;
+        }
+
+        int inline = Math.min(keyBytes.length, inlineCapacity());
+        int dataOffset = offset + SLOT_HEADER_SIZE;
+        for (int i = 0; i < inline; i++) {
+            if (table.get(dataOffset + i) != keyBytes[i]) {
+                return false;
+            }
+        }
+        if (inline == keyBytes.length) {
+            return true;
+        }
+
+        byte[] record = readRecord(slot);
+        for (int i = inline; i < keyBytes.length; i++) {
+            if (record[i] != keyBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Optional<Map.Entry<K, V>> readEntryIfUsed(int slot) {
+        lock.readLock().lock();
+        try {
+            return (table.get(slotOffset(slot) + SLOT_STATE) == SLOT_USED)
+                    ? Optional.of(readEntry(slot))
+                    : Optional.empty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reads the key from the inline part of the slot. If the key is longer, the whole record is read
+     */
+    @GuardedBy("lock")
+    private K readKey(int slot) {
+        int offset = slotOffset(slot);
+        int length = table.getInt(offset + SLOT_LENGTH);
+        if (length > inlineCapacity()) {
+            ByteBuffer inline = table.duplicate();
+            inline.position(offset + SLOT_HEADER_SIZE);
+            inline.limit(offset + SLOT_HEADER_SIZE + inlineCapacity());
+            try {
+                return keySerializer.read(inline.slice());
+            } catch (RuntimeException e) {
+                // key continues in overflow blocks
+            }
+        }
+        try {
+            return keySerializer.read(ByteBuffer.wrap(readRecord(slot)));
+        } catch (RuntimeException e) {
+            throw new CacheException("Corrupted record in slot " + slot + " of " + file, e);
+        }
+    }
+
+    private Map.Entry<K, V> readEntry(int slot) {
+        ByteBuffer record = ByteBuffer.wrap(readRecord(slot));
+        try {
+            K key = keySerializer.read(record);
+            V value = valueSerializer.read(record);
+            return new AbstractMap.SimpleImmutableEntry<>(key, value);
+        } catch (RuntimeException e) {
+            throw new CacheException("Corrupted record in slot " + slot + " of " + file, e);
+        }
+    }
+
+    /**
+     * Collects record bytes from the slot and its overflow blocks
+     */
+    private byte[] readRecord(int slot) {
+        int offset = slotOffset(slot);
+        byte[] record = new byte[table.getInt(offset + SLOT_LENGTH)];
+
+        int inline = Math.min(record.length, inlineCapacity());
+        ByteBuffer slotData = table.duplicate();
+        slotData.position(offset + SLOT_HEADER_SIZE);
+        slotData.get(record, 0, inline);
+
+        int position = inline;
+        int block = table.getInt(offset + SLOT_BLOCK);
+        while (position < record.length) {
+            if (block == NO_BLOCK) {
+                throw new CacheException("Corrupted overflow chain in slot " + slot + " of " + file);
+            }
+            ByteBuffer blockData = segments.get(block / BLOCKS_PER_SEGMENT).duplicate();
+            int blockOffset = (block % BLOCKS_PER_SEGMENT) * blockSize;
+            int length = Math.min(record.length - position, blockSize - BLOCK_HEADER_SIZE);
+            blockData.position(blockOffset + BLOCK_HEADER_SIZE);
+            blockData.get(record, position, length);
+            position += length;
+            block = blockData.getInt(blockOffset);
+        }
+        return record;
+    }
+
+    /**
+     * Writes record into the slot. The part that does not fit goes to new overflow blocks
+     */
+    private void writeRecord(int slot, int hash, byte[] record) {
+        int inline = Math.min(record.length, inlineCapacity());
+        int blockData = blockSize - BLOCK_HEADER_SIZE;
+        int blocksNeeded = (record.length - inline + blockData - 1) / blockData;
+
+        int[] blocks = new int[blocksNeeded];
+        for (int i = 0; i < blocksNeeded; i++) {
+            try {
+                blocks[i] = allocateBlock();
+            } catch (RuntimeException e) {
+                for (int j = 0; j < i; j++) {
+                    freeBlock(blocks[j]);
+                }
+                throw e;
+            }
+        }
+
+        for (int i = 0, position = inline; i < blocksNeeded; i++, position += blockData) {
+            MappedByteBuffer segment = segments.get(blocks[i] / BLOCKS_PER_SEGMENT);
+            int blockOffset = (blocks[i] % BLOCKS_PER_SEGMENT) * blockSize;
+            segment.putInt(blockOffset, (i + 1 < blocksNeeded) ? blocks[i + 1] : NO_BLOCK);
+            ByteBuffer target = segment.duplicate();
+            target.position(blockOffset + BLOCK_HEADER_SIZE);
+            target.put(record, position, Math.min(blockData, record.length - position));
+        }
+
+        int offset = slotOffset(slot);
+        ByteBuffer target = table.duplicate();
+        target.position(offset + SLOT_HEADER_SIZE);
+        target.put(record, 0, inline);
+        table.putInt(offset + SLOT_HASH, hash);
+        table.putInt(offset + SLOT_LENGTH, record.length);
+        table.putInt(offset + SLOT_BLOCK, (blocksNeeded > 0) ? blocks[0] : NO_BLOCK);
+        table.put(offset + SLOT_STATE, SLOT_USED);
+    }
+
+    private int allocateBlock() {
+        int block = table.getInt(HEADER_FREE_BLOCK);
+        if (block != NO_BLOCK) {
+            MappedByteBuffer segment = segments.get(block / BLOCKS_PER_SEGMENT);
+            table.putInt(HEADER_FREE_BLOCK, segment.getInt((block % BLOCKS_PER_SEGMENT) * blockSize));
+            return block;
+        }
+
+        block = table.getInt(HEADER_BLOCK_COUNT);
+        if (block / BLOCKS_PER_SEGMENT >= segments.size()) {
+            mapSegment();
+        }
+        table.putInt(HEADER_BLOCK_COUNT, block + 1);
+        return block;
+    }
+
+    /**
+     * Returns all blocks of the chain into free list
+     */
+    private void freeChain(int block) {
+        while (block != NO_BLOCK) {
+            MappedByteBuffer segment = segments.get(block / BLOCKS_PER_SEGMENT);
+            int next = segment.getInt((block % BLOCKS_PER_SEGMENT) * blockSize);
+            freeBlock(block);
+            block = next;
+        }
+    }
+
+    private void freeBlock(int block) {
+        MappedByteBuffer segment = segments.get(block / BLOCKS_PER_SEGMENT);
+        segment.putInt((block % BLOCKS_PER_SEGMENT) * blockSize, table.getInt(HEADER_FREE_BLOCK));
+        table.putInt(HEADER_FREE_BLOCK, block);
+    }
+
+    /**
+     * Maps next segment of the overflow area. The file is extended if needed
+     */
+    private void mapSegment() {
+        long segmentBytes = (long) BLOCKS_PER_SEGMENT * blockSize;
+        long position = HEADER_SIZE + (long) slotCount * slotSize + segments.size() * segmentBytes;
+        try {
+            segments.add(channel.map(FileChannel.MapMode.READ_WRITE, position, segmentBytes));
+        } catch (IOException e) {
+            throw new CacheException("Cannot extend storage file " + file, e);
+        }
+    }
+
+    private int slotOffset(int slot) {
+        return HEADER_SIZE + slot * slotSize;
+    }
+
+    private int inlineCapacity() {
+        return slotSize - SLOT_HEADER_SIZE;
+    }
+
+    private static int tableSize(int capacity) {
+        long slots = (long) Math.ceil(capacity / LOAD_FACTOR);
+        int size = Integer.highestOneBit((int) Math.min(1 << 30, Math.max(2, slots)));
+        return (size < slots) ? size << 1 : size;
+    }
+
+    /**
+     * FNV-1a hash of serialized key with final mixing
+     */
+    private static int hash(byte[] bytes) {
+        int hash = 0x811C9DC5;
+        for (byte b : bytes) {
+            hash ^= (b & 0xFF);
+            hash *= 0x01000193;
+        }
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -1,19 +1,25 @@
 package com.lxgolovin.cache.storage;
 
+import com.lxgolovin.cache.stats.SizeEstimators;
 import net.jcip.annotations.GuardedBy;
 import net.jcip.annotations.Immutable;
 import net.jcip.annotations.ThreadSafe;
 
+import java.util.AbstractMap;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
 
 /**
  * Implementation of {@link Storage} to keep data in memory
+ * Optionally all changes are appended to {@link WriteAheadLog}, so data is restored after restart
  * @see Storage
  * @see FileSystemStorage
+ * @see WriteAheadLog
  */
 @Immutable
 @ThreadSafe
@@ -22,12 +28,39 @@ public class MemoryStorage<K, V> implements Storage<K, V>{
     @GuardedBy("this")
     private final ConcurrentMap<K, V> storageMap;
 
+    /**
+     * Log of changes, null if storage is not durable
+     */
+    private final WriteAheadLog<K, V> wal;
+
+    /**
+     * Keeps changes of map and records of log in the same order.
+     * Record is appended before the map is changed, so a failed append leaves the map as is
+     */
+    private final ReentrantLock walLock = new ReentrantLock();
+
     public MemoryStorage() {
         storageMap = new ConcurrentHashMap<>();
+        wal = null;
     }
 
     public MemoryStorage(Map<K, V> map) {
         storageMap = (map == null) ? new ConcurrentHashMap<>() : new ConcurrentHashMap<>(map);
+        wal = null;
+    }
+
+    /**
+     * Creates storage with data restored from the log. All changes are appended to the log
+     * @param wal log of changes, cannot be null
+     * @throws IllegalArgumentException if log is null
+     */
+    public MemoryStorage(WriteAheadLog<K, V> wal) {
+        if (wal == null) {
+            throw new IllegalArgumentException("Write-ahead log should not be null");
+        }
+        storageMap = new ConcurrentHashMap<>(wal.recovered());
+        this.wal = wal;
+        wal.attach(storageMap, walLock);
     }
 
     /**
@@ -49,7 +82,21 @@ public class MemoryStorage<K, V> implements Storage<K, V>{
             throw new IllegalArgumentException("Input key and value should not be null");
         }
 
-        return Optional.ofNullable(storageMap.put(key, value));
+        if (wal == null) {
+            return Optional.ofNullable(storageMap.put(key, value));
+        }
+
+        V oldValue;
+        long ticket;
+        walLock.lock();
+        try {
+            ticket = wal.logPut(key, value);
+            oldValue = storageMap.put(key, value);
+        } finally {
+            walLock.unlock();
+        }
+        afterLogged(ticket);
+        return Optional.ofNullable(oldValue);
     }
 
     /**
@@ -81,11 +128,40 @@ public class MemoryStorage<K, V> implements Storage<K, V>{
             throw new IllegalArgumentException("Input key should not be null");
         }
 
-        return Optional.ofNullable(storageMap.remove(key));
+        if (wal == null) {
+            return Optional.ofNullable(storageMap.remove(key));
+        }
+
+        V oldValue;
+        long ticket = 0;
+        walLock.lock();
+        try {
+            if (storageMap.containsKey(key)) {
+                ticket = wal.logRemove(key);
+            }
+            oldValue = storageMap.remove(key);
+        } finally {
+            walLock.unlock();
+        }
+        afterLogged(ticket);
+        return Optional.ofNullable(oldValue);
     }
 
     public void clear(){
-        storageMap.clear();
+        if (wal == null) {
+            storageMap.clear();
+            return;
+        }
+
+        long ticket;
+        walLock.lock();
+        try {
+            ticket = wal.logClear();
+            storageMap.clear();
+        } finally {
+            walLock.unlock();
+        }
+        afterLogged(ticket);
     }
 
     public int size() {
@@ -95,4 +171,42 @@ public class MemoryStorage<K, V> implements Storage<K, V>{
     public boolean isEmpty() {
         return storageMap.isEmpty();
     }
+
+    /**
+     * @return size of an entry of {@link ConcurrentHashMap}
+     */
+    @Override
+    public long entryOverhead() {
+        return SizeEstimators.HASH_ENTRY;
+    }
+
+    @Override
+    public boolean valuesOnHeap() {
+        return true;
+    }
+
+    /**
+     * Waits for the record to be forced outside of the lock, so concurrent writers are forced together.
+     * Checkpoints are written by the log in background
+     */
+    private void afterLogged(long ticket) {
+        wal.await(ticket);
+    }
+
+    /**
+     * Streams entries of the map without copying it
+     */
+    @Override
+    public Stream<Map.Entry<K, V>> entries() {
+        return storageMap.entrySet().stream()
+                .map(e -> new AbstractMap.SimpleImmutableEntry<>(e.getKey(), e.getValue()));
+    }
+
+    /**
+     * Streams keys of the map without copying it
+     */
+    @Override
+    public Stream<K> keys() {
+        return storageMap.keySet().stream();
+    }
 }
@@ -0,0 +1,286 @@
+package com.lxgolovin.cache.storage;
+
+import com.lxgolovin.cache.core.CacheException;
+import com.lxgolovin.cache.serializer.Serializer;
+import com.lxgolovin.cache.stats.SizeEstimators;
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Implementation of {@link Storage} to keep values in direct memory outside of the heap.
+ * Values are serialized by {@link Serializer} into chunks of slabs, allocated by {@link SlabAllocator}.
+ * Only keys with addresses of the chunks are kept on heap, so large storage does not
+ * increase old generation and garbage collection pauses.
+ *
+ * Each chunk keeps length of the serialized value followed by the value bytes
+ *
+ * @param <K> key
+ * @param <V> value
+ * @see Storage
+ * @see MemoryStorage
+ * @see SlabAllocator
+ */
+@ThreadSafe
+public class OffHeapStorage<K, V> implements Storage<K, V> {
+
+    /**
+     * Default maximum size of direct memory for the storage
+     */
+    public static final long DEFAULT_CAPACITY = 64L << 20;
+
+    private static final int CHUNK_HEADER_SIZE = Integer.BYTES;
+
+    /**
+     * Addresses of the chunks with values
+     */
+    @GuardedBy("lock")
+    private final Map<K, Long> indexMap = new HashMap<>();
+
+    @GuardedBy("lock")
+    private final SlabAllocator allocator;
+
+    private final Serializer<V> valueSerializer;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public OffHeapStorage(Serializer<V> valueSerializer) {
+        this(valueSerializer, DEFAULT_CAPACITY);
+    }
+
+    public OffHeapStorage(Serializer<V> valueSerializer, long capacity) {
+        this(valueSerializer, capacity, SlabAllocator.DEFAULT_SLAB_SIZE);
+    }
+
+    /**
+     * @param valueSerializer to write values into direct memory, cannot be null
+     * @param capacity maximum number of bytes in direct memory
+     * @param slabSize size of one slab, power of two. Values larger then slab cannot be stored
+     * @throws IllegalArgumentException if serializer is null or sizes are wrong
+     */
+    public OffHeapStorage(Serializer<V> valueSerializer, long capacity, int slabSize) {
+        if (valueSerializer == null) {
+            throw new IllegalArgumentException("Serializer should not be null");
+        }
+        this.valueSerializer = valueSerializer;
+        this.allocator = new SlabAllocator(slabSize, capacity);
+    }
+
+    /**
+     * @param key cannot be null
+     * @param value cannot be null
+     * @throws IllegalArgumentException if any key or value is null or value is larger then slab
+     * @throws CacheException if there is no free direct memory within capacity
+     */
+    @Override
+    public Optional<V> put(K key, V value) {
+        if ((key == null) || (value == null)) {
+            throw new IllegalArgumentException("Input key and value should not be null");
+        }
+
+        int valueSize = valueSerializer.sizeOf(value);
+        lock.writeLock().lock();
+        try {
+            long address = allocator.allocate(CHUNK_HEADER_SIZE + valueSize);
+            try {
+                ByteBuffer chunk = chunk(address, CHUNK_HEADER_SIZE + valueSize);
+                chunk.putInt(valueSize);
+                valueSerializer.write(value, chunk);
+            } catch (RuntimeException e) {
+                allocator.free(address);
+                throw e;
+            }
+
+            Long oldAddress = indexMap.put(key, address);
+            return release(oldAddress);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param key cannot be null
+     * @throws IllegalArgumentException if key is null
+     */
+    @Override
+    public Optional<V> get(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Input key should not be null");
+        }
+
+        lock.readLock().lock();
+        try {
+            return Optional.ofNullable(indexMap.get(key)).map(this::readValue);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param key cannot be null
+     * @throws IllegalArgumentException if key is null
+     */
+    @Override
+    public Optional<V> remove(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Input key should not be null");
+        }
+
+        lock.writeLock().lock();
+        try {
+            return release(indexMap.remove(key));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Map<K, V> getAll() {
+        Map<K, V> map = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            indexMap.forEach((k, address) -> map.put(k, readValue(address)));
+            return map;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Values are read from direct memory while the stream is consumed, removed keys are skipped
+     */
+    @Override
+    public Stream<Map.Entry<K, V>> entries() {
+        return keys()
+                .map(key -> get(key).map(value -> (Map.Entry<K, V>) new AbstractMap.SimpleImmutableEntry<>(key, value)))
+                .filter(Optional::isPresent)
+                .map(Optional::get);
+    }
+
+    /**
+     * Copies keys of the index, no value is read
+     */
+    @Override
+    public Stream<K> keys() {
+        List<K> keys;
+        lock.readLock().lock();
+        try {
+            keys = new ArrayList<>(indexMap.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+        return keys.stream();
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        lock.readLock().lock();
+        try {
+            return ((key != null) && indexMap.containsKey(key));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            indexMap.clear();
+            allocator.reset();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return indexMap.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        lock.readLock().lock();
+        try {
+            return indexMap.isEmpty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Index entry in heap: entry of the map and the boxed address. Values are in direct memory
+     */
+    @Override
+    public long entryOverhead() {
+        return SizeEstimators.HASH_ENTRY + SizeEstimators.LONG.sizeOf(0L);
+    }
+
+    /**
+     * @return number of direct memory bytes in chunks used by values
+     */
+    public long usedBytes() {
+        lock.readLock().lock();
+        try {
+            return allocator.usedBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return number of direct memory bytes allocated by the storage
+     */
+    public long allocatedBytes() {
+        lock.readLock().lock();
+        try {
+            return allocator.allocatedBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reads value and frees its chunk
+     */
+    private Optional<V> release(Long address) {
+        if (address == null) {
+            return Optional.empty();
+        }
+        V value = readValue(address);
+        allocator.free(address);
+        return Optional.of(value);
+    }
+
+    private V readValue(long address) {
+        ByteBuffer chunk = chunk(address, CHUNK_HEADER_SIZE);
+        int valueSize = chunk.getInt();
+        chunk.limit(chunk.position() + valueSize);
+        return valueSerializer.read(chunk);
+    }
+
+    /**
+     * @return view of the chunk with own position and limit, so readers do not interfere
+     */
+    private ByteBuffer chunk(long address, int size) {
+        ByteBuffer chunk = allocator.slab(address).duplicate();
+        int offset = SlabAllocator.offset(address);
+        chunk.limit(offset + Math.max(size, CHUNK_HEADER_SIZE));
+        chunk.position(offset);
+        return chunk;
+    }
+}
@@ -0,0 +1,212 @@
+package com.lxgolovin.cache.storage;
+
+import com.lxgolovin.cache.core.CacheException;
+import net.jcip.annotations.NotThreadSafe;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Allocator of chunks in direct memory. Memory is requested from the system in slabs
+ * of the same size. Each slab is assigned to one size class and is cut into chunks of
+ * this class. Size classes are powers of two from {@link #MIN_CHUNK_SIZE} up to the
+ * slab size. Freed chunks are kept in free list of their class and reused first.
+ *
+ * Chunk address is a long value: index of the slab in high 32 bits and offset of the
+ * chunk inside the slab in low 32 bits.
+ * The allocator is not thread safe, the owner should guard it
+ *
+ * @see OffHeapStorage
+ */
+@NotThreadSafe
+class SlabAllocator {
+
+    static final int MIN_CHUNK_SIZE = 64;
+
+    static final int DEFAULT_SLAB_SIZE = 1 << 20;
+
+    private final int slabSize;
+
+    private final int maxSlabs;
+
+    /**
+     * All slabs allocated from the system
+     */
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+
+    /**
+     * Size class for every slab. -1 if slab is not assigned
+     */
+    private int[] slabClasses = new int[16];
+
+    /**
+     * Slabs returned by {@link #reset()} to be reused by any size class
+     */
+    private final Deque<Integer> emptySlabs = new ArrayDeque<>();
+
+    private final SizeClass[] sizeClasses;
+
+    private long usedBytes;
+
+    /**
+     * Chunks of one size: free list and slab that is being cut
+     */
+    private static final class SizeClass {
+        private final int chunkSize;
+        private long[] freeChunks = new long[16];
+        private int freeCount;
+        private int currentSlab = -1;
+        private int nextOffset;
+
+        SizeClass(int chunkSize) {
+            this.chunkSize = chunkSize;
+        }
+
+        void pushFree(long address) {
+            if (freeCount == freeChunks.length) {
+                freeChunks = Arrays.copyOf(freeChunks, freeCount * 2);
+            }
+            freeChunks[freeCount++] = address;
+        }
+    }
+
+    /**
+     * @param slabSize size of one slab. Should be power of two not less then {@link #MIN_CHUNK_SIZE}
+     * @param capacity maximum number of bytes to be allocated in direct memory
+     * @throws IllegalArgumentException if slab size is not power of two or capacity is less then one slab
+     */
+    SlabAllocator(int slabSize, long capacity) {
+        if ((slabSize < MIN_CHUNK_SIZE) || (Integer.bitCount(slabSize) != 1)) {
+            throw new IllegalArgumentException("Slab size should be power of two not less then " + MIN_CHUNK_SIZE);
+        }
+        if (capacity < slabSize) {
+            throw new IllegalArgumentException("Capacity should not be less then slab size");
+        }
+        this.slabSize = slabSize;
+        this.maxSlabs = (int) Math.min(Integer.MAX_VALUE, capacity / slabSize);
+
+        int classes = Integer.numberOfTrailingZeros(slabSize) - Integer.numberOfTrailingZeros(MIN_CHUNK_SIZE) + 1;
+        sizeClasses = new SizeClass[classes];
+        for (int i = 0; i < classes; i++) {
+            sizeClasses[i] = new SizeClass(MIN_CHUNK_SIZE << i);
+        }
+    }
+
+    /**
+     * @param size number of bytes needed
+     * @return address of the chunk that has at least size bytes
+     * @throws IllegalArgumentException if size is greater then slab size
+     * @throws CacheException if capacity is exhausted
+     */
+    long allocate(int size) {
+        SizeClass sizeClass = sizeClasses[classIndex(size)];
+        usedBytes += sizeClass.chunkSize;
+
+        if (sizeClass.freeCount > 0) {
+            return sizeClass.freeChunks[--sizeClass.freeCount];
+        }
+
+        if ((sizeClass.currentSlab < 0) || (sizeClass.nextOffset + sizeClass.chunkSize > slabSize)) {
+            sizeClass.currentSlab = takeSlab(classIndex(size));
+            sizeClass.nextOffset = 0;
+        }
+
+        long address = address(sizeClass.currentSlab, sizeClass.nextOffset);
+        sizeClass.nextOffset += sizeClass.chunkSize;
+        return address;
+    }
+
+    /**
+     * Returns chunk to the free list of its size class
+     * @param address of the chunk
+     */
+    void free(long address) {
+        SizeClass sizeClass = sizeClasses[slabClasses[slabIndex(address)]];
+        usedBytes -= sizeClass.chunkSize;
+        sizeClass.pushFree(address);
+    }
+
+    /**
+     * Frees all chunks. Slabs are kept allocated to be reused
+     */
+    void reset() {
+        emptySlabs.clear();
+        for (int i = 0; i < slabs.size(); i++) {
+            slabClasses[i] = -1;
+            emptySlabs.push(i);
+        }
+        for (SizeClass sizeClass : sizeClasses) {
+            sizeClass.freeCount = 0;
+            sizeClass.currentSlab = -1;
+        }
+        usedBytes = 0;
+    }
+
+    /**
+     * @param address of the chunk
+     * @return slab containing the chunk. Buffer is shared, use absolute access or duplicate it
+     */
+    ByteBuffer slab(long address) {
+        return slabs.get(slabIndex(address));
+    }
+
+    /**
+     * @return number of bytes in used chunks
+     */
+    long usedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * @return number of bytes allocated in direct memory
+     */
+    long allocatedBytes() {
+        return (long) slabs.size() * slabSize;
+    }
+
+    int maxChunkSize() {
+        return slabSize;
+    }
+
+    static int slabIndex(long address) {
+        return (int) (address >>> 32);
+    }
+
+    static int offset(long address) {
+        return (int) address;
+    }
+
+    private static long address(int slabIndex, int offset) {
+        return ((long) slabIndex << 32) | offset;
+    }
+
+    private int classIndex(int size) {
+        if ((size < 0) || (size > slabSize)) {
+            throw new IllegalArgumentException("Chunk of " + size + " bytes is larger then slab size " + slabSize);
+        }
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, Integer.highestOneBit(Math.max(1, size - 1)) << 1);
+        return Integer.numberOfTrailingZeros(chunkSize) - Integer.numberOfTrailingZeros(MIN_CHUNK_SIZE);
+    }
+
+    private int takeSlab(int classIndex) {
+        int slabIndex;
+        if (!emptySlabs.isEmpty()) {
+            slabIndex = emptySlabs.pop();
+        } else if (slabs.size() < maxSlabs) {
+            slabIndex = slabs.size();
+            slabs.add(ByteBuffer.allocateDirect(slabSize));
+            if (slabIndex == slabClasses.length) {
+                slabClasses = Arrays.copyOf(slabClasses, slabIndex * 2);
+            }
+        } else {
+            usedBytes -= sizeClasses[classIndex].chunkSize;
+            throw new CacheException("Off-heap storage is full: " + allocatedBytes() + " bytes allocated");
+        }
+        slabClasses[slabIndex] = classIndex;
+        return slabIndex;
+    }
+}
@@ -1,9 +1,12 @@
 package com.lxgolovin.cache.storage;
 
 import com.lxgolovin.cache.core.CacheException;
+import com.lxgolovin.cache.stats.LockStats;
+import com.lxgolovin.cache.stats.SizeEstimator;
 
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Interface of a storage to keep data, get it, check is contains
@@ -27,4 +30,98 @@ public interface Storage<K, V> {
     int size();
 
     boolean isEmpty();
+
+    /**
+     * Streams all entries of the storage. Storages could read entries lazily one by one,
+     * so the whole data need not fit into memory. Stream is weakly consistent: entries changed
+     * while streaming may be shown or not. The stream could hold open files, so it should be closed,
+     * like by try-with-resources. By default entries are taken from {@link #getAll()}
+     *
+     * @return stream of entries
+     * @throws CacheException if data cannot be read
+     */
+    default Stream<Map.Entry<K, V>> entries() {
+        return getAll().entrySet().stream();
+    }
+
+    /**
+     * Streams all keys of the storage, the same way as {@link #entries()}. Storages could read
+     * keys without values
+     *
+     * @return stream of keys
+     * @throws CacheException if data cannot be read
+     */
+    default Stream<K> keys() {
+        return entries().map(Map.Entry::getKey);
+    }
+
+    /**
+     * Puts the value only if it differs from the stored one. Storages could detect
+     * the change without reading the old value
+     *
+     * @param key   cannot be null
+     * @param value cannot be null
+     * @return true if the value was written
+     */
+    default boolean putIfChanged(K key, V value) {
+        return !put(key, value).map(value::equals).orElse(false);
+    }
+
+    /**
+     * Puts the value and discards the old one, so storages need not read it
+     *
+     * @param key   cannot be null
+     * @param value cannot be null
+     */
+    default void putSilently(K key, V value) {
+        put(key, value);
+    }
+
+    /**
+     * Removes the value and discards it, so storages need not read it
+     *
+     * @param key cannot be null
+     * @return true if the key was present
+     */
+    default boolean removeSilently(K key) {
+        return remove(key).isPresent();
+    }
+
+    /**
+     * @return drive operations from creation of the storage, empty for storages in memory
+     */
+    default IoStats ioStats() {
+        return IoStats.empty();
+    }
+
+    /**
+     * @return acquisitions of locks of the storage, empty if it has no instrumented locks
+     */
+    default LockStats lockStats() {
+        return LockStats.empty();
+    }
+
+    /**
+     * @return approximate heap bytes of storage structures per entry besides keys and values, 0 if unknown
+     */
+    default long entryOverhead() {
+        return 0;
+    }
+
+    /**
+     * @return true if values are kept in heap and should be counted in its footprint
+     */
+    default boolean valuesOnHeap() {
+        return false;
+    }
+
+    /**
+     * Measures heap kept by the stored value. Used only if {@link #valuesOnHeap()} is true
+     * @param key of the value
+     * @param estimator measures values as they are returned by {@link #get(Object)}
+     * @return approximate bytes of the stored value, 0 if key is not present
+     */
+    default long valueHeapSize(K key, SizeEstimator<? super V> estimator) {
+        return get(key).map(estimator::sizeOf).orElse(0L);
+    }
 }
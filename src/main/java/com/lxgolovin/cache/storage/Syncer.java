@@ -0,0 +1,225 @@
+package com.lxgolovin.cache.storage;
+
+import com.lxgolovin.cache.core.CacheException;
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Forces written data to the drive according to {@link Durability}. Writers register
+ * targets they have written (files, channels) and, for group commit, wait for their ticket.
+ * The first waiting writer becomes leader and forces all registered targets in one batch,
+ * the others wait for the leader to finish.
+ *
+ * @param <T> type of written targets
+ * @see Durability
+ */
+@ThreadSafe
+final class Syncer<T> implements Closeable {
+
+    /**
+     * Forces batch of targets to the drive
+     */
+    @FunctionalInterface
+    interface SyncAction<T> {
+        void sync(Collection<T> batch) throws IOException;
+    }
+
+    private final Durability durability;
+
+    private final SyncAction<T> action;
+
+    @GuardedBy("lock")
+    private final Set<T> pending = new LinkedHashSet<>();
+
+    /**
+     * Ticket of the last registered write
+     */
+    @GuardedBy("lock")
+    private long writeTicket;
+
+    /**
+     * All writes up to this ticket are forced
+     */
+    @GuardedBy("lock")
+    private long syncedTicket;
+
+    @GuardedBy("lock")
+    private boolean syncing;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition synced = lock.newCondition();
+
+    private final ScheduledExecutorService scheduler;
+
+    private final AtomicLong syncCount = new AtomicLong();
+
+    private final AtomicLong syncedTargets = new AtomicLong();
+
+    private final Logger logger = LoggerFactory.getLogger(Syncer.class);
+
+    Syncer(Durability durability, SyncAction<T> action) {
+        this.durability = durability;
+        this.action = action;
+
+        if (durability.getMode() == Durability.Mode.PERIODIC) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "storage-syncer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::syncInBackground, durability.getIntervalMillis(),
+                    durability.getIntervalMillis(), TimeUnit.MILLISECONDS);
+        } else {
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Registers written target to be forced
+     * @param target with written data
+     * @return ticket to wait for by {@link #await(long)}
+     */
+    long register(T target) {
+        if (durability.getMode() == Durability.Mode.NONE) {
+            return 0;
+        }
+
+        lock.lock();
+        try {
+            pending.add(target);
+            return ++writeTicket;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * For group commit waits until the write with the ticket is forced. Does nothing for other modes
+     * @param ticket returned by {@link #register(Object)}
+     * @throws CacheException if data cannot be forced
+     */
+    void await(long ticket) {
+        if (durability.getMode() == Durability.Mode.GROUP_COMMIT) {
+            syncUpTo(ticket);
+        }
+    }
+
+    /**
+     * Forces all registered targets now
+     * @throws CacheException if data cannot be forced
+     */
+    void syncAll() {
+        if (durability.getMode() == Durability.Mode.NONE) {
+            return;
+        }
+
+        long ticket;
+        lock.lock();
+        try {
+            ticket = writeTicket;
+        } finally {
+            lock.unlock();
+        }
+        syncUpTo(ticket);
+    }
+
+    /**
+     * @return number of batches forced
+     */
+    long syncCount() {
+        return syncCount.get();
+    }
+
+    /**
+     * @return number of targets forced in all batches
+     */
+    long syncedTargets() {
+        return syncedTargets.get();
+    }
+
+    /**
+     * Stops background thread and forces all registered targets
+     */
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+        syncAll();
+    }
+
+    private void syncInBackground() {
+        try {
+            syncAll();
+        } catch (CacheException e) {
+            logger.error("Unable to force data to the drive: ", e);
+        }
+    }
+
+    private void syncUpTo(long ticket) {
+        lock.lock();
+        try {
+            while (syncedTicket < ticket) {
+                if (syncing) {
+                    synced.awaitUninterruptibly();
+                    continue;
+                }
+
+                // become leader and force all registered targets
+                syncing = true;
+                List<T> batch = new ArrayList<>(pending);
+                long batchTicket = writeTicket;
+                pending.clear();
+                lock.unlock();
+
+                Throwable failure = null;
+                try {
+                    action.sync(batch);
+                    syncCount.incrementAndGet();
+                    syncedTargets.addAndGet(batch.size());
+                } catch (Throwable e) {
+                    failure = e;
+                } finally {
+                    lock.lock();
+                    syncing = false;
+                    if (failure == null) {
+                        syncedTicket = Math.max(syncedTicket, batchTicket);
+                    } else {
+                        pending.addAll(batch);
+                    }
+                    synced.signalAll();
+                }
+
+                // batch is not forced, so any failure is thrown, targets are forced by next leader
+                if (failure instanceof RuntimeException) {
+                    throw (RuntimeException) failure;
+                }
+                if (failure instanceof Error) {
+                    throw (Error) failure;
+                }
+                if (failure != null) {
+                    throw new CacheException("Unable to force data to the drive", failure);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
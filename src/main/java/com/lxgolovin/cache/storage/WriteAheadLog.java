@@ -0,0 +1,514 @@
+package com.lxgolovin.cache.storage;
+
+import com.lxgolovin.cache.core.CacheException;
+import com.lxgolovin.cache.serializer.Serializer;
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of changes of {@link MemoryStorage}, so its data survives restart and crash.
+ * Puts, removes and clears are appended as binary records: length, CRC32 of the record,
+ * type, key and value written by {@link Serializer}. Records are forced to the drive according
+ * to {@link Durability}, with group commit concurrent writers share one force.
+ * <p>
+ * Log is split into segments {@code wal-N.log}. Every {@code checkpointIntervalMillis}, or earlier when
+ * a segment gets {@code checkpointRecords} records, a background thread starts new segment and writes
+ * data of the storage into checkpoint {@code checkpoint-N.dat}, after that older segments and checkpoints
+ * are deleted. Writers are stopped only to start the segment: the data is read while it changes, and
+ * changes made meanwhile are in the new segment, so replaying it over the checkpoint gives the right
+ * data. On start the latest checkpoint is read
+ * and newer segments are replayed. Record with wrong length or CRC is taken as torn write
+ * of a crash, the segment is truncated there
+ *
+ * @see MemoryStorage
+ * @see Durability
+ */
+@ThreadSafe
+public final class WriteAheadLog<K, V> implements Closeable {
+
+    /**
+     * Number of records in segment before checkpoint
+     */
+    public static final long DEFAULT_CHECKPOINT_RECORDS = 100_000;
+
+    /**
+     * Interval between checkpoints if segment does not get full before
+     */
+    public static final long DEFAULT_CHECKPOINT_INTERVAL_MILLIS = 60_000;
+
+    private static final byte PUT = 1;
+
+    private static final byte REMOVE = 2;
+
+    private static final byte CLEAR = 3;
+
+    /**
+     * Length and CRC of record
+     */
+    private static final int RECORD_HEADER_SIZE = 2 * Integer.BYTES;
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("wal-(\\d+)\\.log");
+
+    private static final Pattern CHECKPOINT_NAME = Pattern.compile("checkpoint-(\\d+)\\.dat");
+
+    private final Path directory;
+
+    private final Serializer<K> keySerializer;
+
+    private final Serializer<V> valueSerializer;
+
+    private final long checkpointRecords;
+
+    private final Syncer<FileChannel> syncer;
+
+    private final ReentrantLock appendLock = new ReentrantLock();
+
+    @GuardedBy("appendLock")
+    private FileChannel segment;
+
+    @GuardedBy("appendLock")
+    private long segmentSequence;
+
+    private final AtomicLong segmentRecords = new AtomicLong();
+
+    private final AtomicBoolean checkpointing = new AtomicBoolean();
+
+    private final ScheduledExecutorService checkpointer;
+
+    /**
+     * Data of the storage and the lock which keeps its changes in order of records.
+     * Null until the storage is attached
+     */
+    private volatile ConcurrentMap<K, V> storageData;
+
+    private volatile Lock changeLock;
+
+    /**
+     * Data read on start, given once to the storage
+     */
+    private Map<K, V> recovered;
+
+    private final Logger logger = LoggerFactory.getLogger(WriteAheadLog.class);
+
+    public WriteAheadLog(Path directory, Serializer<K> keySerializer, Serializer<V> valueSerializer,
+                         Durability durability) {
+        this(directory, keySerializer, valueSerializer, durability, DEFAULT_CHECKPOINT_RECORDS);
+    }
+
+    public WriteAheadLog(Path directory, Serializer<K> keySerializer, Serializer<V> valueSerializer,
+                         Durability durability, long checkpointRecords) {
+        this(directory, keySerializer, valueSerializer, durability, checkpointRecords,
+                DEFAULT_CHECKPOINT_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Opens the log in the directory and reads data written before
+     *
+     * @param directory to keep segments and checkpoints, created if absent
+     * @param keySerializer to write keys, cannot be null
+     * @param valueSerializer to write values, cannot be null
+     * @param durability defines when records are forced to the drive, cannot be null
+     * @param checkpointRecords number of records in segment before checkpoint, should be positive
+     * @param checkpointIntervalMillis interval between checkpoints, should be positive
+     * @throws IllegalArgumentException if any argument is null or checkpointRecords or interval is not positive
+     * @throws CacheException if the log cannot be read or created
+     */
+    public WriteAheadLog(Path directory, Serializer<K> keySerializer, Serializer<V> valueSerializer,
+                         Durability durability, long checkpointRecords, long checkpointIntervalMillis) {
+        if ((directory == null) || (keySerializer == null) || (valueSerializer == null) || (durability == null)) {
+            throw new IllegalArgumentException("Directory, serializers and durability should not be null");
+        }
+        if ((checkpointRecords <= 0) || (checkpointIntervalMillis <= 0)) {
+            throw new IllegalArgumentException("Number of records and interval between checkpoints should be positive");
+        }
+        this.directory = directory;
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.checkpointRecords = checkpointRecords;
+        this.syncer = new Syncer<>(durability, WriteAheadLog::forceChannels);
+
+        try {
+            Files.createDirectories(directory);
+            recovered = recover();
+            segmentSequence++;
+            segment = openSegment(segmentSequence);
+        } catch (IOException e) {
+            throw new CacheException("Cannot open write-ahead log in " + directory, e);
+        }
+
+        checkpointer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "wal-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        checkpointer.scheduleWithFixedDelay(this::checkpointOnTime, checkpointIntervalMillis,
+                checkpointIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Forces all appended records to the drive
+     * @throws CacheException if records cannot be forced
+     */
+    public void flush() {
+        syncer.syncAll();
+    }
+
+    /**
+     * Waits for running checkpoint, forces all appended records and closes current segment
+     */
+    @Override
+    public void close() {
+        checkpointer.shutdown();
+        try {
+            if (!checkpointer.awaitTermination(1, TimeUnit.MINUTES)) {
+                logger.warn("Checkpoint of write-ahead log in {} is not finished on close", directory.toUri());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        syncer.close();
+        appendLock.lock();
+        try {
+            segment.force(false);
+            segment.close();
+        } catch (IOException e) {
+            throw new CacheException("Cannot close write-ahead log in " + directory, e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * @return data read on start. Next calls return empty map
+     */
+    synchronized Map<K, V> recovered() {
+        Map<K, V> data = (recovered == null) ? new HashMap<>() : recovered;
+        recovered = null;
+        return data;
+    }
+
+    /**
+     * @return ticket to wait for by {@link #await(long)}
+     */
+    long logPut(K key, V value) {
+        return append(PUT, key, value);
+    }
+
+    /**
+     * @return ticket to wait for by {@link #await(long)}
+     */
+    long logRemove(K key) {
+        return append(REMOVE, key, null);
+    }
+
+    /**
+     * @return ticket to wait for by {@link #await(long)}
+     */
+    long logClear() {
+        return append(CLEAR, null, null);
+    }
+
+    /**
+     * Waits until the record is forced if needed by durability
+     */
+    void await(long ticket) {
+        syncer.await(ticket);
+    }
+
+    /**
+     * Attaches data of the storage for checkpoints. Checkpoints are not written before
+     *
+     * @param data of the storage, changed only after the record of the change is appended
+     * @param changeLock held by the storage while it appends a record and applies the change
+     */
+    void attach(ConcurrentMap<K, V> data, Lock changeLock) {
+        this.changeLock = changeLock;
+        this.storageData = data;
+    }
+
+    /**
+     * Starts checkpoint in background if the segment is full
+     */
+    private void checkpointIfFull() {
+        if ((storageData != null) && (segmentRecords.get() >= checkpointRecords)
+                && checkpointing.compareAndSet(false, true)) {
+            try {
+                checkpointer.execute(this::checkpoint);
+            } catch (RejectedExecutionException e) {
+                // log is closed
+                checkpointing.set(false);
+            }
+        }
+    }
+
+    private void checkpointOnTime() {
+        if ((storageData != null) && (segmentRecords.get() > 0) && checkpointing.compareAndSet(false, true)) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * Starts new segment under the lock of the storage, so all records of older segments are applied
+     * to the data, then writes the data without the lock. Errors are logged, the next checkpoint retries
+     */
+    private void checkpoint() {
+        try {
+            long sequence;
+            FileChannel previous;
+            changeLock.lock();
+            try {
+                appendLock.lock();
+                try {
+                    previous = segment;
+                    segment = openSegment(segmentSequence + 1);
+                    segmentSequence++;
+                    segmentRecords.set(0);
+                    sequence = segmentSequence;
+                } finally {
+                    appendLock.unlock();
+                }
+            } finally {
+                changeLock.unlock();
+            }
+            previous.force(false);
+            previous.close();
+
+            writeCheckpoint(sequence);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Checkpoint of write-ahead log in {} failed: ", directory.toUri(), e);
+        } finally {
+            checkpointing.set(false);
+        }
+    }
+
+    /**
+     * Streams the data into checkpoint of the segment and deletes older files
+     *
+     * @param sequence of the segment started for the checkpoint
+     */
+    private void writeCheckpoint(long sequence) throws IOException {
+        Path checkpoint = directory.resolve(checkpointName(sequence));
+        Path tempFile = directory.resolve(checkpointName(sequence) + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Map.Entry<K, V> entry : storageData.entrySet()) {
+                writeFully(channel, encode(PUT, entry.getKey(), entry.getValue()));
+            }
+            channel.force(true);
+        }
+        Files.move(tempFile, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        deleteOlderThan(sequence);
+    }
+
+    private long append(byte type, K key, V value) {
+        ByteBuffer record = encode(type, key, value);
+        appendLock.lock();
+        try {
+            writeFully(segment, record);
+            segmentRecords.incrementAndGet();
+            return syncer.register(segment);
+        } catch (IOException e) {
+            throw new CacheException("Cannot append to write-ahead log in " + directory, e);
+        } finally {
+            appendLock.unlock();
+            checkpointIfFull();
+        }
+    }
+
+    private ByteBuffer encode(byte type, K key, V value) {
+        int length = 1 + ((key == null) ? 0 : keySerializer.sizeOf(key))
+                + ((value == null) ? 0 : valueSerializer.sizeOf(value));
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + length);
+        buffer.position(RECORD_HEADER_SIZE);
+        buffer.put(type);
+        if (key != null) {
+            keySerializer.write(key, buffer);
+        }
+        if (value != null) {
+            valueSerializer.write(value, buffer);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), RECORD_HEADER_SIZE, length);
+        buffer.putInt(0, length).putInt(Integer.BYTES, (int) crc.getValue());
+        buffer.rewind();
+        return buffer;
+    }
+
+    /**
+     * Reads the latest checkpoint and replays newer segments
+     */
+    private Map<K, V> recover() throws IOException {
+        TreeMap<Long, Path> segments = new TreeMap<>();
+        TreeMap<Long, Path> checkpoints = new TreeMap<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                String name = file.getFileName().toString();
+                Matcher segment = SEGMENT_NAME.matcher(name);
+                Matcher checkpoint = CHECKPOINT_NAME.matcher(name);
+                if (segment.matches()) {
+                    segments.put(Long.parseLong(segment.group(1)), file);
+                } else if (checkpoint.matches()) {
+                    checkpoints.put(Long.parseLong(checkpoint.group(1)), file);
+                } else if (name.endsWith(".tmp")) {
+                    // unfinished checkpoint
+                    file.toFile().delete();
+                }
+            });
+        }
+
+        Map<K, V> data = new HashMap<>();
+        long start = 0;
+        if (!checkpoints.isEmpty()) {
+            start = checkpoints.lastKey();
+            replay(checkpoints.lastEntry().getValue(), data);
+        }
+
+        boolean torn = false;
+        for (Map.Entry<Long, Path> segment : segments.tailMap(start, true).entrySet()) {
+            if (torn) {
+                logger.error("Segment {} follows corrupted segment and is deleted", segment.getValue().toUri());
+                Files.delete(segment.getValue());
+            } else {
+                torn = !replay(segment.getValue(), data);
+            }
+        }
+
+        segmentSequence = Math.max(start, segments.isEmpty() ? 0 : segments.lastKey());
+        deleteOlderThan(start);
+        return data;
+    }
+
+    /**
+     * Applies records of the file to the data, truncates the file at the first broken record
+     *
+     * @return true if all records are correct
+     */
+    private boolean replay(Path file, Map<K, V> data) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining() && (channel.read(buffer) >= 0)) {
+                // read whole file into buffer
+            }
+            buffer.flip();
+
+            CRC32 crc = new CRC32();
+            while (buffer.hasRemaining()) {
+                int start = buffer.position();
+                if (buffer.remaining() < RECORD_HEADER_SIZE) {
+                    return truncate(channel, file, start);
+                }
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                if ((length < 1) || (length > buffer.remaining())) {
+                    return truncate(channel, file, start);
+                }
+
+                crc.reset();
+                crc.update(buffer.array(), buffer.position(), length);
+                if ((int) crc.getValue() != checksum) {
+                    return truncate(channel, file, start);
+                }
+
+                ByteBuffer record = (ByteBuffer) buffer.slice().limit(length);
+                buffer.position(buffer.position() + length);
+                apply(record, data);
+            }
+            return true;
+        }
+    }
+
+    private void apply(ByteBuffer record, Map<K, V> data) {
+        byte type = record.get();
+        if (type == CLEAR) {
+            data.clear();
+            return;
+        }
+
+        K key = keySerializer.read(record);
+        if (type == PUT) {
+            data.put(key, valueSerializer.read(record));
+        } else {
+            data.remove(key);
+        }
+    }
+
+    private boolean truncate(FileChannel channel, Path file, long position) throws IOException {
+        logger.warn("Write-ahead log {} has torn record at {}, truncated", file.toUri(), position);
+        channel.truncate(position);
+        channel.force(true);
+        return false;
+    }
+
+    private FileChannel openSegment(long sequence) throws IOException {
+        return FileChannel.open(directory.resolve(String.format("wal-%019d.log", sequence)),
+                StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW);
+    }
+
+    private void deleteOlderThan(long sequence) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                String name = file.getFileName().toString();
+                Matcher segment = SEGMENT_NAME.matcher(name);
+                Matcher checkpoint = CHECKPOINT_NAME.matcher(name);
+                boolean older = (segment.matches() && (Long.parseLong(segment.group(1)) < sequence))
+                        || (checkpoint.matches() && (Long.parseLong(checkpoint.group(1)) < sequence));
+                if (older && !file.toFile().delete()) {
+                    logger.warn("File {} not deleted", file.toUri());
+                }
+            });
+        }
+    }
+
+    private static String checkpointName(long sequence) {
+        return String.format("checkpoint-%019d.dat", sequence);
+    }
+
+    /**
+     * Segments closed after writing were forced before closing
+     */
+    private static void forceChannels(Collection<FileChannel> channels) throws IOException {
+        for (FileChannel channel : channels) {
+            try {
+                channel.force(false);
+            } catch (ClosedChannelException e) {
+                // segment was forced and closed on roll
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.lxgolovin.cache.storage.compression;
+
+/**
+ * Compression codec used by {@link com.lxgolovin.cache.storage.CompressingStorage}.
+ * Every codec has unique id, which is written into header of each stored value,
+ * so the data compressed by different codecs could be kept in the same storage.
+ * Ids from 0 to 15 are reserved for built-in codecs, see {@link Codecs}.
+ * Other codecs, e.g. LZ4, could be plugged in by implementing this interface
+ *
+ * @see Codecs
+ */
+public interface Codec {
+
+    /**
+     * @return unique id of the codec written into value header
+     */
+    byte id();
+
+    /**
+     * @param data to be compressed
+     * @return compressed data
+     */
+    byte[] compress(byte[] data);
+
+    /**
+     * @param data array with compressed data
+     * @param offset of compressed data in array
+     * @param length of compressed data
+     * @param originalLength length of the data before compression
+     * @return decompressed data
+     * @throws IllegalArgumentException if compressed data is corrupted
+     */
+    byte[] decompress(byte[] data, int offset, int length, int originalLength);
+
+    /**
+     * Bounds length of data before compression, so a corrupted header does not make reader allocate
+     * too large array
+     * @param length of compressed data
+     * @return maximum length of data, which could be compressed into the length
+     */
+    default int maxOriginalLength(int length) {
+        return Codecs.MAX_ARRAY_SIZE;
+    }
+}
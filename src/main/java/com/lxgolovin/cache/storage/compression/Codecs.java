@@ -0,0 +1,137 @@
+package com.lxgolovin.cache.storage.compression;
+
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Built-in implementations of {@link Codec}
+ *
+ * @see Codec
+ */
+public final class Codecs {
+
+    /**
+     * Largest array most of JVMs can allocate
+     */
+    static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    /**
+     * Keeps data as is. Used for values below compression threshold and
+     * for values that do not get smaller after compression
+     */
+    public static final Codec NONE = new Codec() {
+        @Override
+        public byte id() {
+            return 0;
+        }
+
+        @Override
+        public byte[] compress(byte[] data) {
+            return data;
+        }
+
+        @Override
+        public byte[] decompress(byte[] data, int offset, int length, int originalLength) {
+            return Arrays.copyOfRange(data, offset, offset + length);
+        }
+
+        @Override
+        public String toString() {
+            return "NONE";
+        }
+    };
+
+    /**
+     * Deflate from the JDK with the fastest compression level
+     */
+    public static final Codec DEFLATE = new DeflateCodec(Deflater.BEST_SPEED);
+
+    private Codecs() {}
+
+    /**
+     * Raw deflate codec without zlib header and checksum
+     */
+    private static final class DeflateCodec implements Codec {
+
+        private static final byte DEFLATE_ID = 1;
+
+        /**
+         * Deflate cannot compress data more then about 1032 times
+         */
+        private static final int MAX_RATIO = 1032;
+
+        private final int level;
+
+        DeflateCodec(int level) {
+            this.level = level;
+        }
+
+        @Override
+        public byte id() {
+            return DEFLATE_ID;
+        }
+
+        @Override
+        public byte[] compress(byte[] data) {
+            Deflater deflater = new Deflater(level, true);
+            try {
+                deflater.setInput(data);
+                deflater.finish();
+
+                byte[] buffer = new byte[Math.max(64, data.length + (data.length >> 3) + 64)];
+                int length = 0;
+                while (!deflater.finished()) {
+                    if (length == buffer.length) {
+                        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    }
+                    length += deflater.deflate(buffer, length, buffer.length - length);
+                }
+                return Arrays.copyOf(buffer, length);
+            } finally {
+                deflater.end();
+            }
+        }
+
+        @Override
+        public int maxOriginalLength(int length) {
+            return (int) Math.min(MAX_ARRAY_SIZE, (long) length * MAX_RATIO + MAX_RATIO);
+        }
+
+        @Override
+        public byte[] decompress(byte[] data, int offset, int length, int originalLength) {
+            if ((originalLength < 0) || (originalLength > maxOriginalLength(length))) {
+                throw new IllegalArgumentException("Corrupted data: wrong original length " + originalLength
+                        + " for " + length + " compressed bytes");
+            }
+            Inflater inflater = new Inflater(true);
+            try {
+                inflater.setInput(data, offset, length);
+                byte[] result = new byte[originalLength];
+                int inflated = 0;
+                while (inflated < originalLength) {
+                    int count = inflater.inflate(result, inflated, originalLength - inflated);
+                    if ((count == 0) && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    inflated += count;
+                }
+                if (inflated != originalLength) {
+                    throw new IllegalArgumentException("Corrupted data: expected " + originalLength
+                            + " bytes, inflated " + inflated);
+                }
+                return result;
+            } catch (DataFormatException e) {
+                throw new IllegalArgumentException("Corrupted deflate data", e);
+            } finally {
+                inflater.end();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "DEFLATE";
+        }
+    }
+}
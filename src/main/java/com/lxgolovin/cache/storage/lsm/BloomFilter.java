@@ -0,0 +1,111 @@
+package com.lxgolovin.cache.storage.lsm;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Bloom filter over serialized keys of one {@link SsTable}. Answers if the key
+ * might be in the table, so most lookups of absent keys do not touch the drive.
+ * Positions of bits are calculated by double hashing of 64-bit key hash.
+ *
+ * @see SsTable
+ */
+final class BloomFilter {
+
+    /**
+     * Number of bits per key. With 7 hash functions gives about 1% of false positives
+     */
+    static final int BITS_PER_KEY = 10;
+
+    private static final int HASH_FUNCTIONS = 7;
+
+    private final long[] bits;
+
+    private final int hashFunctions;
+
+    private BloomFilter(long[] bits, int hashFunctions) {
+        this.bits = bits;
+        this.hashFunctions = hashFunctions;
+    }
+
+    /**
+     * Creates filter with all the key hashes
+     * @param hashes of the keys, calculated by {@link #hash(byte[])}
+     * @param count number of hashes to be used from the array
+     */
+    static BloomFilter create(long[] hashes, int count) {
+        long bitCount = Math.max(64L, (long) count * BITS_PER_KEY);
+        BloomFilter filter = new BloomFilter(new long[(int) ((bitCount + 63) / 64)], HASH_FUNCTIONS);
+        for (int i = 0; i < count; i++) {
+            filter.add(hashes[i]);
+        }
+        return filter;
+    }
+
+    /**
+     * Reads filter written by {@link #writeTo(ByteBuffer)}
+     */
+    static BloomFilter readFrom(ByteBuffer buffer) {
+        int hashFunctions = buffer.getInt();
+        long[] bits = new long[buffer.getInt()];
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] = buffer.getLong();
+        }
+        return new BloomFilter(bits, hashFunctions);
+    }
+
+    /**
+     * @return number of bytes needed by {@link #writeTo(ByteBuffer)}
+     */
+    int serializedSize() {
+        return 2 * Integer.BYTES + bits.length * Long.BYTES;
+    }
+
+    void writeTo(ByteBuffer buffer) {
+        buffer.putInt(hashFunctions);
+        buffer.putInt(bits.length);
+        for (long word : bits) {
+            buffer.putLong(word);
+        }
+    }
+
+    /**
+     * @param hash of the key, calculated by {@link #hash(byte[])}
+     * @return false if the key is definitely absent
+     */
+    boolean mightContain(long hash) {
+        long bitCount = (long) bits.length * 64;
+        long h2 = secondHash(hash);
+        for (int i = 0; i < hashFunctions; i++) {
+            long bit = ((hash + i * h2) & Long.MAX_VALUE) % bitCount;
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void add(long hash) {
+        long bitCount = (long) bits.length * 64;
+        long h2 = secondHash(hash);
+        for (int i = 0; i < hashFunctions; i++) {
+            long bit = ((hash + i * h2) & Long.MAX_VALUE) % bitCount;
+            bits[(int) (bit >>> 6)] |= (1L << bit);
+        }
+    }
+
+    private static long secondHash(long hash) {
+        return Long.rotateLeft(hash * 0x9E3779B97F4A7C15L, 31) | 1;
+    }
+
+    /**
+     * 64-bit FNV-1a hash of serialized key
+     */
+    static long hash(byte[] key) {
+        long hash = 0xCBF29CE484222325L;
+        for (byte b : key) {
+            hash ^= (b & 0xFF);
+            hash *= 0x100000001B3L;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,768 @@
+package com.lxgolovin.cache.storage.lsm;
+
+import com.lxgolovin.cache.core.CacheException;
+import com.lxgolovin.cache.serializer.Serializer;
+import com.lxgolovin.cache.storage.Compactable;
+import com.lxgolovin.cache.storage.Storage;
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Implementation of {@link Storage} as log-structured merge tree for write-heavy levels.
+ * New data goes to the sorted in-memory memtable. When memtable is full, it is written
+ * to the drive as sorted immutable {@link SsTable} in one sequential write. Tables are
+ * organized in levels: level 0 keeps flushed memtables, bigger levels keep merged data.
+ * Background compaction merges level into the next one when the level grows too big,
+ * each next level is {@link #LEVEL_SIZE_MULTIPLIER} times bigger then previous.
+ *
+ * Lookup goes from the newest data to the oldest: memtable, memtables being flushed,
+ * tables of level 0 and then deeper levels. Every table has {@link BloomFilter} and
+ * sparse index, so absent keys cost no reads and present keys cost one small read.
+ *
+ * Keys and values are written by {@link Serializer}s, keys are ordered by serialized form.
+ * Memtable is kept only in memory, call {@link #flush()} or {@link #close()} to make
+ * it persistent. Tables found in directory are opened on start.
+ *
+ * @param <K> key
+ * @param <V> value
+ * @see Storage
+ * @see SsTable
+ */
+@ThreadSafe
+public class LsmStorage<K, V> implements Storage<K, V>, Compactable, Closeable {
+
+    /**
+     * Default size of serialized data in memtable to be flushed
+     */
+    public static final long DEFAULT_MEMTABLE_SIZE = 4L << 20;
+
+    /**
+     * Number of tables in level 0 to start compaction into level 1
+     */
+    static final int LEVEL0_COMPACTION_TRIGGER = 4;
+
+    static final int LEVEL_SIZE_MULTIPLIER = 10;
+
+    static final int MAX_LEVELS = 7;
+
+    /**
+     * Number of memtables waiting for flush before writers are stopped
+     */
+    private static final int MAX_PENDING_MEMTABLES = 2;
+
+    private final Path directory;
+
+    private final Serializer<K> keySerializer;
+
+    private final Serializer<V> valueSerializer;
+
+    private final long memtableSize;
+
+    @GuardedBy("lock")
+    private ConcurrentSkipListMap<byte[], byte[]> memtable = new ConcurrentSkipListMap<>(SsTable.KEY_ORDER);
+
+    private final AtomicLong memtableBytes = new AtomicLong();
+
+    /**
+     * Memtables being flushed, from the newest to the oldest
+     */
+    @GuardedBy("lock")
+    private final Deque<ConcurrentSkipListMap<byte[], byte[]>> immutables = new ArrayDeque<>();
+
+    /**
+     * Tables of every level, from the newest to the oldest
+     */
+    @GuardedBy("lock")
+    private final List<List<SsTable>> levels = new ArrayList<>();
+
+    /**
+     * Changed on {@link #clear()}, so background tasks started before do not install their tables
+     */
+    @GuardedBy("lock")
+    private long epoch;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * Guards structure: memtable, immutables and levels
+     */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Writers are serialized to keep size consistent with lookup of old values
+     */
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    /**
+     * Single thread for flushes and compactions, so they never run concurrently
+     */
+    private final ExecutorService background = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "lsm-storage-compaction");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @GuardedBy("writeLock")
+    private Future<?> lastFlush = CompletableFuture.completedFuture(null);
+
+    private final Logger logger = LoggerFactory.getLogger(LsmStorage.class);
+
+    public LsmStorage(Path directory, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        this(directory, keySerializer, valueSerializer, DEFAULT_MEMTABLE_SIZE);
+    }
+
+    /**
+     * Opens storage in the directory. All tables found in directory are loaded
+     * @param directory to keep tables, created if absent
+     * @param keySerializer to write keys, cannot be null
+     * @param valueSerializer to write values, cannot be null
+     * @param memtableSize size of serialized data in memtable to be flushed
+     * @throws IllegalArgumentException if any parameter is null
+     * @throws CacheException if directory cannot be read
+     */
+    public LsmStorage(Path directory, Serializer<K> keySerializer, Serializer<V> valueSerializer, long memtableSize) {
+        if ((directory == null) || (keySerializer == null) || (valueSerializer == null)) {
+            throw new IllegalArgumentException("Directory and serializers should not be null");
+        }
+        this.directory = directory;
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.memtableSize = Math.max(1, memtableSize);
+
+        for (int i = 0; i < MAX_LEVELS; i++) {
+            levels.add(new ArrayList<>());
+        }
+        openTables();
+    }
+
+    /**
+     * @param key cannot be null
+     * @param value cannot be null
+     * @throws IllegalArgumentException if any key or value is null
+     */
+    @Override
+    public Optional<V> put(K key, V value) {
+        if ((key == null) || (value == null)) {
+            throw new IllegalArgumentException("Key and value should not be null");
+        }
+
+        byte[] keyBytes = keySerializer.toBytes(key);
+        byte[] valueBytes = valueSerializer.toBytes(value);
+
+        writeLock.lock();
+        try {
+            byte[] oldValue = lookup(keyBytes);
+            write(keyBytes, valueBytes);
+            if (isAbsent(oldValue)) {
+                size.incrementAndGet();
+                return Optional.empty();
+            }
+            return Optional.of(valueSerializer.fromBytes(oldValue));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * @param key cannot be null
+     * @throws IllegalArgumentException if key is null
+     */
+    @Override
+    public Optional<V> get(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Key should not be null");
+        }
+
+        byte[] value = lookup(keySerializer.toBytes(key));
+        return isAbsent(value) ? Optional.empty() : Optional.of(valueSerializer.fromBytes(value));
+    }
+
+    /**
+     * Writes tombstone for the key. Data is removed from the drive by compaction
+     * @param key cannot be null
+     * @throws IllegalArgumentException if key is null
+     */
+    @Override
+    public Optional<V> remove(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Input key should not be null");
+        }
+
+        byte[] keyBytes = keySerializer.toBytes(key);
+        writeLock.lock();
+        try {
+            byte[] oldValue = lookup(keyBytes);
+            if (isAbsent(oldValue)) {
+                return Optional.empty();
+            }
+            write(keyBytes, SsTable.TOMBSTONE);
+            size.decrementAndGet();
+            return Optional.of(valueSerializer.fromBytes(oldValue));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Serialized values are compared, so the old value is not deserialized and unchanged value is not appended
+     * @param key cannot be null
+     * @param value cannot be null
+     * @throws IllegalArgumentException if any key or value is null
+     */
+    @Override
+    public boolean putIfChanged(K key, V value) {
+        if ((key == null) || (value == null)) {
+            throw new IllegalArgumentException("Key and value should not be null");
+        }
+
+        byte[] keyBytes = keySerializer.toBytes(key);
+        byte[] valueBytes = valueSerializer.toBytes(value);
+        writeLock.lock();
+        try {
+            byte[] oldValue = lookup(keyBytes);
+            if (!isAbsent(oldValue) && Arrays.equals(oldValue, valueBytes)) {
+                return false;
+            }
+            append(keyBytes, valueBytes, oldValue);
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Appends the value, the old value is only checked for presence and not deserialized
+     * @param key cannot be null
+     * @param value cannot be null
+     * @throws IllegalArgumentException if any key or value is null
+     */
+    @Override
+    public void putSilently(K key, V value) {
+        if ((key == null) || (value == null)) {
+            throw new IllegalArgumentException("Key and value should not be null");
+        }
+
+        byte[] keyBytes = keySerializer.toBytes(key);
+        byte[] valueBytes = valueSerializer.toBytes(value);
+        writeLock.lock();
+        try {
+            append(keyBytes, valueBytes, lookup(keyBytes));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Appends tombstone, the old value is only checked for presence and not deserialized
+     * @param key cannot be null
+     * @throws IllegalArgumentException if key is null
+     */
+    @Override
+    public boolean removeSilently(K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Input key should not be null");
+        }
+
+        byte[] keyBytes = keySerializer.toBytes(key);
+        writeLock.lock();
+        try {
+            byte[] oldValue = lookup(keyBytes);
+            if (isAbsent(oldValue)) {
+                return false;
+            }
+            append(keyBytes, SsTable.TOMBSTONE, oldValue);
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public Map<K, V> getAll() {
+        Map<K, V> map = new HashMap<>();
+        lock.readLock().lock();
+        try (MergingIterator iterator = mergeAll()) {
+            while (iterator.hasNext()) {
+                Map.Entry<byte[], byte[]> entry = iterator.next();
+                if (entry.getValue() != SsTable.TOMBSTONE) {
+                    map.put(keySerializer.fromBytes(entry.getKey()), valueSerializer.fromBytes(entry.getValue()));
+                }
+            }
+            return map;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Merges the pinned sources while the stream is consumed, values are deserialized one by one
+     */
+    @Override
+    public Stream<Map.Entry<K, V>> entries() {
+        return streamSources().map(entry -> new AbstractMap.SimpleImmutableEntry<>(
+                keySerializer.fromBytes(entry.getKey()), valueSerializer.fromBytes(entry.getValue())));
+    }
+
+    /**
+     * Merges the pinned sources while the stream is consumed, values are not deserialized
+     */
+    @Override
+    public Stream<K> keys() {
+        return streamSources().map(entry -> keySerializer.fromBytes(entry.getKey()));
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        return (key != null) && !isAbsent(lookup(keySerializer.toBytes(key)));
+    }
+
+    /**
+     * Drops memtables and deletes all tables
+     */
+    @Override
+    public void clear() {
+        writeLock.lock();
+        lock.writeLock().lock();
+        try {
+            epoch++;
+            memtable = new ConcurrentSkipListMap<>(SsTable.KEY_ORDER);
+            memtableBytes.set(0);
+            immutables.clear();
+            levels.forEach(level -> {
+                level.forEach(SsTable::delete);
+                level.clear();
+            });
+            size.set(0);
+        } finally {
+            lock.writeLock().unlock();
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Writes memtable to the drive and waits until it is done
+     */
+    public void flush() {
+        writeLock.lock();
+        try {
+            rotateMemtable(true);
+            lastFlush.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CacheException("Interrupted while flushing memtable", e);
+        } catch (ExecutionException e) {
+            throw new CacheException("Cannot flush memtable", e.getCause());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Starts compaction of all levels that are too big and waits until it is done
+     */
+    @Override
+    public void compact() {
+        try {
+            background.submit(this::compactLevels).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CacheException("Interrupted while compacting", e);
+        } catch (ExecutionException e) {
+            throw new CacheException("Cannot compact storage", e.getCause());
+        }
+    }
+
+    /**
+     * Flushes memtable and closes all tables. Storage cannot be used after closing
+     */
+    @Override
+    public void close() {
+        flush();
+        background.shutdown();
+        try {
+            background.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        lock.writeLock().lock();
+        try {
+            levels.forEach(level -> level.forEach(SsTable::close));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return number of tables in every level
+     */
+    int[] tablesPerLevel() {
+        lock.readLock().lock();
+        try {
+            return levels.stream().mapToInt(List::size).toArray();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return the newest value of the key, {@link SsTable#TOMBSTONE} or null if there is no such key
+     */
+    private byte[] lookup(byte[] key) {
+        long hash = BloomFilter.hash(key);
+        lock.readLock().lock();
+        try {
+            byte[] value = memtable.get(key);
+            if (value != null) {
+                return value;
+            }
+            for (ConcurrentSkipListMap<byte[], byte[]> immutable : immutables) {
+                value = immutable.get(key);
+                if (value != null) {
+                    return value;
+                }
+            }
+            for (List<SsTable> level : levels) {
+                for (SsTable table : level) {
+                    Optional<byte[]> found = table.get(key, hash);
+                    if (found.isPresent()) {
+                        return found.get();
+                    }
+                }
+            }
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static boolean isAbsent(byte[] value) {
+        return (value == null) || (value == SsTable.TOMBSTONE);
+    }
+
+    /**
+     * Writes the value or tombstone and updates size by presence of the old value
+     */
+    @GuardedBy("writeLock")
+    private void append(byte[] key, byte[] value, byte[] oldValue) {
+        write(key, value);
+        if (isAbsent(oldValue) && (value != SsTable.TOMBSTONE)) {
+            size.incrementAndGet();
+        } else if (!isAbsent(oldValue) && (value == SsTable.TOMBSTONE)) {
+            size.decrementAndGet();
+        }
+    }
+
+    @GuardedBy("writeLock")
+    private void write(byte[] key, byte[] value) {
+        lock.readLock().lock();
+        try {
+            memtable.put(key, value);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        if (memtableBytes.addAndGet(key.length + value.length) >= memtableSize) {
+            rotateMemtable(false);
+        }
+    }
+
+    /**
+     * Moves memtable to immutables and starts its flush in background.
+     * If too many memtables are waiting for flush, waits for the last one
+     * @param force if true, memtable is flushed even if it is not full
+     */
+    @GuardedBy("writeLock")
+    private void rotateMemtable(boolean force) {
+        boolean waitFlush;
+        lock.writeLock().lock();
+        try {
+            if (memtable.isEmpty() || (!force && (memtableBytes.get() < memtableSize))) {
+                return;
+            }
+            ConcurrentSkipListMap<byte[], byte[]> full = memtable;
+            immutables.addFirst(full);
+            memtable = new ConcurrentSkipListMap<>(SsTable.KEY_ORDER);
+            memtableBytes.set(0);
+
+            long currentEpoch = epoch;
+            lastFlush = background.submit(() -> flushMemtable(full, currentEpoch));
+            waitFlush = immutables.size() > MAX_PENDING_MEMTABLES;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        if (waitFlush) {
+            try {
+                lastFlush.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                logger.error("Cannot flush memtable: ", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Writes memtable into new table of level 0 and starts compaction if needed.
+     * Runs in background thread
+     */
+    private Void flushMemtable(ConcurrentSkipListMap<byte[], byte[]> table, long tableEpoch) throws IOException {
+        SsTable flushed = SsTable.write(directory, 0, sequence.incrementAndGet(), table.entrySet().iterator(), false);
+
+        lock.writeLock().lock();
+        try {
+            if (tableEpoch != epoch) {
+                if (flushed != null) {
+                    flushed.delete();
+                }
+                return null;
+            }
+            if (flushed != null) {
+                levels.get(0).add(0, flushed);
+            }
+            immutables.remove(table);
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        compactLevels();
+        return null;
+    }
+
+    /**
+     * Compacts every level that is too big into the next one. Runs in background thread
+     */
+    private void compactLevels() {
+        for (int level = 0; level < MAX_LEVELS - 1; level++) {
+            if (needsCompaction(level)) {
+                try {
+                    compact(level);
+                } catch (IOException | CacheException e) {
+                    logger.error("Cannot compact level {}: ", level, e);
+                    return;
+                }
+            }
+        }
+    }
+
+    private boolean needsCompaction(int level) {
+        lock.readLock().lock();
+        try {
+            List<SsTable> tables = levels.get(level);
+            if (level == 0) {
+                return tables.size() >= LEVEL0_COMPACTION_TRIGGER;
+            }
+            long maxBytes = memtableSize * LEVEL0_COMPACTION_TRIGGER;
+            for (int i = 0; i < level; i++) {
+                maxBytes *= LEVEL_SIZE_MULTIPLIER;
+            }
+            return tables.stream().mapToLong(SsTable::sizeInBytes).sum() > maxBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Merges all tables of the level and of the next level into one table of the next level.
+     * Deleted keys are dropped if there is no data in deeper levels
+     */
+    private void compact(int level) throws IOException {
+        List<SsTable> inputs = new ArrayList<>();
+        boolean lastLevel;
+        long compactionEpoch;
+
+        lock.readLock().lock();
+        try {
+            inputs.addAll(levels.get(level));
+            inputs.addAll(levels.get(level + 1));
+            lastLevel = levels.subList(level + 2, MAX_LEVELS).stream().allMatch(List::isEmpty);
+            compactionEpoch = epoch;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        SsTable output;
+        List<SsTable.TableIterator> sources = new ArrayList<>();
+        inputs.forEach(table -> sources.add(table.iterator()));
+        try (MergingIterator merged = new MergingIterator(sources)) {
+            output = SsTable.write(directory, level + 1, sequence.incrementAndGet(), merged, lastLevel);
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (compactionEpoch != epoch) {
+                if (output != null) {
+                    output.delete();
+                }
+                return;
+            }
+            levels.get(level).removeAll(inputs);
+            levels.get(level + 1).removeAll(inputs);
+            if (output != null) {
+                levels.get(level + 1).add(0, output);
+            }
+
+            // the oldest tables are deleted first, so after a crash the rest still shadow them correctly
+            for (int i = inputs.size() - 1; i >= 0; i--) {
+                inputs.get(i).delete();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return iterator over all data from the newest to the oldest source
+     */
+    @GuardedBy("lock")
+    private MergingIterator mergeAll() {
+        List<Iterator<Map.Entry<byte[], byte[]>>> sources = new ArrayList<>();
+        sources.add(memtable.entrySet().iterator());
+        immutables.forEach(immutable -> sources.add(immutable.entrySet().iterator()));
+        levels.forEach(level -> level.forEach(table -> sources.add(table.iterator())));
+        return new MergingIterator(sources);
+    }
+
+    /**
+     * Copies references to the memtable entries and pins the tables under the lock, so compaction
+     * does not delete them while they are read. Flushing memtables and tables are immutable,
+     * so they are merged outside of the lock. Tables are released when the stream is read
+     * to the end or closed
+     *
+     * @return stream of serialized entries without deleted keys
+     */
+    private Stream<Map.Entry<byte[], byte[]>> streamSources() {
+        List<Iterator<Map.Entry<byte[], byte[]>>> sources = new ArrayList<>();
+        List<SsTable> pinned = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            sources.add(new ArrayList<>(memtable.entrySet()).iterator());
+            immutables.forEach(immutable -> sources.add(immutable.entrySet().iterator()));
+            levels.forEach(level -> level.forEach(table -> {
+                table.retain();
+                pinned.add(table);
+            }));
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                pinned.forEach(SsTable::release);
+            }
+        };
+        MergingIterator merged;
+        try {
+            pinned.forEach(table -> sources.add(table.iterator()));
+            merged = new MergingIterator(sources);
+        } catch (RuntimeException e) {
+            sources.stream().filter(SsTable.TableIterator.class::isInstance)
+                    .map(SsTable.TableIterator.class::cast)
+                    .forEach(SsTable.TableIterator::close);
+            release.run();
+            throw e;
+        }
+
+        Iterator<Map.Entry<byte[], byte[]>> live = new Iterator<Map.Entry<byte[], byte[]>>() {
+            private Map.Entry<byte[], byte[]> next;
+
+            @Override
+            public boolean hasNext() {
+                while ((next == null) && merged.hasNext()) {
+                    Map.Entry<byte[], byte[]> entry = merged.next();
+                    if (entry.getValue() != SsTable.TOMBSTONE) {
+                        next = entry;
+                    }
+                }
+                if (next == null) {
+                    release.run();
+                }
+                return next != null;
+            }
+
+            @Override
+            public Map.Entry<byte[], byte[]> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Map.Entry<byte[], byte[]> entry = next;
+                next = null;
+                return entry;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(live, Spliterator.ORDERED), false)
+                .onClose(() -> {
+                    merged.close();
+                    release.run();
+                });
+    }
+
+    /**
+     * Opens tables found in directory, removes unfinished tables and counts keys
+     */
+    private void openTables() {
+        try {
+            Files.createDirectories(directory);
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path path : (Iterable<Path>) files::iterator) {
+                    String name = path.getFileName().toString();
+                    if (name.endsWith(SsTable.SUFFIX + ".tmp")) {
+                        Files.delete(path);
+                    } else if (name.endsWith(SsTable.SUFFIX)) {
+                        SsTable table = SsTable.open(path);
+                        levels.get(Math.min(table.level(), MAX_LEVELS - 1)).add(table);
+                        sequence.set(Math.max(sequence.get(), table.sequence()));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new CacheException("Cannot open storage directory " + directory, e);
+        }
+
+        levels.forEach(level -> level.sort(Comparator.comparingLong(SsTable::sequence).reversed()));
+
+        int count = 0;
+        try (MergingIterator iterator = mergeAll()) {
+            while (iterator.hasNext()) {
+                if (iterator.next().getValue() != SsTable.TOMBSTONE) {
+                    count++;
+                }
+            }
+        }
+        size.set(count);
+    }
+}
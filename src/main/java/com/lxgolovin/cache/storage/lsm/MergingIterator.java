@@ -0,0 +1,90 @@
+package com.lxgolovin.cache.storage.lsm;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Merges several sorted iterators of serialized key-values into one sorted iterator.
+ * If the same key is present in several sources, the entry from the source with the
+ * lowest index wins, so sources should be ordered from the newest to the oldest.
+ * Deleted keys are returned with {@link SsTable#TOMBSTONE} value
+ *
+ * @see LsmStorage
+ * @see SsTable
+ */
+final class MergingIterator implements Iterator<Map.Entry<byte[], byte[]>>, Closeable {
+
+    private final List<? extends Iterator<Map.Entry<byte[], byte[]>>> sources;
+
+    private final PriorityQueue<Head> heads;
+
+    /**
+     * Current entry of one source
+     */
+    private static final class Head {
+        private final Map.Entry<byte[], byte[]> entry;
+        private final int source;
+
+        Head(Map.Entry<byte[], byte[]> entry, int source) {
+            this.entry = entry;
+            this.source = source;
+        }
+    }
+
+    /**
+     * @param sources sorted iterators from the newest to the oldest
+     */
+    MergingIterator(List<? extends Iterator<Map.Entry<byte[], byte[]>>> sources) {
+        this.sources = sources;
+        this.heads = new PriorityQueue<>(Math.max(1, sources.size()), (a, b) -> {
+            int order = SsTable.KEY_ORDER.compare(a.entry.getKey(), b.entry.getKey());
+            return (order != 0) ? order : Integer.compare(a.source, b.source);
+        });
+        for (int i = 0; i < sources.size(); i++) {
+            advance(i);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !heads.isEmpty();
+    }
+
+    @Override
+    public Map.Entry<byte[], byte[]> next() {
+        Head head = heads.poll();
+        if (head == null) {
+            throw new NoSuchElementException();
+        }
+        advance(head.source);
+
+        // skip older versions of the same key
+        while (!heads.isEmpty()
+                && (SsTable.KEY_ORDER.compare(heads.peek().entry.getKey(), head.entry.getKey()) == 0)) {
+            advance(heads.poll().source);
+        }
+        return head.entry;
+    }
+
+    @Override
+    public void close() {
+        heads.clear();
+        for (Iterator<Map.Entry<byte[], byte[]>> source : sources) {
+            if (source instanceof Closeable) {
+                try {
+                    ((Closeable) source).close();
+                } catch (IOException e) {
+                    // sources are read only, nothing to lose
+                }
+            }
+        }
+    }
+
+    private void advance(int source) {
+        Iterator<Map.Entry<byte[], byte[]>> iterator = sources.get(source);
+        if (iterator.hasNext()) {
+            heads.add(new Head(iterator.next(), source));
+        }
+    }
+}
@@ -0,0 +1,428 @@
+package com.lxgolovin.cache.storage.lsm;
+
+import com.lxgolovin.cache.core.CacheException;
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Sorted immutable table of serialized key-values in one file. Tables are written
+ * once by {@link LsmStorage} when memtable is flushed or levels are compacted.
+ *
+ * File layout: records sorted by key, sparse index, bloom filter and footer.
+ * Record: key length, key, value length ({@link #TOMBSTONE_LENGTH} for deleted keys), value.
+ * Sparse index keeps every {@link #INDEX_INTERVAL}-th key with its offset, so lookup
+ * reads only one small block of records.
+ *
+ * @see LsmStorage
+ * @see BloomFilter
+ */
+@Immutable
+@ThreadSafe
+final class SsTable implements Closeable {
+
+    /**
+     * Marker of deleted key. Compared by reference
+     */
+    static final byte[] TOMBSTONE = new byte[0];
+
+    /**
+     * Unsigned lexicographical order of serialized keys
+     */
+    static final Comparator<byte[]> KEY_ORDER = (a, b) -> {
+        int length = Math.min(a.length, b.length);
+        for (int i = 0; i < length; i++) {
+            int diff = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return a.length - b.length;
+    };
+
+    static final String SUFFIX = ".sst";
+
+    private static final int INDEX_INTERVAL = 16;
+
+    private static final int TOMBSTONE_LENGTH = -1;
+
+    private static final int MAGIC = 0x4C534D54;
+
+    private static final int FOOTER_SIZE = 3 * Long.BYTES + Integer.BYTES;
+
+    private static final Pattern NAME = Pattern.compile("L(\\d+)-(\\d+)\\" + SUFFIX);
+
+    private final Path path;
+
+    private final int level;
+
+    private final long sequence;
+
+    private final FileChannel channel;
+
+    private final byte[][] indexKeys;
+
+    private final long[] indexOffsets;
+
+    private final long dataEnd;
+
+    private final long recordCount;
+
+    private final BloomFilter bloomFilter;
+
+    /**
+     * Reference of the storage and of streams reading the table. File is deleted when the last one is released
+     */
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    private volatile boolean deleted;
+
+    private final Logger logger = LoggerFactory.getLogger(SsTable.class);
+
+    private SsTable(Path path, int level, long sequence) throws IOException {
+        this.path = path;
+        this.level = level;
+        this.sequence = sequence;
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+
+        try {
+            long fileSize = channel.size();
+            ByteBuffer footer = read(fileSize - FOOTER_SIZE, FOOTER_SIZE);
+            long indexOffset = footer.getLong();
+            long bloomOffset = footer.getLong();
+            recordCount = footer.getLong();
+            if (footer.getInt() != MAGIC) {
+                throw new IOException("Wrong table format: " + path);
+            }
+
+            ByteBuffer index = read(indexOffset, (int) (bloomOffset - indexOffset));
+            int indexSize = index.getInt();
+            indexKeys = new byte[indexSize][];
+            indexOffsets = new long[indexSize];
+            for (int i = 0; i < indexSize; i++) {
+                indexKeys[i] = new byte[index.getInt()];
+                index.get(indexKeys[i]);
+                indexOffsets[i] = index.getLong();
+            }
+
+            bloomFilter = BloomFilter.readFrom(read(bloomOffset, (int) (fileSize - FOOTER_SIZE - bloomOffset)));
+            dataEnd = indexOffset;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw (e instanceof IOException) ? (IOException) e : new IOException("Corrupted table " + path, e);
+        }
+    }
+
+    /**
+     * Opens existing table
+     * @param path to the table file with name created by {@link #write}
+     */
+    static SsTable open(Path path) throws IOException {
+        Matcher matcher = NAME.matcher(path.getFileName().toString());
+        if (!matcher.matches()) {
+            throw new IOException("Not a table file: " + path);
+        }
+        return new SsTable(path, Integer.parseInt(matcher.group(1)), Long.parseLong(matcher.group(2)));
+    }
+
+    /**
+     * Writes sorted entries into new table. File is written under temporary name and renamed
+     * at the end, so partially written tables are never opened
+     * @param directory to keep the table
+     * @param level of the table
+     * @param sequence unique increasing number of the table
+     * @param entries sorted by {@link #KEY_ORDER} without duplicates
+     * @param dropTombstones if true, deleted keys are not written
+     * @return new table or null if no records were written
+     */
+    static SsTable write(Path directory, int level, long sequence, Iterator<Map.Entry<byte[], byte[]>> entries,
+                         boolean dropTombstones) throws IOException {
+        Path path = directory.resolve(String.format("L%d-%019d%s", level, sequence, SUFFIX));
+        Path tempPath = directory.resolve(path.getFileName() + ".tmp");
+
+        long[] hashes = new long[1024];
+        int count = 0;
+        ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+        DataOutputStream index = new DataOutputStream(indexBytes);
+        int indexSize = 0;
+
+        long position = 0;
+        try (DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tempPath), 64 * 1024))) {
+
+            while (entries.hasNext()) {
+                Map.Entry<byte[], byte[]> entry = entries.next();
+                byte[] key = entry.getKey();
+                byte[] value = entry.getValue();
+                if (dropTombstones && (value == TOMBSTONE)) {
+                    continue;
+                }
+
+                if (count % INDEX_INTERVAL == 0) {
+                    index.writeInt(key.length);
+                    index.write(key);
+                    index.writeLong(position);
+                    indexSize++;
+                }
+                if (count == hashes.length) {
+                    hashes = Arrays.copyOf(hashes, count * 2);
+                }
+                hashes[count++] = BloomFilter.hash(key);
+
+                output.writeInt(key.length);
+                output.write(key);
+                if (value == TOMBSTONE) {
+                    output.writeInt(TOMBSTONE_LENGTH);
+                } else {
+                    output.writeInt(value.length);
+                    output.write(value);
+                }
+                position += 2 * Integer.BYTES + key.length + value.length;
+            }
+
+            long indexOffset = position;
+            output.writeInt(indexSize);
+            output.write(indexBytes.toByteArray());
+
+            long bloomOffset = indexOffset + Integer.BYTES + indexBytes.size();
+            BloomFilter bloomFilter = BloomFilter.create(hashes, count);
+            ByteBuffer bloom = ByteBuffer.allocate(bloomFilter.serializedSize());
+            bloomFilter.writeTo(bloom);
+            output.write(bloom.array());
+
+            output.writeLong(indexOffset);
+            output.writeLong(bloomOffset);
+            output.writeLong(count);
+            output.writeInt(MAGIC);
+        }
+
+        if (count == 0) {
+            Files.delete(tempPath);
+            return null;
+        }
+        try (FileChannel file = FileChannel.open(tempPath, StandardOpenOption.WRITE)) {
+            file.force(true);
+        }
+        Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE);
+        return new SsTable(path, level, sequence);
+    }
+
+    /**
+     * @param key serialized key
+     * @return value, {@link #TOMBSTONE} if the key was deleted, or empty if the table has no such key
+     */
+    Optional<byte[]> get(byte[] key, long hash) {
+        if ((indexKeys.length == 0) || !bloomFilter.mightContain(hash)) {
+            return Optional.empty();
+        }
+
+        int block = floorIndex(key);
+        if (block < 0) {
+            return Optional.empty();
+        }
+
+        long start = indexOffsets[block];
+        long end = (block + 1 < indexOffsets.length) ? indexOffsets[block + 1] : dataEnd;
+        try {
+            ByteBuffer records = read(start, (int) (end - start));
+            while (records.hasRemaining()) {
+                byte[] recordKey = new byte[records.getInt()];
+                records.get(recordKey);
+                int valueLength = records.getInt();
+
+                int order = KEY_ORDER.compare(recordKey, key);
+                if (order == 0) {
+                    if (valueLength == TOMBSTONE_LENGTH) {
+                        return Optional.of(TOMBSTONE);
+                    }
+                    byte[] value = new byte[valueLength];
+                    records.get(value);
+                    return Optional.of(value);
+                }
+                if (order > 0) {
+                    break;
+                }
+                if (valueLength > 0) {
+                    records.position(records.position() + valueLength);
+                }
+            }
+            return Optional.empty();
+        } catch (IOException | RuntimeException e) {
+            throw new CacheException("Cannot read table " + path, e);
+        }
+    }
+
+    /**
+     * @return iterator over all records in key order. Should be closed if not read to the end
+     */
+    TableIterator iterator() {
+        try {
+            return new TableIterator();
+        } catch (IOException e) {
+            throw new CacheException("Cannot read table " + path, e);
+        }
+    }
+
+    int level() {
+        return level;
+    }
+
+    long sequence() {
+        return sequence;
+    }
+
+    long recordCount() {
+        return recordCount;
+    }
+
+    long sizeInBytes() {
+        try {
+            return channel.size();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    Path path() {
+        return path;
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.warn("Cannot close table {}", path.toUri());
+        }
+    }
+
+    /**
+     * Keeps the file until {@link #release()}, even if the table is deleted meanwhile.
+     * Should be called under the lock of the storage, so the table is not deleted before
+     */
+    void retain() {
+        references.incrementAndGet();
+    }
+
+    /**
+     * Closes and deletes the file if the table is deleted and nobody else reads it
+     */
+    void release() {
+        if (references.decrementAndGet() == 0) {
+            close();
+            if (deleted) {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    logger.warn("Table {} not deleted", path.toUri());
+                }
+            }
+        }
+    }
+
+    /**
+     * Releases reference of the storage. The file is closed and deleted when released by all readers
+     */
+    void delete() {
+        deleted = true;
+        release();
+    }
+
+    /**
+     * @return index of the last index key not greater then the key, or -1
+     */
+    private int floorIndex(byte[] key) {
+        int low = 0;
+        int high = indexKeys.length - 1;
+        int floor = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (KEY_ORDER.compare(indexKeys[middle], key) <= 0) {
+                floor = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return floor;
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of table " + path);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Sequential reader of all the records
+     */
+    final class TableIterator implements Iterator<Map.Entry<byte[], byte[]>>, Closeable {
+
+        private final DataInputStream input;
+
+        private long remaining;
+
+        private TableIterator() throws IOException {
+            input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 64 * 1024));
+            remaining = recordCount;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (remaining == 0) {
+                close();
+            }
+            return remaining > 0;
+        }
+
+        @Override
+        public Map.Entry<byte[], byte[]> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            try {
+                byte[] key = new byte[input.readInt()];
+                input.readFully(key);
+                int valueLength = input.readInt();
+                byte[] value = TOMBSTONE;
+                if (valueLength != TOMBSTONE_LENGTH) {
+                    value = new byte[valueLength];
+                    input.readFully(value);
+                }
+                remaining--;
+                return new AbstractMap.SimpleImmutableEntry<>(key, value);
+            } catch (IOException e) {
+                close();
+                throw new CacheException("Cannot read table " + path, e);
+            }
+        }
+
+        @Override
+        public void close() {
+            remaining = 0;
+            try {
+                input.close();
+            } catch (IOException e) {
+                logger.warn("Cannot close table {}", path.toUri());
+            }
+        }
+    }
+}
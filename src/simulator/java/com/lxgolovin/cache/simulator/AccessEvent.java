@@ -0,0 +1,35 @@
+package com.lxgolovin.cache.simulator;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * One request of a trace: key and size of the object in bytes. Traces without sizes use size 1,
+ * so byte hit ratio is equal to hit ratio for them
+ */
+@Immutable
+final class AccessEvent {
+
+    private final long key;
+
+    private final int size;
+
+    AccessEvent(long key, int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Size should not be negative");
+        }
+        this.key = key;
+        this.size = size;
+    }
+
+    AccessEvent(long key) {
+        this(key, 1);
+    }
+
+    long getKey() {
+        return key;
+    }
+
+    int getSize() {
+        return size;
+    }
+}
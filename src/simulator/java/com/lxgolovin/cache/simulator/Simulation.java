@@ -0,0 +1,160 @@
+package com.lxgolovin.cache.simulator;
+
+import com.lxgolovin.cache.CacheController;
+import com.lxgolovin.cache.CacheLevel;
+import com.lxgolovin.cache.algorithm.CacheAlgorithm;
+import com.lxgolovin.cache.algorithm.Lru;
+import com.lxgolovin.cache.algorithm.Mru;
+import net.jcip.annotations.NotThreadSafe;
+
+import java.util.Locale;
+
+/**
+ * Replays requests through one cache configuration and counts hits.
+ * Missed key is put into the cache with its size as value. Evictions are counted as
+ * misses which are not in the cache at the end, so entries dropped by moving between
+ * levels of {@link CacheController} are counted too
+ */
+@NotThreadSafe
+final class Simulation {
+
+    /**
+     * Separates algorithms of levels in policy, like {@code LRU+MRU}
+     */
+    static final String LEVEL_SEPARATOR = "+";
+
+    private final String policy;
+
+    private final int size;
+
+    private final SimulatedCache cache;
+
+    private long requests;
+
+    private long hits;
+
+    private long bytes;
+
+    private long hitBytes;
+
+    /**
+     * @param policy algorithm of each level separated by {@link #LEVEL_SEPARATOR}. One algorithm
+     *               is simulated by {@link CacheLevel}, several by {@link CacheController}
+     * @param size total number of entries, split equally between levels
+     * @throws IllegalArgumentException if algorithm is unknown or size is too small for the levels
+     */
+    Simulation(String policy, int size) {
+        String[] algorithms = policy.toUpperCase(Locale.ROOT).split("\\" + LEVEL_SEPARATOR);
+        int levelSize = size / algorithms.length;
+        if (levelSize < 2) {
+            throw new IllegalArgumentException("Each level should have at least 2 entries, size " + size
+                    + " is too small for " + policy);
+        }
+        this.policy = policy;
+        this.size = levelSize * algorithms.length;
+        this.cache = (algorithms.length == 1)
+                ? levelCache(algorithm(algorithms[0]), levelSize)
+                : controllerCache(algorithms, levelSize);
+    }
+
+    void access(AccessEvent event) {
+        requests++;
+        bytes += event.getSize();
+        if (cache.access(event.getKey(), event.getSize())) {
+            hits++;
+            hitBytes += event.getSize();
+        }
+    }
+
+    String getPolicy() {
+        return policy;
+    }
+
+    int getSize() {
+        return size;
+    }
+
+    long getRequests() {
+        return requests;
+    }
+
+    double hitRatio() {
+        return (requests == 0) ? 0 : (double) hits / requests;
+    }
+
+    double byteHitRatio() {
+        return (bytes == 0) ? 0 : (double) hitBytes / bytes;
+    }
+
+    long evictions() {
+        return requests - hits - cache.size();
+    }
+
+    private static CacheAlgorithm<Long> algorithm(String name) {
+        switch (name) {
+            case "LRU":
+                return new Lru<>();
+            case "MRU":
+                return new Mru<>();
+            default:
+                throw new IllegalArgumentException("Unknown algorithm " + name);
+        }
+    }
+
+    private static SimulatedCache levelCache(CacheAlgorithm<Long> algorithm, int size) {
+        CacheLevel<Long, Integer> level = new CacheLevel<>(algorithm, size);
+        return new SimulatedCache() {
+            @Override
+            public boolean access(long key, int size) {
+                if (level.contains(key)) {
+                    level.get(key);
+                    return true;
+                }
+                level.cache(key, size);
+                return false;
+            }
+
+            @Override
+            public int size() {
+                return level.size();
+            }
+        };
+    }
+
+    private static SimulatedCache controllerCache(String[] algorithms, int levelSize) {
+        CacheController<Long, Integer> controller =
+                new CacheController<>(new CacheLevel<>(algorithm(algorithms[0]), levelSize));
+        for (int i = 1; i < algorithms.length; i++) {
+            controller.addLevel(new CacheLevel<>(algorithm(algorithms[i]), levelSize));
+        }
+        return new SimulatedCache() {
+            @Override
+            public boolean access(long key, int size) {
+                if (controller.contains(key)) {
+                    controller.get(key);
+                    return true;
+                }
+                controller.cache(key, size);
+                return false;
+            }
+
+            @Override
+            public int size() {
+                return controller.size();
+            }
+        };
+    }
+
+    /**
+     * Common view of {@link CacheLevel} and {@link CacheController} for the simulation
+     */
+    private interface SimulatedCache {
+
+        /**
+         * @return true if key was in the cache
+         */
+        boolean access(long key, int size);
+
+        int size();
+    }
+}
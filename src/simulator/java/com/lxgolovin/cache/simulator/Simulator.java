@@ -0,0 +1,131 @@
+package com.lxgolovin.cache.simulator;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Replays a trace through cache configurations of several sizes and reports hit ratio,
+ * byte hit ratio and evictions of each. The trace is read once, every request goes to all
+ * configurations. Arguments are {@code name=value} pairs:
+ * <ul>
+ *     <li>{@code trace=FORMAT:path} trace file, format is one of {@link TraceFormat}, like {@code arc:P1.lis}</li>
+ *     <li>{@code generator=zipf:keys,exponent,requests[,seed]}, {@code generator=scan:requests} or
+ *     {@code generator=loop:keys,requests} synthetic trace, used if there is no trace file.
+ *     By default {@code zipf:100000,0.9,1000000}</li>
+ *     <li>{@code policies=LRU,MRU,LRU+MRU} algorithms, levels of {@link com.lxgolovin.cache.CacheController}
+ *     are joined by {@code +}. By default {@code LRU,MRU}</li>
+ *     <li>{@code sizes=100,1000} total number of entries. By default {@code 1000}</li>
+ *     <li>{@code report=path} optional CSV file for the results</li>
+ * </ul>
+ */
+public final class Simulator {
+
+    private static final String DEFAULT_GENERATOR = "zipf:100000,0.9,1000000";
+
+    private static final String DEFAULT_POLICIES = "LRU,MRU";
+
+    private static final String DEFAULT_SIZES = "1000";
+
+    private static final long DEFAULT_SEED = 1;
+
+    private Simulator() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = parseOptions(args);
+
+        List<Simulation> simulations = new ArrayList<>();
+        for (String policy : options.getOrDefault("policies", DEFAULT_POLICIES).split(",")) {
+            for (String size : options.getOrDefault("sizes", DEFAULT_SIZES).split(",")) {
+                simulations.add(new Simulation(policy.trim(), Integer.parseInt(size.trim())));
+            }
+        }
+
+        String source = options.containsKey("trace")
+                ? options.get("trace")
+                : options.getOrDefault("generator", DEFAULT_GENERATOR);
+        long started = System.nanoTime();
+        try (Stream<AccessEvent> events = options.containsKey("trace") ? readTrace(source) : generate(source)) {
+            events.forEach(event -> simulations.forEach(simulation -> simulation.access(event)));
+        }
+        long millis = (System.nanoTime() - started) / 1_000_000;
+
+        System.out.println("Trace " + source + " replayed in " + millis + " ms");
+        print(simulations, System.out);
+        if (options.containsKey("report")) {
+            writeCsv(simulations, Paths.get(options.get("report")));
+        }
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator < 1) {
+                throw new IllegalArgumentException("Argument should be name=value: " + arg);
+            }
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        return options;
+    }
+
+    private static Stream<AccessEvent> readTrace(String trace) {
+        int separator = trace.indexOf(':');
+        if (separator < 1) {
+            throw new IllegalArgumentException("Trace should be FORMAT:path: " + trace);
+        }
+        TraceFormat format = TraceFormat.valueOf(trace.substring(0, separator).toUpperCase(Locale.ROOT));
+        return format.read(Paths.get(trace.substring(separator + 1)));
+    }
+
+    private static Stream<AccessEvent> generate(String generator) {
+        String[] parts = generator.split(":", 2);
+        String[] parameters = (parts.length > 1) ? parts[1].split(",") : new String[0];
+        switch (parts[0].toLowerCase(Locale.ROOT)) {
+            case "zipf":
+                return TraceGenerators.zipf(Integer.parseInt(parameters[0]), Double.parseDouble(parameters[1]),
+                        Long.parseLong(parameters[2]),
+                        (parameters.length > 3) ? Long.parseLong(parameters[3]) : DEFAULT_SEED);
+            case "scan":
+                return TraceGenerators.scan(Long.parseLong(parameters[0]));
+            case "loop":
+                return TraceGenerators.loop(Integer.parseInt(parameters[0]), Long.parseLong(parameters[1]));
+            default:
+                throw new IllegalArgumentException("Unknown generator " + generator);
+        }
+    }
+
+    private static void print(List<Simulation> simulations, PrintStream out) {
+        out.printf("%-16s %10s %12s %10s %14s %12s%n",
+                "policy", "size", "requests", "hit ratio", "byte hit ratio", "evictions");
+        for (Simulation simulation : simulations) {
+            out.printf(Locale.ROOT, "%-16s %10d %12d %9.2f%% %13.2f%% %12d%n",
+                    simulation.getPolicy(), simulation.getSize(), simulation.getRequests(),
+                    100 * simulation.hitRatio(), 100 * simulation.byteHitRatio(), simulation.evictions());
+        }
+    }
+
+    private static void writeCsv(List<Simulation> simulations, Path report) throws IOException {
+        if (report.getParent() != null) {
+            Files.createDirectories(report.getParent());
+        }
+        try (PrintStream out = new PrintStream(report.toFile(), StandardCharsets.UTF_8.name())) {
+            out.println("policy,size,requests,hitRatio,byteHitRatio,evictions");
+            for (Simulation simulation : simulations) {
+                out.printf(Locale.ROOT, "%s,%d,%d,%.6f,%.6f,%d%n",
+                        simulation.getPolicy(), simulation.getSize(), simulation.getRequests(),
+                        simulation.hitRatio(), simulation.byteHitRatio(), simulation.evictions());
+            }
+        }
+    }
+}
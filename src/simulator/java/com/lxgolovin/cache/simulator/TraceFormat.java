@@ -0,0 +1,140 @@
+package com.lxgolovin.cache.simulator;
+
+import com.lxgolovin.cache.core.CacheException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Formats of trace files. Each line of file is parsed to zero or more {@link AccessEvent}s,
+ * empty lines and lines starting with {@code #} are skipped. String keys are hashed to 64 bits
+ */
+enum TraceFormat {
+
+    /**
+     * Traces of ARC paper: starting block, number of blocks, ignored, request number.
+     * Each block is one request
+     */
+    ARC {
+        @Override
+        Stream<AccessEvent> parse(String line) {
+            String[] fields = line.trim().split("\\s+");
+            long start = Long.parseLong(fields[0]);
+            int blocks = Integer.parseInt(fields[1]);
+            return LongStream.range(start, start + blocks).mapToObj(AccessEvent::new);
+        }
+    },
+
+    /**
+     * Traces of LIRS paper: one block number per line, lines with {@code *} are separators
+     */
+    LIRS {
+        @Override
+        Stream<AccessEvent> parse(String line) {
+            String key = line.trim();
+            return key.startsWith("*") ? Stream.empty() : Stream.of(new AccessEvent(Long.parseLong(key)));
+        }
+    },
+
+    /**
+     * WikiBench traces of Wikipedia: counter, timestamp, url, save flag.
+     * Only reads, with save flag {@code -}, are requests
+     */
+    WIKIPEDIA {
+        @Override
+        Stream<AccessEvent> parse(String line) {
+            String[] fields = line.trim().split("\\s+");
+            if ((fields.length < 4) || !"-".equals(fields[3])) {
+                return Stream.empty();
+            }
+            return Stream.of(new AccessEvent(hash(fields[2])));
+        }
+    },
+
+    /**
+     * Twitter cache cluster traces: timestamp, key, key size, value size, client, operation, TTL.
+     * Only {@code get} and {@code gets} are requests, size is key size plus value size
+     */
+    TWITTER {
+        @Override
+        Stream<AccessEvent> parse(String line) {
+            String[] fields = line.split(",");
+            String operation = fields[5];
+            if (!"get".equals(operation) && !"gets".equals(operation)) {
+                return Stream.empty();
+            }
+            int size = Integer.parseInt(fields[2]) + Integer.parseInt(fields[3]);
+            return Stream.of(new AccessEvent(hash(fields[1]), size));
+        }
+    },
+
+    /**
+     * Plain CSV: key and optional size. Numeric keys are used as is, others are hashed
+     */
+    CSV {
+        @Override
+        Stream<AccessEvent> parse(String line) {
+            String[] fields = line.split(",");
+            String key = fields[0].trim();
+            long parsedKey;
+            try {
+                parsedKey = Long.parseLong(key);
+            } catch (NumberFormatException e) {
+                parsedKey = hash(key);
+            }
+            int size = (fields.length > 1) ? Integer.parseInt(fields[1].trim()) : 1;
+            return Stream.of(new AccessEvent(parsedKey, size));
+        }
+    };
+
+    private static final long FNV_OFFSET_BASIS = 0xCBF29CE484222325L;
+
+    private static final long FNV_PRIME = 0x100000001B3L;
+
+    /**
+     * @param line not empty line of the trace
+     * @return requests of the line
+     * @throws RuntimeException if line cannot be parsed
+     */
+    abstract Stream<AccessEvent> parse(String line);
+
+    /**
+     * Reads the trace lazily, the stream should be closed
+     *
+     * @param path to trace file
+     * @return requests of the trace in order
+     * @throws CacheException if file cannot be read or a line cannot be parsed
+     */
+    Stream<AccessEvent> read(Path path) {
+        Stream<String> lines;
+        try {
+            lines = Files.lines(path, StandardCharsets.ISO_8859_1);
+        } catch (IOException e) {
+            throw new CacheException("Cannot read trace " + path, e);
+        }
+        return lines.filter(line -> !line.trim().isEmpty() && !line.startsWith("#"))
+                .flatMap(line -> {
+                    try {
+                        return parse(line);
+                    } catch (RuntimeException e) {
+                        throw new CacheException("Cannot parse line of " + this + " trace: " + line, e);
+                    }
+                });
+    }
+
+    /**
+     * FNV-1a 64-bit hash of the string
+     */
+    static long hash(String value) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,72 @@
+package com.lxgolovin.cache.simulator;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Synthetic traces with known access patterns. All requests have size 1
+ */
+final class TraceGenerators {
+
+    private TraceGenerators() {
+    }
+
+    /**
+     * Keys are drawn from Zipf distribution: probability of key with rank {@code k} is
+     * proportional to {@code 1 / k^exponent}. Most of caching workloads have exponent from 0.6 to 1.2
+     *
+     * @param keys number of different keys, should be positive
+     * @param exponent skew of the distribution, should not be negative
+     * @param requests number of requests
+     * @param seed of random generator, the same seed gives the same trace
+     * @return requests of the trace
+     */
+    static Stream<AccessEvent> zipf(int keys, double exponent, long requests, long seed) {
+        if ((keys <= 0) || (exponent < 0) || (requests < 0)) {
+            throw new IllegalArgumentException("Keys should be positive, exponent and requests should not be negative");
+        }
+
+        double[] cumulative = new double[keys];
+        double sum = 0;
+        for (int rank = 0; rank < keys; rank++) {
+            sum += 1 / Math.pow(rank + 1, exponent);
+            cumulative[rank] = sum;
+        }
+        double total = sum;
+        Random random = new Random(seed);
+        return LongStream.range(0, requests).mapToObj(i -> {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+            return new AccessEvent((index >= 0) ? index : Math.min(-index - 1, keys - 1));
+        });
+    }
+
+    /**
+     * Every request is a new key, so no cache gets hits
+     *
+     * @param requests number of requests
+     * @return requests of the trace
+     */
+    static Stream<AccessEvent> scan(long requests) {
+        if (requests < 0) {
+            throw new IllegalArgumentException("Requests should not be negative");
+        }
+        return LongStream.range(0, requests).mapToObj(AccessEvent::new);
+    }
+
+    /**
+     * Keys are requested in the same order again and again. Recency based caches smaller
+     * than the loop get no hits
+     *
+     * @param keys length of the loop, should be positive
+     * @param requests number of requests
+     * @return requests of the trace
+     */
+    static Stream<AccessEvent> loop(int keys, long requests) {
+        if ((keys <= 0) || (requests < 0)) {
+            throw new IllegalArgumentException("Keys should be positive, requests should not be negative");
+        }
+        return LongStream.range(0, requests).mapToObj(i -> new AccessEvent(i % keys));
+    }
+}
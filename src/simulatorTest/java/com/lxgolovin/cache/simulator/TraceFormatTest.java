@@ -0,0 +1,110 @@
+package com.lxgolovin.cache.simulator;
+
+import com.lxgolovin.cache.core.CacheException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TraceFormatTest {
+
+    private static List<Long> keys(Stream<AccessEvent> events) {
+        return events.map(AccessEvent::getKey).collect(Collectors.toList());
+    }
+
+    /**
+     * Each block of the range is one request
+     */
+    @Test
+    void arcBlockRanges() {
+        assertEquals(Arrays.asList(100L, 101L, 102L), keys(TraceFormat.ARC.parse("100 3 0 1")));
+        assertEquals(Arrays.asList(7L), keys(TraceFormat.ARC.parse("  7\t1 0 2 ")));
+        assertEquals(0, TraceFormat.ARC.parse("5 0 0 3").count());
+    }
+
+    @Test
+    void lirsSeparators() {
+        assertEquals(Arrays.asList(42L), keys(TraceFormat.LIRS.parse(" 42 ")));
+        assertEquals(0, TraceFormat.LIRS.parse("*").count());
+        assertEquals(0, TraceFormat.LIRS.parse("******").count());
+    }
+
+    /**
+     * Only reads are requests, saves and short lines are skipped
+     */
+    @Test
+    void wikipediaSaveFlag() {
+        String url = "http://en.wikipedia.org/wiki/Main_Page";
+        assertEquals(Arrays.asList(TraceFormat.hash(url)),
+                keys(TraceFormat.WIKIPEDIA.parse("929840891 1190146243.326 " + url + " -")));
+        assertEquals(0, TraceFormat.WIKIPEDIA.parse("929840892 1190146243.327 " + url + " save").count());
+        assertEquals(0, TraceFormat.WIKIPEDIA.parse("929840893 1190146243.328 " + url).count());
+    }
+
+    /**
+     * Key is the second field, size is key size plus value size, only gets are requests
+     */
+    @Test
+    void twitterFieldPositions() {
+        List<AccessEvent> events = TraceFormat.TWITTER.parse("0,user:1,10,200,7,get,0")
+                .collect(Collectors.toList());
+        assertEquals(1, events.size());
+        assertEquals(TraceFormat.hash("user:1"), events.get(0).getKey());
+        assertEquals(210, events.get(0).getSize());
+
+        assertEquals(1, TraceFormat.TWITTER.parse("1,user:2,10,0,7,gets,0").count());
+        assertEquals(0, TraceFormat.TWITTER.parse("2,user:1,10,200,7,set,3600").count());
+        assertThrows(RuntimeException.class, () -> TraceFormat.TWITTER.parse("3,user:1,10,200,7"));
+    }
+
+    @Test
+    void csvKeysAndSizes() {
+        List<AccessEvent> events = TraceFormat.CSV.parse("12, 5").collect(Collectors.toList());
+        assertEquals(12L, events.get(0).getKey());
+        assertEquals(5, events.get(0).getSize());
+
+        events = TraceFormat.CSV.parse("key").collect(Collectors.toList());
+        assertEquals(TraceFormat.hash("key"), events.get(0).getKey());
+        assertEquals(1, events.get(0).getSize());
+    }
+
+    @Test
+    void fnvHash() {
+        assertEquals(0xCBF29CE484222325L, TraceFormat.hash(""));
+        assertEquals(0xAF63DC4C8601EC8CL, TraceFormat.hash("a"));
+        assertNotEquals(TraceFormat.hash("ab"), TraceFormat.hash("ba"));
+    }
+
+    /**
+     * Comments and empty lines are skipped, wrong lines fail with the line in message
+     */
+    @Test
+    void readFile() throws IOException {
+        Path trace = Files.createTempFile("trace", ".lis");
+        try {
+            Files.write(trace, Arrays.asList("# LIRS trace", "", "1", "*", "2", "1"), StandardCharsets.ISO_8859_1);
+            try (Stream<AccessEvent> events = TraceFormat.LIRS.read(trace)) {
+                assertEquals(Arrays.asList(1L, 2L, 1L), keys(events));
+            }
+
+            Files.write(trace, Arrays.asList("1", "x"), StandardCharsets.ISO_8859_1);
+            try (Stream<AccessEvent> events = TraceFormat.LIRS.read(trace)) {
+                CacheException e = assertThrows(CacheException.class, () -> keys(events));
+                assertTrue(e.getMessage().contains("x"));
+            }
+        } finally {
+            Files.delete(trace);
+        }
+
+        assertThrows(CacheException.class, () -> TraceFormat.CSV.read(Paths.get("noSuchTrace.csv")));
+    }
+}
@@ -0,0 +1,76 @@
+package com.lxgolovin.cache.simulator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TraceGeneratorsTest {
+
+    private static List<Long> keys(Stream<AccessEvent> events) {
+        return events.map(AccessEvent::getKey).collect(Collectors.toList());
+    }
+
+    private static Map<Long, Long> counts(Stream<AccessEvent> events) {
+        return events.collect(Collectors.groupingBy(AccessEvent::getKey, Collectors.counting()));
+    }
+
+    @Test
+    void zipfIsRepeatable() {
+        assertEquals(keys(TraceGenerators.zipf(100, 1.0, 1000, 1)), keys(TraceGenerators.zipf(100, 1.0, 1000, 1)));
+        assertNotEquals(keys(TraceGenerators.zipf(100, 1.0, 1000, 1)), keys(TraceGenerators.zipf(100, 1.0, 1000, 2)));
+    }
+
+    /**
+     * Lower ranks are requested more often, all keys are in range
+     */
+    @Test
+    void zipfIsSkewed() {
+        Map<Long, Long> counts = counts(TraceGenerators.zipf(100, 1.0, 100_000, 1));
+        assertTrue(counts.keySet().stream().allMatch(key -> (key >= 0) && (key < 100)));
+        assertTrue(counts.get(0L) > counts.get(1L));
+        assertTrue(counts.get(1L) > counts.get(10L));
+        // key of rank 1 gets about 1 / H(100) = 19% of requests
+        assertTrue(counts.get(0L) > 15_000);
+        assertTrue(counts.get(0L) < 23_000);
+        assertTrue(TraceGenerators.zipf(100, 1.0, 10, 1).allMatch(event -> event.getSize() == 1));
+    }
+
+    @Test
+    void zipfWithoutSkewIsUniform() {
+        Map<Long, Long> counts = counts(TraceGenerators.zipf(10, 0, 100_000, 1));
+        assertEquals(10, counts.size());
+        assertTrue(counts.values().stream().allMatch(count -> (count > 9_000) && (count < 11_000)));
+        assertEquals(1, counts(TraceGenerators.zipf(1, 2.0, 100, 1)).size());
+    }
+
+    @Test
+    void scanNeverRepeats() {
+        List<Long> keys = keys(TraceGenerators.scan(1000));
+        assertEquals(1000, keys.size());
+        assertEquals(1000, keys.stream().distinct().count());
+        assertEquals(0, TraceGenerators.scan(0).count());
+    }
+
+    @Test
+    void loopRepeatsInOrder() {
+        List<Long> keys = keys(TraceGenerators.loop(3, 7));
+        assertEquals(List.of(0L, 1L, 2L, 0L, 1L, 2L, 0L), keys);
+        assertTrue(counts(TraceGenerators.loop(5, 100)).values().stream().allMatch(count -> count == 20));
+    }
+
+    @Test
+    void wrongArguments() {
+        assertThrows(IllegalArgumentException.class, () -> TraceGenerators.zipf(0, 1.0, 10, 1));
+        assertThrows(IllegalArgumentException.class, () -> TraceGenerators.zipf(10, -1.0, 10, 1));
+        assertThrows(IllegalArgumentException.class, () -> TraceGenerators.zipf(10, 1.0, -1, 1));
+        assertThrows(IllegalArgumentException.class, () -> TraceGenerators.scan(-1));
+        assertThrows(IllegalArgumentException.class, () -> TraceGenerators.loop(0, 10));
+        assertThrows(IllegalArgumentException.class, () -> TraceGenerators.loop(10, -1));
+        assertThrows(IllegalArgumentException.class, () -> new AccessEvent(1, -1));
+    }
+}
@@ -2,6 +2,9 @@ package com.lxgolovin.cache;
 
 import com.lxgolovin.cache.algorithm.CacheAlgorithm;
 import com.lxgolovin.cache.algorithm.Lru;
+import com.lxgolovin.cache.stats.CacheStats;
+import com.lxgolovin.cache.stats.EvictionCause;
+import com.lxgolovin.cache.stats.LatencyRecorder;
 import com.lxgolovin.cache.tools.ListGenerator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -10,6 +13,13 @@ import java.util.AbstractMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -299,4 +309,94 @@ class CacheControllerLruTest {
         assertEquals(0, cacheController.size());
         assertEquals(10, cacheController.sizeMax());
     }
-}
\ No newline at end of file
+
+    /**
+     * Hits are counted by levels, moves between levels are promotions and demotions
+     */
+    @Test
+    void stats() {
+        // level0: {3->9, 4->16, 5->25, 6->36, 7->49}, 0, 1, 2 are evicted by size
+        assertEquals(3, cc.stats().evictionCount(EvictionCause.SIZE));
+        cc.addLevel(new CacheLevel<>(new Lru<>()));
+        CacheStats initial = cc.stats();
+
+        // 3 and 4 are demoted: level0: {5, 6, 7, 10, 11}; level1: {3, 4}
+        cc.cache(10, 100);
+        cc.cache(11, 121);
+        assertEquals(Optional.of(9), cc.get(3));
+        assertEquals(Optional.of(49), cc.get(7));
+        assertFalse(cc.get(12).isPresent());
+        assertEquals(Optional.of(144), cc.get(12, key -> key * key));
+
+        CacheStats stats = cc.stats().minus(initial);
+        assertEquals(2, stats.hitCount());
+        assertEquals(2, stats.missCount());
+        assertEquals(2, stats.levels());
+        assertEquals(1, stats.levelHitCount(0));
+        assertEquals(1, stats.levelHitCount(1));
+        assertEquals(1, stats.promotionCount());
+        assertEquals(4, stats.demotionCount());
+        assertEquals(1, stats.loadSuccessCount());
+        assertEquals(0, stats.evictionCount());
+    }
+
+    @Test
+    void latencies() {
+        cc.addLevel(new CacheLevel<>(new Lru<>()));
+        LatencyRecorder recorder = new LatencyRecorder();
+        cc.recordLatencies(recorder);
+        assertTrue(cc.latencies().isPresent());
+
+        cc.cache(10, 100);
+        cc.cache(11, 121);
+        assertEquals(Optional.of(9), cc.get(3));
+        assertFalse(cc.get(12).isPresent());
+        assertEquals(Optional.of(144), cc.get(12, key -> key * key));
+        cc.pop();
+
+        assertEquals(3, recorder.snapshot(LatencyRecorder.Operation.CACHE).count());
+        assertEquals(1, recorder.snapshot(LatencyRecorder.Operation.GET_HIT).count());
+        assertEquals(2, recorder.snapshot(LatencyRecorder.Operation.GET_MISS).count());
+        assertEquals(5, recorder.snapshot(LatencyRecorder.Operation.DEMOTE).count());
+        assertEquals(1, recorder.snapshot(LatencyRecorder.Operation.POP).count());
+    }
+
+    /**
+     * Loader runs without the controller lock, concurrent loads of one key call it once
+     */
+    @Test
+    void loaderRunsOutsideLock() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        Function<Integer, Integer> loader = key -> {
+            calls.incrementAndGet();
+            loading.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return key * key;
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Optional<Integer>> first = executor.submit(() -> cc.get(20, loader));
+            assertTrue(loading.await(10, TimeUnit.SECONDS));
+            Future<Optional<Integer>> second = executor.submit(() -> cc.get(20, loader));
+
+            // other keys are available while the loader is blocked
+            cc.cache(30, 900);
+            assertEquals(Optional.of(900), cc.get(30));
+
+            release.countDown();
+            assertEquals(Optional.of(400), first.get(10, TimeUnit.SECONDS));
+            assertEquals(Optional.of(400), second.get(10, TimeUnit.SECONDS));
+            assertEquals(1, calls.get());
+            assertEquals(Optional.of(400), cc.get(20));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -3,7 +3,17 @@ package com.lxgolovin.cache;
 import com.lxgolovin.cache.algorithm.CacheAlgorithm;
 import com.lxgolovin.cache.algorithm.Lru;
 import com.lxgolovin.cache.algorithm.Mru;
+import com.lxgolovin.cache.serializer.Serializers;
+import com.lxgolovin.cache.stats.CacheStats;
+import com.lxgolovin.cache.stats.EvictionCause;
+import com.lxgolovin.cache.stats.HotKey;
+import com.lxgolovin.cache.stats.HotKeyTracker;
+import com.lxgolovin.cache.stats.LatencyRecorder;
+import com.lxgolovin.cache.stats.MemoryFootprint;
+import com.lxgolovin.cache.stats.SizeEstimators;
+import com.lxgolovin.cache.storage.CompressingStorage;
 import com.lxgolovin.cache.storage.MemoryStorage;
+import com.lxgolovin.cache.storage.OffHeapStorage;
 import com.lxgolovin.cache.storage.Storage;
 import com.lxgolovin.cache.tools.ListGenerator;
 import org.junit.jupiter.api.BeforeEach;
@@ -256,4 +266,125 @@ class CacheLevelMemoryTest {
         assertThrows(IllegalArgumentException.class, () -> memoryCache.cache(null, 666));
         assertFalse(memoryCache.contains(null));
     }
-}
\ No newline at end of file
+
+    /**
+     * Hits, misses, evictions by causes and loads are counted
+     */
+    @Test
+    void stats() {
+        // lru cache is {4->4, 5->5, 6->6, 7->7, 8->8, 9->9}, 1, 2, 3 are evicted by size
+        CacheStats initial = lruCache.stats();
+        assertEquals(3, initial.evictionCount(EvictionCause.SIZE));
+
+        assertTrue(lruCache.get(5).isPresent());
+        assertFalse(lruCache.get(1).isPresent());
+        assertTrue(lruCache.delete(6).isPresent());
+        assertFalse(lruCache.delete(6).isPresent());
+        assertTrue(lruCache.pop().isPresent());
+        assertEquals(Optional.of(100), lruCache.get(10, key -> key * key));
+        assertEquals(Optional.of(100), lruCache.get(10, key -> 0));
+        assertFalse(lruCache.get(11, key -> null).isPresent());
+
+        CacheStats stats = lruCache.stats().minus(initial);
+        assertEquals(2, stats.hitCount());
+        assertEquals(3, stats.missCount());
+        assertEquals(1, stats.evictionCount(EvictionCause.DELETED));
+        assertEquals(1, stats.evictionCount(EvictionCause.POPPED));
+        assertEquals(0, stats.evictionCount(EvictionCause.SIZE));
+        assertEquals(1, stats.loadSuccessCount());
+        assertEquals(1, stats.loadFailureCount());
+        assertThrows(IllegalArgumentException.class, () -> lruCache.get(1, null));
+    }
+
+    @Test
+    void latencies() {
+        CacheLevel<Integer, Integer> level = (CacheLevel<Integer, Integer>) lruCache;
+        assertFalse(level.latencies().isPresent());
+        LatencyRecorder recorder = new LatencyRecorder();
+        level.recordLatencies(recorder);
+
+        lruCache.get(5);
+        lruCache.get(1);
+        lruCache.cache(20, 20);
+        lruCache.pop();
+
+        assertEquals(1, recorder.snapshot(LatencyRecorder.Operation.GET_HIT).count());
+        assertEquals(1, recorder.snapshot(LatencyRecorder.Operation.GET_MISS).count());
+        assertEquals(1, recorder.snapshot(LatencyRecorder.Operation.CACHE).count());
+        assertEquals(1, recorder.snapshot(LatencyRecorder.Operation.POP).count());
+        assertEquals(2, recorder.snapshot(LatencyRecorder.Operation.STORAGE_READ).count());
+        assertEquals(1, recorder.snapshot(LatencyRecorder.Operation.STORAGE_WRITE).count());
+
+        level.recordLatencies(null);
+        lruCache.get(5);
+        assertEquals(1, recorder.snapshot(LatencyRecorder.Operation.GET_HIT).count());
+    }
+
+    @Test
+    void accessListeners() {
+        CacheLevel<Integer, Integer> level = (CacheLevel<Integer, Integer>) lruCache;
+        HotKeyTracker<Integer> tracker = new HotKeyTracker<>();
+        level.addAccessListener(tracker);
+        IntStream.range(0, 10).forEach(x -> level.get(5));
+        level.get(1);
+        level.cache(1, 1);
+
+        List<HotKey<Integer>> top = tracker.topK(2);
+        assertEquals(Integer.valueOf(5), top.get(0).key());
+        assertEquals(10, top.get(0).count());
+        assertEquals(Integer.valueOf(1), top.get(1).key());
+        assertEquals(2, top.get(1).count());
+
+        assertTrue(level.removeAccessListener(tracker));
+        level.get(1);
+        assertEquals(2, tracker.topK(2).get(1).count());
+        assertThrows(IllegalArgumentException.class, () -> level.addAccessListener(null));
+    }
+
+    /**
+     * Keys, values and structures are counted, sampled sizes are extrapolated
+     */
+    @Test
+    void footprint() {
+        CacheLevel<Integer, String> level = new CacheLevel<>(new Lru<>(), 1000);
+        IntStream.range(0, 1000).forEach(x -> level.cache(x, "value"));
+
+        MemoryFootprint footprint = level.footprint();
+        assertEquals(1000, footprint.entries());
+        assertEquals(1000, footprint.sampledEntries());
+        assertEquals(16 * 1000, footprint.keyBytes());
+        assertEquals(48 * 1000, footprint.valueBytes());
+        assertEquals(40 * 1000, footprint.storageOverhead());
+        assertEquals(64 * 1000, footprint.algorithmOverhead());
+        double perEntry = footprint.bytesPerEntry();
+        assertEquals(168.0, perEntry);
+
+        MemoryFootprint sampled = level.footprint(SizeEstimators.DEFAULT, SizeEstimators.fixed(100), 10);
+        assertEquals(10, sampled.sampledEntries());
+        assertEquals(100 * 1000, sampled.valueBytes());
+        assertEquals(footprint.keyBytes(), sampled.keyBytes());
+        assertThrows(IllegalArgumentException.class, () -> level.footprint(null, SizeEstimators.DEFAULT, 1));
+    }
+
+    /**
+     * Compressed values are measured as stored bytes, off-heap values are not measured
+     */
+    @Test
+    void footprintOfEncodedValues() {
+        String value = String.join("", Collections.nCopies(1000, "a"));
+        CacheLevel<Integer, String> compressed = new CacheLevel<>(new Lru<>(),
+                new CompressingStorage<>(new MemoryStorage<>(), Serializers.STRING), 10);
+        IntStream.range(0, 10).forEach(x -> compressed.cache(x, value));
+        MemoryFootprint footprint = compressed.footprint();
+        assertTrue(footprint.valueBytes() > 0);
+        // ten compressed values are smaller then one uncompressed string
+        assertTrue(footprint.valueBytes() < SizeEstimators.STRING.sizeOf(value));
+
+        CacheLevel<Integer, String> offHeap = new CacheLevel<>(new Lru<>(),
+                new OffHeapStorage<>(Serializers.STRING), 10);
+        IntStream.range(0, 10).forEach(x -> offHeap.cache(x, value));
+        footprint = offHeap.footprint();
+        assertEquals(0, footprint.valueBytes());
+        assertEquals(10 * (40 + 24), footprint.storageOverhead());
+    }
+}
@@ -0,0 +1,113 @@
+package com.lxgolovin.cache;
+
+import com.lxgolovin.cache.algorithm.Lru;
+import com.lxgolovin.cache.algorithm.Mru;
+import com.lxgolovin.cache.core.CacheException;
+import com.lxgolovin.cache.serializer.Serializers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheLevelSnapshotTest {
+
+    private final int entries = 3 * CacheLevelSnapshot.BLOCK_ENTRIES + 7;
+
+    private final Path file = Files.createTempFile("cacheLevel", ".snapshot");
+
+    private final CacheLevelSnapshot<Integer, String> snapshot =
+            new CacheLevelSnapshot<>(Serializers.INTEGER, Serializers.STRING);
+
+    CacheLevelSnapshotTest() throws IOException {
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Restored level keeps entries and evicts them in the same order
+     */
+    @Test
+    void restoreKeepsOrder() {
+        CacheLevel<Integer, String> level = new CacheLevel<>(new Lru<>(), entries);
+        IntStream.range(0, entries).forEach(x -> level.cache(x, "v" + x));
+        IntStream.range(0, entries).filter(x -> x % 3 == 0).forEach(level::get);
+
+        assertEquals(entries, snapshot.write(level, file));
+        CacheLevel<Integer, String> restored = snapshot.restore(file, new Lru<>());
+
+        assertEquals(entries, restored.size());
+        assertEquals(entries, restored.sizeMax());
+        assertEquals(level.keys(), restored.keys());
+        assertEquals(Optional.of("v42"), restored.get(42));
+        for (int i = 0; i < 10; i++) {
+            assertEquals(level.pop(), restored.pop());
+        }
+    }
+
+    @Test
+    void readIntoExistingLevel() {
+        CacheLevel<Integer, String> level = new CacheLevel<>(new Mru<>(), 10);
+        IntStream.range(0, 10).forEach(x -> level.cache(x, "v" + x));
+        level.get(3);
+        snapshot.write(level, file);
+
+        CacheLevel<Integer, String> restored = new CacheLevel<>(new Mru<>(), 10);
+        assertEquals(10, snapshot.read(file, restored));
+        Optional<Map.Entry<Integer, String>> popped = restored.pop();
+        assertTrue(popped.isPresent());
+        assertEquals(3, popped.get().getKey().intValue());
+    }
+
+    /**
+     * Snapshot does not lock the order of the algorithm, so hits are not stopped while it is written
+     */
+    @Test
+    void writeDoesNotLockOrder() {
+        CacheLevel<Integer, String> level = new CacheLevel<>(new Lru<>(), entries);
+        IntStream.range(0, entries).forEach(x -> level.cache(x, "v" + x));
+
+        long acquisitions = algorithmLockAcquisitions(level);
+        assertEquals(entries, snapshot.write(level, file));
+        assertEquals(acquisitions, algorithmLockAcquisitions(level));
+    }
+
+    /**
+     * Blocks before the damaged one are cached, the damage is reported
+     */
+    @Test
+    void truncatedSnapshot() throws IOException {
+        CacheLevel<Integer, String> level = new CacheLevel<>(new Lru<>(), entries);
+        IntStream.range(0, entries).forEach(x -> level.cache(x, "v" + x));
+        snapshot.write(level, file);
+        byte[] data = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(data, data.length * 2 / 3));
+
+        CacheLevel<Integer, String> restored = new CacheLevel<>(new Lru<>(), entries);
+        assertThrows(CacheException.class, () -> snapshot.read(file, restored));
+        assertTrue(restored.size() >= CacheLevelSnapshot.BLOCK_ENTRIES);
+        assertEquals(Optional.of("v0"), restored.get(0));
+    }
+
+    private static long algorithmLockAcquisitions(CacheLevel<Integer, String> level) {
+        return level.stats().lockStats().get(CacheLevel.ALGORITHM_LOCK).acquisitionCount();
+    }
+
+    @Test
+    void corruptedSnapshot() throws IOException {
+        Files.write(file, new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12});
+        assertThrows(CacheException.class, () -> snapshot.restore(file, new Lru<>()));
+        assertThrows(IllegalArgumentException.class, () -> snapshot.write(null, file));
+        assertThrows(IllegalArgumentException.class, () -> new CacheLevelSnapshot<>(null, Serializers.STRING));
+    }
+}
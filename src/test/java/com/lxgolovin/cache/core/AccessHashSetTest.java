@@ -3,6 +3,12 @@ package com.lxgolovin.cache.core;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
 import java.util.Set;
 import java.util.stream.IntStream;
 
@@ -117,4 +123,58 @@ class AccessHashSetTest {
         assertTrue(set.remove(4));
         assertTrue(set.isEmpty());
     }
-}
\ No newline at end of file
+
+    /**
+     * Checks elements are returned in access order
+     */
+    @Test
+    void elements() {
+        assertEquals(Arrays.asList(1, 2, 3, 4), set.elements());
+        assertTrue(set.put(2));
+        assertTrue(set.remove(3));
+        assertEquals(Arrays.asList(1, 4, 2), set.elements());
+        set.clear();
+        assertTrue(set.elements().isEmpty());
+    }
+
+    /**
+     * Elements are copied without the lock in the same order as they are cut from head
+     */
+    @Test
+    void elementsWithoutLock() {
+        Random random = new Random(1);
+        for (int i = 0; i < 10_000; i++) {
+            int elem = random.nextInt(200);
+            if (random.nextInt(4) == 0) {
+                set.remove(elem);
+            } else {
+                set.put(elem);
+            }
+        }
+
+        long acquisitions = set.lockStats().acquisitionCount();
+        List<Integer> elements = set.elements();
+        assertEquals(acquisitions, set.lockStats().acquisitionCount());
+
+        List<Integer> cut = new ArrayList<>();
+        for (Optional<Integer> head = set.cutHead(); head.isPresent(); head = set.cutHead()) {
+            cut.add(head.get());
+        }
+        assertEquals(cut, elements);
+    }
+
+    /**
+     * Sample takes every n-th element and not more then requested
+     */
+    @Test
+    void sample() {
+        assertEquals(4, set.sample(10).size());
+        IntStream.range(5, 100).forEach(set::put);
+        List<Integer> sample = set.sample(10);
+        assertEquals(10, sample.size());
+        assertEquals(10, new HashSet<>(sample).size());
+        assertTrue(set.elements().containsAll(sample));
+        set.clear();
+        assertTrue(set.sample(1).isEmpty());
+    }
+}
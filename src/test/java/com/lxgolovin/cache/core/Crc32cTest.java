@@ -0,0 +1,48 @@
+package com.lxgolovin.cache.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Crc32cTest {
+
+    /**
+     * Check values from RFC 3720
+     */
+    @Test
+    void knownValues() {
+        byte[] digits = "123456789".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(0xE3069283, Crc32c.compute(digits, 0, digits.length));
+        assertEquals(0x8A9136AA, Crc32c.compute(new byte[32], 0, 32));
+
+        byte[] ones = new byte[32];
+        java.util.Arrays.fill(ones, (byte) 0xFF);
+        assertEquals(0x62A8AB43, Crc32c.compute(ones, 0, 32));
+    }
+
+    /**
+     * Updating by single bytes and by arrays gives the same value
+     */
+    @Test
+    void updateByPartsAndBytes() {
+        byte[] data = new byte[1000];
+        new Random(1).nextBytes(data);
+
+        Crc32c whole = new Crc32c();
+        whole.update(data, 0, data.length);
+
+        Crc32c parts = new Crc32c();
+        parts.update(data, 0, 13);
+        for (int i = 13; i < 100; i++) {
+            parts.update(data[i]);
+        }
+        parts.update(data, 100, data.length - 100);
+        assertEquals(whole.getValue(), parts.getValue());
+
+        parts.reset();
+        assertEquals(0, parts.getValue());
+    }
+}
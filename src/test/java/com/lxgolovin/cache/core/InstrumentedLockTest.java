@@ -0,0 +1,145 @@
+package com.lxgolovin.cache.core;
+
+import com.lxgolovin.cache.CacheLevel;
+import com.lxgolovin.cache.algorithm.Lru;
+import com.lxgolovin.cache.stats.CacheStats;
+import com.lxgolovin.cache.stats.LockStats;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InstrumentedLockTest {
+
+    /**
+     * Acquisition while another thread holds the lock is contended and its waiting is counted
+     */
+    @Test
+    void contendedAcquisition() throws InterruptedException {
+        InstrumentedLock lock = new InstrumentedLock();
+        lock.lock();
+        lock.unlock();
+        assertEquals(1, lock.stats().acquisitionCount());
+        assertEquals(0, lock.stats().contendedCount());
+
+        CountDownLatch locked = new CountDownLatch(1);
+        Thread holder = new Thread(() -> {
+            lock.lock();
+            try {
+                locked.countDown();
+                TimeUnit.MILLISECONDS.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                lock.unlock();
+            }
+        });
+        holder.start();
+        locked.await();
+        assertFalse(lock.tryLock());
+        lock.lock();
+        lock.unlock();
+        holder.join();
+
+        LockStats stats = lock.stats();
+        assertEquals(3, stats.acquisitionCount());
+        assertEquals(1, stats.contendedCount());
+        assertTrue(stats.totalWaitTime() > 0);
+        double rate = stats.contentionRate();
+        assertEquals(1.0 / 3, rate);
+    }
+
+    @Test
+    void readWriteLock() throws InterruptedException {
+        InstrumentedReadWriteLock lock = new InstrumentedReadWriteLock();
+        lock.readLock().lock();
+        lock.readLock().lock();
+        lock.readLock().unlock();
+        Thread writer = new Thread(() -> {
+            lock.writeLock().lock();
+            lock.writeLock().unlock();
+        });
+        writer.start();
+        while (!lock.hasQueuedThreads()) {
+            Thread.yield();
+        }
+        lock.readLock().unlock();
+        writer.join();
+
+        assertEquals(2, lock.readLockStats().acquisitionCount());
+        assertEquals(1, lock.writeLockStats().contendedCount());
+        assertEquals(3, lock.stats().acquisitionCount());
+    }
+
+    /**
+     * Re-entry of the owner while another thread waits is not contended
+     */
+    @Test
+    void reentryIsNotContended() throws InterruptedException {
+        InstrumentedLock lock = new InstrumentedLock();
+        lock.lock();
+        Thread waiting = new Thread(() -> {
+            lock.lock();
+            lock.unlock();
+        });
+        waiting.start();
+        while (!lock.hasQueuedThreads()) {
+            Thread.yield();
+        }
+        for (int i = 0; i < 5; i++) {
+            lock.lock();
+        }
+        assertEquals(6, lock.stats().acquisitionCount());
+        assertEquals(0, lock.stats().contendedCount());
+        for (int i = 0; i < 6; i++) {
+            lock.unlock();
+        }
+        waiting.join();
+        assertEquals(1, lock.stats().contendedCount());
+
+        InstrumentedReadWriteLock readWriteLock = new InstrumentedReadWriteLock();
+        readWriteLock.readLock().lock();
+        Thread writer = new Thread(() -> {
+            readWriteLock.writeLock().lock();
+            readWriteLock.writeLock().unlock();
+        });
+        writer.start();
+        while (!readWriteLock.hasQueuedThreads()) {
+            Thread.yield();
+        }
+        readWriteLock.readLock().lock();
+        assertEquals(0, readWriteLock.readLockStats().contendedCount());
+        readWriteLock.readLock().unlock();
+        readWriteLock.readLock().unlock();
+        writer.join();
+
+        readWriteLock.writeLock().lock();
+        readWriteLock.writeLock().lock();
+        readWriteLock.readLock().lock();
+        assertEquals(3, readWriteLock.readLockStats().acquisitionCount());
+        assertEquals(0, readWriteLock.readLockStats().contendedCount());
+        readWriteLock.readLock().unlock();
+        readWriteLock.writeLock().unlock();
+        readWriteLock.writeLock().unlock();
+    }
+
+    /**
+     * Locks of level, algorithm and storage are shown in statistics of the level
+     */
+    @Test
+    void levelStats() {
+        CacheLevel<Integer, Integer> level = new CacheLevel<>(new Lru<>());
+        CacheStats initial = level.stats();
+        level.cache(1, 1);
+        level.get(1);
+
+        CacheStats stats = level.stats().minus(initial);
+        assertEquals(3, stats.lockStats().size());
+        assertEquals(2, stats.lockStats(CacheLevel.ALGORITHM_LOCK).acquisitionCount());
+        assertTrue(stats.lockStats(CacheLevel.LEVEL_LOCK).acquisitionCount() >= 2);
+        assertEquals(LockStats.empty(), stats.lockStats(CacheLevel.STORAGE_LOCK));
+        assertEquals(LockStats.empty(), stats.lockStats("none"));
+    }
+}
@@ -0,0 +1,62 @@
+package com.lxgolovin.cache.jfr;
+
+import com.lxgolovin.cache.CacheController;
+import com.lxgolovin.cache.CacheLevel;
+import com.lxgolovin.cache.algorithm.Lru;
+import com.lxgolovin.cache.serializer.Serializers;
+import com.lxgolovin.cache.storage.FileSystemStorage;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheEventsTest {
+
+    private static long count(List<RecordedEvent> events, String name) {
+        return events.stream().filter(e -> e.getEventType().getName().equals(name)).count();
+    }
+
+    /**
+     * With zero threshold every operation is recorded
+     */
+    @Test
+    void eventsAreRecorded() throws IOException {
+        Path dump = Files.createTempFile("cache", ".jfr");
+        try (Recording recording = new Recording()) {
+            CacheEvents.enable(recording, Duration.ZERO);
+            recording.start();
+
+            CacheController<Integer, String> controller = new CacheController<>(new CacheLevel<>(new Lru<>(), 2));
+            controller.addLevel(new CacheLevel<>(new Lru<>(),
+                    new FileSystemStorage<>(null, Serializers.INTEGER, Serializers.STRING), 2));
+            IntStream.range(0, 4).forEach(x -> controller.cache(x, "v" + x));
+            controller.get(0);
+
+            recording.stop();
+            recording.dump(dump);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+        Files.delete(dump);
+        assertTrue(count(events, CacheEvents.CACHE_OPERATION) >= 7);
+        assertTrue(count(events, CacheEvents.LEVEL_TRANSFER) >= 7);
+        assertTrue(count(events, CacheEvents.STORAGE_IO) >= 3);
+
+        RecordedEvent write = events.stream()
+                .filter(e -> e.getEventType().getName().equals(CacheEvents.STORAGE_IO))
+                .filter(e -> "write".equals(e.getString("operation")))
+                .findFirst()
+                .orElseThrow(AssertionError::new);
+        assertTrue(write.getLong("bytes") > 0);
+        assertThrows(IllegalArgumentException.class, () -> CacheEvents.enable(null, Duration.ZERO));
+    }
+}
@@ -0,0 +1,74 @@
+package com.lxgolovin.cache.management;
+
+import com.lxgolovin.cache.CacheController;
+import com.lxgolovin.cache.CacheLevel;
+import com.lxgolovin.cache.algorithm.Lru;
+import com.lxgolovin.cache.core.CacheException;
+import org.junit.jupiter.api.Test;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheMBeansTest {
+
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+    /**
+     * Attributes are read and level is resized through MBean server
+     */
+    @Test
+    void levelBean() throws JMException {
+        CacheLevel<Integer, Integer> level = new CacheLevel<>(new Lru<>(), 10);
+        IntStream.range(0, 10).forEach(x -> level.cache(x, x));
+        level.get(1);
+        level.get(20);
+
+        ObjectName name = CacheMBeans.register("memory", level);
+        try {
+            assertEquals(10, server.getAttribute(name, "Size"));
+            assertEquals("LRU", server.getAttribute(name, "AlgorithmType"));
+            assertEquals(1L, server.getAttribute(name, "HitCount"));
+            assertEquals(1L, server.getAttribute(name, "MissCount"));
+            assertEquals(0L, server.getAttribute(name, "StorageWriteCount"));
+
+            server.invoke(name, "resize", new Object[] {4}, new String[] {int.class.getName()});
+            assertEquals(4, level.sizeMax());
+            assertEquals(4, level.size());
+            assertEquals(6L, server.getAttribute(name, "EvictionCount"));
+            assertEquals(false, server.invoke(name, "compact", new Object[0], new String[0]));
+
+            assertThrows(CacheException.class, () -> CacheMBeans.register("memory", level));
+        } finally {
+            CacheMBeans.unregister(name);
+        }
+        assertFalse(server.isRegistered(name));
+    }
+
+    @Test
+    void controllerBean() throws JMException {
+        CacheController<Integer, Integer> controller = new CacheController<>(new CacheLevel<>(new Lru<>(), 2));
+        controller.addLevel(new CacheLevel<>(new Lru<>(), 2));
+        IntStream.range(0, 4).forEach(x -> controller.cache(x, x));
+        controller.get(0);
+
+        ObjectName name = CacheMBeans.register("controller", controller);
+        try {
+            assertEquals(2, server.getAttribute(name, "Levels"));
+            assertEquals(1L, server.getAttribute(name, "PromotionCount"));
+            long[] levelHits = (long[]) server.getAttribute(name, "LevelHitCounts");
+            assertEquals(2, levelHits.length);
+            assertEquals(1, levelHits[1]);
+
+            server.invoke(name, "clearLevel", new Object[] {1}, new String[] {int.class.getName()});
+            assertEquals(2, controller.size());
+        } finally {
+            CacheMBeans.unregister(name);
+        }
+        assertThrows(IllegalArgumentException.class, () -> CacheMBeans.register(null, controller));
+    }
+}
@@ -0,0 +1,114 @@
+package com.lxgolovin.cache.serializer;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SerializersTest {
+
+    /**
+     * Value class without {@link java.io.Serializable} to check composite serializer
+     */
+    private static final class Point {
+        private final String name;
+        private final int x;
+
+        Point(String name, int x) {
+            this.name = name;
+            this.x = x;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        int getX() {
+            return x;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Point)) {
+                return false;
+            }
+            Point point = (Point) o;
+            return (x == point.x) && name.equals(point.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(name, x);
+        }
+    }
+
+    private <T> T roundTrip(Serializer<T> serializer, T value) {
+        byte[] bytes = serializer.toBytes(value);
+        assertEquals(serializer.sizeOf(value), bytes.length);
+        return serializer.fromBytes(bytes);
+    }
+
+    @Test
+    void primitivesRoundTrip() {
+        assertEquals(Boolean.TRUE, roundTrip(Serializers.BOOLEAN, true));
+        assertEquals(Byte.valueOf((byte) -7), roundTrip(Serializers.BYTE, (byte) -7));
+        assertEquals(Short.valueOf((short) 300), roundTrip(Serializers.SHORT, (short) 300));
+        assertEquals(Character.valueOf('z'), roundTrip(Serializers.CHARACTER, 'z'));
+        assertEquals(Integer.valueOf(Integer.MIN_VALUE), roundTrip(Serializers.INTEGER, Integer.MIN_VALUE));
+        assertEquals(Long.valueOf(Long.MAX_VALUE), roundTrip(Serializers.LONG, Long.MAX_VALUE));
+        assertEquals(Float.valueOf(1.5f), roundTrip(Serializers.FLOAT, 1.5f));
+        assertEquals(Double.valueOf(-2.25), roundTrip(Serializers.DOUBLE, -2.25));
+        assertEquals(Integer.BYTES, Serializers.INTEGER.sizeOf(1));
+    }
+
+    @Test
+    void stringAndBytesRoundTrip() {
+        assertEquals("", roundTrip(Serializers.STRING, ""));
+        assertEquals("Один 😀 one", roundTrip(Serializers.STRING, "Один 😀 one"));
+        assertArrayEquals(new byte[]{1, 2, 3}, roundTrip(Serializers.BYTE_ARRAY, new byte[]{1, 2, 3}));
+    }
+
+    @Test
+    void severalValuesInOneBuffer() {
+        ByteBuffer buffer = ByteBuffer.allocate(Serializers.STRING.sizeOf("key") + Serializers.LONG.sizeOf(5L));
+        Serializers.STRING.write("key", buffer);
+        Serializers.LONG.write(5L, buffer);
+        assertFalse(buffer.hasRemaining());
+
+        buffer.flip();
+        assertEquals("key", Serializers.STRING.read(buffer));
+        assertEquals(Long.valueOf(5L), Serializers.LONG.read(buffer));
+    }
+
+    @Test
+    void compositeValue() {
+        Serializer<Point> serializer = Serializers.composite(
+                Serializers.STRING, Point::getName,
+                Serializers.INTEGER, Point::getX,
+                Point::new);
+
+        Point point = new Point("p", 42);
+        assertEquals(point, roundTrip(serializer, point));
+        assertEquals(Integer.BYTES + 1 + Integer.BYTES, serializer.sizeOf(point));
+    }
+
+    @Test
+    void javaFallback() {
+        Serializer<Integer> serializer = Serializers.java(Integer.class);
+        assertEquals(Integer.valueOf(10), roundTrip(serializer, 10));
+        assertTrue(serializer.sizeOf(10) > Serializers.INTEGER.sizeOf(10));
+
+        Serializer<Object> notSerializable = Serializers.java();
+        assertThrows(IllegalArgumentException.class, () -> notSerializable.toBytes(new Object()));
+    }
+
+    @Test
+    void corruptedData() {
+        assertThrows(IllegalArgumentException.class, () -> Serializers.STRING.fromBytes(new byte[]{0, 0, 0, 9, 1}));
+        assertThrows(IllegalArgumentException.class, () -> Serializers.BYTE_ARRAY.fromBytes(new byte[]{-1, 0, 0, 0}));
+        assertThrows(BufferUnderflowException.class, () -> Serializers.LONG.fromBytes(new byte[]{1, 2}));
+    }
+}
@@ -0,0 +1,90 @@
+package com.lxgolovin.cache.stats;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HotKeyTrackerTest {
+
+    /**
+     * Frequent keys are found among many rare ones, counts are not underestimated
+     */
+    @Test
+    void heavyHittersAreFound() {
+        HotKeyTracker<Integer> tracker = new HotKeyTracker<>(50);
+        Random random = new Random(1);
+        for (int i = 0; i < 100_000; i++) {
+            int key = (i % 10 == 0) ? (i / 10) % 3 : 1000 + random.nextInt(100_000);
+            tracker.onAccess(key, AccessListener.Access.HIT);
+        }
+
+        List<HotKey<Integer>> top = tracker.topK(3);
+        assertEquals(3, top.size());
+        assertEquals(0, top.stream().mapToInt(HotKey::key).filter(key -> key > 2).count());
+        for (HotKey<Integer> hotKey : top) {
+            assertTrue(hotKey.count() >= 3333);
+            assertTrue(hotKey.guaranteedCount() <= 3334);
+        }
+        assertEquals(50, tracker.topK(100).size());
+    }
+
+    @Test
+    void ratesAndReset() {
+        AtomicLong time = new AtomicLong();
+        HotKeyTracker<String> tracker = new HotKeyTracker<>(2, time::get);
+        tracker.onAccess("a", AccessListener.Access.HIT);
+        tracker.onAccess("a", AccessListener.Access.CACHE);
+        tracker.onAccess("a", AccessListener.Access.HIT);
+        tracker.onAccess("b", AccessListener.Access.MISS);
+        tracker.onAccess("c", AccessListener.Access.MISS);
+        tracker.onAccess(null, AccessListener.Access.MISS);
+        time.set(TimeUnit.SECONDS.toNanos(2));
+
+        List<HotKey<String>> top = tracker.topK(2);
+        assertEquals("a", top.get(0).key());
+        double rate = top.get(0).ratePerSecond();
+        assertEquals(1.5, rate);
+        assertEquals("c", top.get(1).key());
+        assertEquals(2, top.get(1).count());
+        assertEquals(1, top.get(1).error());
+
+        tracker.reset();
+        assertTrue(tracker.topK(1).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> tracker.topK(0));
+        assertThrows(IllegalArgumentException.class, () -> new HotKeyTracker<>(0));
+    }
+
+    /**
+     * Accesses from many threads are buffered and drained, the hot key is counted exactly
+     */
+    @Test
+    void concurrentAccesses() throws InterruptedException {
+        HotKeyTracker<Integer> tracker = new HotKeyTracker<>(10);
+        int threads = 4;
+        int accesses = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            executor.execute(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < accesses; i++) {
+                    tracker.onAccess((i % 2 == 0) ? -1 : random.nextInt(1000), AccessListener.Access.HIT);
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        HotKey<Integer> top = tracker.topK(1).get(0);
+        assertEquals(-1, top.key().intValue());
+        // no access is lost, the hot key is never replaced
+        assertEquals(threads * accesses / 2, top.count());
+    }
+}
@@ -0,0 +1,93 @@
+package com.lxgolovin.cache.stats;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    /**
+     * Each value is in a bucket not wider then about 3% of the value
+     */
+    @Test
+    void bucketsAreLogLinear() {
+        for (long value = 0; value < 100_000; value += 7) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            long highest = LatencyHistogram.highestValueOf(bucket);
+            assertTrue(highest >= value);
+            assertTrue(highest - value <= value / 32);
+            assertTrue((bucket == 0) || (LatencyHistogram.highestValueOf(bucket - 1) < value));
+        }
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+        assertEquals(LatencyHistogram.MAX_TRACKABLE,
+                LatencyHistogram.highestValueOf(LatencyHistogram.BUCKETS - 1));
+    }
+
+    @Test
+    void percentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        LongStream.rangeClosed(1, 1000).forEach(x -> histogram.record(x * 1000));
+        LatencySnapshot snapshot = histogram.snapshot();
+
+        assertEquals(1000, snapshot.count());
+        assertEquals(1_000_000, snapshot.max());
+        assertTrue(Math.abs(snapshot.p50() - 500_000) <= 500_000 / 32);
+        assertTrue(Math.abs(snapshot.p99() - 990_000) <= 990_000 / 32);
+        assertTrue(Math.abs(snapshot.p999() - 999_000) <= 999_000 / 32);
+        assertEquals(1_000_000, snapshot.percentile(100));
+        assertThrows(IllegalArgumentException.class, () -> snapshot.percentile(101));
+
+        histogram.reset();
+        assertEquals(0, histogram.snapshot().count());
+        assertEquals(0, histogram.snapshot().p99());
+    }
+
+    /**
+     * Old slots are out of the window and reused for new values
+     */
+    @Test
+    void slidingWindow() {
+        AtomicLong time = new AtomicLong();
+        SlidingWindowHistogram histogram = new SlidingWindowHistogram(3, 10, time::get);
+
+        histogram.record(1_000_000);
+        time.set(15);
+        histogram.record(10);
+        assertEquals(2, histogram.snapshot().count());
+        assertEquals(1_000_000, histogram.snapshot().max());
+
+        time.set(30);
+        assertEquals(1, histogram.snapshot().count());
+        assertEquals(10, histogram.snapshot().max());
+
+        time.set(45);
+        histogram.record(20);
+        assertEquals(1, histogram.snapshot().count());
+        assertEquals(20, histogram.snapshot().p50());
+
+        // delayed sample of old interval does not move the slot back
+        time.set(5);
+        histogram.record(999);
+        time.set(45);
+        assertEquals(1, histogram.snapshot().count());
+        assertEquals(20, histogram.snapshot().max());
+        assertThrows(IllegalArgumentException.class, () -> new SlidingWindowHistogram(0, 10, time::get));
+    }
+
+    @Test
+    void recorder() {
+        AtomicLong time = new AtomicLong();
+        LatencyRecorder recorder = new LatencyRecorder(2, 1000, time::get);
+        long start = recorder.start();
+        time.addAndGet(25);
+        recorder.recordSince(LatencyRecorder.Operation.GET_HIT, start);
+
+        assertEquals(1, recorder.snapshot(LatencyRecorder.Operation.GET_HIT).count());
+        assertEquals(25, recorder.snapshot(LatencyRecorder.Operation.GET_HIT).max());
+        assertEquals(0, recorder.snapshot().get(LatencyRecorder.Operation.DEMOTE).count());
+        assertThrows(IllegalArgumentException.class, () -> recorder.record(null, 1));
+    }
+}
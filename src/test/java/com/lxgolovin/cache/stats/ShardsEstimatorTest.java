@@ -0,0 +1,71 @@
+package com.lxgolovin.cache.stats;
+
+import com.lxgolovin.cache.CacheLevel;
+import com.lxgolovin.cache.algorithm.Lru;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.SortedMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardsEstimatorTest {
+
+    /**
+     * Loop over keys hits only caches which keep the whole loop
+     */
+    @Test
+    void exactLoop() {
+        ShardsEstimator<Integer> estimator = new ShardsEstimator<>(1, 1000);
+        for (int i = 0; i < 10_000; i++) {
+            estimator.onAccess(i % 100, AccessListener.Access.MISS);
+            estimator.onAccess(i % 100, AccessListener.Access.CACHE);
+        }
+
+        assertEquals(10_000, estimator.sampledCount());
+        double small = estimator.hitRatio(99);
+        double large = estimator.hitRatio(100);
+        assertEquals(0.0, small);
+        assertEquals(0.99, large);
+
+        SortedMap<Integer, Double> ratios = estimator.hitRatios(50);
+        assertEquals(5, ratios.size());
+        double quadruple = ratios.get(200);
+        assertEquals(0.99, quadruple);
+        assertThrows(IllegalArgumentException.class, () -> estimator.hitRatio(0));
+        assertThrows(IllegalArgumentException.class, () -> new ShardsEstimator<>(0, 10));
+    }
+
+    /**
+     * Sampled estimation is close to hit ratio of real LRU level, number of kept keys is bounded
+     */
+    @Test
+    void sampledEstimationIsCloseToLru() {
+        int keys = 20_000;
+        int size = 2000;
+        CacheLevel<Integer, Integer> level = new CacheLevel<>(new Lru<>(), size);
+        ShardsEstimator<Integer> estimator = new ShardsEstimator<>(0.2, 2000);
+        level.addAccessListener(estimator);
+
+        Random random = new Random(7);
+        long hits = 0;
+        int gets = 200_000;
+        for (int i = 0; i < gets; i++) {
+            // skewed keys: square of uniform value prefers small keys
+            double uniform = random.nextDouble();
+            int key = (int) (uniform * uniform * keys);
+            if (level.get(key).isPresent()) {
+                hits++;
+            } else {
+                level.cache(key, key);
+            }
+        }
+
+        double real = hits / (double) gets;
+        double estimated = estimator.hitRatio(size);
+        assertTrue(Math.abs(real - estimated) < 0.05, "real " + real + ", estimated " + estimated);
+        assertTrue(estimator.samplingRate() < 0.2);
+        assertTrue(estimator.hitRatio(4 * size) > estimated);
+        assertTrue(estimator.hitRatio(size / 4) < estimated);
+    }
+}
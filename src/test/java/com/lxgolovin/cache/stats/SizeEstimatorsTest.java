@@ -0,0 +1,35 @@
+package com.lxgolovin.cache.stats;
+
+import com.lxgolovin.cache.core.AccessHashSet;
+import com.lxgolovin.cache.serializer.Serializers;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SizeEstimatorsTest {
+
+    @Test
+    void sizesOfKnownTypes() {
+        assertEquals(16, SizeEstimators.INTEGER.sizeOf(1));
+        assertEquals(24, SizeEstimators.LONG.sizeOf(1L));
+        assertEquals(24, SizeEstimators.BYTE_ARRAY.sizeOf(new byte[5]));
+        assertEquals(24 + 24, SizeEstimators.STRING.sizeOf("12345678"));
+        assertEquals(24 + 32, SizeEstimators.STRING.sizeOf("ЖЖЖЖЖЖЖЖ"));
+        assertEquals(SizeEstimators.STRING.sizeOf("key"), SizeEstimators.DEFAULT.sizeOf("key"));
+        assertEquals(16, SizeEstimators.DEFAULT.sizeOf(new Object()));
+        assertEquals(24, SizeEstimators.serialized(Serializers.INTEGER).sizeOf(1));
+        assertEquals(7, SizeEstimators.fixed(7).sizeOf("any"));
+        assertThrows(IllegalArgumentException.class, () -> SizeEstimators.fixed(-1));
+    }
+
+    /**
+     * Links of access order roughly double the cost of a map entry
+     */
+    @Test
+    void entryOverheads() {
+        assertEquals(40, SizeEstimators.HASH_ENTRY);
+        assertEquals(64, AccessHashSet.ENTRY_OVERHEAD);
+        assertEquals(0, SizeEstimators.align(0));
+        assertEquals(24, SizeEstimators.align(17));
+    }
+}
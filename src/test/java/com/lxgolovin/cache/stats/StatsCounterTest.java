@@ -0,0 +1,101 @@
+package com.lxgolovin.cache.stats;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StatsCounterTest {
+
+    private final StatsCounter counter = new StatsCounter();
+
+    @Test
+    void emptySnapshot() {
+        CacheStats stats = counter.snapshot();
+        assertEquals(CacheStats.empty(), stats);
+        double hitRate = stats.hitRate();
+        double penalty = stats.averageLoadPenalty();
+        assertEquals(1.0, hitRate);
+        assertEquals(0.0, penalty);
+        assertEquals(0, stats.levels());
+    }
+
+    /**
+     * Hits are counted in total and by levels, levels are added on the first hit
+     */
+    @Test
+    void hitsByLevels() {
+        counter.recordHit();
+        counter.recordHit(0);
+        counter.recordHit(2);
+        counter.recordHit(2);
+        counter.recordMiss();
+
+        CacheStats stats = counter.snapshot();
+        assertEquals(4, stats.hitCount());
+        assertEquals(5, stats.requestCount());
+        assertEquals(3, stats.levels());
+        assertEquals(1, stats.levelHitCount(0));
+        assertEquals(0, stats.levelHitCount(1));
+        assertEquals(2, stats.levelHitCount(2));
+        assertEquals(0, stats.levelHitCount(7));
+        double levelHitRate = stats.levelHitRate(2);
+        assertEquals(0.4, levelHitRate);
+        assertThrows(IllegalArgumentException.class, () -> counter.recordHit(-1));
+    }
+
+    @Test
+    void evictionsAndMoves() {
+        counter.recordEviction(EvictionCause.SIZE);
+        counter.recordEviction(EvictionCause.SIZE);
+        counter.recordEviction(EvictionCause.DELETED);
+        counter.recordPromotion();
+        counter.recordDemotion();
+        counter.recordDemotion();
+
+        CacheStats stats = counter.snapshot();
+        assertEquals(3, stats.evictionCount());
+        assertEquals(2, stats.evictionCount(EvictionCause.SIZE));
+        assertEquals(0, stats.evictionCount(EvictionCause.POPPED));
+        assertEquals(1, stats.promotionCount());
+        assertEquals(2, stats.demotionCount());
+        assertThrows(IllegalArgumentException.class, () -> counter.recordEviction(null));
+    }
+
+    /**
+     * Null value and exception of loader are failures
+     */
+    @Test
+    void loads() {
+        assertEquals("1", counter.load(1, String::valueOf));
+        assertNull(counter.load(2, key -> null));
+        assertThrows(IllegalStateException.class, () -> counter.load(3, key -> {
+            throw new IllegalStateException();
+        }));
+
+        CacheStats stats = counter.snapshot();
+        assertEquals(1, stats.loadSuccessCount());
+        assertEquals(2, stats.loadFailureCount());
+        assertEquals(3, stats.loadCount());
+        assertTrue(stats.totalLoadTime() >= 0);
+    }
+
+    /**
+     * Difference of snapshots gives numbers of the period
+     */
+    @Test
+    void minus() {
+        counter.recordHit(1);
+        counter.recordMiss();
+        CacheStats before = counter.snapshot();
+        counter.recordHit(1);
+        counter.recordHit(1);
+        counter.recordEviction(EvictionCause.POPPED);
+
+        CacheStats period = counter.snapshot().minus(before);
+        assertEquals(2, period.hitCount());
+        assertEquals(0, period.missCount());
+        assertEquals(2, period.levelHitCount(1));
+        assertEquals(1, period.evictionCount(EvictionCause.POPPED));
+        assertEquals(0, CacheStats.empty().minus(before).hitCount());
+    }
+}
@@ -0,0 +1,230 @@
+package com.lxgolovin.cache.storage;
+
+import com.lxgolovin.cache.serializer.Serializer;
+import com.lxgolovin.cache.serializer.Serializers;
+import com.lxgolovin.cache.tools.CountingSerializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncFileSystemStorageTest {
+
+    private final Path directory = Files.createTempDirectory("asyncFsStorage");
+
+    private final AsyncFileSystemStorage<Integer, String> storage =
+            new AsyncFileSystemStorage<>(directory, Serializers.INTEGER, Serializers.STRING);
+
+    AsyncFileSystemStorageTest() throws IOException {
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        storage.close();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(path -> path.toFile().delete());
+        }
+        directory.toFile().delete();
+    }
+
+    /**
+     * Test blocking methods of storage
+     */
+    @Test
+    void putGetRemove() {
+        assertFalse(storage.put(1, "One").isPresent());
+        assertFalse(storage.put(2, "Two").isPresent());
+        assertEquals(Optional.of("One"), storage.put(1, "Eleven"));
+        assertEquals(Optional.of("Eleven"), storage.get(1));
+        assertTrue(storage.containsKey(2));
+        assertEquals(2, storage.size());
+
+        assertEquals(Optional.of("Two"), storage.remove(2));
+        assertFalse(storage.remove(2).isPresent());
+        assertFalse(storage.containsKey(2));
+        assertFalse(storage.containsKey(null));
+
+        assertThrows(IllegalArgumentException.class, () -> storage.put(3, null));
+        assertThrows(IllegalArgumentException.class, () -> storage.getAsync(null));
+        assertThrows(IllegalArgumentException.class, () -> storage.removeAsync(null));
+    }
+
+    /**
+     * Many operations in flight, all complete with right values
+     */
+    @Test
+    void manyOperationsInFlight() {
+        List<CompletableFuture<Optional<String>>> puts = IntStream.range(0, 500)
+                .mapToObj(x -> storage.putAsync(x, "v" + x))
+                .collect(Collectors.toList());
+        puts.forEach(put -> assertFalse(put.join().isPresent()));
+
+        List<CompletableFuture<Optional<String>>> gets = IntStream.range(0, 500)
+                .mapToObj(storage::getAsync)
+                .collect(Collectors.toList());
+        for (int i = 0; i < 500; i++) {
+            assertEquals(Optional.of("v" + i), gets.get(i).join());
+        }
+
+        Map<Integer, String> all = storage.getAll();
+        assertEquals(500, all.size());
+        assertEquals("v42", all.get(42));
+    }
+
+    /**
+     * Operations with the same key are done in order of calls
+     */
+    @Test
+    void sameKeyOperationsAreOrdered() {
+        List<CompletableFuture<Optional<String>>> puts = IntStream.range(0, 100)
+                .mapToObj(x -> storage.putAsync(1, "v" + x))
+                .collect(Collectors.toList());
+        CompletableFuture<Optional<String>> get = storage.getAsync(1);
+        CompletableFuture<Optional<String>> remove = storage.removeAsync(1);
+        CompletableFuture<Optional<String>> getRemoved = storage.getAsync(1);
+
+        for (int i = 1; i < 100; i++) {
+            assertEquals(Optional.of("v" + (i - 1)), puts.get(i).join());
+        }
+        assertEquals(Optional.of("v99"), get.join());
+        assertEquals(Optional.of("v99"), remove.join());
+        assertFalse(getRemoved.join().isPresent());
+    }
+
+    /**
+     * Reads of the same key share the read in flight, write waits for it
+     */
+    @Test
+    void sameKeyReadsAreShared() throws InterruptedException {
+        storage.put(1, "One");
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger reads = new AtomicInteger();
+        AtomicBoolean blocked = new AtomicBoolean();
+        Serializer<String> blocking = new Serializer<String>() {
+            @Override
+            public int sizeOf(String value) {
+                return Serializers.STRING.sizeOf(value);
+            }
+
+            @Override
+            public void write(String value, ByteBuffer buffer) {
+                Serializers.STRING.write(value, buffer);
+            }
+
+            @Override
+            public String read(ByteBuffer buffer) {
+                if (!blocked.get()) {
+                    return Serializers.STRING.read(buffer);
+                }
+                reads.incrementAndGet();
+                reading.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return Serializers.STRING.read(buffer);
+            }
+        };
+        AsyncFileSystemStorage<Integer, String> shared = new AsyncFileSystemStorage<>(directory, Serializers.INTEGER, blocking);
+        blocked.set(true);
+
+        // read can complete in the calling thread, so it is started in another one
+        CompletableFuture<Optional<String>> first = CompletableFuture.supplyAsync(() -> shared.getAsync(1))
+                .thenCompose(Function.identity());
+        reading.await();
+        List<CompletableFuture<Optional<String>>> gets = IntStream.range(0, 10)
+                .mapToObj(x -> shared.getAsync(1))
+                .collect(Collectors.toList());
+        CompletableFuture<Optional<String>> remove = shared.removeAsync(1);
+        CompletableFuture<Optional<String>> getRemoved = shared.getAsync(1);
+        assertFalse(remove.isDone());
+        release.countDown();
+
+        assertEquals(Optional.of("One"), first.join());
+        gets.forEach(get -> assertEquals(Optional.of("One"), get.join()));
+        assertEquals(Optional.of("One"), remove.join());
+        assertFalse(getRemoved.join().isPresent());
+        assertEquals(2, reads.get());
+        shared.close();
+    }
+
+    @Test
+    void dataIsKeptAfterReopen() {
+        IntStream.range(0, 50).forEach(x -> storage.put(x, "v" + x));
+        storage.close();
+
+        AsyncFileSystemStorage<Integer, String> reopened =
+                new AsyncFileSystemStorage<>(directory, Serializers.INTEGER, Serializers.STRING);
+        assertEquals(50, reopened.size());
+        assertEquals(Optional.of("v7"), reopened.get(7));
+
+        reopened.clear();
+        assertTrue(reopened.isEmpty());
+        assertFalse(reopened.get(7).isPresent());
+    }
+
+    /**
+     * Keys are streamed from the index without reading values
+     */
+    @Test
+    void keysDoNotReadValues() {
+        CountingSerializer<String> values = new CountingSerializer<>(Serializers.STRING);
+        storage.close();
+        AsyncFileSystemStorage<Integer, String> counted =
+                new AsyncFileSystemStorage<>(directory, Serializers.INTEGER, values);
+        IntStream.range(0, 10).forEach(x -> counted.put(x, "v" + x));
+        values.reset();
+
+        assertEquals(10, counted.keys().count());
+        assertEquals(0, values.reads());
+
+        Map<Integer, String> all = counted.entries()
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        assertEquals(counted.getAll(), all);
+        counted.close();
+    }
+
+    /**
+     * Silent methods do not read values, unchanged value is not written
+     */
+    @Test
+    void silentMethodsDoNotReadValues() throws IOException {
+        CountingSerializer<String> values = new CountingSerializer<>(Serializers.STRING);
+        storage.close();
+        AsyncFileSystemStorage<Integer, String> counted =
+                new AsyncFileSystemStorage<>(directory, Serializers.INTEGER, values);
+        counted.putSilently(1, "One");
+        counted.putSilently(1, "Eleven");
+        assertTrue(counted.putIfChanged(2, "Two"));
+        assertFalse(counted.putIfChanged(2, "Two"));
+        assertTrue(counted.putIfChanged(2, "Twelve"));
+        assertTrue(counted.removeSilently(1));
+        assertFalse(counted.removeSilently(1));
+        assertEquals(0, values.reads());
+
+        assertEquals(1, counted.size());
+        assertEquals(Optional.of("Twelve"), counted.get(2));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.count());
+        }
+        counted.close();
+    }
+}
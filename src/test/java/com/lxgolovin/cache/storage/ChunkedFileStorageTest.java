@@ -0,0 +1,172 @@
+package com.lxgolovin.cache.storage;
+
+import com.lxgolovin.cache.core.CacheException;
+import com.lxgolovin.cache.serializer.Serializers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkedFileStorageTest {
+
+    private static final int CHUNK_SIZE = 1000;
+
+    private final Path directory = Files.createTempDirectory("chunked");
+
+    private final ChunkedFileStorage<String> storage =
+            new ChunkedFileStorage<>(directory, Serializers.STRING, CHUNK_SIZE);
+
+    ChunkedFileStorageTest() throws IOException {
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] readAll(InputStream input) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[333];
+        int read;
+        while ((read = input.read(buffer)) >= 0) {
+            output.write(buffer, 0, read);
+        }
+        input.close();
+        return output.toByteArray();
+    }
+
+    /**
+     * Value written from stream is read by stream, by transfer and as array
+     */
+    @Test
+    void streamingPutAndRead() throws IOException {
+        byte[] value = randomBytes(10 * CHUNK_SIZE + 17);
+        long written = storage.putFromStream("media", new ByteArrayInputStream(value));
+        assertEquals(value.length, written);
+        assertEquals(Optional.of((long) value.length), storage.length("media"));
+
+        Optional<InputStream> stream = storage.openValueStream("media");
+        assertTrue(stream.isPresent());
+        assertArrayEquals(value, readAll(stream.get()));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        assertTrue(storage.transferTo("media", Channels.newChannel(output)));
+        assertArrayEquals(value, output.toByteArray());
+        assertArrayEquals(value, storage.get("media").orElse(null));
+
+        assertFalse(storage.openValueStream("none").isPresent());
+        assertFalse(storage.transferTo("none", Channels.newChannel(output)));
+    }
+
+    /**
+     * Opened stream keeps the old value after put and remove
+     */
+    @Test
+    void openedStreamSurvivesReplace() throws IOException {
+        byte[] first = randomBytes(5 * CHUNK_SIZE);
+        byte[] second = randomBytes(3 * CHUNK_SIZE);
+        storage.putSilently("key", first);
+        InputStream stream = storage.openValueStream("key").orElseThrow(AssertionError::new);
+
+        assertArrayEquals(first, storage.put("key", second).orElse(null));
+        assertArrayEquals(first, readAll(stream));
+        assertArrayEquals(second, storage.remove("key").orElse(null));
+        assertFalse(storage.containsKey("key"));
+        assertTrue(storage.isEmpty());
+    }
+
+    /**
+     * Values are read again after restart, incomplete writes are deleted
+     */
+    @Test
+    void reopen() throws IOException {
+        storage.put("empty", new byte[0]);
+        storage.put("exact", randomBytes(2 * CHUNK_SIZE));
+        Files.createDirectory(directory.resolve("incomplete"));
+
+        ChunkedFileStorage<String> reopened = new ChunkedFileStorage<>(directory, Serializers.STRING, CHUNK_SIZE);
+        assertEquals(2, reopened.size());
+        assertArrayEquals(new byte[0], reopened.get("empty").orElse(null));
+        assertArrayEquals(randomBytes(2 * CHUNK_SIZE), reopened.get("exact").orElse(null));
+        assertFalse(Files.exists(directory.resolve("incomplete")));
+        assertEquals(2, reopened.getAll().size());
+
+        reopened.clear();
+        assertEquals(0, reopened.size());
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    /**
+     * Damaged chunk is found by checksum
+     */
+    @Test
+    void corruptedChunk() throws IOException {
+        storage.put("key", randomBytes(3 * CHUNK_SIZE));
+        try (Stream<Path> files = Files.walk(directory)) {
+            Path chunk = files.filter(path -> path.getFileName().toString().equals("chunk-00000001"))
+                    .findFirst()
+                    .orElseThrow(AssertionError::new);
+            byte[] data = Files.readAllBytes(chunk);
+            data[10] ^= 1;
+            Files.write(chunk, data, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        assertThrows(CacheException.class, () -> storage.get("key"));
+        assertThrows(IllegalArgumentException.class, () -> storage.putFromStream(null, new ByteArrayInputStream(new byte[0])));
+        assertThrows(IllegalArgumentException.class, () -> new ChunkedFileStorage<>(directory, Serializers.STRING, 0));
+    }
+
+    /**
+     * If a crash leaves two manifests of one key, the value with higher write sequence is kept
+     */
+    @Test
+    void laterManifestWinsOnReopen() throws IOException {
+        byte[] first = randomBytes(2 * CHUNK_SIZE);
+        byte[] second = randomBytes(CHUNK_SIZE + 1);
+        storage.put("key", first);
+        Path stale = directory.resolve("stale");
+        try (Stream<Path> directories = Files.list(directory)) {
+            Path firstDirectory = directories.findFirst().orElseThrow(AssertionError::new);
+            Files.createDirectory(stale);
+            try (Stream<Path> files = Files.list(firstDirectory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.copy(file, stale.resolve(file.getFileName()));
+                }
+            }
+        }
+        storage.put("key", second);
+
+        ChunkedFileStorage<String> reopened = new ChunkedFileStorage<>(directory, Serializers.STRING, CHUNK_SIZE);
+        assertEquals(1, reopened.size());
+        assertArrayEquals(second, reopened.get("key").orElse(null));
+        assertFalse(Files.exists(stale));
+
+        // sequence continues after restart
+        reopened.put("key", first);
+        assertArrayEquals(first, new ChunkedFileStorage<>(directory, Serializers.STRING, CHUNK_SIZE)
+                .get("key").orElse(null));
+    }
+}
@@ -0,0 +1,179 @@
+package com.lxgolovin.cache.storage;
+
+import com.lxgolovin.cache.core.CacheException;
+import com.lxgolovin.cache.serializer.Serializers;
+import com.lxgolovin.cache.storage.compression.Codec;
+import com.lxgolovin.cache.storage.compression.Codecs;
+import com.lxgolovin.cache.tools.CountingSerializer;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressingStorageTest {
+
+    /**
+     * Directory for testing
+     */
+    private final String directoryPath = "./TEMP/";
+
+    private final Storage<Integer, byte[]> bytesStorage = new MemoryStorage<>();
+
+    private final CompressingStorage<Integer, String> storage =
+            new CompressingStorage<>(bytesStorage, Serializers.STRING);
+
+    /**
+     * JSON-like string that compresses well
+     */
+    private final String json = IntStream.range(0, 100)
+            .mapToObj(i -> "{\"id\":" + i + ",\"name\":\"value\"}")
+            .collect(Collectors.joining(",", "[", "]"));
+
+    /**
+     * Reversing codec to check pluggable codecs
+     */
+    private final Codec reverse = new Codec() {
+        @Override
+        public byte id() {
+            return 42;
+        }
+
+        @Override
+        public byte[] compress(byte[] data) {
+            byte[] result = new byte[data.length / 2];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = data[data.length - 1 - i];
+            }
+            return result;
+        }
+
+        @Override
+        public byte[] decompress(byte[] data, int offset, int length, int originalLength) {
+            throw new IllegalArgumentException("Not used for decompression");
+        }
+    };
+
+    @Test
+    void putAndGetValues() {
+        assertFalse(storage.put(1, "small").isPresent());
+        assertFalse(storage.put(2, json).isPresent());
+        assertEquals(Optional.of("small"), storage.get(1));
+        assertEquals(Optional.of(json), storage.get(2));
+        assertEquals(Optional.of(json), storage.put(2, "other"));
+        assertEquals(Optional.of("other"), storage.remove(2));
+        assertEquals(1, storage.size());
+        assertThrows(IllegalArgumentException.class, () -> storage.put(3, null));
+    }
+
+    @Test
+    void valuesAboveThresholdAreCompressed() {
+        storage.put(1, "small");
+        storage.put(2, json);
+
+        byte[] small = bytesStorage.get(1).orElseThrow(IllegalStateException::new);
+        byte[] large = bytesStorage.get(2).orElseThrow(IllegalStateException::new);
+        assertEquals(Codecs.NONE.id(), small[0]);
+        assertEquals(Codecs.DEFLATE.id(), large[0]);
+        assertTrue(large.length * 5 < json.length());
+    }
+
+    @Test
+    void mixedCodecsInOneStorage() {
+        CompressingStorage<Integer, String> noCompression =
+                new CompressingStorage<>(bytesStorage, Serializers.STRING, Codecs.NONE, 0);
+        noCompression.put(1, json);
+        storage.put(2, json);
+
+        byte codecId = bytesStorage.get(1).map(b -> b[0]).orElse((byte) -1);
+        assertEquals(Codecs.NONE.id(), codecId);
+        Map<Integer, String> all = storage.getAll();
+        assertEquals(json, all.get(1));
+        assertEquals(json, all.get(2));
+    }
+
+    @Test
+    void unknownCodec() {
+        CompressingStorage<Integer, String> custom =
+                new CompressingStorage<>(bytesStorage, Serializers.STRING, reverse, 0);
+        custom.put(1, json);
+        byte codecId = bytesStorage.get(1).map(b -> b[0]).orElse((byte) -1);
+        assertEquals(42, codecId);
+        assertThrows(CacheException.class, () -> storage.get(1));
+        Codec clash = new Codec() {
+            @Override
+            public byte id() {
+                return 42;
+            }
+
+            @Override
+            public byte[] compress(byte[] data) {
+                return data;
+            }
+
+            @Override
+            public byte[] decompress(byte[] data, int offset, int length, int originalLength) {
+                return data;
+            }
+        };
+        assertThrows(IllegalArgumentException.class,
+                () -> new CompressingStorage<>(bytesStorage, Serializers.STRING, reverse, 0, clash));
+    }
+
+    @Test
+    void compressedFileSystemStorage() {
+        FileSystemStorage<Integer, byte[]> files = new FileSystemStorage<>(Paths.get(directoryPath), true,
+                Serializers.INTEGER, Serializers.BYTE_ARRAY);
+        CompressingStorage<Integer, String> compressed = new CompressingStorage<>(files, Serializers.STRING);
+        compressed.put(1, json);
+
+        CompressingStorage<Integer, String> reloaded = new CompressingStorage<>(
+                new FileSystemStorage<>(Paths.get(directoryPath), Serializers.INTEGER, Serializers.BYTE_ARRAY),
+                Serializers.STRING);
+        assertEquals(json, reloaded.getAll().get(1));
+    }
+
+    @Test
+    void corruptedValue() {
+        bytesStorage.put(1, new byte[]{Codecs.DEFLATE.id(), 0, 0, 0, 10, 1, 2, 3});
+        assertThrows(CacheException.class, () -> storage.get(1));
+        bytesStorage.put(2, new byte[0]);
+        assertThrows(CacheException.class, () -> storage.get(2));
+        assertTrue(Arrays.equals(new byte[0], bytesStorage.get(2).orElse(null)));
+    }
+
+    /**
+     * Wrong length in header fails before an array of the length is allocated
+     */
+    @Test
+    void corruptedOriginalLength() {
+        bytesStorage.put(1, new byte[]{Codecs.DEFLATE.id(), -1, -1, -1, -1, 1, 2, 3});
+        assertThrows(CacheException.class, () -> storage.get(1));
+        bytesStorage.put(2, new byte[]{Codecs.DEFLATE.id(), 0x7F, -1, -1, -1, 1, 2, 3});
+        assertThrows(CacheException.class, () -> storage.get(2));
+        bytesStorage.put(3, new byte[]{Codecs.DEFLATE.id(), 0, 0});
+        assertThrows(CacheException.class, () -> storage.get(3));
+    }
+
+    /**
+     * Silent methods do not decode old values
+     */
+    @Test
+    void silentMethodsDoNotDecode() {
+        CountingSerializer<String> values = new CountingSerializer<>(Serializers.STRING);
+        CompressingStorage<Integer, String> counted = new CompressingStorage<>(new MemoryStorage<>(), values);
+        counted.putSilently(1, json);
+        counted.putSilently(1, json + "]");
+        assertTrue(counted.putIfChanged(2, json));
+        assertTrue(counted.removeSilently(1));
+        assertFalse(counted.removeSilently(1));
+        assertEquals(0, values.reads());
+        assertEquals(Optional.of(json), counted.get(2));
+        assertThrows(IllegalArgumentException.class, () -> counted.putSilently(3, null));
+    }
+}
@@ -0,0 +1,95 @@
+package com.lxgolovin.cache.storage;
+
+import com.lxgolovin.cache.serializer.Serializers;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeduplicatingStorageTest {
+
+    private final Storage<Integer, byte[]> references = new MemoryStorage<>();
+
+    private final Storage<String, byte[]> blobs = new MemoryStorage<>();
+
+    private final DeduplicatingStorage<Integer, String> storage =
+            new DeduplicatingStorage<>(references, blobs, Serializers.STRING);
+
+    /**
+     * Equal values are kept once
+     */
+    @Test
+    void equalValuesAreStoredOnce() {
+        IntStream.range(0, 100).forEach(x -> storage.put(x, "shared" + (x % 3)));
+        assertEquals(100, storage.size());
+        assertEquals(3, storage.uniqueValues());
+        assertEquals(3, blobs.size());
+        assertEquals(Optional.of("shared1"), storage.get(4));
+        assertEquals(100, storage.getAll().size());
+
+        assertEquals(Optional.of("shared1"), storage.put(4, "own"));
+        assertEquals(4, blobs.size());
+        assertFalse(storage.putIfChanged(4, "own"));
+        assertTrue(storage.putIfChanged(4, "shared2"));
+        assertEquals(3, blobs.size());
+    }
+
+    /**
+     * Blob is deleted with the last reference
+     */
+    @Test
+    void blobIsDeletedWithLastReference() {
+        storage.put(1, "value");
+        storage.put(2, "value");
+        assertEquals(Optional.of("value"), storage.remove(1));
+        assertEquals(1, blobs.size());
+        assertTrue(storage.removeSilently(2));
+        assertFalse(storage.removeSilently(2));
+        assertTrue(blobs.isEmpty());
+        assertTrue(storage.isEmpty());
+        assertFalse(storage.get(1).isPresent());
+
+        storage.put(3, "value");
+        storage.clear();
+        assertTrue(blobs.isEmpty());
+        assertEquals(0, storage.uniqueValues());
+        assertThrows(IllegalArgumentException.class, () -> storage.put(1, null));
+    }
+
+    /**
+     * References are counted again on start, blobs without references are deleted
+     */
+    @Test
+    void countsAreRestoredOnStart() throws IOException {
+        Path referencesDirectory = Files.createTempDirectory("dedupReferences");
+        Path blobsDirectory = Files.createTempDirectory("dedupBlobs");
+        FileSystemStorage<Integer, byte[]> fileReferences = new FileSystemStorage<>(referencesDirectory,
+                Serializers.INTEGER, Serializers.BYTE_ARRAY);
+        FileSystemStorage<String, byte[]> fileBlobs = new FileSystemStorage<>(blobsDirectory,
+                Serializers.STRING, Serializers.BYTE_ARRAY);
+        DeduplicatingStorage<Integer, String> fileStorage =
+                new DeduplicatingStorage<>(fileReferences, fileBlobs, Serializers.STRING);
+        IntStream.range(0, 20).forEach(x -> fileStorage.put(x, "shared" + (x % 2)));
+        fileBlobs.put("orphan", new byte[] {1});
+
+        DeduplicatingStorage<Integer, String> reopened = new DeduplicatingStorage<>(
+                new FileSystemStorage<>(referencesDirectory, Serializers.INTEGER, Serializers.BYTE_ARRAY),
+                new FileSystemStorage<>(blobsDirectory, Serializers.STRING, Serializers.BYTE_ARRAY),
+                Serializers.STRING);
+        assertEquals(2, reopened.uniqueValues());
+        assertEquals(20, reopened.size());
+        assertEquals(Optional.of("shared1"), reopened.get(7));
+
+        IntStream.range(0, 20).filter(x -> x % 2 == 1).forEach(reopened::remove);
+        assertEquals(1, reopened.uniqueValues());
+        reopened.clear();
+        Files.walk(referencesDirectory).sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        Files.walk(blobsDirectory).sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+}
@@ -1,14 +1,20 @@
 package com.lxgolovin.cache.storage;
 
+import com.lxgolovin.cache.serializer.Serializers;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.AbstractMap;
 import java.util.HashMap;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
@@ -144,4 +150,297 @@ class FileSystemStorageTest {
 
         assertEquals(100, map.get(10));
     }
-}
\ No newline at end of file
+
+    /**
+     * Storage with compact serializers keeps non-serializable values and reads them back
+     */
+    @Test
+    void storageWithSerializers() {
+        FileSystemStorage<String, StringBuilder> storage = new FileSystemStorage<>(Paths.get(directoryPath), true,
+                Serializers.STRING,
+                Serializers.composite(Serializers.STRING, StringBuilder::toString,
+                        Serializers.INTEGER, StringBuilder::length,
+                        (s, l) -> new StringBuilder(s)));
+        assertFalse(storage.put("one", new StringBuilder("1")).isPresent());
+        assertEquals("1", storage.get("one").map(StringBuilder::toString).orElse(null));
+
+        FileSystemStorage<String, StringBuilder> reloaded = new FileSystemStorage<>(Paths.get(directoryPath),
+                Serializers.STRING,
+                Serializers.composite(Serializers.STRING, StringBuilder::toString,
+                        Serializers.INTEGER, StringBuilder::length,
+                        (s, l) -> new StringBuilder(s)));
+        assertEquals("1", reloaded.getAll().get("one").toString());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> new FileSystemStorage<String, String>(Paths.get(directoryPath), null, Serializers.STRING));
+    }
+
+    /**
+     * Files read, written and deleted are counted
+     */
+    @Test
+    void ioStats() {
+        FileSystemStorage<Integer, String> storage = new FileSystemStorage<>(null, Serializers.INTEGER, Serializers.STRING);
+        storage.put(1, "one");
+        storage.putSilently(2, "two");
+        storage.get(1);
+        storage.removeSilently(2);
+
+        IoStats stats = storage.ioStats();
+        assertEquals(2, stats.writeCount());
+        assertEquals(1, stats.readCount());
+        assertEquals(1, stats.deleteCount());
+        assertEquals(stats.bytesRead(), stats.bytesWritten() / 2);
+        assertEquals(0, new MemoryStorage<Integer, String>().ioStats().writeCount());
+    }
+
+    /**
+     * Concurrent writers with group commit share forces of the drive
+     */
+    @Test
+    void groupCommitBatchesWriters() throws InterruptedException {
+        FileSystemStorage<Integer, String> storage = new FileSystemStorage<>(Paths.get(directoryPath), true,
+                Serializers.INTEGER, Serializers.STRING, Durability.groupCommit());
+        int threads = 8;
+        int writes = 50;
+        Thread[] writers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int offset = t * writes;
+            writers[t] = new Thread(() -> IntStream.range(offset, offset + writes).forEach(x -> storage.put(x, "v" + x)));
+            writers[t].start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        assertEquals(threads * writes, storage.size());
+        assertTrue(storage.syncCount() > 0);
+        assertTrue(storage.syncCount() <= threads * writes);
+        storage.close();
+    }
+
+    @Test
+    void periodicAndNoDurability() throws InterruptedException {
+        FileSystemStorage<Integer, String> periodic = new FileSystemStorage<>(Paths.get(directoryPath), true,
+                Serializers.INTEGER, Serializers.STRING, Durability.periodic(10));
+        periodic.put(1, "One");
+        for (int i = 0; (i < 100) && (periodic.syncCount() == 0); i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(periodic.syncCount() > 0);
+        periodic.close();
+
+        FileSystemStorage<Integer, String> none = new FileSystemStorage<>(Paths.get(directoryPath), true,
+                Serializers.INTEGER, Serializers.STRING, Durability.none());
+        none.put(1, "One");
+        none.flush();
+        assertEquals(0, none.syncCount());
+
+        assertEquals(10, Durability.periodic(10).getMaxLossWindowMillis());
+        assertTrue(Durability.groupCommit().isWriteDurableOnReturn());
+        assertThrows(IllegalArgumentException.class, () -> Durability.periodic(0));
+        assertThrows(IllegalArgumentException.class, () -> new FileSystemStorage<>(Paths.get(directoryPath), true,
+                Serializers.INTEGER, Serializers.STRING, null));
+    }
+
+    /**
+     * Number of stripes is rounded up to power of two, data is kept with any number
+     */
+    @Test
+    void configurableStripes() {
+        assertEquals(FileSystemStorage.DEFAULT_STRIPES, new FileSystemStorage<>(Paths.get(directoryPath), true,
+                Serializers.INTEGER, Serializers.STRING).getStripes());
+        for (int stripes : new int[]{1, 3, 64, FileSystemStorage.MAX_STRIPES}) {
+            FileSystemStorage<Integer, String> storage = new FileSystemStorage<>(Paths.get(directoryPath), true,
+                    Serializers.INTEGER, Serializers.STRING, Durability.none(), stripes);
+            assertEquals(Integer.highestOneBit(stripes * 2 - 1), storage.getStripes());
+            IntStream.range(0, 100).forEach(x -> storage.put(x, "v" + x));
+            assertEquals(100, storage.size());
+            assertEquals(Optional.of("v42"), storage.get(42));
+        }
+        assertThrows(IllegalArgumentException.class, () -> new FileSystemStorage<>(Paths.get(directoryPath), true,
+                Serializers.INTEGER, Serializers.STRING, Durability.none(), 0));
+        assertThrows(IllegalArgumentException.class, () -> new FileSystemStorage<>(Paths.get(directoryPath), true,
+                Serializers.INTEGER, Serializers.STRING, Durability.none(), FileSystemStorage.MAX_STRIPES + 1));
+    }
+
+    /**
+     * Files are spread over two levels of subdirectories and read back from them
+     */
+    @Test
+    void filesAreSpreadOverSubdirectories() throws IOException {
+        FileSystemStorage<Integer, String> storage = new FileSystemStorage<>(Paths.get(directoryPath), true,
+                Serializers.INTEGER, Serializers.STRING);
+        IntStream.range(0, 200).forEach(x -> storage.put(x, "v" + x));
+
+        Path root = storage.getDirectory().toAbsolutePath().normalize();
+        try (Stream<Path> files = Files.walk(root)) {
+            assertTrue(files.filter(Files::isRegularFile)
+                    .allMatch(file -> root.relativize(file.toAbsolutePath().normalize()).getNameCount() == 3));
+        }
+        try (Stream<Path> subdirectories = Files.list(root)) {
+            assertTrue(subdirectories.filter(Files::isDirectory).count() > 1);
+        }
+
+        FileSystemStorage<Integer, String> reloaded = new FileSystemStorage<>(Paths.get(directoryPath),
+                Serializers.INTEGER, Serializers.STRING);
+        assertEquals(200, reloaded.getAll().size());
+        assertEquals(200, reloaded.size());
+        assertEquals(Optional.of("v7"), reloaded.remove(7));
+        assertEquals(199, reloaded.getAll().size());
+        reloaded.clear();
+        assertTrue(reloaded.isEmpty());
+    }
+
+    /**
+     * Changes are detected by hash of value content kept in index, also for entries read from directory
+     */
+    @Test
+    void putAndRemoveSilently() throws IOException {
+        FileSystemStorage<Integer, String> storage = new FileSystemStorage<>(Paths.get(directoryPath), true,
+                Serializers.INTEGER, Serializers.STRING);
+        assertTrue(storage.putIfChanged(1, "One"));
+        assertFalse(storage.putIfChanged(1, "One"));
+        assertTrue(storage.putIfChanged(1, "Eleven"));
+        assertEquals(Optional.of("Eleven"), storage.get(1));
+        storage.putSilently(2, "Two");
+        assertEquals(Optional.of("Two"), storage.get(2));
+        assertThrows(IllegalArgumentException.class, () -> storage.putIfChanged(3, null));
+
+        FileSystemStorage<Integer, String> reloaded = new FileSystemStorage<>(Paths.get(directoryPath),
+                Serializers.INTEGER, Serializers.STRING);
+        assertEquals(2, reloaded.getAll().size());
+        assertFalse(reloaded.putIfChanged(2, "Two"));
+        assertTrue(reloaded.removeSilently(2));
+        assertFalse(reloaded.removeSilently(2));
+        assertFalse(reloaded.containsKey(2));
+        try (Stream<Path> files = Files.walk(reloaded.getDirectory())) {
+            assertEquals(1, files.filter(Files::isRegularFile).count());
+        }
+    }
+
+    /**
+     * Entries and keys of existing directory are streamed and added to index
+     */
+    @Test
+    void streamEntriesAndKeys() {
+        FileSystemStorage<Integer, String> storage = new FileSystemStorage<>(Paths.get(directoryPath), true,
+                Serializers.INTEGER, Serializers.STRING);
+        IntStream.range(0, 20).forEach(x -> storage.put(x, "v" + x));
+
+        FileSystemStorage<Integer, String> keysReloaded = new FileSystemStorage<>(Paths.get(directoryPath),
+                Serializers.INTEGER, Serializers.STRING);
+        try (Stream<Integer> keys = keysReloaded.keys()) {
+            assertEquals(190, keys.mapToInt(Integer::intValue).sum());
+        }
+        assertEquals(20, keysReloaded.size());
+        assertEquals(Optional.of("v3"), keysReloaded.get(3));
+        assertTrue(keysReloaded.putIfChanged(3, "v3"));
+
+        FileSystemStorage<Integer, String> entriesReloaded = new FileSystemStorage<>(Paths.get(directoryPath),
+                Serializers.INTEGER, Serializers.STRING);
+        try (Stream<Map.Entry<Integer, String>> entries = entriesReloaded.entries()) {
+            assertEquals(20, entries.filter(e -> e.getValue().equals("v" + e.getKey())).count());
+        }
+        assertEquals(20, entriesReloaded.size());
+        assertFalse(entriesReloaded.putIfChanged(3, "v3"));
+    }
+
+    /**
+     * Corrupted files are quarantined and read as misses, other entries are read as usual
+     */
+    @Test
+    void corruptedFilesAreQuarantined() throws IOException {
+        FileSystemStorage<Integer, String> storage = new FileSystemStorage<>(Paths.get(directoryPath), true,
+                Serializers.INTEGER, Serializers.STRING);
+        IntStream.range(0, 10).forEach(x -> storage.put(x, "value" + x));
+
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(storage.getDirectory())) {
+            files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+        byte[] data = Files.readAllBytes(files.get(0));
+        data[data.length - 1] ^= 0x55;
+        Files.write(files.get(0), data);
+        Files.write(files.get(1), new byte[0]);
+
+        FileSystemStorage<Integer, String> reloaded = new FileSystemStorage<>(Paths.get(directoryPath),
+                Serializers.INTEGER, Serializers.STRING);
+        assertEquals(8, reloaded.getAll().size());
+        assertEquals(8, reloaded.size());
+        try (Stream<Path> quarantined = Files.list(storage.getDirectory().resolve(FileSystemStorage.QUARANTINE_DIRECTORY))) {
+            assertEquals(2, quarantined.count());
+        }
+
+        // corruption found on read is a miss
+        Path file = files.get(2);
+        data = Files.readAllBytes(file);
+        data[data.length - 1] ^= 0x55;
+        Files.write(file, data);
+        long present = IntStream.range(0, 10).filter(x -> reloaded.get(x).isPresent()).count();
+        assertEquals(7, present);
+        assertEquals(7, reloaded.size());
+    }
+
+    /**
+     * File without magic is corrupted, keys are read only from files with right checksum
+     */
+    @Test
+    void keysVerifyChecksum() throws IOException {
+        FileSystemStorage<Integer, String> storage = new FileSystemStorage<>(Paths.get(directoryPath), true,
+                Serializers.INTEGER, Serializers.STRING);
+        String large = String.join("", Collections.nCopies(10_000, "v"));
+        IntStream.range(0, 5).forEach(x -> storage.put(x, large + x));
+
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(storage.getDirectory())) {
+            files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+        byte[] data = Files.readAllBytes(files.get(0));
+        data[0] ^= 0x55;
+        Files.write(files.get(0), data);
+        data = Files.readAllBytes(files.get(1));
+        data[data.length - 1] ^= 0x55;
+        Files.write(files.get(1), data);
+
+        FileSystemStorage<Integer, String> reloaded = new FileSystemStorage<>(Paths.get(directoryPath),
+                Serializers.INTEGER, Serializers.STRING);
+        try (Stream<Integer> keys = reloaded.keys()) {
+            assertEquals(3, keys.count());
+        }
+        try (Stream<Path> quarantined = Files.list(storage.getDirectory().resolve(FileSystemStorage.QUARANTINE_DIRECTORY))) {
+            assertEquals(2, quarantined.count());
+        }
+        assertEquals(3, reloaded.getAll().size());
+    }
+
+    /**
+     * Files of earlier versions with serialized entries are converted when the storage is opened
+     */
+    @Test
+    void legacyFilesAreConverted() throws IOException {
+        FileSystemStorage<Integer, String> storage = new FileSystemStorage<>(Paths.get(directoryPath), true);
+        Path root = storage.getDirectory();
+        for (int i = 0; i < 3; i++) {
+            Path legacy = Files.createTempFile(root, null, null);
+            try (ObjectOutputStream output = new ObjectOutputStream(Files.newOutputStream(legacy))) {
+                output.writeObject(new AbstractMap.SimpleImmutableEntry<>(i, "legacy" + i));
+            }
+        }
+        Files.write(Files.createTempFile(root, null, null), new byte[]{1, 2, 3});
+
+        FileSystemStorage<Integer, String> reloaded = new FileSystemStorage<>(Paths.get(directoryPath));
+        assertEquals(3, reloaded.getAll().size());
+        assertEquals(Optional.of("legacy1"), reloaded.get(1));
+        try (Stream<Path> files = Files.list(root)) {
+            assertEquals(0, files.filter(Files::isRegularFile).count());
+        }
+        try (Stream<Path> quarantined = Files.list(root.resolve(FileSystemStorage.QUARANTINE_DIRECTORY))) {
+            assertEquals(1, quarantined.count());
+        }
+
+        FileSystemStorage<Integer, String> reopened = new FileSystemStorage<>(Paths.get(directoryPath));
+        assertEquals(3, reopened.getAll().size());
+        reopened.clear();
+    }
+}
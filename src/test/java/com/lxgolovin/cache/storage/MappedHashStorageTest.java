@@ -0,0 +1,218 @@
+package com.lxgolovin.cache.storage;
+
+import com.lxgolovin.cache.CacheLevel;
+import com.lxgolovin.cache.algorithm.Lru;
+import com.lxgolovin.cache.core.CacheException;
+import com.lxgolovin.cache.serializer.Serializers;
+import com.lxgolovin.cache.tools.CountingSerializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedHashStorageTest {
+
+    private final Path file = Files.createTempFile("mappedStorage", ".dat");
+
+    private final MappedHashStorage<Integer, String> storage =
+            new MappedHashStorage<>(file, 100, Serializers.INTEGER, Serializers.STRING);
+
+    /**
+     * Long value that does not fit into one slot
+     */
+    private final String largeValue = IntStream.range(0, 500)
+            .mapToObj(String::valueOf)
+            .collect(Collectors.joining(","));
+
+    MappedHashStorageTest() throws IOException {
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        storage.close();
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Test putting values into storage
+     */
+    @Test
+    void putKeyValueToStorage() {
+        assertFalse(storage.put(1,"One").isPresent());
+        assertFalse(storage.put(2, "Two").isPresent());
+        assertEquals(Optional.of("One"), storage.put(1, "Eleven"));
+        assertEquals(Optional.of("Eleven"), storage.get(1));
+        assertEquals(2, storage.size());
+        assertThrows(IllegalArgumentException.class, () -> storage.put(3, null));
+        assertThrows(IllegalArgumentException.class, () -> storage.put(null, "null"));
+        assertThrows(IllegalArgumentException.class, () -> storage.get(null));
+    }
+
+    @Test
+    void removeAndClear() {
+        IntStream.rangeClosed(1, 10).forEach(x -> storage.put(x, "v" + x));
+        assertEquals(Optional.of("v5"), storage.remove(5));
+        assertFalse(storage.remove(5).isPresent());
+        assertFalse(storage.containsKey(5));
+        assertTrue(storage.containsKey(6));
+        assertFalse(storage.containsKey(null));
+
+        // deleted slot is reused
+        storage.put(5, "five");
+        assertEquals(Optional.of("five"), storage.get(5));
+        assertEquals(10, storage.getAll().size());
+
+        storage.clear();
+        assertTrue(storage.isEmpty());
+        assertFalse(storage.get(1).isPresent());
+    }
+
+    /**
+     * Records larger then slot are kept in overflow blocks
+     */
+    @Test
+    void largeValuesInOverflowArea() {
+        storage.put(1, largeValue);
+        storage.put(2, "small");
+        assertEquals(Optional.of(largeValue), storage.get(1));
+
+        assertEquals(Optional.of(largeValue), storage.put(1, largeValue + "!"));
+        assertEquals(Optional.of(largeValue + "!"), storage.remove(1));
+        storage.put(3, largeValue);
+        assertEquals(Optional.of(largeValue), storage.get(3));
+        assertEquals(Optional.of("small"), storage.get(2));
+    }
+
+    /**
+     * Reopened storage has all the data without rebuilding
+     */
+    @Test
+    void dataIsKeptAfterReopen() {
+        IntStream.rangeClosed(1, 50).forEach(x -> storage.put(x, "v" + x));
+        storage.put(51, largeValue);
+        storage.close();
+
+        MappedHashStorage<Integer, String> reopened =
+                new MappedHashStorage<>(file, 10, Serializers.INTEGER, Serializers.STRING);
+        assertEquals(51, reopened.size());
+        assertEquals(Optional.of("v50"), reopened.get(50));
+        assertEquals(Optional.of(largeValue), reopened.get(51));
+        assertEquals(storage.capacity(), reopened.capacity());
+
+        Map<Integer, String> all = reopened.getAll();
+        assertEquals(51, all.size());
+        reopened.close();
+    }
+
+    @Test
+    void storageIsFull() {
+        IntStream.range(0, storage.capacity()).forEach(x -> storage.put(x, "v"));
+        assertThrows(CacheException.class, () -> storage.put(-1, "v"));
+        assertEquals(Optional.of("v"), storage.put(0, "updated"));
+    }
+
+    @Test
+    void wrongFile() throws IOException {
+        Path other = Files.createTempFile("notStorage", ".dat");
+        Files.write(other, new byte[100]);
+        assertThrows(CacheException.class,
+                () -> new MappedHashStorage<>(other, 10, Serializers.INTEGER, Serializers.STRING));
+        Files.delete(other);
+    }
+
+    /**
+     * Keys are read from the slots without values, also for values in overflow blocks
+     */
+    @Test
+    void keysDoNotReadValues() {
+        storage.close();
+        CountingSerializer<String> values = new CountingSerializer<>(Serializers.STRING);
+        MappedHashStorage<Integer, String> counted =
+                new MappedHashStorage<>(file, 100, Serializers.INTEGER, values);
+        IntStream.range(0, 10).forEach(x -> counted.put(x, "v" + x));
+        counted.put(10, largeValue);
+        values.reset();
+
+        assertEquals(11, counted.keys().count());
+        assertEquals(0, values.reads());
+
+        Map<Integer, String> all = counted.entries()
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        assertEquals(counted.getAll(), all);
+        counted.close();
+    }
+
+    /**
+     * Populated file is opened by a cache level without deserializing values
+     */
+    @Test
+    void reopenUnderCacheLevel() {
+        IntStream.range(0, 20).forEach(x -> storage.put(x, "v" + x));
+        storage.put(20, largeValue);
+        storage.close();
+
+        CountingSerializer<String> values = new CountingSerializer<>(Serializers.STRING);
+        MappedHashStorage<Integer, String> reopened =
+                new MappedHashStorage<>(file, 100, Serializers.INTEGER, values);
+        CacheLevel<Integer, String> level = new CacheLevel<>(new Lru<>(), reopened, 10);
+        assertEquals(0, values.reads());
+        assertEquals(21, level.size());
+        assertEquals(21, level.sizeMax());
+        assertEquals(Optional.of(largeValue), level.get(20));
+        assertEquals(Optional.of("v5"), level.get(5));
+        reopened.close();
+    }
+
+    /**
+     * Overwriting a value in overflow blocks keeps both values readable and reuses freed blocks
+     */
+    @Test
+    void overwriteLargeValue() throws IOException {
+        String otherValue = largeValue.replace(',', ';');
+        storage.put(1, largeValue);
+        storage.put(1, otherValue);
+        assertEquals(Optional.of(otherValue), storage.get(1));
+        long fileSize = Files.size(file);
+
+        IntStream.range(0, 100).forEach(x -> assertEquals(Optional.of((x % 2 == 0) ? otherValue : largeValue),
+                storage.put(1, (x % 2 == 0) ? largeValue : otherValue)));
+        assertEquals(Optional.of(otherValue), storage.get(1));
+        assertEquals(fileSize, Files.size(file));
+    }
+
+    /**
+     * Removes do not leave tombstones, so probe runs stay short after put and remove churn
+     */
+    @Test
+    void probeLengthAfterChurn() {
+        Map<Integer, String> expected = new HashMap<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 200_000; i++) {
+            int key = random.nextInt(1000);
+            if ((expected.size() < 70) && !expected.containsKey(key)) {
+                expected.put(key, "v" + i);
+                storage.put(key, "v" + i);
+            } else {
+                Integer removed = expected.keySet().iterator().next();
+                assertEquals(Optional.of(expected.remove(removed)), storage.remove(removed));
+            }
+        }
+
+        assertEquals(expected, storage.getAll());
+        assertEquals(expected.size(), storage.size());
+        int longestMiss = IntStream.range(1000, 2000).map(storage::probeLength).max().orElse(0);
+        int longestHit = expected.keySet().stream().mapToInt(storage::probeLength).max().orElse(0);
+        assertTrue(longestMiss < 32, "Longest miss probes " + longestMiss + " slots");
+        assertTrue(longestHit < 32, "Longest hit probes " + longestHit + " slots");
+    }
+}
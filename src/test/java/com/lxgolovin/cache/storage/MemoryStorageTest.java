@@ -6,6 +6,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -87,4 +88,27 @@ class MemoryStorageTest {
 
         assertEquals(100, map.get(10));
     }
-}
\ No newline at end of file
+
+    @Test
+    void putAndRemoveSilently() {
+        assertTrue(storage.putIfChanged(1, "One"));
+        assertFalse(storage.putIfChanged(1, "One"));
+        assertTrue(storage.putIfChanged(1, "Eleven"));
+        storage.putSilently(2, "Two");
+        assertEquals(Optional.of("Two"), storage.get(2));
+        assertTrue(storage.removeSilently(2));
+        assertFalse(storage.removeSilently(2));
+        assertEquals(1, storage.size());
+    }
+
+    @Test
+    void streamEntriesAndKeys() {
+        IntStream.range(0, 10).forEach(x -> storage.put(x, "v" + x));
+        try (Stream<Map.Entry<Integer, String>> entries = storage.entries()) {
+            assertEquals(10, entries.filter(e -> e.getValue().equals("v" + e.getKey())).count());
+        }
+        try (Stream<Integer> keys = storage.keys()) {
+            assertEquals(45, keys.mapToInt(Integer::intValue).sum());
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.lxgolovin.cache.storage;
+
+import com.lxgolovin.cache.core.CacheException;
+import com.lxgolovin.cache.serializer.Serializers;
+import com.lxgolovin.cache.tools.CountingSerializer;
+import com.lxgolovin.cache.tools.FutureConverter;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapStorageTest {
+
+    private final OffHeapStorage<Integer, String> storage = new OffHeapStorage<>(Serializers.STRING);
+
+    /**
+     * Test putting values into storage
+     */
+    @Test
+    void putKeyValueToStorage() {
+        assertFalse(storage.put(1,"One").isPresent());
+        assertFalse(storage.put(2, "Two").isPresent());
+        assertEquals(Optional.of("One"), storage.put(1, "Eleven"));
+        assertEquals(Optional.of("Eleven"), storage.get(1));
+        assertThrows(IllegalArgumentException.class, () -> storage.put(3, null));
+        assertThrows(IllegalArgumentException.class, () -> storage.put(null, "null"));
+        assertThrows(IllegalArgumentException.class, () -> new OffHeapStorage<Integer, String>(null));
+    }
+
+    @Test
+    void removeAndClear() {
+        IntStream.rangeClosed(1, 10).forEach(x -> storage.put(x, "v" + x));
+        assertEquals(10, storage.size());
+        assertTrue(storage.containsKey(5));
+        assertEquals(Optional.of("v5"), storage.remove(5));
+        assertFalse(storage.remove(5).isPresent());
+        assertFalse(storage.containsKey(5));
+        assertFalse(storage.containsKey(null));
+
+        Map<Integer, String> map = storage.getAll();
+        assertEquals(9, map.size());
+        assertEquals("v10", map.get(10));
+
+        storage.clear();
+        assertTrue(storage.isEmpty());
+        assertEquals(0, storage.usedBytes());
+        assertFalse(storage.get(1).isPresent());
+    }
+
+    /**
+     * Chunks of removed values are reused, so direct memory does not grow
+     */
+    @Test
+    void chunksAreReused() {
+        storage.put(1, "first");
+        long allocated = storage.allocatedBytes();
+        long used = storage.usedBytes();
+        assertTrue(used > 0);
+
+        for (int i = 0; i < 10_000; i++) {
+            storage.put(1, "value " + i);
+        }
+        assertEquals(allocated, storage.allocatedBytes());
+        assertEquals(used, storage.usedBytes());
+    }
+
+    /**
+     * Values larger then slab or beyond capacity cannot be stored
+     */
+    @Test
+    void capacityIsLimited() {
+        OffHeapStorage<Integer, byte[]> small = new OffHeapStorage<>(Serializers.BYTE_ARRAY, 4096, 1024);
+        assertThrows(IllegalArgumentException.class, () -> small.put(1, new byte[2048]));
+
+        IntStream.range(0, 4).forEach(x -> small.put(x, new byte[1000]));
+        assertThrows(CacheException.class, () -> small.put(5, new byte[1000]));
+        assertEquals(4, small.size());
+
+        small.remove(0);
+        assertFalse(small.put(5, new byte[1000]).isPresent());
+        assertEquals(1000, small.get(5).map(v -> v.length).orElse(0));
+    }
+
+    @Test
+    void concurrentAccess() throws InterruptedException, ExecutionException {
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        IntStream.range(0, 100).forEach(k -> futures.add(CompletableFuture.runAsync(() -> {
+            storage.put(k, "v" + k);
+            storage.remove(k);
+            storage.put(k, "v" + k);
+            assertEquals(Optional.of("v" + k), storage.get(k));
+        })));
+
+        FutureConverter.getAllFinished(futures).get();
+        assertEquals(100, storage.size());
+    }
+
+    /**
+     * Keys are streamed from the index without reading values
+     */
+    @Test
+    void keysDoNotReadValues() {
+        CountingSerializer<String> values = new CountingSerializer<>(Serializers.STRING);
+        OffHeapStorage<Integer, String> counted = new OffHeapStorage<>(values);
+        IntStream.range(0, 10).forEach(x -> counted.put(x, "v" + x));
+        values.reset();
+
+        assertEquals(10, counted.keys().count());
+        assertEquals(0, values.reads());
+
+        Map<Integer, String> all = counted.entries()
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        assertEquals(counted.getAll(), all);
+    }
+}
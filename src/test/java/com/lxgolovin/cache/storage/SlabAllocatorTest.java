@@ -0,0 +1,52 @@
+package com.lxgolovin.cache.storage;
+
+import com.lxgolovin.cache.core.CacheException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlabAllocatorTest {
+
+    private final SlabAllocator allocator = new SlabAllocator(1024, 4096);
+
+    @Test
+    void chunksOfSizeClasses() {
+        long first = allocator.allocate(10);
+        long second = allocator.allocate(64);
+        assertEquals(SlabAllocator.slabIndex(first), SlabAllocator.slabIndex(second));
+        assertEquals(SlabAllocator.MIN_CHUNK_SIZE, SlabAllocator.offset(second) - SlabAllocator.offset(first));
+
+        long large = allocator.allocate(65);
+        assertNotEquals(SlabAllocator.slabIndex(first), SlabAllocator.slabIndex(large));
+        assertEquals(2 * SlabAllocator.MIN_CHUNK_SIZE + 128, allocator.usedBytes());
+        assertEquals(2048, allocator.allocatedBytes());
+    }
+
+    @Test
+    void freedChunksAreReused() {
+        long first = allocator.allocate(100);
+        allocator.free(first);
+        assertEquals(0, allocator.usedBytes());
+        assertEquals(first, allocator.allocate(128));
+    }
+
+    @Test
+    void capacityAndReset() {
+        for (int i = 0; i < 4; i++) {
+            allocator.allocate(1024);
+        }
+        assertThrows(CacheException.class, () -> allocator.allocate(1));
+        assertThrows(IllegalArgumentException.class, () -> allocator.allocate(1025));
+
+        allocator.reset();
+        assertEquals(0, allocator.usedBytes());
+        allocator.allocate(1);
+        assertEquals(4096, allocator.allocatedBytes());
+    }
+
+    @Test
+    void wrongParameters() {
+        assertThrows(IllegalArgumentException.class, () -> new SlabAllocator(1000, 4096));
+        assertThrows(IllegalArgumentException.class, () -> new SlabAllocator(1024, 100));
+    }
+}
@@ -0,0 +1,40 @@
+package com.lxgolovin.cache.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SyncerTest {
+
+    /**
+     * Batch failed with unchecked exception is not marked as forced and is forced again
+     */
+    @Test
+    void uncheckedFailureKeepsBatch() {
+        AtomicBoolean failing = new AtomicBoolean(true);
+        List<String> forced = new ArrayList<>();
+        Syncer<String> syncer = new Syncer<>(Durability.groupCommit(), batch -> {
+            if (failing.get()) {
+                throw new UncheckedIOException(new IOException("Drive is gone"));
+            }
+            forced.addAll(batch);
+        });
+
+        long ticket = syncer.register("file");
+        assertThrows(UncheckedIOException.class, () -> syncer.await(ticket));
+        assertThrows(UncheckedIOException.class, () -> syncer.await(ticket));
+        assertEquals(0, syncer.syncCount());
+
+        failing.set(false);
+        syncer.await(ticket);
+        assertEquals(List.of("file"), forced);
+        assertEquals(1, syncer.syncCount());
+        syncer.close();
+    }
+}
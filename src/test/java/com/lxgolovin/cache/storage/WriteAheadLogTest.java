@@ -0,0 +1,219 @@
+package com.lxgolovin.cache.storage;
+
+import com.lxgolovin.cache.core.CacheException;
+import com.lxgolovin.cache.serializer.Serializer;
+import com.lxgolovin.cache.serializer.Serializers;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteAheadLogTest {
+
+    private final Path directory = Files.createTempDirectory("wal");
+
+    WriteAheadLogTest() throws IOException {
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(path -> path.toFile().delete());
+        }
+        directory.toFile().delete();
+    }
+
+    private WriteAheadLog<Integer, String> openLog(long checkpointRecords) {
+        return new WriteAheadLog<>(directory, Serializers.INTEGER, Serializers.STRING,
+                Durability.groupCommit(), checkpointRecords);
+    }
+
+    private List<Path> files(String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().startsWith(prefix))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Puts, removes and clears are replayed after restart
+     */
+    @Test
+    void replayAfterRestart() {
+        WriteAheadLog<Integer, String> wal = openLog(WriteAheadLog.DEFAULT_CHECKPOINT_RECORDS);
+        MemoryStorage<Integer, String> storage = new MemoryStorage<>(wal);
+        IntStream.range(0, 100).forEach(x -> storage.put(x, "v" + x));
+        storage.clear();
+        IntStream.range(0, 10).forEach(x -> storage.put(x, "v" + x));
+        storage.put(1, "One");
+        storage.remove(2);
+        wal.close();
+
+        WriteAheadLog<Integer, String> reopened = openLog(WriteAheadLog.DEFAULT_CHECKPOINT_RECORDS);
+        MemoryStorage<Integer, String> restored = new MemoryStorage<>(reopened);
+        assertEquals(9, restored.size());
+        assertEquals(Optional.of("One"), restored.get(1));
+        assertFalse(restored.containsKey(2));
+        reopened.close();
+    }
+
+    /**
+     * Full segments are replaced by checkpoints
+     */
+    @Test
+    void checkpoints() throws IOException {
+        WriteAheadLog<Integer, String> wal = openLog(50);
+        MemoryStorage<Integer, String> storage = new MemoryStorage<>(wal);
+        IntStream.range(0, 1000).forEach(x -> storage.put(x % 300, "v" + x));
+        wal.close();
+
+        assertEquals(1, files("checkpoint-").size());
+        assertTrue(files("wal-").size() <= 2);
+
+        WriteAheadLog<Integer, String> reopened = openLog(50);
+        MemoryStorage<Integer, String> restored = new MemoryStorage<>(reopened);
+        assertEquals(300, restored.size());
+        assertEquals(Optional.of("v999"), restored.get(99));
+        assertEquals(Optional.of("v700"), restored.get(100));
+        reopened.close();
+    }
+
+    /**
+     * Writers only append records, checkpoints are serialized by the background thread
+     */
+    @Test
+    void checkpointsInBackground() {
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        Serializer<String> values = new Serializer<String>() {
+            @Override
+            public int sizeOf(String value) {
+                return Serializers.STRING.sizeOf(value);
+            }
+
+            @Override
+            public void write(String value, ByteBuffer buffer) {
+                threads.add(Thread.currentThread().getName());
+                Serializers.STRING.write(value, buffer);
+            }
+
+            @Override
+            public String read(ByteBuffer buffer) {
+                return Serializers.STRING.read(buffer);
+            }
+        };
+        WriteAheadLog<Integer, String> wal = new WriteAheadLog<>(directory, Serializers.INTEGER, values,
+                Durability.none(), 50);
+        MemoryStorage<Integer, String> storage = new MemoryStorage<>(wal);
+        IntStream.range(0, 1000).forEach(x -> storage.put(x % 300, "v" + x));
+        wal.close();
+
+        assertEquals(new HashSet<>(Arrays.asList(Thread.currentThread().getName(), "wal-checkpoint")), threads);
+        WriteAheadLog<Integer, String> reopened = openLog(50);
+        assertEquals(storage.getAll(), new MemoryStorage<>(reopened).getAll());
+        reopened.close();
+    }
+
+    /**
+     * Checkpoint is written on time even if the segment is not full
+     */
+    @Test
+    void periodicCheckpoint() throws IOException, InterruptedException {
+        WriteAheadLog<Integer, String> wal = new WriteAheadLog<>(directory, Serializers.INTEGER, Serializers.STRING,
+                Durability.none(), WriteAheadLog.DEFAULT_CHECKPOINT_RECORDS, 20);
+        MemoryStorage<Integer, String> storage = new MemoryStorage<>(wal);
+        IntStream.range(0, 10).forEach(x -> storage.put(x, "v" + x));
+        for (int i = 0; (i < 500) && files("checkpoint-").isEmpty(); i++) {
+            Thread.sleep(10);
+        }
+        wal.close();
+
+        assertEquals(1, files("checkpoint-").size());
+        WriteAheadLog<Integer, String> reopened = openLog(WriteAheadLog.DEFAULT_CHECKPOINT_RECORDS);
+        assertEquals(10, new MemoryStorage<>(reopened).size());
+        reopened.close();
+        assertThrows(IllegalArgumentException.class, () -> new WriteAheadLog<>(directory, Serializers.INTEGER,
+                Serializers.STRING, Durability.none(), 10, 0));
+    }
+
+    /**
+     * Broken record at the end of segment is cut off
+     */
+    @Test
+    void tornTailIsTruncated() throws IOException {
+        WriteAheadLog<Integer, String> wal = openLog(WriteAheadLog.DEFAULT_CHECKPOINT_RECORDS);
+        MemoryStorage<Integer, String> storage = new MemoryStorage<>(wal);
+        IntStream.range(0, 10).forEach(x -> storage.put(x, "v" + x));
+        wal.close();
+
+        Path segment = files("wal-").get(0);
+        long size = Files.size(segment);
+        Files.write(segment, new byte[] {0, 0, 0, 20, 1, 2, 3, 4, 1, 0}, StandardOpenOption.APPEND);
+
+        WriteAheadLog<Integer, String> reopened = openLog(WriteAheadLog.DEFAULT_CHECKPOINT_RECORDS);
+        MemoryStorage<Integer, String> restored = new MemoryStorage<>(reopened);
+        assertEquals(10, restored.size());
+        assertEquals(size, Files.size(segment));
+        reopened.close();
+    }
+
+    /**
+     * Storage is not changed if the record cannot be appended
+     */
+    @Test
+    void failedAppendKeepsData() {
+        WriteAheadLog<Integer, String> wal = openLog(WriteAheadLog.DEFAULT_CHECKPOINT_RECORDS);
+        MemoryStorage<Integer, String> storage = new MemoryStorage<>(wal);
+        storage.put(1, "One");
+        wal.close();
+
+        assertThrows(CacheException.class, () -> storage.put(1, "Two"));
+        assertThrows(CacheException.class, () -> storage.put(2, "Two"));
+        assertThrows(CacheException.class, () -> storage.remove(1));
+        assertThrows(CacheException.class, storage::clear);
+        assertEquals(Optional.of("One"), storage.get(1));
+        assertEquals(1, storage.size());
+
+        WriteAheadLog<Integer, String> reopened = openLog(WriteAheadLog.DEFAULT_CHECKPOINT_RECORDS);
+        assertEquals(storage.getAll(), new MemoryStorage<>(reopened).getAll());
+        reopened.close();
+    }
+
+    @Test
+    void concurrentWriters() throws InterruptedException {
+        WriteAheadLog<Integer, String> wal = openLog(WriteAheadLog.DEFAULT_CHECKPOINT_RECORDS);
+        MemoryStorage<Integer, String> storage = new MemoryStorage<>(wal);
+        Thread[] writers = new Thread[8];
+        for (int t = 0; t < writers.length; t++) {
+            int offset = t * 100;
+            writers[t] = new Thread(() -> IntStream.range(offset, offset + 100).forEach(x -> storage.put(x, "v" + x)));
+            writers[t].start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        wal.close();
+
+        WriteAheadLog<Integer, String> reopened = openLog(WriteAheadLog.DEFAULT_CHECKPOINT_RECORDS);
+        assertEquals(800, new MemoryStorage<>(reopened).size());
+        reopened.close();
+
+        assertThrows(IllegalArgumentException.class, () -> new MemoryStorage<Integer, String>((WriteAheadLog<Integer, String>) null));
+        assertThrows(IllegalArgumentException.class, () -> openLog(0));
+    }
+}
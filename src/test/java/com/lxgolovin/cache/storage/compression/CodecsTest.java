@@ -0,0 +1,63 @@
+package com.lxgolovin.cache.storage.compression;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CodecsTest {
+
+    private final byte[] text = new String(new char[1000]).replace("\0", "abc")
+            .getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void deflateRoundTrip() {
+        byte[] compressed = Codecs.DEFLATE.compress(text);
+        assertTrue(compressed.length < text.length / 10);
+        assertArrayEquals(text, Codecs.DEFLATE.decompress(compressed, 0, compressed.length, text.length));
+    }
+
+    @Test
+    void deflateRandomData() {
+        byte[] random = new byte[10_000];
+        new Random(1).nextBytes(random);
+        byte[] compressed = Codecs.DEFLATE.compress(random);
+        assertArrayEquals(random, Codecs.DEFLATE.decompress(compressed, 0, compressed.length, random.length));
+        assertArrayEquals(new byte[0], Codecs.DEFLATE.decompress(Codecs.DEFLATE.compress(new byte[0]), 0,
+                Codecs.DEFLATE.compress(new byte[0]).length, 0));
+    }
+
+    @Test
+    void deflateCorruptedData() {
+        byte[] compressed = Codecs.DEFLATE.compress(text);
+        assertThrows(IllegalArgumentException.class,
+                () -> Codecs.DEFLATE.decompress(compressed, 0, compressed.length / 2, text.length));
+    }
+
+    @Test
+    void deflateWrongOriginalLength() {
+        byte[] compressed = Codecs.DEFLATE.compress(text);
+        assertThrows(IllegalArgumentException.class,
+                () -> Codecs.DEFLATE.decompress(compressed, 0, compressed.length, -1));
+        assertThrows(IllegalArgumentException.class,
+                () -> Codecs.DEFLATE.decompress(compressed, 0, compressed.length, Integer.MAX_VALUE));
+    }
+
+    @Test
+    void deflateMaxOriginalLength() {
+        byte[] zeros = new byte[1 << 20];
+        byte[] compressed = Codecs.DEFLATE.compress(zeros);
+        assertTrue(Codecs.DEFLATE.maxOriginalLength(compressed.length) >= zeros.length);
+        assertArrayEquals(zeros, Codecs.DEFLATE.decompress(compressed, 0, compressed.length, zeros.length));
+        assertEquals(Integer.MAX_VALUE - 8, Codecs.NONE.maxOriginalLength(Integer.MAX_VALUE));
+    }
+
+    @Test
+    void noneCodec() {
+        assertSame(text, Codecs.NONE.compress(text));
+        assertArrayEquals(new byte[]{2, 3}, Codecs.NONE.decompress(new byte[]{1, 2, 3}, 1, 2, 2));
+        assertNotEquals(Codecs.NONE.id(), Codecs.DEFLATE.id());
+    }
+}
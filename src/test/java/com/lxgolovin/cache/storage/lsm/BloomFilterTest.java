@@ -0,0 +1,47 @@
+package com.lxgolovin.cache.storage.lsm;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+
+    private final int keys = 10_000;
+
+    private final long[] hashes = IntStream.range(0, keys)
+            .mapToLong(i -> BloomFilter.hash(ByteBuffer.allocate(4).putInt(i).array()))
+            .toArray();
+
+    private final BloomFilter filter = BloomFilter.create(hashes, keys);
+
+    @Test
+    void noFalseNegatives() {
+        for (long hash : hashes) {
+            assertTrue(filter.mightContain(hash));
+        }
+    }
+
+    @Test
+    void fewFalsePositives() {
+        long falsePositives = IntStream.range(keys, 2 * keys)
+                .mapToLong(i -> BloomFilter.hash(ByteBuffer.allocate(4).putInt(i).array()))
+                .filter(filter::mightContain)
+                .count();
+        assertTrue(falsePositives < keys / 20, "false positives: " + falsePositives);
+    }
+
+    @Test
+    void writeAndRead() {
+        ByteBuffer buffer = ByteBuffer.allocate(filter.serializedSize());
+        filter.writeTo(buffer);
+        buffer.flip();
+
+        BloomFilter copy = BloomFilter.readFrom(buffer);
+        for (long hash : hashes) {
+            assertTrue(copy.mightContain(hash));
+        }
+    }
+}
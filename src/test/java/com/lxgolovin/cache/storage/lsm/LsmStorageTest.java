@@ -0,0 +1,203 @@
+package com.lxgolovin.cache.storage.lsm;
+
+import com.lxgolovin.cache.serializer.Serializers;
+import com.lxgolovin.cache.tools.CountingSerializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LsmStorageTest {
+
+    private final Path directory = Files.createTempDirectory("lsmStorage");
+
+    /**
+     * Small memtable to get flushes and compactions quickly
+     */
+    private final LsmStorage<Integer, String> storage =
+            new LsmStorage<>(directory, Serializers.INTEGER, Serializers.STRING, 256);
+
+    LsmStorageTest() throws IOException {
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        storage.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * Test putting values into storage
+     */
+    @Test
+    void putKeyValueToStorage() {
+        assertFalse(storage.put(1,"One").isPresent());
+        assertFalse(storage.put(2, "Two").isPresent());
+        assertEquals(Optional.of("One"), storage.put(1, "Eleven"));
+        assertEquals(Optional.of("Eleven"), storage.get(1));
+        assertEquals(2, storage.size());
+        assertThrows(IllegalArgumentException.class, () -> storage.put(3, null));
+        assertThrows(IllegalArgumentException.class, () -> storage.put(null, "null"));
+        assertThrows(IllegalArgumentException.class, () -> storage.get(null));
+    }
+
+    @Test
+    void removeKeys() {
+        IntStream.rangeClosed(1, 10).forEach(x -> storage.put(x, "v" + x));
+        assertEquals(Optional.of("v5"), storage.remove(5));
+        assertFalse(storage.remove(5).isPresent());
+        assertFalse(storage.containsKey(5));
+        assertTrue(storage.containsKey(6));
+        assertFalse(storage.containsKey(null));
+        assertEquals(9, storage.size());
+        assertEquals(9, storage.getAll().size());
+    }
+
+    /**
+     * Many writes go through flushes and compactions, all data is still available
+     */
+    @Test
+    void flushAndCompaction() {
+        IntStream.range(0, 2000).forEach(x -> storage.put(x % 500, "value" + x));
+        IntStream.range(0, 100).forEach(storage::remove);
+        storage.flush();
+        storage.compact();
+
+        assertTrue(Arrays.stream(storage.tablesPerLevel()).sum() > 0);
+        assertTrue(storage.tablesPerLevel()[0] < LsmStorage.LEVEL0_COMPACTION_TRIGGER);
+        assertEquals(400, storage.size());
+        assertEquals(Optional.of("value1999"), storage.get(499));
+        assertFalse(storage.get(99).isPresent());
+
+        Map<Integer, String> all = storage.getAll();
+        assertEquals(400, all.size());
+        assertEquals("value1600", all.get(100));
+    }
+
+    /**
+     * Reopened storage reads all tables from directory
+     */
+    @Test
+    void dataIsKeptAfterReopen() {
+        IntStream.range(0, 300).forEach(x -> storage.put(x, "v" + x));
+        storage.remove(7);
+        storage.close();
+
+        LsmStorage<Integer, String> reopened = new LsmStorage<>(directory, Serializers.INTEGER, Serializers.STRING);
+        assertEquals(299, reopened.size());
+        assertEquals(Optional.of("v299"), reopened.get(299));
+        assertFalse(reopened.get(7).isPresent());
+        reopened.close();
+    }
+
+    @Test
+    void clearStorage() throws IOException {
+        IntStream.range(0, 300).forEach(x -> storage.put(x, "v" + x));
+        storage.flush();
+        storage.clear();
+
+        assertTrue(storage.isEmpty());
+        assertFalse(storage.get(1).isPresent());
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+
+        storage.put(1, "again");
+        assertEquals(Optional.of("again"), storage.get(1));
+    }
+
+    /**
+     * Silent methods keep size without deserializing old values, unchanged value is not appended
+     */
+    @Test
+    void silentMethods() {
+        CountingSerializer<String> values = new CountingSerializer<>(Serializers.STRING);
+        LsmStorage<Integer, String> counted =
+                new LsmStorage<>(directory.resolve("silent"), Serializers.INTEGER, values, 256);
+        IntStream.range(0, 100).forEach(x -> counted.putSilently(x, "v" + x));
+        counted.flush();
+        counted.putSilently(1, "updated");
+        assertFalse(counted.putIfChanged(2, "v2"));
+        assertTrue(counted.putIfChanged(2, "changed"));
+        assertTrue(counted.putIfChanged(100, "v100"));
+        assertTrue(counted.removeSilently(3));
+        assertFalse(counted.removeSilently(3));
+        assertFalse(counted.removeSilently(200));
+        assertEquals(0, values.reads());
+
+        assertEquals(100, counted.size());
+        assertEquals(Optional.of("updated"), counted.get(1));
+        assertEquals(Optional.of("changed"), counted.get(2));
+        assertFalse(counted.get(3).isPresent());
+        counted.close();
+    }
+
+    /**
+     * Keys are merged from memtable and tables without deserializing values
+     */
+    @Test
+    void keysDoNotReadValues() {
+        CountingSerializer<String> values = new CountingSerializer<>(Serializers.STRING);
+        LsmStorage<Integer, String> counted =
+                new LsmStorage<>(directory.resolve("keys"), Serializers.INTEGER, values, 256);
+        IntStream.range(0, 500).forEach(x -> counted.put(x % 300, "v" + x));
+        IntStream.range(0, 50).forEach(counted::remove);
+        values.reset();
+
+        try (Stream<Integer> keys = counted.keys()) {
+            assertEquals(IntStream.range(50, 300).boxed().collect(Collectors.toSet()), keys.collect(Collectors.toSet()));
+        }
+        assertEquals(0, values.reads());
+
+        try (Stream<Map.Entry<Integer, String>> entries = counted.entries()) {
+            assertEquals(counted.getAll(), entries.collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)));
+        }
+        counted.close();
+    }
+
+    /**
+     * Tables read by a stream are deleted by compaction only after the stream is read or closed
+     */
+    @Test
+    void streamPinsTables() throws IOException {
+        IntStream.range(0, 300).forEach(x -> storage.put(x, "v" + x));
+        storage.flush();
+
+        Set<Integer> keys = new HashSet<>();
+        try (Stream<Integer> stream = storage.keys()) {
+            Iterator<Integer> iterator = stream.iterator();
+            keys.add(iterator.next());
+
+            IntStream.range(0, 3000).forEach(x -> storage.put(x % 600, "value" + x));
+            storage.flush();
+            storage.compact();
+            assertTrue(tableFiles() > Arrays.stream(storage.tablesPerLevel()).sum());
+            iterator.forEachRemaining(keys::add);
+        }
+
+        assertEquals(IntStream.range(0, 300).boxed().collect(Collectors.toSet()), keys);
+        assertEquals(Arrays.stream(storage.tablesPerLevel()).sum(), tableFiles());
+    }
+
+    private long tableFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.toString().endsWith(SsTable.SUFFIX)).count();
+        }
+    }
+}
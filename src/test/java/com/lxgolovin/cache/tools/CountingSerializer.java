@@ -0,0 +1,44 @@
+package com.lxgolovin.cache.tools;
+
+import com.lxgolovin.cache.serializer.Serializer;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Delegating serializer which counts deserialized values
+ */
+public final class CountingSerializer<T> implements Serializer<T> {
+
+    private final Serializer<T> serializer;
+
+    private final AtomicInteger reads = new AtomicInteger();
+
+    public CountingSerializer(Serializer<T> serializer) {
+        this.serializer = serializer;
+    }
+
+    @Override
+    public int sizeOf(T value) {
+        return serializer.sizeOf(value);
+    }
+
+    @Override
+    public void write(T value, ByteBuffer buffer) {
+        serializer.write(value, buffer);
+    }
+
+    @Override
+    public T read(ByteBuffer buffer) {
+        reads.incrementAndGet();
+        return serializer.read(buffer);
+    }
+
+    public int reads() {
+        return reads.get();
+    }
+
+    public void reset() {
+        reads.set(0);
+    }
+}